@@ -0,0 +1,58 @@
+package com.hpursan.digicert.library.jmh;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hpursan.digicert.library.dto.BookField;
+import com.hpursan.digicert.library.dto.BookSearch;
+import com.hpursan.digicert.library.service.BookService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A full page of books against the same page with only {@code id,title}, read from the database and serialized the
+ * way {@code GET /api/books} does it. Run with {@code -Djmh.args="BookFieldsBenchmark -prof gc"} to see the
+ * allocation per page next to the time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class BookFieldsBenchmark {
+    private static final List<BookField> ID_AND_TITLE = List.of(BookField.ID, BookField.TITLE);
+
+    private BookService bookService;
+    private ObjectMapper objectMapper;
+
+    @Setup(Level.Trial)
+    public void setUp(CatalogState catalog) {
+        bookService = catalog.getBean(BookService.class);
+        objectMapper = catalog.getBean(ObjectMapper.class);
+    }
+
+    @Benchmark
+    public void allFields() throws IOException {
+        objectMapper.writeValue(OutputStream.nullOutputStream(),
+            bookService.searchBooks(new BookSearch(), null, null, BookService.MAX_PAGE_SIZE).getBooks());
+    }
+
+    @Benchmark
+    public void idAndTitle() throws IOException {
+        objectMapper.writeValue(OutputStream.nullOutputStream(),
+            bookService.searchBookFields(new BookSearch(), null, null, BookService.MAX_PAGE_SIZE, ID_AND_TITLE).getBooks());
+    }
+}
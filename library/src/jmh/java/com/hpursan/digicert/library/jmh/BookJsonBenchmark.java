@@ -0,0 +1,90 @@
+package com.hpursan.digicert.library.jmh;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hpursan.digicert.library.controller.BookJsonHttpMessageConverter;
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.service.BookService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes the whole catalog as a {@code List<Book>} with the application's {@link ObjectMapper}, and a page of
+ * books through Jackson's message converter against {@link BookJsonHttpMessageConverter}, the way the controller
+ * writes them. The bytes are thrown away so only the serialization is measured. Run with
+ * {@code -Djmh.args="BookJsonBenchmark -prof gc"} and compare {@code gc.alloc.rate.norm}, the bytes allocated per
+ * operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class BookJsonBenchmark {
+    private static final Type PAGE_TYPE = new ParameterizedTypeReference<List<?>>() {}.getType();
+
+    private ObjectMapper objectMapper;
+    private MappingJackson2HttpMessageConverter jacksonConverter;
+    private BookJsonHttpMessageConverter bookConverter;
+    private List<Book> books;
+    private List<Book> page;
+
+    @Setup(Level.Trial)
+    public void setUp(CatalogState catalog) {
+        objectMapper = catalog.getBean(ObjectMapper.class);
+        jacksonConverter = catalog.getBean(MappingJackson2HttpMessageConverter.class);
+        bookConverter = catalog.getBean(BookJsonHttpMessageConverter.class);
+        BookService bookService = catalog.getBean(BookService.class);
+        books = bookService.listAllBooks();
+        page = bookService.listBooks(null, BookService.MAX_PAGE_SIZE).getBooks();
+    }
+
+    @Benchmark
+    public void serializeBooks() throws IOException {
+        objectMapper.writeValue(OutputStream.nullOutputStream(), books);
+    }
+
+    @Benchmark
+    public void jacksonConverterPage() throws IOException {
+        jacksonConverter.write(page, PAGE_TYPE, MediaType.APPLICATION_JSON, new DiscardingOutputMessage());
+    }
+
+    @Benchmark
+    public void bookConverterPage() throws IOException {
+        bookConverter.write(page, PAGE_TYPE, MediaType.APPLICATION_JSON, new DiscardingOutputMessage());
+    }
+
+    private static class DiscardingOutputMessage implements HttpOutputMessage {
+        private final HttpHeaders headers = new HttpHeaders();
+
+        @Override
+        public OutputStream getBody() {
+            return OutputStream.nullOutputStream();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.hpursan.digicert.library.jmh;
+
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.service.BookService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link BookService} read paths against a generated catalog. By id picks a random existing book each time, so a large
+ * catalog also measures cache misses. Title and author search for a title and an author that exist, the title
+ * matches a handful of books and the author about one book in three hundred.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class BookServiceBenchmark {
+    private BookService bookService;
+    private long[] ids;
+    private String title;
+    private String author;
+
+    @Setup(Level.Trial)
+    public void setUp(CatalogState catalog) {
+        bookService = catalog.getBean(BookService.class);
+        List<Book> books = bookService.listAllBooks();
+        ids = books.stream().mapToLong(Book::getId).toArray();
+        Book middle = books.get(books.size() / 2);
+        title = middle.getTitle();
+        author = middle.getAuthor();
+    }
+
+    @Benchmark
+    public Book getBookById() {
+        return bookService.getBookById(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    @Benchmark
+    public List<Book> getBookByTitle() {
+        return bookService.getBookByTitle(title);
+    }
+
+    @Benchmark
+    public List<Book> getBookByAuthor() {
+        return bookService.getBookByAuthor(author);
+    }
+
+    @Benchmark
+    public List<Book> listAllBooks() {
+        return bookService.listAllBooks();
+    }
+}
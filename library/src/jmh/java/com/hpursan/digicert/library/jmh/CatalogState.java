@@ -0,0 +1,47 @@
+package com.hpursan.digicert.library.jmh;
+
+import com.hpursan.digicert.library.BenchmarkCatalog;
+import com.hpursan.digicert.library.LibraryApplication;
+import com.hpursan.digicert.library.search.BookSearchIndex;
+import com.hpursan.digicert.library.search.IsbnIndex;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * The application without its web server, on an H2 database holding {@code rows} generated books on top of the
+ * books in data.sql. The search and ISBN indexes are rebuilt once the catalog is loaded.
+ */
+@State(Scope.Benchmark)
+public class CatalogState {
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    public ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(LibraryApplication.class)
+            .web(WebApplicationType.NONE)
+            .run("--debug=false", "--logging.level.root=warn", "--spring.datasource.url=jdbc:h2:mem:jmh-" + rows + ";DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE");
+        BenchmarkCatalog.load(context.getBean(JdbcTemplate.class), rows);
+        context.getBean(BookSearchIndex.class).rebuild();
+        context.getBean(IsbnIndex.class).rebuild();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+}
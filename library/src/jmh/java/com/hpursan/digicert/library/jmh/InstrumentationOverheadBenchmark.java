@@ -0,0 +1,124 @@
+package com.hpursan.digicert.library.jmh;
+
+import com.hpursan.digicert.library.metrics.SqlStatementMetricsInterceptor;
+import com.hpursan.digicert.library.metrics.StatementCountingInspector;
+import com.hpursan.digicert.library.metrics.TimedMethodInterceptor;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the metrics add to a call. {@code proxied} is a Spring AOP proxy with nothing on it, {@code timed} the same
+ * proxy with the {@link TimedMethodInterceptor} recording into a Prometheus registry with percentile histograms, the
+ * way {@code BookService} is set up. {@code statement} is the Hibernate inspector during a request and
+ * {@code request} the per-request bookkeeping around a handler.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstrumentationOverheadBenchmark {
+    public interface Lookup {
+        long find(long id);
+    }
+
+    public static class SimpleLookup implements Lookup {
+        @Override
+        public long find(long id) {
+            return id + 1;
+        }
+    }
+
+    private Lookup direct;
+    private Lookup proxied;
+    private Lookup timed;
+    private StatementCountingInspector inspector;
+    private SqlStatementMetricsInterceptor interceptor;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private long id;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        PrometheusMeterRegistry meterRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        meterRegistry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                return DistributionStatisticConfig.builder().percentilesHistogram(true).build().merge(config);
+            }
+        });
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("meterRegistry", meterRegistry);
+
+        direct = new SimpleLookup();
+        proxied = proxy(null);
+        timed = proxy(new TimedMethodInterceptor(beanFactory.getBeanProvider(MeterRegistry.class), "lookup"));
+
+        inspector = new StatementCountingInspector();
+        interceptor = new SqlStatementMetricsInterceptor(meterRegistry, 10);
+        request = new MockHttpServletRequest("GET", "/api/books/1");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/books/{id}");
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public long direct() {
+        return direct.find(id++);
+    }
+
+    @Benchmark
+    public long proxied() {
+        return proxied.find(id++);
+    }
+
+    @Benchmark
+    public long timed() {
+        return timed.find(id++);
+    }
+
+    @Benchmark
+    public String statement() {
+        interceptor.preHandle(request, response, null);
+        String sql = inspector.inspect("select b1_0.id from books b1_0 where b1_0.id=?");
+        interceptor.afterCompletion(request, response, null, null);
+        return sql;
+    }
+
+    @Benchmark
+    public void request() {
+        interceptor.preHandle(request, response, null);
+        interceptor.afterCompletion(request, response, null, null);
+    }
+
+    private static Lookup proxy(TimedMethodInterceptor interceptor) {
+        ProxyFactory proxyFactory = new ProxyFactory(new SimpleLookup());
+        proxyFactory.addInterface(Lookup.class);
+        if (interceptor != null) {
+            proxyFactory.addAdvice(interceptor);
+        }
+        return (Lookup) proxyFactory.getProxy();
+    }
+}
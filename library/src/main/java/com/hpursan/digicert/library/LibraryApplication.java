@@ -2,12 +2,26 @@ package com.hpursan.digicert.library;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcTransactionManagerAutoConfiguration;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
-@SpringBootApplication
+// R2DBC is only for the reactive reads and is set up by ReactiveConfiguration on the JDBC side's database. Left to
+// itself Spring Boot would create a second database, run schema.sql against that one instead and add a second
+// transaction manager
+@SpringBootApplication(exclude = {R2dbcAutoConfiguration.class, R2dbcTransactionManagerAutoConfiguration.class})
+@ConfigurationPropertiesScan
 public class LibraryApplication {
 
+	// enough for every step of a startup, a full buffer drops the later ones and library.ready comes last
+	private static final int STARTUP_STEPS = 10_000;
+
 	public static void main(String[] args) {
-		SpringApplication.run(LibraryApplication.class, args);
+		SpringApplication application = new SpringApplication(LibraryApplication.class);
+		// keeps the startup steps for /actuator/startup, see TimeToReady and SnapshotDatabaseInitializer
+		application.setApplicationStartup(new BufferingApplicationStartup(STARTUP_STEPS));
+		application.run(args);
 	}
 
 }
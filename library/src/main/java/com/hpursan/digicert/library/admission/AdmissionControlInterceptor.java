@@ -0,0 +1,94 @@
+package com.hpursan.digicert.library.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Lets a request through to the controller only while its {@link EndpointClass} is under its concurrency limit, and
+ * answers the rest straight away with 503 and {@code Retry-After}. Rejecting costs no thread and no connection, so
+ * when the database slows down the requests it can't serve fail fast instead of piling up in front of the pool and
+ * dragging every endpoint down with them. Each class has its own limit, a flood of searches can't take the threads
+ * that lookups by id need.
+ * <p>
+ * Publishes {@code library.admission.limit}, {@code library.admission.in_flight} and
+ * {@code library.admission.rejected}, tagged with the class.
+ */
+public class AdmissionControlInterceptor implements HandlerInterceptor {
+    public static final String LIMIT = "library.admission.limit";
+    public static final String IN_FLIGHT = "library.admission.in_flight";
+    public static final String REJECTED = "library.admission.rejected";
+
+    private static final String ADMITTED = AdmissionControlInterceptor.class.getName() + ".admitted";
+
+    private final Map<EndpointClass, GradientLimiter> limiters;
+    private final Map<EndpointClass, Counter> rejected = new EnumMap<>(EndpointClass.class);
+    private final String retryAfterSeconds;
+
+    public AdmissionControlInterceptor(Map<EndpointClass, GradientLimiter> limiters, Duration retryAfter, MeterRegistry meterRegistry) {
+        this.limiters = new EnumMap<>(limiters);
+        this.retryAfterSeconds = Long.toString(Math.max(1, (retryAfter.toMillis() + 999) / 1000));
+        this.limiters.forEach((endpointClass, limiter) -> {
+            String tag = endpointClass.name().toLowerCase();
+            Gauge.builder(LIMIT, limiter, GradientLimiter::getLimit)
+                .description("Concurrent requests allowed")
+                .tag("class", tag)
+                .register(meterRegistry);
+            Gauge.builder(IN_FLIGHT, limiter, GradientLimiter::getInFlight)
+                .description("Requests being handled")
+                .tag("class", tag)
+                .register(meterRegistry);
+            rejected.put(endpointClass, Counter.builder(REJECTED)
+                .description("Requests turned away with 503 for being over the limit")
+                .tag("class", tag)
+                .register(meterRegistry));
+        });
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // the dispatch that finishes an async request was already admitted, it is released when that one completes
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        EndpointClass endpointClass = EndpointClass.of(request.getMethod(), pattern == null ? null : pattern.toString());
+        GradientLimiter limiter = endpointClass == null ? null : limiters.get(endpointClass);
+        if (limiter == null) {
+            return true;
+        }
+        if (!limiter.tryAcquire()) {
+            rejected.get(endpointClass).increment();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+            return false;
+        }
+        request.setAttribute(ADMITTED, new Admission(limiter, System.nanoTime()));
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (!(request.getAttribute(ADMITTED) instanceof Admission admission)) {
+            return;
+        }
+        request.removeAttribute(ADMITTED);
+        // a 4xx is the client's doing and as fast as usual, a 5xx or an exception is most likely a timeout
+        boolean dropped = ex != null || response.getStatus() >= 500;
+        admission.limiter.release(System.nanoTime() - admission.started, dropped);
+    }
+
+    private record Admission(GradientLimiter limiter, long started) {
+    }
+}
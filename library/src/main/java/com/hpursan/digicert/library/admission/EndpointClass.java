@@ -0,0 +1,44 @@
+package com.hpursan.digicert.library.admission;
+
+/**
+ * The kinds of book API request that get a concurrency limit each, so one kind slowing down can't take the others'
+ * share of threads and connections.
+ */
+public enum EndpointClass {
+    /**
+     * Books by id or ISBN, mostly answered from the cache or an index, and lookups of many ids.
+     */
+    READS,
+    /**
+     * Listing and searching, a query each and the most expensive of the three.
+     */
+    SEARCHES,
+    /**
+     * Creates, updates and deletes.
+     */
+    WRITES;
+
+    /**
+     * @param pattern the URI pattern the request was mapped to
+     * @return the request's class, or null for a request that isn't limited
+     */
+    public static EndpointClass of(String method, String pattern) {
+        if (pattern == null) {
+            return null;
+        }
+        // a lookup is posted only because its ids don't fit a query string
+        if ("/api/books/lookup".equals(pattern)) {
+            return READS;
+        }
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return WRITES;
+        }
+        return switch (pattern) {
+            case "/api/books/{id}", "/api/books/isbn/{isbn}" -> READS;
+            case "/api/books" -> SEARCHES;
+            // the export and the change feed are one long stream per client, their latency says nothing about how
+            // loaded we are
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,110 @@
+package com.hpursan.digicert.library.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A concurrency limit that follows latency. The limit grows while requests take about as long as they usually do and
+ * shrinks as soon as they take longer, which means they are queuing somewhere, in the connection pool or the
+ * database. Requests over the limit are turned away rather than queued.
+ * <p>
+ * This is the gradient algorithm: each sample compares a long-term average latency with the latest one, and the limit
+ * moves towards {@code limit * min(1, tolerance * long / latest) + QUEUE_SIZE}, smoothed. A failed request counts as
+ * a sign of overload and cuts the limit by a tenth, as AIMD does.
+ */
+public class GradientLimiter {
+    // samples before the long-term average starts decaying, until then it is a plain average
+    private static final int WARMUP = 10;
+    // the long-term average covers about this many samples
+    private static final int LONG_WINDOW = 600;
+    // headroom on top of the gradient, so the limit can keep probing upwards while latency is flat
+    private static final double QUEUE_SIZE = 4;
+    private static final double DROP_BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+    // guarded by this
+    private double longRtt;
+    private long samples;
+
+    /**
+     * @param tolerance how much slower than usual requests may get before the limit comes down, 1.5 is 50% slower
+     * @param smoothing how far the limit moves towards each new estimate, between 0 and 1
+     */
+    public GradientLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance, double smoothing) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Need 1 <= min <= initial <= max, got " + minLimit + ", " + initialLimit + ", " + maxLimit);
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+    }
+
+    /**
+     * @return whether the request may go ahead, if so it must be followed by {@link #release}
+     */
+    public boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * @param rttNanos how long the request took
+     * @param dropped whether it failed in a way that suggests overload, a timeout or a server error
+     */
+    public void release(long rttNanos, boolean dropped) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        update(rttNanos, inFlightBefore, dropped);
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void update(long rtt, int inFlightBefore, boolean dropped) {
+        if (dropped) {
+            limit = Math.max(minLimit, limit * DROP_BACKOFF);
+            return;
+        }
+        if (rtt <= 0) {
+            return;
+        }
+        double shortRtt = rtt;
+        samples++;
+        if (samples <= WARMUP) {
+            longRtt += (shortRtt - longRtt) / samples;
+        } else {
+            longRtt += (shortRtt - longRtt) * 2 / (LONG_WINDOW + 1);
+        }
+        // after a long stretch of overload the average is far above normal, pull it down rather than waiting for
+        // it to decay, or it would take hundreds of samples before the limit reacted to the next overload
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+        // the limit only means something when it is being used, don't grow it on light traffic
+        if (inFlightBefore < limit / 2) {
+            return;
+        }
+        // never more than halve it on one sample, one slow request is not a trend
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+        double estimate = limit * gradient + QUEUE_SIZE;
+        double smoothed = limit * (1 - smoothing) + estimate * smoothing;
+        limit = Math.max(minLimit, Math.min(maxLimit, smoothed));
+    }
+}
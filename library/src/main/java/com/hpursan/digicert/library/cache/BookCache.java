@@ -0,0 +1,159 @@
+package com.hpursan.digicert.library.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.hpursan.digicert.library.config.BookCacheProperties;
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.event.BookChangedEvent;
+import com.hpursan.digicert.library.event.BooksCreatedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache of books by id, including ids that don't exist for a short while.
+ * <p>
+ * Entries are evicted by W-TinyLFU once their estimated size passes the configured maximum. Every change to a book
+ * invalidates its entry after commit. An invalidation drops a load of the same id that is already in flight, so a
+ * load that read the old row can never leave it behind. Cached books are detached copies, callers get their own copy
+ * so nothing they do can leak into the cache.
+ * <p>
+ * A miss is loaded on the calling thread but outside the cache's own locks, so a virtual thread waiting on the
+ * database never pins its carrier. Concurrent misses for the same id wait for the one load.
+ */
+@Component
+public class BookCache {
+    public static final String NAME = "books";
+
+    // object headers, the Book and the Optional around it, the key and the map entry
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final AsyncCache<Long, Optional<Book>> cache;
+
+    public BookCache(BookCacheProperties properties, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+            .maximumWeight(properties.getMaximumSize().toBytes())
+            .weigher((Long id, Optional<Book> book) -> weigh(book))
+            .expireAfter(new Expiry<Long, Optional<Book>>() {
+                @Override
+                public long expireAfterCreate(Long id, Optional<Book> book, long currentTime) {
+                    return (book.isPresent() ? properties.getExpireAfterWrite() : properties.getNegativeTtl()).toNanos();
+                }
+
+                @Override
+                public long expireAfterUpdate(Long id, Optional<Book> book, long currentTime, long currentDuration) {
+                    return expireAfterCreate(id, book, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(Long id, Optional<Book> book, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .recordStats()
+            .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, NAME);
+    }
+
+    /**
+     * @return the cached book, or whatever {@code loader} finds for it on a miss
+     */
+    public Optional<Book> get(Long id, Function<Long, Optional<Book>> loader) {
+        CompletableFuture<Optional<Book>> load = new CompletableFuture<>();
+        CompletableFuture<Optional<Book>> cached = cache.get(id, (key, executor) -> load);
+        if (cached == load) {
+            try {
+                load.complete(loader.apply(id).map(BookChangedEvent::snapshot));
+            } catch (RuntimeException ex) {
+                load.completeExceptionally(ex); // failed loads are never cached
+                throw ex;
+            }
+        }
+        try {
+            return cached.join().map(BookChangedEvent::snapshot);
+        } catch (CompletionException ex) {
+            throw ex.getCause() instanceof RuntimeException cause ? cause : ex;
+        }
+    }
+
+    /**
+     * {@link #get} for many ids at once, with every miss handed to {@code loader} in one call. Ids another thread is
+     * already loading are waited for rather than loaded again.
+     *
+     * @param loader finds the books it can among the ids it is given, the ones it doesn't return are cached as missing
+     * @return every id, in the order given, with its book or empty
+     */
+    public Map<Long, Optional<Book>> getAll(Collection<Long> ids, Function<List<Long>, List<Book>> loader) {
+        Map<Long, CompletableFuture<Optional<Book>>> futures = new LinkedHashMap<>();
+        Map<Long, CompletableFuture<Optional<Book>>> loads = new LinkedHashMap<>();
+        for (Long id : ids) {
+            if (futures.containsKey(id)) {
+                continue;
+            }
+            CompletableFuture<Optional<Book>> load = new CompletableFuture<>();
+            CompletableFuture<Optional<Book>> cached = cache.asMap().putIfAbsent(id, load);
+            if (cached == null) {
+                loads.put(id, load);
+                cached = load;
+            }
+            futures.put(id, cached);
+        }
+        if (!loads.isEmpty()) {
+            try {
+                Map<Long, Book> found = new HashMap<>();
+                loader.apply(new ArrayList<>(loads.keySet())).forEach(book -> found.put(book.getId(), book));
+                loads.forEach((id, load) -> load.complete(Optional.ofNullable(found.get(id)).map(BookChangedEvent::snapshot)));
+            } catch (RuntimeException ex) {
+                loads.values().forEach(load -> load.completeExceptionally(ex));
+                throw ex;
+            }
+        }
+        Map<Long, Optional<Book>> books = new LinkedHashMap<>();
+        try {
+            futures.forEach((id, future) -> books.put(id, future.join().map(BookChangedEvent::snapshot)));
+        } catch (CompletionException ex) {
+            throw ex.getCause() instanceof RuntimeException cause ? cause : ex;
+        }
+        return books;
+    }
+
+    public void invalidate(Long id) {
+        cache.synchronous().invalidate(id);
+    }
+
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    // created too, a missing id may have been cached just before the book was added
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        invalidate(event.getId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksCreated(BooksCreatedEvent event) {
+        cache.synchronous().invalidateAll(event.getIds());
+    }
+
+    private static int weigh(Optional<Book> book) {
+        return ENTRY_OVERHEAD + book.map(b -> 2 * (length(b.getTitle()) + length(b.getAuthor()) + length(b.getIsbn()))).orElse(0);
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
@@ -0,0 +1,35 @@
+package com.hpursan.digicert.library.cache;
+
+import com.hpursan.digicert.library.event.BookChangedEvent;
+import com.hpursan.digicert.library.event.BooksCreatedEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts committed changes to the catalog, so list responses can carry an ETag without hashing what they return.
+ * <p>
+ * The ETag includes the start time so a restart never reuses a tag for different data. Read it before querying the
+ * primary: a change that lands in between then only makes the tag older than the data, never the other way round. A
+ * replica may not have the changes counted here yet, so tagged reads must not go to one.
+ */
+@Component
+public class CatalogVersion {
+    private final long epoch = System.currentTimeMillis();
+    private final AtomicLong changes = new AtomicLong();
+
+    public String etag() {
+        return "\"" + Long.toString(epoch, 36) + "-" + changes.get() + "\"";
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        changes.incrementAndGet();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksCreated(BooksCreatedEvent event) {
+        changes.incrementAndGet();
+    }
+}
@@ -0,0 +1,37 @@
+package com.hpursan.digicert.library.config;
+
+import com.hpursan.digicert.library.admission.AdmissionControlInterceptor;
+import com.hpursan.digicert.library.admission.EndpointClass;
+import com.hpursan.digicert.library.admission.GradientLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.handler.MappedInterceptor;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Puts an {@link AdmissionControlInterceptor} in front of the book API, with a latency driven concurrency limit each
+ * for reads, searches and writes. On unless {@code library.admission.enabled=false}.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "library.admission", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class AdmissionConfiguration {
+
+    @Bean
+    MappedInterceptor admissionControlInterceptor(AdmissionProperties properties, MeterRegistry meterRegistry) {
+        Map<EndpointClass, GradientLimiter> limiters = new EnumMap<>(EndpointClass.class);
+        limiters.put(EndpointClass.READS, limiter(properties.getReads(), properties));
+        limiters.put(EndpointClass.SEARCHES, limiter(properties.getSearches(), properties));
+        limiters.put(EndpointClass.WRITES, limiter(properties.getWrites(), properties));
+        return new MappedInterceptor(new String[]{"/api/**"},
+            new AdmissionControlInterceptor(limiters, properties.getRetryAfter(), meterRegistry));
+    }
+
+    private static GradientLimiter limiter(AdmissionProperties.Limit limit, AdmissionProperties properties) {
+        return new GradientLimiter(limit.getInitial(), limit.getMin(), limit.getMax(),
+            properties.getTolerance(), properties.getSmoothing());
+    }
+}
@@ -0,0 +1,44 @@
+package com.hpursan.digicert.library.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for the per endpoint class concurrency limits, see {@link AdmissionConfiguration}.
+ */
+@ConfigurationProperties("library.admission")
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class AdmissionProperties {
+    private boolean enabled = true;
+
+    // by id and by ISBN, cheap and what clients need most, so allowed the most
+    private Limit reads = new Limit(20, 4, 200);
+    // list and search, kept under the connection pool size so a burst of them leaves connections for the rest
+    private Limit searches = new Limit(8, 2, 12);
+    private Limit writes = new Limit(10, 2, 50);
+
+    // how much slower than usual requests may get before the limits come down, 1.5 is 50% slower
+    private double tolerance = 1.5;
+
+    // how far a limit moves towards each new estimate, between 0 and 1
+    private double smoothing = 0.2;
+
+    // sent as Retry-After with a rejection, rounded up to whole seconds
+    private Duration retryAfter = Duration.ofSeconds(1);
+
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @Data
+    public static class Limit {
+        // where the limit starts, it finds its own level from there
+        private int initial;
+        private int min;
+        private int max;
+    }
+}
@@ -0,0 +1,27 @@
+package com.hpursan.digicert.library.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Settings for the by-id book cache.
+ */
+@ConfigurationProperties("library.cache.book")
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class BookCacheProperties {
+    // roughly how much heap cached books may take before the least valuable are evicted
+    private DataSize maximumSize = DataSize.ofMegabytes(64);
+
+    // safety net for changes made outside the service, e.g. straight in the database
+    private Duration expireAfterWrite = Duration.ofMinutes(10);
+
+    // how long a lookup for a missing id is remembered
+    private Duration negativeTtl = Duration.ofSeconds(5);
+}
@@ -0,0 +1,36 @@
+package com.hpursan.digicert.library.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings for importing catalog files, see {@code BookImporter}.
+ */
+@ConfigurationProperties("library.import")
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class BookImportProperties {
+    // the only directory files are imported from, relative paths are taken from here. Unset means no imports, the
+    // endpoint would otherwise read any file the server can
+    private Path directory;
+
+    // records per chunk. A chunk is parsed by one thread and committed in one transaction, and it is what a resumed
+    // import skips over
+    private int chunkSize = 1000;
+
+    // threads parsing and validating chunks, 0 for one per core
+    private int parserThreads = 0;
+
+    // chunks read but not committed yet. Reading waits once there are this many, so memory stays bounded however far
+    // the database falls behind
+    private int chunksInFlight = 8;
+
+    // how often progress is logged while an import runs
+    private Duration progressInterval = Duration.ofSeconds(10);
+}
@@ -0,0 +1,28 @@
+package com.hpursan.digicert.library.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for the change feed at {@code GET /api/books/changes}.
+ */
+@ConfigurationProperties("library.feed")
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ChangeFeedProperties {
+    // changes kept in memory for clients that are behind or reconnect with Last-Event-ID. A client that needs an older
+    // one is disconnected, or gets a reset when it reconnects
+    private int bufferSize = 10_000;
+
+    // clients over this are turned away with 503
+    private int maxSubscribers = 1_000;
+
+    // a comment is sent after this long without changes, so proxies keep the connection open and dead clients are
+    // noticed
+    private Duration heartbeat = Duration.ofSeconds(15);
+}
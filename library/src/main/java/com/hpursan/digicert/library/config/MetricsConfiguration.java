@@ -0,0 +1,57 @@
+package com.hpursan.digicert.library.config;
+
+import com.hpursan.digicert.library.metrics.SqlStatementMetricsInterceptor;
+import com.hpursan.digicert.library.metrics.StatementCountingInspector;
+import com.hpursan.digicert.library.metrics.TimedMethodInterceptor;
+import com.hpursan.digicert.library.service.BookService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.Ordered;
+import org.springframework.web.servlet.handler.MappedInterceptor;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Timers around every {@link BookService} method and a count of the SQL statements each request issues. Both are
+ * published to the meter registry, so they show up on {@code /actuator/metrics} and {@code /actuator/prometheus}.
+ */
+@Configuration(proxyBeanMethods = false)
+public class MetricsConfiguration {
+    public static final String BOOK_SERVICE_TIMER = "library.book.service";
+
+    // outside the transaction, so commits are part of the time. Infrastructure like the transaction advisor, it is
+    // created while the post-processors are being registered and is never proxied itself
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static Advisor bookServiceTimingAdvisor(ObjectProvider<MeterRegistry> meterRegistry) {
+        DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(new StaticMethodMatcherPointcut() {
+            @Override
+            public boolean matches(Method method, Class<?> targetClass) {
+                return method.getDeclaringClass() == BookService.class && Modifier.isPublic(method.getModifiers());
+            }
+        }, new TimedMethodInterceptor(meterRegistry, BOOK_SERVICE_TIMER));
+        advisor.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return advisor;
+    }
+
+    @Bean
+    HibernatePropertiesCustomizer statementCountingInspector() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new StatementCountingInspector());
+    }
+
+    @Bean
+    MappedInterceptor sqlStatementMetricsInterceptor(MeterRegistry meterRegistry, SqlMetricsProperties properties) {
+        return new MappedInterceptor(new String[]{"/api/**"},
+            new SqlStatementMetricsInterceptor(meterRegistry, properties.getRepeatedStatementThreshold()));
+    }
+}
@@ -0,0 +1,76 @@
+package com.hpursan.digicert.library.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hpursan.digicert.library.reactive.ReactiveBookHandler;
+import com.hpursan.digicert.library.reactive.ReactiveBookRepository;
+import com.hpursan.digicert.library.reactive.ReactiveServer;
+import io.r2dbc.h2.H2ConnectionConfiguration;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+/**
+ * Only active with {@code library.reactive.enabled=true}. Serves the book reads (by id, list and search, and the
+ * export) from a WebFlux router on a Netty server of its own, next to Tomcat. Nothing on that path blocks a thread
+ * per connection, so it holds far more open connections on the same heap. Reads go over R2DBC to the same database
+ * the servlet side uses, writes stay with the servlet API and {@code BookService}.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "library.reactive", name = "enabled", havingValue = "true")
+public class ReactiveConfiguration {
+    private static final String H2_URL_PREFIX = "jdbc:h2:";
+
+    // the R2DBC ConnectionFactory is built here rather than registered as a bean of its own: Spring Boot backs off
+    // from creating the JDBC DataSource when it finds a ConnectionFactory bean
+    @Bean
+    ReactiveBookRepository reactiveBookRepository(DataSourceProperties dataSource, ReactiveProperties properties) {
+        String url = dataSource.determineUrl();
+        if (url == null || !url.startsWith(H2_URL_PREFIX)) {
+            throw new IllegalStateException("The reactive API reads from H2 over R2DBC, it can't use " + url);
+        }
+        H2ConnectionFactory connectionFactory = new H2ConnectionFactory(H2ConnectionConfiguration.builder()
+            .url(url.substring(H2_URL_PREFIX.length()))
+            .username(dataSource.determineUsername())
+            .password(dataSource.determinePassword())
+            .build());
+        return new ReactiveBookRepository(new ConnectionPool(ConnectionPoolConfiguration.builder(connectionFactory)
+            .maxSize(properties.getPoolSize())
+            .build()));
+    }
+
+    @Bean
+    ReactiveBookHandler reactiveBookHandler(ReactiveBookRepository reactiveBookRepository, ReactiveProperties properties) {
+        return new ReactiveBookHandler(reactiveBookRepository, properties.getExportChunkSize());
+    }
+
+    @Bean
+    RouterFunction<ServerResponse> reactiveBookRoutes(ReactiveBookHandler handler) {
+        return RouterFunctions.route()
+            .GET("/api/books", handler::listBooks)
+            .GET("/api/books/export", handler::exportBooks)
+            .GET("/api/books/{id}", handler::getBook)
+            .build();
+    }
+
+    @Bean
+    ReactiveServer reactiveServer(RouterFunction<ServerResponse> reactiveBookRoutes, ObjectMapper objectMapper, ReactiveProperties properties) {
+        // the same ObjectMapper as the servlet side, so a book is written the same way by both
+        HandlerStrategies strategies = HandlerStrategies.builder()
+            .codecs(codecs -> {
+                codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+            })
+            .build();
+        return new ReactiveServer(RouterFunctions.toHttpHandler(reactiveBookRoutes, strategies), properties.getPort());
+    }
+}
@@ -0,0 +1,23 @@
+package com.hpursan.digicert.library.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for the reactive read API, see {@link ReactiveConfiguration}.
+ */
+@ConfigurationProperties("library.reactive")
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ReactiveProperties {
+    private boolean enabled = false;
+    // its own port, Tomcat keeps server.port. 0 picks a free one
+    private int port = 8081;
+    // R2DBC connections, separate from the JDBC pool the writes use
+    private int poolSize = 20;
+    // rows read per query while streaming the export
+    private int exportChunkSize = 500;
+}
@@ -0,0 +1,81 @@
+package com.hpursan.digicert.library.config;
+
+import com.hpursan.digicert.library.replica.LocalReplication;
+import com.hpursan.digicert.library.replica.ReadWriteRoutingDataSource;
+import com.hpursan.digicert.library.replica.ReadYourWritesFilter;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.BeanInitializationException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.sql.init.SqlDataSourceScriptDatabaseInitializer;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationProperties;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Only active with {@code library.replicas.enabled=true}. Puts a {@link ReadWriteRoutingDataSource} in front of
+ * Spring Boot's connection pool, so read-only transactions go to a pool per replica and the rest stays on the
+ * primary. Everything else, JPA, JdbcTemplate and the SQL init scripts, keeps using the one DataSource bean.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "library.replicas", name = "enabled", havingValue = "true")
+public class ReplicaConfiguration {
+
+    @Bean
+    static BeanPostProcessor readWriteRoutingPostProcessor(ObjectProvider<ReplicaProperties> properties) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                try {
+                    if (bean instanceof DataSource dataSource && !dataSource.isWrapperFor(ReadWriteRoutingDataSource.class)
+                        && dataSource.isWrapperFor(HikariDataSource.class)) {
+                        HikariDataSource primary = dataSource.unwrap(HikariDataSource.class);
+                        return new ReadWriteRoutingDataSource(dataSource, replicas(primary, properties.getObject()));
+                    }
+                    return bean;
+                } catch (SQLException ex) {
+                    throw new BeanInitializationException("Could not unwrap " + beanName, ex);
+                }
+            }
+        };
+    }
+
+    @Bean
+    ReadYourWritesFilter readYourWritesFilter(ReplicaProperties properties) {
+        return new ReadYourWritesFilter(properties.getReadYourWrites(), properties.getReadYourWritesKey());
+    }
+
+    @Bean
+    @DependsOnDatabaseInitialization
+    @ConditionalOnProperty(prefix = "library.replicas", name = "replicate-locally", havingValue = "true")
+    LocalReplication localReplication(DataSource dataSource, SqlInitializationProperties initialization,
+                                      ReplicaProperties properties, MeterRegistry meterRegistry) throws SQLException {
+        return new LocalReplication(dataSource.unwrap(ReadWriteRoutingDataSource.class),
+            SqlDataSourceScriptDatabaseInitializer.getSettings(initialization), properties.getReplicationDelay(), meterRegistry);
+    }
+
+    private static List<DataSource> replicas(HikariDataSource primary, ReplicaProperties properties) {
+        List<DataSource> replicas = new ArrayList<>();
+        for (ReplicaProperties.Replica replica : properties.getInstances()) {
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName("replica-" + (replicas.size() + 1));
+            pool.setJdbcUrl(replica.getUrl());
+            pool.setUsername(replica.getUsername() != null ? replica.getUsername() : primary.getUsername());
+            pool.setPassword(replica.getPassword() != null ? replica.getPassword() : primary.getPassword());
+            pool.setDriverClassName(primary.getDriverClassName());
+            pool.setMaximumPoolSize(primary.getMaximumPoolSize());
+            pool.setMinimumIdle(primary.getMinimumIdle());
+            pool.setConnectionTimeout(primary.getConnectionTimeout());
+            replicas.add(pool);
+        }
+        return replicas;
+    }
+}
@@ -0,0 +1,47 @@
+package com.hpursan.digicert.library.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings for reading from replicas, see {@link ReplicaConfiguration}.
+ */
+@ConfigurationProperties("library.replicas")
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ReplicaProperties {
+    private boolean enabled = false;
+
+    // each gets a connection pool sized like the primary's
+    private List<Replica> instances = new ArrayList<>();
+
+    // how long after changing a book a client keeps reading from the primary, 0 to always read from the replicas.
+    // Should be longer than the replicas usually lag behind
+    private Duration readYourWrites = Duration.ofSeconds(2);
+
+    // signs the read-your-writes cookie. Random per start when not set, so instances sharing traffic need the same one
+    private String readYourWritesKey;
+
+    // copy the primary's books to the replicas and keep them in step, for local H2 replicas that don't replicate
+    private boolean replicateLocally = false;
+
+    // how long local replication waits after a commit before copying it, to see how the API behaves with lag
+    private Duration replicationDelay = Duration.ZERO;
+
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @Data
+    public static class Replica {
+        private String url;
+        // the primary's when not set
+        private String username;
+        private String password;
+    }
+}
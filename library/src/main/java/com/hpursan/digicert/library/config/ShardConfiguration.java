@@ -0,0 +1,60 @@
+package com.hpursan.digicert.library.config;
+
+import com.hpursan.digicert.library.repository.BookStore;
+import com.hpursan.digicert.library.shard.ShardRouter;
+import com.hpursan.digicert.library.shard.ShardedBooks;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.sql.init.SqlDataSourceScriptDatabaseInitializer;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationProperties;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Only active with {@code library.shards.enabled=true}. Keeps the books in the databases listed as
+ * {@code library.shards.instances} instead of the primary, see {@link ShardedBooks}, which takes the JPA
+ * repository's place as the {@link BookStore} the services use. The primary keeps handing out ids and holds
+ * everything else.
+ * <p>
+ * The book API's lookups, writes, batch creates and deletes by id, lists and title and author searches are sharded.
+ * Sorted and combined searches and deletes by filter need JPA and answer 501. The importer, snapshots and the reactive
+ * API work on the primary's books table, so startup fails when one of them is configured as well.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "library.shards", name = "enabled", havingValue = "true")
+public class ShardConfiguration {
+
+    @Bean
+    @Primary
+    @DependsOnDatabaseInitialization
+    ShardedBooks shardedBooks(DataSource dataSource, SqlInitializationProperties initialization, ShardProperties properties,
+                              BookImportProperties imports, SnapshotProperties snapshot, ReactiveProperties reactive) throws SQLException {
+        if (imports.getDirectory() != null || snapshot.getPath() != null || reactive.isEnabled()) {
+            throw new IllegalStateException("library.import.directory, library.snapshot.path and library.reactive.enabled "
+                + "work on the primary's books and can't be used with library.shards.enabled");
+        }
+        HikariDataSource primary = dataSource.unwrap(HikariDataSource.class);
+        List<DataSource> shards = new ArrayList<>();
+        for (ShardProperties.Shard shard : properties.getInstances()) {
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName("shard-" + shards.size());
+            pool.setJdbcUrl(shard.getUrl());
+            pool.setUsername(shard.getUsername() != null ? shard.getUsername() : primary.getUsername());
+            pool.setPassword(shard.getPassword() != null ? shard.getPassword() : primary.getPassword());
+            pool.setDriverClassName(primary.getDriverClassName());
+            pool.setMaximumPoolSize(primary.getMaximumPoolSize());
+            pool.setMinimumIdle(primary.getMinimumIdle());
+            pool.setConnectionTimeout(primary.getConnectionTimeout());
+            shards.add(pool);
+        }
+        return new ShardedBooks(dataSource, shards, new ShardRouter(shards.size(), properties.getBlockSize()),
+            properties.getDeadline(), SqlDataSourceScriptDatabaseInitializer.getSettings(initialization), properties.isLoadFromPrimary());
+    }
+}
@@ -0,0 +1,44 @@
+package com.hpursan.digicert.library.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings for spreading the books over several databases, see {@link ShardConfiguration}.
+ */
+@ConfigurationProperties("library.shards")
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ShardProperties {
+    private boolean enabled = false;
+
+    // each gets a connection pool sized like the primary's. Changing the number of shards moves books between them,
+    // which is up to whoever changes it
+    private List<Shard> instances = new ArrayList<>();
+
+    // ids are dealt to the shards in ranges of this many, 1 spreads consecutive ids over all of them
+    private long blockSize = 1;
+
+    // how long a query that goes to every shard may take before it fails
+    private Duration deadline = Duration.ofSeconds(2);
+
+    // copy the primary's books to the shards at startup when they have none, for local H2 shards
+    private boolean loadFromPrimary = false;
+
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @Data
+    public static class Shard {
+        private String url;
+        // the primary's when not set
+        private String username;
+        private String password;
+    }
+}
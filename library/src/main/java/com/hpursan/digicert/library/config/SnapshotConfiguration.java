@@ -0,0 +1,41 @@
+package com.hpursan.digicert.library.config;
+
+import com.hpursan.digicert.library.snapshot.CatalogSnapshot;
+import com.hpursan.digicert.library.snapshot.CatalogSnapshotEndpoint;
+import com.hpursan.digicert.library.snapshot.SnapshotDatabaseInitializer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.sql.init.SqlDataSourceScriptDatabaseInitializer;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.metrics.ApplicationStartup;
+
+import javax.sql.DataSource;
+
+/**
+ * Only active when {@code library.snapshot.path} is set. Replaces Spring Boot's script initializer with one that
+ * loads the books from the snapshot when there is one (Boot backs off from its own once it finds ours), and adds the
+ * {@code snapshot} actuator endpoint to write it.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "library.snapshot", name = "path")
+public class SnapshotConfiguration {
+
+    @Bean
+    CatalogSnapshot catalogSnapshot(DataSource dataSource) {
+        return new CatalogSnapshot(dataSource);
+    }
+
+    @Bean
+    SnapshotDatabaseInitializer snapshotDatabaseInitializer(DataSource dataSource, SqlInitializationProperties initialization,
+                                                            CatalogSnapshot catalogSnapshot, SnapshotProperties properties,
+                                                            ApplicationStartup applicationStartup) {
+        return new SnapshotDatabaseInitializer(dataSource, SqlDataSourceScriptDatabaseInitializer.getSettings(initialization),
+            catalogSnapshot, properties.getPath(), applicationStartup);
+    }
+
+    @Bean
+    CatalogSnapshotEndpoint catalogSnapshotEndpoint(CatalogSnapshot catalogSnapshot, SnapshotProperties properties) {
+        return new CatalogSnapshotEndpoint(catalogSnapshot, properties);
+    }
+}
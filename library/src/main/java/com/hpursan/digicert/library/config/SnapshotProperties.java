@@ -0,0 +1,23 @@
+package com.hpursan.digicert.library.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+
+/**
+ * Settings for starting from a catalog snapshot, see {@link SnapshotConfiguration}.
+ */
+@ConfigurationProperties("library.snapshot")
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class SnapshotProperties {
+    // the snapshot file, loaded at startup when it exists and (re)written on demand. Unset leaves startup to the scripts
+    private Path path;
+
+    // write the catalog to path when the application shuts down, so the next start picks up where this one left off
+    private boolean writeOnShutdown = false;
+}
@@ -0,0 +1,18 @@
+package com.hpursan.digicert.library.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for the per-request SQL statement metrics.
+ */
+@ConfigurationProperties("library.metrics.sql")
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class SqlMetricsProperties {
+    // a request that runs the same statement this many times is reported as a possible N+1
+    private int repeatedStatementThreshold = 10;
+}
@@ -0,0 +1,41 @@
+package com.hpursan.digicert.library.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.BeanInitializationException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * Only active with {@code spring.threads.virtual.enabled=true}, Spring Boot already moves Tomcat and the task
+ * executors onto virtual threads. Without Tomcat's thread pool nothing limits how many requests ask the connection
+ * pool for a connection at once, so they queue fairly in a {@link BoundedDataSource} in front of it instead.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadsConfiguration {
+
+    @Bean
+    static BeanPostProcessor boundedDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                try {
+                    if (bean instanceof DataSource dataSource && dataSource.isWrapperFor(HikariDataSource.class)) {
+                        HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);
+                        return new BoundedDataSource(dataSource, hikari.getMaximumPoolSize(), Duration.ofMillis(hikari.getConnectionTimeout()));
+                    }
+                    return bean;
+                } catch (SQLException ex) {
+                    throw new BeanInitializationException("Could not unwrap " + beanName, ex);
+                }
+            }
+        };
+    }
+}
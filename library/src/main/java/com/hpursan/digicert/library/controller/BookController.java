@@ -1,55 +1,257 @@
 package com.hpursan.digicert.library.controller;
 
+import com.hpursan.digicert.library.cache.CatalogVersion;
 import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.dto.BookBatchDelete;
+import com.hpursan.digicert.library.dto.BookBatchDeleteResult;
+import com.hpursan.digicert.library.dto.BookBatchResult;
+import com.hpursan.digicert.library.dto.BookField;
+import com.hpursan.digicert.library.dto.BookFieldsPage;
+import com.hpursan.digicert.library.dto.BookLookup;
+import com.hpursan.digicert.library.dto.BookLookupResult;
+import com.hpursan.digicert.library.dto.BookPage;
+import com.hpursan.digicert.library.dto.BookPatch;
+import com.hpursan.digicert.library.dto.BookSearch;
+import com.hpursan.digicert.library.dto.BookSort;
 import com.hpursan.digicert.library.exception.BookNotFoundException;
+import com.hpursan.digicert.library.exception.BookVersionMismatchException;
+import com.hpursan.digicert.library.exception.DuplicateIsbnException;
+import com.hpursan.digicert.library.feed.BookChangeStreams;
+import com.hpursan.digicert.library.replica.ReplicaRouting;
+import com.hpursan.digicert.library.service.BookBatchService;
+import com.hpursan.digicert.library.service.BookExportService;
 import com.hpursan.digicert.library.service.BookService;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import io.swagger.v3.oas.annotations.Operation;
 
+import java.io.IOException;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/books")
 @AllArgsConstructor
 public class BookController {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final BookService bookService;
+    private final BookExportService bookExportService;
+    private final BookBatchService bookBatchService;
+    private final CatalogVersion catalogVersion;
+    private final BookChangeStreams bookChangeStreams;
 
     @GetMapping
-    @Operation(summary = "List books", description = "An endpoint to get a list of books", responses = {
+    @Operation(summary = "List books", description = "An endpoint to get a page of books. Filter by any mix of title, author and isbn (a prefix), "
+        + "sort with sort=title|author|isbn|id and an optional ,desc, and pick the fields to return with fields=id,title. "
+        + "Follow the X-Next-Cursor header (or the next Link) to fetch the following page", responses = {
         @ApiResponse(description = "Success", responseCode = "200"),
-        @ApiResponse(description = "No content", responseCode = "204")
+        @ApiResponse(description = "No content", responseCode = "204"),
+        @ApiResponse(description = "Nothing in the catalog changed since the ETag in If-None-Match", responseCode = "304"),
+        @ApiResponse(description = "The cursor, the sort or the fields are not valid", responseCode = "400"),
+        @ApiResponse(description = "A sorted or combined search, which sharded storage doesn't offer", responseCode = "501")
     })
-    public ResponseEntity<List<Book>> getAllBooks(
+    public ResponseEntity<List<?>> getAllBooks(
             @RequestParam(name = "title", required = false) String title,
-            @RequestParam(name = "author" ,required = false) String author) {
-        List<Book> allBooks;
+            @RequestParam(name = "author" ,required = false) String author,
+            @RequestParam(name = "isbn", required = false) String isbn,
+            @RequestParam(name = "sort", required = false) String sort,
+            @RequestParam(name = "fields", required = false) String fields,
+            @RequestParam(name = "after", required = false) String after,
+            @RequestParam(name = "limit", defaultValue = "" + BookService.DEFAULT_PAGE_SIZE) int limit,
+            WebRequest request) {
+        // taken before we query, see CatalogVersion. If nothing changed we answer 304 without touching the database
+        String etag = catalogVersion.etag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+
+        Long afterId;
+        String afterKey;
+        List<BookField> selected;
+        try {
+            afterId = BookCursor.decode(after);
+            afterKey = BookCursor.decodeKey(after);
+            selected = fields == null ? null : BookField.parse(fields);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().build();
+        }
 
-        if (title != null) {
-            allBooks = bookService.getBookByTitle(title);
-        } else if (author != null) {
-            allBooks = bookService.getBookByAuthor(author);
+        List<?> books;
+        Long nextAfter;
+        String nextKey;
+
+        // a single title or author search is answered from the in-memory index, anything else is one query. A plain
+        // list with fields is one too, so it reads just those columns. The queries go to the primary: the ETag counts
+        // the primary's commits, paired with rows from a replica that is behind it would make clients keep them
+        boolean indexed = (title != null) != (author != null);
+        if (isbn != null || sort != null || (title != null && author != null) || (selected != null && !indexed)) {
+            BookSearch search;
+            try {
+                search = search(title, author, isbn, sort);
+                if (selected != null) {
+                    BookFieldsPage page = ReplicaRouting.onPrimary(() -> bookService.searchBookFields(search, afterId, afterKey, limit, selected));
+                    books = page.getBooks();
+                    nextAfter = page.getNextAfter();
+                    nextKey = page.getNextKey();
+                } else {
+                    BookPage page = ReplicaRouting.onPrimary(() -> bookService.searchBooks(search, afterId, afterKey, limit));
+                    books = page.getBooks();
+                    nextAfter = page.getNextAfter();
+                    nextKey = page.getNextKey();
+                }
+            } catch (IllegalArgumentException ex) {
+                return ResponseEntity.badRequest().build();
+            } catch (UnsupportedOperationException ex) {
+                // sorted and combined searches need JPA, which sharded storage doesn't offer
+                return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build();
+            }
+        } else if (afterKey != null) {
+            // a cursor from a sorted search, these pages are in id order
+            return ResponseEntity.badRequest().build();
         } else {
-            allBooks = bookService.listAllBooks();
+            BookPage page;
+            if (title != null) {
+                page = ReplicaRouting.onPrimary(() -> bookService.getBookByTitle(title, afterId, limit));
+            } else if (author != null) {
+                page = ReplicaRouting.onPrimary(() -> bookService.getBookByAuthor(author, afterId, limit));
+            } else {
+                page = ReplicaRouting.onPrimary(() -> bookService.listBooks(afterId, limit));
+            }
+            // the index already holds the books, so only the response shrinks
+            books = selected == null
+                ? page.getBooks()
+                : page.getBooks().stream().map(book -> BookField.project(book, selected)).toList();
+            nextAfter = page.getNextAfter();
+            nextKey = null;
+        }
+
+        if (books.isEmpty()) {
+            return ResponseEntity.noContent().eTag(etag).build();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag);
+        if (nextAfter != null) {
+            String cursor = BookCursor.encode(nextAfter, nextKey);
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("after", cursor)
+                .toUriString();
+            response.header(NEXT_CURSOR_HEADER, cursor)
+                .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
         }
+        return response.body(books);
+    }
 
-        return allBooks.isEmpty() ? ResponseEntity.noContent().build() : ResponseEntity.ok(allBooks);
+    /**
+     * Builds the search from the query parameters, {@code sort} is a property optionally followed by {@code ,desc} or
+     * {@code ,asc}.
+     */
+    private static BookSearch search(String title, String author, String isbn, String sort) {
+        BookSearch search = new BookSearch();
+        search.setTitle(title);
+        search.setAuthor(author);
+        search.setIsbnPrefix(isbn);
+        if (sort != null) {
+            String[] parts = sort.split(",", -1);
+            if (parts.length > 2) {
+                throw new IllegalArgumentException("Invalid sort " + sort);
+            }
+            search.setSort(BookSort.fromProperty(parts[0]));
+            if (parts.length == 2) {
+                String direction = parts[1].trim();
+                if (!direction.equalsIgnoreCase("asc") && !direction.equalsIgnoreCase("desc")) {
+                    throw new IllegalArgumentException("Invalid sort direction " + direction);
+                }
+                search.setDescending(direction.equalsIgnoreCase("desc"));
+            }
+        }
+        return search;
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Export books", description = "Stream every book as newline delimited JSON, one book per line", responses = {
+        @ApiResponse(description = "Success", responseCode = "200")
+    })
+    public void exportBooks(HttpServletResponse response) throws IOException {
+        // written on the request thread straight into the response, so a full dump isn't cut short by an async timeout
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        bookExportService.exportBooks(response.getOutputStream());
+    }
+
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Follow changes", description = "Stream every create, update and delete as it is committed, as Server-Sent Events. "
+        + "Reconnect with Last-Event-ID to resume, a reset event means the changes since are gone and the catalog should be fetched again", responses = {
+        @ApiResponse(description = "Success", responseCode = "200"),
+        @ApiResponse(description = "Too many clients are following the changes already", responseCode = "503")
+    })
+    public ResponseEntity<SseEmitter> followChanges(@RequestHeader(name = "Last-Event-ID", required = false) String lastEventId){
+        SseEmitter emitter = bookChangeStreams.open(lastEventId);
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+        return ResponseEntity.ok().header(HttpHeaders.CACHE_CONTROL, "no-cache").body(emitter);
     }
 
     @GetMapping("/{id}")
     @Operation(summary = "Get a book", description = "Get a book by it's id", responses = {
         @ApiResponse(description = "A book with the given id was found", responseCode = "200"),
+        @ApiResponse(description = "The book hasn't changed since the ETag in If-None-Match", responseCode = "304"),
         @ApiResponse(description = "A book with the given id was not found", responseCode = "404"),
         @ApiResponse(description = "An unexpected error occurred", responseCode = "500")
     })
     public ResponseEntity<Book> getBookById(@PathVariable("id") Long id){
         try {
             Book book = bookService.getBookById(id);
-            return ResponseEntity.ok(book);
+            // with an ETag set spring answers a matching If-None-Match with 304 and never serializes the book
+            return ResponseEntity.ok().eTag(BookETags.of(book)).body(book);
+        } catch (BookNotFoundException ex) {
+            return ResponseEntity.notFound().build();
+        } catch (Exception ex) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PostMapping("/lookup")
+    @Operation(summary = "Get many books", description = "Get the books with the given ids in one call, in the order the "
+        + "ids were given. Ids without a book are listed as missing", responses = {
+        @ApiResponse(description = "The books that were found and the ids that weren't", responseCode = "200"),
+        @ApiResponse(description = "No ids were given, or one of them was null", responseCode = "400"),
+        @ApiResponse(description = "More ids than a lookup takes", responseCode = "413"),
+        @ApiResponse(description = "An unexpected error occurred", responseCode = "500")
+    })
+    public ResponseEntity<BookLookupResult> getBooksByIds(@RequestBody BookLookup request){
+        if (!request.isValid()) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(bookService.getBooksByIds(request.getIds()));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        } catch (Exception ex) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/isbn/{isbn}")
+    @Operation(summary = "Get a book by ISBN", description = "Get a book by it's ISBN-10 or ISBN-13", responses = {
+        @ApiResponse(description = "A book with the given ISBN was found", responseCode = "200"),
+        @ApiResponse(description = "A book with the given ISBN was not found", responseCode = "404"),
+        @ApiResponse(description = "An unexpected error occurred", responseCode = "500")
+    })
+    public ResponseEntity<Book> getBookByIsbn(@PathVariable("isbn") String isbn){
+        try {
+            return ResponseEntity.ok(bookService.getBookByIsbn(isbn));
         } catch (BookNotFoundException ex) {
             return ResponseEntity.notFound().build();
         } catch (Exception ex) {
@@ -59,41 +261,148 @@ public class BookController {
 
     @PostMapping("/")
     @Operation(summary = "Add a book", description = "Create a new book", responses = {
-        @ApiResponse(description = "A new book was created", responseCode = "201")
+        @ApiResponse(description = "A new book was created", responseCode = "201"),
+        @ApiResponse(description = "A book with the same ISBN already exists", responseCode = "409")
     })
     public ResponseEntity<Book> addBook(@RequestBody @Valid Book book){
-        Book newBook = bookService.addBook(book);
-        return ResponseEntity.status(HttpStatus.CREATED).body(newBook);
+        try {
+            Book newBook = bookService.addBook(book);
+            return ResponseEntity.status(HttpStatus.CREATED).eTag(BookETags.of(newBook)).body(newBook);
+        } catch (DuplicateIsbnException | DataIntegrityViolationException ex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    @PostMapping("/batch")
+    @Operation(summary = "Add many books", description = "Create a batch of books in a single transaction. If any book is invalid none are created", responses = {
+        @ApiResponse(description = "All books were created, the generated ids are returned in request order", responseCode = "201"),
+        @ApiResponse(description = "One or more books were invalid, the errors are returned per item", responseCode = "400")
+    })
+    public ResponseEntity<BookBatchResult> addBooks(@RequestBody List<Book> books){
+        try {
+            BookBatchResult result = bookBatchService.addBooks(books);
+            return result.hasErrors()
+                ? ResponseEntity.badRequest().body(result)
+                : ResponseEntity.status(HttpStatus.CREATED).body(result);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        } catch (DataIntegrityViolationException ex) {
+            // another request took one of the ISBNs after we checked
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
     }
 
     @PutMapping("/{id}")
     @Operation(summary = "Update a book", description = "Update a book with given details", responses = {
         @ApiResponse(description = "The book was successfully updated", responseCode = "200"),
         @ApiResponse(description = "A book with the given id was not found", responseCode = "404"),
+        @ApiResponse(description = "Another book already has the ISBN", responseCode = "409"),
+        @ApiResponse(description = "The book changed since the ETag in If-Match", responseCode = "412"),
         @ApiResponse(description = "An unexpected error occurred", responseCode = "500")
     })
-    public ResponseEntity<Book> updateBook(@PathVariable("id") Long id, @RequestBody @Valid Book book){
+    public ResponseEntity<Book> updateBook(@PathVariable("id") Long id, @RequestBody @Valid Book book,
+                                           @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        Long expectedVersion;
         try {
-            return ResponseEntity.ok(bookService.updateBook(id, book));
+            expectedVersion = BookETags.expectedVersion(ifMatch);
+        } catch (IllegalArgumentException ex) {
+            // If-Match compares strongly, so a weak or malformed ETag can never match
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
+        try {
+            Book changedBook = bookService.updateBook(id, book, expectedVersion);
+            return ResponseEntity.ok().eTag(BookETags.of(changedBook)).body(changedBook);
         } catch (BookNotFoundException bex) {
             return ResponseEntity.notFound().build();
+        } catch (BookVersionMismatchException | OptimisticLockingFailureException vex) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        } catch (DuplicateIsbnException | DataIntegrityViolationException dex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
     }
 
+    @PatchMapping("/{id}")
+    @Operation(summary = "Patch a book", description = "Change only the given fields of a book. Nothing is returned, "
+        + "reading the book back would cost the query a patch saves. The new ETag is returned", responses = {
+        @ApiResponse(description = "The book was patched", responseCode = "204"),
+        @ApiResponse(description = "No fields were given, or a given one is invalid", responseCode = "400"),
+        @ApiResponse(description = "A book with the given id was not found", responseCode = "404"),
+        @ApiResponse(description = "Another book already has the ISBN", responseCode = "409"),
+        @ApiResponse(description = "The book changed since the ETag in If-Match", responseCode = "412"),
+        @ApiResponse(description = "An unexpected error occurred", responseCode = "500")
+    })
+    public ResponseEntity<Void> patchBook(@PathVariable("id") Long id, @RequestBody @Valid BookPatch patch,
+                                          @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        if (patch.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        Long expectedVersion;
+        try {
+            expectedVersion = BookETags.expectedVersion(ifMatch);
+        } catch (IllegalArgumentException ex) {
+            // If-Match compares strongly, so a weak or malformed ETag can never match
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
+        try {
+            return ResponseEntity.noContent().eTag(BookETags.of(bookService.patchBook(id, patch, expectedVersion))).build();
+        } catch (BookNotFoundException bex) {
+            return ResponseEntity.notFound().build();
+        } catch (BookVersionMismatchException vex) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        } catch (DuplicateIsbnException | DataIntegrityViolationException dex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @DeleteMapping
+    @Operation(summary = "Delete many books", description = "Delete the books with the given ids, or every book matching "
+        + "a title, author and isbn prefix filter. Ids are deleted in a single transaction, a filter's matches in one "
+        + "transaction per 500 books. The ids that had no book are returned", responses = {
+        @ApiResponse(description = "The books were deleted", responseCode = "200"),
+        @ApiResponse(description = "Neither ids nor a filter were given, or both were", responseCode = "400"),
+        @ApiResponse(description = "More ids than a batch can hold", responseCode = "413"),
+        @ApiResponse(description = "A filter, which sharded storage doesn't offer", responseCode = "501")
+    })
+    public ResponseEntity<BookBatchDeleteResult> deleteBooks(@RequestBody BookBatchDelete request){
+        if (!request.isValid()) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(bookBatchService.deleteBooks(request));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        } catch (UnsupportedOperationException ex) {
+            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build();
+        }
+    }
+
     @DeleteMapping("/{id}")
     @Operation(summary = "Delete a book", description = "Delete a book with the given id", responses = {
         @ApiResponse(description = "The book was successfully deleted", responseCode = "204"),
         @ApiResponse(description = "A book with the given id was not found", responseCode = "404"),
+        @ApiResponse(description = "The book changed since the ETag in If-Match", responseCode = "412"),
         @ApiResponse(description = "An unexpected error occurred", responseCode = "500")
     })
-    public ResponseEntity<Book> deleteBook(@PathVariable("id") Long id){
+    public ResponseEntity<Book> deleteBook(@PathVariable("id") Long id,
+                                           @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        Long expectedVersion;
+        try {
+            expectedVersion = BookETags.expectedVersion(ifMatch);
+        } catch (IllegalArgumentException ex) {
+            // If-Match compares strongly, so a weak or malformed ETag can never match
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
         try {
-            bookService.deleteBook(id);
+            bookService.deleteBook(id, expectedVersion);
             return ResponseEntity.noContent().build(); // Best practice to return a No content on successful delete
         } catch (BookNotFoundException bex){
             return ResponseEntity.notFound().build();
+        } catch (BookVersionMismatchException | OptimisticLockingFailureException vex) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build(); // some other unknown error occurred, possibly db, etc
         }
@@ -0,0 +1,70 @@
+package com.hpursan.digicert.library.controller;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes the keyset position of a page as an opaque token so clients don't build cursors themselves. The token is
+ * the id of the last book, followed by its sort value when the page is sorted by something other than id.
+ */
+public final class BookCursor {
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private BookCursor() {
+    }
+
+    public static String encode(long lastId) {
+        return ENCODER.encodeToString(ByteBuffer.allocate(Long.BYTES).putLong(lastId).array());
+    }
+
+    public static String encode(long lastId, String key) {
+        if (key == null) {
+            return encode(lastId);
+        }
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        return ENCODER.encodeToString(ByteBuffer.allocate(Long.BYTES + keyBytes.length).putLong(lastId).put(keyBytes).array());
+    }
+
+    public static Long decode(String cursor) {
+        byte[] bytes = bytes(cursor);
+        return bytes == null ? null : ByteBuffer.wrap(bytes).getLong();
+    }
+
+    /**
+     * The sort value carried by the cursor, or null if it only holds an id.
+     */
+    public static String decodeKey(String cursor) {
+        byte[] bytes = bytes(cursor);
+        if (bytes == null || bytes.length == Long.BYTES) {
+            return null;
+        }
+        try {
+            return StandardCharsets.UTF_8.newDecoder()
+                .decode(ByteBuffer.wrap(bytes, Long.BYTES, bytes.length - Long.BYTES))
+                .toString();
+        } catch (CharacterCodingException ex) {
+            throw new IllegalArgumentException("Invalid cursor " + cursor, ex);
+        }
+    }
+
+    private static byte[] bytes(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+
+        byte[] bytes;
+        try {
+            bytes = DECODER.decode(cursor);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Invalid cursor " + cursor, ex);
+        }
+
+        if (bytes.length < Long.BYTES) {
+            throw new IllegalArgumentException("Invalid cursor " + cursor);
+        }
+        return bytes;
+    }
+}
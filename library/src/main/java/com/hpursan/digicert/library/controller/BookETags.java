@@ -0,0 +1,39 @@
+package com.hpursan.digicert.library.controller;
+
+import com.hpursan.digicert.library.domain.Book;
+
+/**
+ * A book's strong ETag is its version. Parses {@code If-Match} back into the version the client expects.
+ */
+public final class BookETags {
+    private BookETags() {
+    }
+
+    public static String of(Book book) {
+        return of(book.getVersion());
+    }
+
+    public static String of(Long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * @return the expected version, or null when any version will do (no header or {@code *})
+     * @throws IllegalArgumentException if the header is not a single strong ETag of ours
+     */
+    public static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+
+        String etag = ifMatch.trim();
+        if (etag.length() < 3 || etag.charAt(0) != '"' || etag.charAt(etag.length() - 1) != '"') {
+            throw new IllegalArgumentException("If-Match must be a single strong ETag, got " + ifMatch);
+        }
+        try {
+            return Long.parseLong(etag.substring(1, etag.length() - 1));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("If-Match must be a single strong ETag, got " + ifMatch, ex);
+        }
+    }
+}
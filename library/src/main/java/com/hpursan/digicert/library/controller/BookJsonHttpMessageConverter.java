@@ -0,0 +1,103 @@
+package com.hpursan.digicert.library.controller;
+
+import com.hpursan.digicert.library.domain.Book;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+
+/**
+ * Writes a {@code Book} or a collection of them with {@link BookJsonWriter} instead of Jackson's reflective bean
+ * serializer. Boot puts converter beans ahead of its own, so this one is asked first.
+ * <p>
+ * A {@code List<?>} can't be told apart before it is written, the controller returns books and projections through
+ * the same type, so anything that turns out not to be all books is handed to Jackson's converter after all. Reading
+ * is left to Jackson as well: this converter never claims a request body, and if it is asked to read one anyway it
+ * hands it to Jackson too.
+ */
+@Component
+public class BookJsonHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+    private final BookJsonWriter writer = new BookJsonWriter();
+    private final MappingJackson2HttpMessageConverter jackson;
+
+    public BookJsonHttpMessageConverter(MappingJackson2HttpMessageConverter jackson) {
+        super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+        this.jackson = jackson;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return Book.class.isAssignableFrom(clazz) || Collection.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        if (!canWrite(mediaType)) {
+            return false;
+        }
+        if (Book.class.isAssignableFrom(clazz)) {
+            return true;
+        }
+        return Collection.class.isAssignableFrom(clazz) && mayHoldBooks(type);
+    }
+
+    @Override
+    protected void writeInternal(Object value, Type type, HttpOutputMessage outputMessage) throws IOException {
+        if (value instanceof Book book) {
+            writer.writeBook(book, outputMessage.getBody());
+        } else if (value instanceof Collection<?> books && allBooks(books)) {
+            @SuppressWarnings("unchecked")
+            Collection<? extends Book> checked = (Collection<? extends Book>) books;
+            writer.writeBooks(checked, outputMessage.getBody());
+        } else {
+            jackson.write(value, type, outputMessage.getHeaders().getContentType(), outputMessage);
+        }
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        return jackson.read(type, contextClass, inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return jackson.read(clazz, inputMessage);
+    }
+
+    /**
+     * @return false only when the element type is known and isn't a book
+     */
+    private static boolean mayHoldBooks(Type type) {
+        if (!(type instanceof ParameterizedType parameterized) || parameterized.getActualTypeArguments().length != 1) {
+            return true;
+        }
+        Type element = parameterized.getActualTypeArguments()[0];
+        return !(element instanceof Class<?> elementClass) || Book.class.isAssignableFrom(elementClass);
+    }
+
+    private static boolean allBooks(Collection<?> values) {
+        for (Object value : values) {
+            if (!(value instanceof Book)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
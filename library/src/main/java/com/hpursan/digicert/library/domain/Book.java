@@ -4,9 +4,10 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.NotBlank;
-import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -17,8 +18,10 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @Data
 public class Book {
+    // a pooled sequence lets hibernate hand out ids from memory and batch the inserts, IDENTITY can't do either
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "books_seq")
+    @SequenceGenerator(name = "books_seq", sequenceName = "books_seq", allocationSize = 50)
     private Long id;
     @NotBlank(message = "Title is required")
     private String title;
@@ -26,6 +29,14 @@ public class Book {
     @NotBlank(message = "Author is required")
     private String author;
 
-    @Size(min = 10, max = 13, message = "ISBN must be between 10 and 13 characters")
+    @ValidIsbn
     private String isbn;
+
+    // bumped on every update, it's the optimistic lock and the ETag of the book
+    @Version
+    private Long version;
+
+    public Book(Long id, String title, String author, String isbn) {
+        this(id, title, author, isbn, null);
+    }
 }
@@ -0,0 +1,93 @@
+package com.hpursan.digicert.library.domain;
+
+/**
+ * ISBN helpers. Books are stored with their ISBN-13, so an ISBN-10 and its ISBN-13 are the same key.
+ */
+public final class Isbn {
+    private Isbn() {
+    }
+
+    /**
+     * Converts an ISBN-10 to its ISBN-13 and drops hyphens and spaces. Anything that isn't an ISBN-10 is returned
+     * as is, it's up to validation to reject it.
+     */
+    public static String normalize(String isbn) {
+        if (isbn == null) {
+            return null;
+        }
+
+        String compact = isbn.replace("-", "").replace(" ", "");
+        if (compact.length() != 10 || !isDigits(compact, 9)) {
+            return compact;
+        }
+        char check = Character.toUpperCase(compact.charAt(9));
+        if (check != 'X' && !Character.isDigit(check)) {
+            return compact;
+        }
+
+        // ISBN-13 is the 978 prefix, the first nine digits and a new check digit, the old one is dropped
+        return withCheckDigit("978" + compact.substring(0, 9));
+    }
+
+    /**
+     * @param body the first twelve digits of an ISBN-13
+     * @return the ISBN-13 they start, with its check digit
+     */
+    public static String withCheckDigit(String body) {
+        int sum = 0;
+        for (int i = 0; i < body.length(); i++) {
+            sum += (body.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return body + (10 - sum % 10) % 10;
+    }
+
+    /**
+     * @return whether this is an ISBN-10 or ISBN-13 with the right check digit, hyphens and spaces aside
+     */
+    public static boolean isValid(String isbn) {
+        if (isbn == null) {
+            return false;
+        }
+        String compact = isbn.replace("-", "").replace(" ", "");
+        if (compact.length() == 10 && isDigits(compact, 9)) {
+            // weights 10 down to 1, X is a check digit of 10
+            char check = Character.toUpperCase(compact.charAt(9));
+            if (check != 'X' && !Character.isDigit(check)) {
+                return false;
+            }
+            int sum = check == 'X' ? 10 : check - '0';
+            for (int i = 0; i < 9; i++) {
+                sum += (compact.charAt(i) - '0') * (10 - i);
+            }
+            return sum % 11 == 0;
+        }
+        if (compact.length() == 13 && isDigits(compact, 13)) {
+            int sum = 0;
+            for (int i = 0; i < 13; i++) {
+                sum += (compact.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+            }
+            return sum % 10 == 0;
+        }
+        return false;
+    }
+
+    /**
+     * @return the ISBN-13 as a number, or -1 if it isn't 13 digits
+     */
+    public static long toLong(String isbn13) {
+        if (isbn13 == null || isbn13.length() != 13 || !isDigits(isbn13, 13)) {
+            return -1;
+        }
+        return Long.parseLong(isbn13);
+    }
+
+    private static boolean isDigits(String value, int count) {
+        for (int i = 0; i < count; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
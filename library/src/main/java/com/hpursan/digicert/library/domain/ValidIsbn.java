@@ -0,0 +1,36 @@
+package com.hpursan.digicert.library.domain;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+import jakarta.validation.Payload;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * An ISBN-10 or ISBN-13 with a correct check digit. Hyphens and spaces are allowed, the value is judged the way
+ * {@link Isbn#normalize} will store it, so it makes no difference whether it is validated before or after that.
+ * Null is valid.
+ */
+@Documented
+@Constraint(validatedBy = ValidIsbn.Validator.class)
+@Target({ElementType.FIELD, ElementType.PARAMETER})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ValidIsbn {
+    String message() default "ISBN must be a valid ISBN-10 or ISBN-13";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+
+    class Validator implements ConstraintValidator<ValidIsbn, String> {
+        @Override
+        public boolean isValid(String isbn, ConstraintValidatorContext context) {
+            return isbn == null || Isbn.isValid(isbn);
+        }
+    }
+}
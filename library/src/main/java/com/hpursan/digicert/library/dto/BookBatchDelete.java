@@ -0,0 +1,43 @@
+package com.hpursan.digicert.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * What a bulk delete removes: either the books with these {@code ids}, or every book matching the filter. The filter
+ * matches like a combined search, title and author anywhere ignoring case and the ISBN on its first digits.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookBatchDelete {
+    private List<Long> ids;
+    private String title;
+    private String author;
+    private String isbn;
+
+    /**
+     * @return whether the filter narrows anything down, blank criteria are ignored by the search
+     */
+    public boolean hasFilter() {
+        return hasText(title) || hasText(author) || (isbn != null && hasText(isbn.replace("-", "")));
+    }
+
+    /**
+     * @return whether it is either ids or a filter, a bulk delete never means "everything"
+     */
+    public boolean isValid() {
+        if (ids != null) {
+            return title == null && author == null && isbn == null && ids.stream().allMatch(Objects::nonNull);
+        }
+        return hasFilter();
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+}
@@ -0,0 +1,17 @@
+package com.hpursan.digicert.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk delete. {@code notFound} holds the requested ids that had no book, in request order, and is
+ * always empty for a delete by filter.
+ */
+@Data
+@AllArgsConstructor
+public class BookBatchDeleteResult {
+    private int deleted;
+    private List<Long> notFound;
+}
@@ -0,0 +1,15 @@
+package com.hpursan.digicert.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A validation failure for the item at {@code index} of a batch request.
+ */
+@Data
+@AllArgsConstructor
+public class BookBatchError {
+    private int index;
+    private String field;
+    private String message;
+}
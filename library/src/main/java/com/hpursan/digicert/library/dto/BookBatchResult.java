@@ -0,0 +1,21 @@
+package com.hpursan.digicert.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Outcome of a batch create. Either every book was created and {@code ids} holds the generated ids in request
+ * order, or nothing was created and {@code errors} says which items were rejected and why.
+ */
+@Data
+@AllArgsConstructor
+public class BookBatchResult {
+    private List<Long> ids;
+    private List<BookBatchError> errors;
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+}
@@ -0,0 +1,63 @@
+package com.hpursan.digicert.library.dto;
+
+import com.hpursan.digicert.library.domain.Book;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The fields a client can ask for with {@code fields=}. A {@link BookProjection} holds just those fields, in this order.
+ */
+public enum BookField {
+    ID("id", Book::getId),
+    TITLE("title", Book::getTitle),
+    AUTHOR("author", Book::getAuthor),
+    ISBN("isbn", Book::getIsbn),
+    VERSION("version", Book::getVersion);
+
+    private final String property;
+    private final Function<Book, Object> getter;
+
+    BookField(String property, Function<Book, Object> getter) {
+        this.property = property;
+        this.getter = getter;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    /**
+     * Parses a comma separated list of field names, e.g. {@code id,title}, into the fields in their declared order.
+     */
+    public static List<BookField> parse(String fields) {
+        Set<BookField> parsed = EnumSet.noneOf(BookField.class);
+        for (String name : fields.split(",")) {
+            parsed.add(fromProperty(name));
+        }
+        return List.copyOf(parsed);
+    }
+
+    public static BookField fromProperty(String property) {
+        for (BookField field : values()) {
+            if (field.property.equals(property.trim().toLowerCase(Locale.ROOT))) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Books have no field " + property);
+    }
+
+    /**
+     * Projects a book that is already in memory, e.g. one found by the search index.
+     */
+    public static BookProjection project(Book book, List<BookField> fields) {
+        Object[] values = new Object[fields.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = fields.get(i).getter.apply(book);
+        }
+        return new BookProjection(fields, values);
+    }
+}
@@ -0,0 +1,22 @@
+package com.hpursan.digicert.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * A keyset page of projected books, each one holding only the requested {@link BookField}s. The cursor is the same as
+ * {@link BookPage}'s, it doesn't depend on which fields were selected.
+ */
+@Data
+@AllArgsConstructor
+public class BookFieldsPage {
+    private List<BookProjection> books;
+    private Long nextAfter;
+    private String nextKey;
+
+    public boolean hasNext() {
+        return nextAfter != null;
+    }
+}
@@ -0,0 +1,22 @@
+package com.hpursan.digicert.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The ids of the books to fetch in one call.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookLookup {
+    private List<Long> ids;
+
+    public boolean isValid() {
+        return ids != null && ids.stream().allMatch(Objects::nonNull);
+    }
+}
@@ -0,0 +1,18 @@
+package com.hpursan.digicert.library.dto;
+
+import com.hpursan.digicert.library.domain.Book;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Outcome of a lookup by ids. {@code books} are in the order their ids were first requested, {@code missing} holds the
+ * requested ids that had no book, in request order. An id asked for twice is answered once.
+ */
+@Data
+@AllArgsConstructor
+public class BookLookupResult {
+    private List<Book> books;
+    private List<Long> missing;
+}
@@ -0,0 +1,27 @@
+package com.hpursan.digicert.library.dto;
+
+import com.hpursan.digicert.library.domain.Book;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * A single keyset page of books. {@code nextAfter} is the id to continue from, or null on the last page. A page of a
+ * search sorted by something other than id also carries the sort value of that book in {@code nextKey}.
+ */
+@Data
+@AllArgsConstructor
+public class BookPage {
+    private List<Book> books;
+    private Long nextAfter;
+    private String nextKey;
+
+    public BookPage(List<Book> books, Long nextAfter) {
+        this(books, nextAfter, null);
+    }
+
+    public boolean hasNext() {
+        return nextAfter != null;
+    }
+}
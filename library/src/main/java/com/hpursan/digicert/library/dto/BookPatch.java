@@ -0,0 +1,29 @@
+package com.hpursan.digicert.library.dto;
+
+import com.hpursan.digicert.library.domain.ValidIsbn;
+import jakarta.validation.constraints.Pattern;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The fields a partial update changes. A field left out (or null) keeps whatever the book has, so a patch can't
+ * clear one, but one that is sent must be as valid as it would be on a whole {@code Book}.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookPatch {
+    @Pattern(regexp = "(?s).*\\S.*", message = "Title can't be blank")
+    private String title;
+
+    @Pattern(regexp = "(?s).*\\S.*", message = "Author can't be blank")
+    private String author;
+
+    @ValidIsbn
+    private String isbn;
+
+    public boolean isEmpty() {
+        return title == null && author == null && isbn == null;
+    }
+}
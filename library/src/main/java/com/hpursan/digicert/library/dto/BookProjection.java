@@ -0,0 +1,78 @@
+package com.hpursan.digicert.library.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A book with only some of its fields. It wraps the row the database returned instead of copying it into a map, and
+ * is written out as a JSON object holding just those fields.
+ */
+@JsonSerialize(using = BookProjection.Serializer.class)
+public final class BookProjection {
+    private final List<BookField> fields;
+    // values[i] belongs to fields.get(i), anything after the last field was only selected for the cursor
+    private final Object[] values;
+
+    public BookProjection(List<BookField> fields, Object[] values) {
+        this.fields = fields;
+        this.values = values;
+    }
+
+    public Object get(BookField field) {
+        int index = fields.indexOf(field);
+        if (index < 0) {
+            throw new IllegalArgumentException(field.getProperty() + " was not selected");
+        }
+        return values[index];
+    }
+
+    public List<BookField> getFields() {
+        return fields;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BookProjection other) || !fields.equals(other.fields)) {
+            return false;
+        }
+        return Arrays.equals(values, 0, fields.size(), other.values, 0, fields.size());
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = fields.hashCode();
+        for (int i = 0; i < fields.size(); i++) {
+            hash = 31 * hash + (values[i] == null ? 0 : values[i].hashCode());
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder string = new StringBuilder("BookProjection(");
+        for (int i = 0; i < fields.size(); i++) {
+            string.append(i == 0 ? "" : ", ").append(fields.get(i).getProperty()).append('=').append(values[i]);
+        }
+        return string.append(')').toString();
+    }
+
+    static class Serializer extends JsonSerializer<BookProjection> {
+        @Override
+        public void serialize(BookProjection book, JsonGenerator json, SerializerProvider provider) throws IOException {
+            json.writeStartObject(book);
+            for (int i = 0; i < book.fields.size(); i++) {
+                provider.defaultSerializeField(book.fields.get(i).getProperty(), book.values[i], json);
+            }
+            json.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.hpursan.digicert.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Criteria for a combined search, every one that is set has to match. Title and author match anywhere in the value
+ * ignoring case, the ISBN matches on its first digits.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookSearch {
+    private String title;
+    private String author;
+    private String isbnPrefix;
+    private BookSort sort = BookSort.ID;
+    private boolean descending;
+}
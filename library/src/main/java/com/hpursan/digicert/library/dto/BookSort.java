@@ -0,0 +1,53 @@
+package com.hpursan.digicert.library.dto;
+
+import com.hpursan.digicert.library.domain.Book;
+
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * The orders a search can be sorted in. Books with the same title or author are kept in id order so every book has
+ * exactly one place in the result, which is what keyset paging needs.
+ */
+public enum BookSort {
+    ID("id", null),
+    TITLE("title", Book::getTitle),
+    AUTHOR("author", Book::getAuthor),
+    // unique, so it needs no tie-breaker
+    ISBN("isbn", Book::getIsbn);
+
+    private final String property;
+    private final Function<Book, String> key;
+
+    BookSort(String property, Function<Book, String> key) {
+        this.property = property;
+        this.key = key;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    /**
+     * @return whether rows with the same value are ordered by id as well
+     */
+    public boolean isTieBrokenById() {
+        return this == TITLE || this == AUTHOR;
+    }
+
+    /**
+     * @return the value a keyset cursor has to remember besides the id, null when the id is enough
+     */
+    public String keyOf(Book book) {
+        return key == null ? null : key.apply(book);
+    }
+
+    public static BookSort fromProperty(String property) {
+        for (BookSort sort : values()) {
+            if (sort.property.equals(property.trim().toLowerCase(Locale.ROOT))) {
+                return sort;
+            }
+        }
+        throw new IllegalArgumentException("Can't sort books by " + property);
+    }
+}
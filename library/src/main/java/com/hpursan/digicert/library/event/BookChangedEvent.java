@@ -0,0 +1,46 @@
+package com.hpursan.digicert.library.event;
+
+import com.hpursan.digicert.library.domain.Book;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published by the write paths whenever a book is created, updated or deleted. Listeners that keep derived state
+ * (indexes, caches) should react after commit so they never see a change that was rolled back.
+ * <p>
+ * {@code before} and {@code after} are detached snapshots of the whole book. {@code before} is null for creates and
+ * {@code after} is null for deletes.
+ */
+@Getter
+@ToString
+public class BookChangedEvent {
+    public enum Type { CREATED, UPDATED, DELETED }
+
+    private final Type type;
+    private final Long id;
+    private final Book before;
+    private final Book after;
+
+    private BookChangedEvent(Type type, Long id, Book before, Book after) {
+        this.type = type;
+        this.id = id;
+        this.before = before;
+        this.after = after;
+    }
+
+    public static BookChangedEvent created(Book book) {
+        return new BookChangedEvent(Type.CREATED, book.getId(), null, snapshot(book));
+    }
+
+    public static BookChangedEvent updated(Book before, Book after) {
+        return new BookChangedEvent(Type.UPDATED, after.getId(), before, snapshot(after));
+    }
+
+    public static BookChangedEvent deleted(Long id, Book before) {
+        return new BookChangedEvent(Type.DELETED, id, before, null);
+    }
+
+    public static Book snapshot(Book book) {
+        return book == null ? null : new Book(book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn(), book.getVersion());
+    }
+}
@@ -0,0 +1,42 @@
+package com.hpursan.digicert.library.event;
+
+import com.hpursan.digicert.library.domain.Book;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Published once by a batch create in place of a {@link BookChangedEvent} per book, so a batch of 100,000 books
+ * doesn't keep a copy of each of them until it commits. It only holds the ids. Listeners that need the books read
+ * them back with {@link #forEachBook}, a chunk at a time.
+ */
+@Getter
+@ToString(of = "ids")
+public class BooksCreatedEvent {
+    // ids per read, one IN list each
+    public static final int CHUNK_SIZE = 500;
+
+    private final List<Long> ids;
+    private final Function<List<Long>, List<Book>> loader;
+
+    /**
+     * @param loader reads the books with the given ids from wherever they were written
+     */
+    public BooksCreatedEvent(List<Long> ids, Function<List<Long>, List<Book>> loader) {
+        this.ids = List.copyOf(ids);
+        this.loader = loader;
+    }
+
+    /**
+     * Reads the books back and hands each of them to {@code action}. Meant for after commit, before that there is
+     * nothing to read outside the creating transaction.
+     */
+    public void forEachBook(Consumer<Book> action) {
+        for (int from = 0; from < ids.size(); from += CHUNK_SIZE) {
+            loader.apply(ids.subList(from, Math.min(from + CHUNK_SIZE, ids.size()))).forEach(action);
+        }
+    }
+}
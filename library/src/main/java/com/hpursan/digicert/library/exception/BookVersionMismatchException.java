@@ -0,0 +1,7 @@
+package com.hpursan.digicert.library.exception;
+
+public class BookVersionMismatchException extends RuntimeException {
+    public BookVersionMismatchException(String message) {
+        super(message);
+    }
+}
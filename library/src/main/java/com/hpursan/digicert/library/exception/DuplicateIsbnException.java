@@ -0,0 +1,7 @@
+package com.hpursan.digicert.library.exception;
+
+public class DuplicateIsbnException extends RuntimeException {
+    public DuplicateIsbnException(String message) {
+        super(message);
+    }
+}
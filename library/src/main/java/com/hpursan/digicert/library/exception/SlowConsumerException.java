@@ -0,0 +1,7 @@
+package com.hpursan.digicert.library.exception;
+
+public class SlowConsumerException extends RuntimeException {
+    public SlowConsumerException(String message) {
+        super(message);
+    }
+}
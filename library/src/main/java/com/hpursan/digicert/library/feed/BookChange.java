@@ -0,0 +1,21 @@
+package com.hpursan.digicert.library.feed;
+
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.event.BookChangedEvent;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * One committed change as the change feed sends it. {@code book} is the whole book after the change, null for a
+ * delete, see {@link BookChangedEvent}.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class BookChange {
+    private final long seq;
+    private final BookChangedEvent.Type type;
+    private final Long id;
+    private final Book book;
+}
@@ -0,0 +1,203 @@
+package com.hpursan.digicert.library.feed;
+
+import com.hpursan.digicert.library.config.ChangeFeedProperties;
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.event.BookChangedEvent;
+import com.hpursan.digicert.library.event.BooksCreatedEvent;
+import com.hpursan.digicert.library.exception.SlowConsumerException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Numbers every committed change to the catalog and keeps the latest ones in a ring buffer that all subscribers read
+ * from. A subscriber is only a position in the buffer, so however far behind a client is it holds no changes of its
+ * own. It is only let go once the buffer has overwritten the next change it needs, which is exactly when a reconnect
+ * with its last event id gets a reset. Anything short of that, such as one commit of a whole batch, it can catch up
+ * on, or reconnect and resume.
+ * <p>
+ * Event ids are the start time and the sequence number, like {@link com.hpursan.digicert.library.cache.CatalogVersion}'s
+ * ETags, so an id from before a restart is never mistaken for one of the changes since.
+ */
+@Component
+public class BookChangeFeed {
+    public static final String SUBSCRIBERS = "library.feed.subscribers";
+    public static final String EVICTED = "library.feed.evicted";
+
+    // how many changes a subscriber is handed at once
+    private static final int BATCH = 100;
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final int maxSubscribers;
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final Counter evicted;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    // guarded by lock
+    private final BookChange[] ring;
+    private long last;
+
+    public BookChangeFeed(ChangeFeedProperties properties, MeterRegistry meterRegistry) {
+        this.ring = new BookChange[properties.getBufferSize()];
+        this.maxSubscribers = properties.getMaxSubscribers();
+        Gauge.builder(SUBSCRIBERS, subscriptions, Set::size)
+            .description("Clients following the change feed")
+            .register(meterRegistry);
+        this.evicted = Counter.builder(EVICTED)
+            .description("Change feed clients disconnected for falling behind")
+            .register(meterRegistry);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        publish(event.getType(), event.getId(), event.getAfter());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksCreated(BooksCreatedEvent event) {
+        event.forEachBook(book -> publish(BookChangedEvent.Type.CREATED, book.getId(), book));
+    }
+
+    private void publish(BookChangedEvent.Type type, Long id, Book book) {
+        lock.lock();
+        try {
+            long seq = ++last;
+            ring[(int) (seq % ring.length)] = new BookChange(seq, type, id, book);
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param lastEventId the id of the last change the client saw, null for only changes from now on
+     * @return null when there are already {@code max-subscribers}
+     */
+    public Subscription subscribe(String lastEventId) {
+        lock.lock();
+        try {
+            if (subscriptions.size() >= maxSubscribers) {
+                return null;
+            }
+            long resumeAfter = resumeAfter(lastEventId);
+            Subscription subscription = resumeAfter < 0 ? new Subscription(last + 1, lastEventId != null) : new Subscription(resumeAfter + 1, false);
+            subscriptions.add(subscription);
+            return subscription;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String eventId(long seq) {
+        return epoch + "-" + seq;
+    }
+
+    /**
+     * @return the sequence number to carry on after, -1 if the id is from another run or what came after it is gone
+     */
+    private long resumeAfter(String lastEventId) {
+        if (lastEventId == null || !lastEventId.startsWith(epoch + "-")) {
+            return -1;
+        }
+        long seq;
+        try {
+            seq = Long.parseLong(lastEventId.substring(epoch.length() + 1));
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+        long oldest = Math.max(1, last - ring.length + 1);
+        return seq < oldest - 1 || seq > last ? -1 : seq;
+    }
+
+    public void closeAll() {
+        subscriptions.forEach(Subscription::close);
+    }
+
+    /**
+     * One client's position in the feed. Not thread safe, meant to be read from one thread.
+     */
+    public class Subscription implements AutoCloseable {
+        private final boolean reset;
+        // guarded by lock
+        private long next;
+        private boolean closed;
+
+        private Subscription(long next, boolean reset) {
+            this.next = next;
+            this.reset = reset;
+        }
+
+        /**
+         * @return whether the client asked to resume but the changes since are gone, so it has to fetch the catalog again
+         */
+        public boolean isReset() {
+            return reset;
+        }
+
+        /**
+         * @return the id of the change before the next one {@link #poll} returns
+         */
+        public String getLastEventId() {
+            lock.lock();
+            try {
+                return eventId(next - 1);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return the changes since the last call in order, waiting up to {@code wait} for one, or null once the
+         * subscription is closed
+         * @throws SlowConsumerException when the buffer has overwritten the next change the client needs, the
+         * subscription is closed then
+         */
+        public List<BookChange> poll(Duration wait) throws InterruptedException {
+            lock.lock();
+            try {
+                long nanos = wait.toNanos();
+                while (!closed && next > last && nanos > 0) {
+                    nanos = published.awaitNanos(nanos);
+                }
+                if (closed) {
+                    return null;
+                }
+                if (next < last - ring.length + 1) {
+                    close();
+                    evicted.increment();
+                    throw new SlowConsumerException((last - next + 1) + " changes behind");
+                }
+                List<BookChange> changes = new ArrayList<>((int) Math.min(BATCH, last - next + 1));
+                for (; next <= last && changes.size() < BATCH; next++) {
+                    changes.add(ring[(int) (next % ring.length)]);
+                }
+                return changes;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                closed = true;
+                published.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            subscriptions.remove(this);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.hpursan.digicert.library.feed;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hpursan.digicert.library.config.ChangeFeedProperties;
+import com.hpursan.digicert.library.exception.SlowConsumerException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends the {@link BookChangeFeed} to clients as Server-Sent Events. Each stream gets a virtual thread of its own, so
+ * a client that reads slowly only ever blocks its own thread, and the request thread is back in the pool as soon as
+ * the stream is open.
+ * <p>
+ * Every change is an event named after its type ({@code created}, {@code updated}, {@code deleted}) with the change as
+ * JSON. A client that asked to resume from a change that is no longer kept first gets a {@code reset} event, it
+ * should fetch the catalog again and follow the feed from there.
+ */
+@Slf4j
+@Component
+public class BookChangeStreams {
+    private final BookChangeFeed feed;
+    private final ObjectMapper objectMapper;
+    private final Duration heartbeat;
+    private final AtomicLong streams = new AtomicLong();
+
+    public BookChangeStreams(BookChangeFeed feed, ObjectMapper objectMapper, ChangeFeedProperties properties) {
+        this.feed = feed;
+        this.objectMapper = objectMapper;
+        this.heartbeat = properties.getHeartbeat();
+    }
+
+    /**
+     * @param lastEventId the {@code Last-Event-ID} the client sent, if any
+     * @return null when there are too many clients already
+     */
+    public SseEmitter open(String lastEventId) {
+        BookChangeFeed.Subscription subscription = feed.subscribe(lastEventId);
+        if (subscription == null) {
+            return null;
+        }
+        // no timeout, the heartbeat finds out when the client has gone
+        SseEmitter emitter = new SseEmitter(0L);
+        emitter.onCompletion(subscription::close);
+        emitter.onError(error -> subscription.close());
+        Thread.ofVirtual().name("book-changes-" + streams.incrementAndGet()).start(() -> stream(subscription, emitter));
+        return emitter;
+    }
+
+    private void stream(BookChangeFeed.Subscription subscription, SseEmitter emitter) {
+        try (subscription) {
+            if (subscription.isReset()) {
+                emitter.send(SseEmitter.event().id(subscription.getLastEventId()).name("reset").data("{}", MediaType.APPLICATION_JSON));
+            } else {
+                // lets the client know the stream is open before the first change
+                emitter.send(SseEmitter.event().comment("open"));
+            }
+            List<BookChange> changes;
+            while ((changes = subscription.poll(heartbeat)) != null) {
+                if (changes.isEmpty()) {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                }
+                for (BookChange change : changes) {
+                    emitter.send(SseEmitter.event()
+                        .id(feed.eventId(change.getSeq()))
+                        .name(change.getType().name().toLowerCase())
+                        .data(objectMapper.writeValueAsString(change), MediaType.APPLICATION_JSON));
+                }
+            }
+            emitter.complete();
+        } catch (SlowConsumerException ex) {
+            log.info("Disconnecting a change feed client that is {}", ex.getMessage());
+            emitter.complete();
+        } catch (IOException | IllegalStateException ex) {
+            // the client went away, the emitter has already been told
+            log.debug("Change feed client gone: {}", ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            emitter.complete();
+        }
+    }
+
+    @PreDestroy
+    void closeAll() {
+        feed.closeAll();
+    }
+}
@@ -0,0 +1,61 @@
+package com.hpursan.digicert.library.importer;
+
+import com.hpursan.digicert.library.config.BookImportProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * {@code /actuator/imports}: a POST with the path of a file on the server starts importing it in the background, a
+ * GET shows how the running or last import is getting on. Only files under {@code library.import.directory} are
+ * imported.
+ */
+@Component
+@Endpoint(id = "imports")
+@RequiredArgsConstructor
+public class BookImportEndpoint {
+    private final BookImporter bookImporter;
+    private final BookImportProperties properties;
+
+    @ReadOperation
+    public BookImportProgress progress() {
+        // null is a 404, there hasn't been an import
+        return bookImporter.getProgress();
+    }
+
+    /**
+     * @param resume carry on after the last chunk an earlier import of the same file committed
+     */
+    @WriteOperation
+    public BookImportProgress start(String file, @Nullable Boolean resume) throws IOException {
+        try {
+            return bookImporter.start(resolve(file), Boolean.TRUE.equals(resume));
+        } catch (IllegalArgumentException | IllegalStateException ex) {
+            throw new InvalidEndpointRequestException(ex.getMessage(), ex.getMessage());
+        }
+    }
+
+    /**
+     * @return the file in the import directory, a relative path is taken from there
+     * @throws IllegalArgumentException when there is no import directory, or the path leads out of it
+     */
+    private Path resolve(String file) {
+        if (properties.getDirectory() == null) {
+            throw new IllegalArgumentException("Imports are off, library.import.directory isn't set");
+        }
+        Path directory = properties.getDirectory().toAbsolutePath().normalize();
+        // normalized first, so a .. can't climb out of the directory after the check
+        Path path = directory.resolve(file).normalize();
+        if (!path.startsWith(directory)) {
+            throw new IllegalArgumentException(file + " isn't in the import directory");
+        }
+        return path;
+    }
+}
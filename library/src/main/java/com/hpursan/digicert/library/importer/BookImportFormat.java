@@ -0,0 +1,30 @@
+package com.hpursan.digicert.library.importer;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * The file formats an import reads, told apart by extension.
+ */
+public enum BookImportFormat {
+    /**
+     * RFC 4180 CSV with a header row naming at least the {@code title}, {@code author} and {@code isbn} columns.
+     * Other columns are ignored, quoted fields may hold commas, quotes and line breaks.
+     */
+    CSV,
+    /**
+     * One JSON book per line, the same shape {@code GET /api/books/export} writes. Ids and versions are ignored.
+     */
+    JSONL;
+
+    public static BookImportFormat of(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".csv")) {
+            return CSV;
+        }
+        if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) {
+            return JSONL;
+        }
+        throw new IllegalArgumentException("Can't tell the format of " + file + ", expected a .csv, .jsonl or .ndjson file");
+    }
+}
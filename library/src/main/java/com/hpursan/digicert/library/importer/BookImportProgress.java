@@ -0,0 +1,116 @@
+package com.hpursan.digicert.library.importer;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Where an import has got to. Updated by the import's threads as it runs and safe to read from any other thread, the
+ * counts only ever include committed chunks.
+ */
+public class BookImportProgress {
+    public enum State { RUNNING, FINISHED, FAILED }
+
+    private final String file;
+    private final String errorFile;
+    private final long fileSize;
+    private final Instant startedAt = Instant.now();
+    // what earlier runs of a resumed import committed, they don't count towards this run's rate
+    private final long resumedAt;
+
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong records;
+    private final AtomicLong imported;
+    private final AtomicLong rejected;
+    private volatile State state = State.RUNNING;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    BookImportProgress(String file, String errorFile, long fileSize, long records, long imported, long rejected) {
+        this.file = file;
+        this.errorFile = errorFile;
+        this.fileSize = fileSize;
+        this.resumedAt = records;
+        this.records = new AtomicLong(records);
+        this.imported = new AtomicLong(imported);
+        this.rejected = new AtomicLong(rejected);
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public String getErrorFile() {
+        return errorFile;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return records committed, imported or rejected, over every run of this import
+     */
+    public long getRecords() {
+        return records.get();
+    }
+
+    public long getImported() {
+        return imported.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public double getPercentRead() {
+        return state == State.FINISHED || fileSize == 0 ? 100.0 : Math.min(100.0, 100.0 * bytesRead.get() / fileSize);
+    }
+
+    /**
+     * @return records committed per second by this run
+     */
+    public long getRecordsPerSecond() {
+        long millis = Duration.between(startedAt, finishedAt != null ? finishedAt : Instant.now()).toMillis();
+        return millis == 0 ? 0 : (records.get() - resumedAt) * 1000 / millis;
+    }
+
+    void read(long bytes) {
+        bytesRead.set(bytes);
+    }
+
+    void committed(int imported, int rejected) {
+        this.imported.addAndGet(imported);
+        this.rejected.addAndGet(rejected);
+        this.records.addAndGet(imported + rejected);
+    }
+
+    void finished() {
+        finishedAt = Instant.now();
+        state = State.FINISHED;
+    }
+
+    void failed(Throwable ex) {
+        finishedAt = Instant.now();
+        error = ex.toString();
+        state = State.FAILED;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d records (%d imported, %d rejected), %.1f%% read, %d records/s",
+            file, getRecords(), getImported(), getRejected(), getPercentRead(), getRecordsPerSecond());
+    }
+}
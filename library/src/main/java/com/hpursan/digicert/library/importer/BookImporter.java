@@ -0,0 +1,461 @@
+package com.hpursan.digicert.library.importer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hpursan.digicert.library.config.BookImportProperties;
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.domain.Isbn;
+import com.hpursan.digicert.library.event.BookChangedEvent;
+import com.hpursan.digicert.library.importer.BookRecordReader.BookRecord;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Imports a CSV or JSONL catalog file of any size. The file is read in chunks on one thread, the chunks are parsed
+ * and validated on a pool of threads and then inserted in file order by a single writer, one transaction and one
+ * JDBC batch per chunk. At most {@code chunks-in-flight} chunks are read ahead of the writer.
+ * <p>
+ * Each chunk commits together with a checkpoint row in {@code book_imports}, so an import that stopped halfway can
+ * be resumed from the first chunk that didn't commit. Rejected records, invalid ones and ISBNs that are already in
+ * the catalog or earlier in the file, go to {@code <file>.rejected} with their line and the reason. For a CSV file
+ * that is a CSV file with the same header, so it can be fixed and imported again.
+ * <p>
+ * Imported books are announced with {@link BookChangedEvent}s like any other new book, so the caches and indexes
+ * keep up.
+ */
+@Slf4j
+@Service
+public class BookImporter {
+    // books_seq hands out blocks of 50 ids, the same blocks Hibernate's pooled-lo optimizer takes from it
+    private static final int ID_BLOCK = 50;
+    // the columns, a longer value would fail the whole chunk's insert
+    private static final int MAX_LENGTH = 255;
+    private static final Future<ParsedChunk> END = CompletableFuture.completedFuture(null);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BookImportProperties properties;
+    private final Counter importedRecords;
+    private final Counter rejectedRecords;
+
+    // one import at a time, two would only compete for the same writer connection and ISBNs
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile BookImportProgress progress;
+
+    public BookImporter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, Validator validator,
+                        ObjectMapper objectMapper, ApplicationEventPublisher eventPublisher,
+                        BookImportProperties properties, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.properties = properties;
+        this.importedRecords = meterRegistry.counter("library.import.records", "outcome", "imported");
+        this.rejectedRecords = meterRegistry.counter("library.import.records", "outcome", "rejected");
+    }
+
+    /**
+     * Checks the file and where to start, then imports it on a thread of its own.
+     *
+     * @param resume carry on after the last chunk an earlier import of the same file committed
+     * @throws IllegalArgumentException if the file can't be imported
+     * @throws IllegalStateException if an import is running already
+     */
+    public BookImportProgress start(Path file, boolean resume) throws IOException {
+        Run run = prepare(file, resume);
+        Thread.ofPlatform().name("book-import").start(() -> execute(run));
+        return run.progress;
+    }
+
+    /**
+     * {@link #start} on the calling thread, returning once the import has finished or failed.
+     */
+    public BookImportProgress importBooks(Path file, boolean resume) throws IOException {
+        Run run = prepare(file, resume);
+        execute(run);
+        return run.progress;
+    }
+
+    /**
+     * @return the running import or the last one, null if there hasn't been one
+     */
+    public BookImportProgress getProgress() {
+        return progress;
+    }
+
+    private Run prepare(Path file, boolean resume) throws IOException {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("An import of " + progress.getFile() + " is still running");
+        }
+        try {
+            Path source = file.toAbsolutePath().normalize();
+            if (!Files.isRegularFile(source)) {
+                throw new IllegalArgumentException("No such file: " + source);
+            }
+            BookImportFormat format = BookImportFormat.of(source);
+            long size = Files.size(source);
+            Checkpoint checkpoint = resume ? checkpoint(source, size) : new Checkpoint(0, 0, 0, false);
+            Path errorFile = source.resolveSibling(source.getFileName() + ".rejected");
+
+            Run run = new Run(source, format, size, errorFile, resume, checkpoint,
+                new BookImportProgress(source.toString(), errorFile.toString(), size,
+                    checkpoint.records, checkpoint.imported, checkpoint.rejected));
+            progress = run.progress;
+            return run;
+        } catch (IOException | RuntimeException ex) {
+            running.set(false);
+            throw ex;
+        }
+    }
+
+    private void execute(Run run) {
+        try {
+            if (run.checkpoint.finished) {
+                log.info("{} was imported completely already", run.source);
+            } else {
+                log.info("Importing {}{}", run.source, run.resume ? " from record " + (run.checkpoint.records + 1) : "");
+                pipeline(run);
+            }
+            run.progress.finished();
+            log.info("Imported {}", run.progress);
+        } catch (Exception ex) {
+            run.progress.failed(ex);
+            log.error("Import of {} failed, resume it to carry on after the last committed chunk", run.progress, ex);
+            if (ex instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void pipeline(Run run) throws IOException, InterruptedException {
+        int chunkSize = properties.getChunkSize();
+        int threads = properties.getParserThreads() > 0 ? properties.getParserThreads() : Runtime.getRuntime().availableProcessors();
+        ExecutorService parsers = Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("book-import-parser-", 0).factory());
+        ExecutorService writer = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("book-import-writer").factory());
+        // parsed or being parsed, waiting for the writer. Reading blocks while it's full, that's the backpressure
+        BlockingQueue<Future<ParsedChunk>> chunks = new ArrayBlockingQueue<>(properties.getChunksInFlight());
+
+        boolean newErrorFile = !Files.exists(run.errorFile) || Files.size(run.errorFile) == 0;
+        try (BookRecordReader reader = new BookRecordReader(run.source, run.format);
+             BufferedWriter errors = Files.newBufferedWriter(run.errorFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                 StandardOpenOption.WRITE, run.resume ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)) {
+            BookRecordParser parser = parser(run, reader, errors, newErrorFile || !run.resume);
+            reader.skip(run.checkpoint.records);
+
+            Future<?> writing = writer.submit(() -> {
+                write(run, chunks, errors);
+                return null;
+            });
+            try {
+                List<BookRecord> chunk = new ArrayList<>(chunkSize);
+                for (BookRecord record = reader.next(); record != null; record = reader.next()) {
+                    chunk.add(record);
+                    if (chunk.size() == chunkSize) {
+                        put(chunks, parse(chunk, parser, parsers), writing);
+                        run.progress.read(reader.bytesRead());
+                        chunk = new ArrayList<>(chunkSize);
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    put(chunks, parse(chunk, parser, parsers), writing);
+                }
+                run.progress.read(reader.bytesRead());
+                put(chunks, END, writing);
+            } catch (IOException | RuntimeException | InterruptedException ex) {
+                // what is queued hasn't committed and will be read again on resume, the writer only finishes its chunk
+                chunks.clear();
+                chunks.offer(END);
+                writer.shutdown();
+                writer.awaitTermination(1, TimeUnit.MINUTES);
+                throw ex;
+            }
+            await(writing);
+            saveCheckpoint(run, run.progress.getRecords(), run.progress.getImported(), run.progress.getRejected(), true);
+        } finally {
+            parsers.shutdownNow();
+            writer.shutdown();
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    private BookRecordParser parser(Run run, BookRecordReader reader, Writer errors, boolean writeHeader) throws IOException {
+        if (run.format == BookImportFormat.JSONL) {
+            return BookRecordParser.jsonl(objectMapper);
+        }
+        BookRecord header = reader.next();
+        if (header == null) {
+            throw new IllegalArgumentException(run.source + " has no CSV header");
+        }
+        BookRecordParser parser = BookRecordParser.csv(header.getText());
+        if (writeHeader) {
+            errors.write(header.getText() + ",line,error\n");
+        }
+        return parser;
+    }
+
+    private CompletableFuture<ParsedChunk> parse(List<BookRecord> records, BookRecordParser parser, ExecutorService parsers) {
+        return CompletableFuture.supplyAsync(() -> {
+            ParsedChunk chunk = new ParsedChunk(records.size(), new ArrayList<>(records.size()), new ArrayList<>());
+            for (BookRecord record : records) {
+                try {
+                    Book book = parser.parse(record.getText());
+                    String problems = problems(book);
+                    if (problems == null) {
+                        chunk.books.add(new ParsedBook(record, book));
+                    } else {
+                        chunk.rejected.add(new Rejected(record, problems));
+                    }
+                } catch (IllegalArgumentException ex) {
+                    chunk.rejected.add(new Rejected(record, ex.getMessage()));
+                }
+            }
+            return chunk;
+        }, parsers);
+    }
+
+    /**
+     * @return what is wrong with the book, or null if it can be imported
+     */
+    private String problems(Book book) {
+        book.setIsbn(Isbn.normalize(book.getIsbn()));
+        List<String> problems = new ArrayList<>();
+        for (ConstraintViolation<Book> violation : validator.validate(book)) {
+            problems.add(violation.getPropertyPath() + ": " + violation.getMessage());
+        }
+        if (book.getIsbn() == null) {
+            problems.add("isbn: ISBN is required");
+        }
+        if (book.getTitle() != null && book.getTitle().length() > MAX_LENGTH) {
+            problems.add("title: Title must be at most " + MAX_LENGTH + " characters");
+        }
+        if (book.getAuthor() != null && book.getAuthor().length() > MAX_LENGTH) {
+            problems.add("author: Author must be at most " + MAX_LENGTH + " characters");
+        }
+        if (problems.isEmpty()) {
+            return null;
+        }
+        problems.sort(Comparator.naturalOrder());
+        return String.join("; ", problems);
+    }
+
+    private static void put(BlockingQueue<Future<ParsedChunk>> chunks, Future<ParsedChunk> chunk, Future<?> writing)
+        throws IOException, InterruptedException {
+        while (!chunks.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+            // waiting for room is the point, but not on a writer that has stopped
+            if (writing.isDone()) {
+                await(writing);
+                throw new IllegalStateException("The writer stopped before the end of the file");
+            }
+        }
+    }
+
+    private void write(Run run, BlockingQueue<Future<ParsedChunk>> chunks, Writer errors) throws Exception {
+        long interval = properties.getProgressInterval().toNanos();
+        long reported = System.nanoTime();
+        for (ParsedChunk chunk = chunks.take().get(); chunk != null; chunk = chunks.take().get()) {
+            commit(run, chunk, errors);
+            if (System.nanoTime() - reported >= interval) {
+                log.info("Importing {}", run.progress);
+                reported = System.nanoTime();
+            }
+        }
+    }
+
+    private void commit(Run run, ParsedChunk chunk, Writer errors) {
+        List<Rejected> rejected = new ArrayList<>(chunk.rejected);
+        List<Book> books = transactionTemplate.execute(status -> {
+            List<Book> unique = unique(chunk.books, rejected);
+            insert(unique);
+            // before the commit, a chunk that fails to commit is imported again on resume and may repeat its rejects,
+            // but a committed one never loses them
+            writeRejected(run, rejected, errors);
+            saveCheckpoint(run, run.progress.getRecords() + chunk.records, run.progress.getImported() + unique.size(),
+                run.progress.getRejected() + rejected.size(), false);
+            unique.forEach(book -> eventPublisher.publishEvent(BookChangedEvent.created(book)));
+            return unique;
+        });
+        run.progress.committed(books.size(), rejected.size());
+        importedRecords.increment(books.size());
+        rejectedRecords.increment(rejected.size());
+    }
+
+    /**
+     * Drops the books whose ISBN is in the catalog already, earlier chunks included since they have committed, or
+     * earlier in this chunk.
+     */
+    private List<Book> unique(List<ParsedBook> parsed, List<Rejected> rejected) {
+        List<Book> books = new ArrayList<>(parsed.size());
+        if (parsed.isEmpty()) {
+            return books;
+        }
+        List<String> isbns = new ArrayList<>(parsed.size());
+        parsed.forEach(p -> isbns.add(p.book.getIsbn()));
+        Set<String> taken = new HashSet<>(namedJdbcTemplate.queryForList(
+            "SELECT isbn FROM books WHERE isbn IN (:isbns)", Map.of("isbns", isbns), String.class));
+        for (ParsedBook p : parsed) {
+            if (taken.add(p.book.getIsbn())) {
+                books.add(p.book);
+            } else {
+                rejected.add(new Rejected(p.record, "isbn: A book with ISBN " + p.book.getIsbn() + " already exists"));
+            }
+        }
+        return books;
+    }
+
+    private void insert(List<Book> books) {
+        long next = 0;
+        for (int i = 0; i < books.size(); i++) {
+            if (i % ID_BLOCK == 0) {
+                next = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR books_seq", Long.class);
+            }
+            books.get(i).setId(next + i % ID_BLOCK);
+            books.get(i).setVersion(0L);
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO books (id, title, author, isbn, version) VALUES (?, ?, ?, ?, ?)",
+            books, books.size(), (statement, book) -> {
+                statement.setLong(1, book.getId());
+                statement.setString(2, book.getTitle());
+                statement.setString(3, book.getAuthor());
+                statement.setString(4, book.getIsbn());
+                statement.setLong(5, book.getVersion());
+            });
+    }
+
+    private void writeRejected(Run run, List<Rejected> rejected, Writer errors) {
+        rejected.sort(Comparator.comparingLong(r -> r.record.getLine()));
+        try {
+            for (Rejected r : rejected) {
+                if (run.format == BookImportFormat.CSV) {
+                    errors.write(r.record.getText() + "," + r.record.getLine() + "," + quote(r.reason) + "\n");
+                } else {
+                    Map<String, Object> line = new LinkedHashMap<>();
+                    line.put("line", r.record.getLine());
+                    line.put("error", r.reason);
+                    line.put("record", r.record.getText());
+                    errors.write(objectMapper.writeValueAsString(line) + "\n");
+                }
+            }
+            errors.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private Checkpoint checkpoint(Path source, long size) {
+        List<Checkpoint> checkpoints = jdbcTemplate.query(
+            "SELECT file_size, records, imported, rejected, finished FROM book_imports WHERE file_path = ?",
+            (rs, row) -> {
+                if (rs.getLong("file_size") != size) {
+                    throw new IllegalArgumentException(source + " has changed since it was imported, import it again without resume");
+                }
+                return new Checkpoint(rs.getLong("records"), rs.getLong("imported"), rs.getLong("rejected"), rs.getBoolean("finished"));
+            },
+            source.toString());
+        return checkpoints.isEmpty() ? new Checkpoint(0, 0, 0, false) : checkpoints.get(0);
+    }
+
+    private void saveCheckpoint(Run run, long records, long imported, long rejected, boolean finished) {
+        jdbcTemplate.update("MERGE INTO book_imports (file_path, file_size, records, imported, rejected, finished) KEY (file_path) "
+            + "VALUES (?, ?, ?, ?, ?, ?)", run.source.toString(), run.size, records, imported, rejected, finished);
+    }
+
+    private static void await(Future<?> writing) throws IOException, InterruptedException {
+        try {
+            writing.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause() instanceof ExecutionException ? ex.getCause().getCause() : ex.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static String quote(String value) {
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    @AllArgsConstructor
+    private static final class Run {
+        private final Path source;
+        private final BookImportFormat format;
+        private final long size;
+        private final Path errorFile;
+        private final boolean resume;
+        private final Checkpoint checkpoint;
+        private final BookImportProgress progress;
+    }
+
+    // what the earlier runs of an import committed
+    @AllArgsConstructor
+    private static final class Checkpoint {
+        private final long records;
+        private final long imported;
+        private final long rejected;
+        private final boolean finished;
+    }
+
+    @AllArgsConstructor
+    private static final class ParsedChunk {
+        private final int records;
+        private final List<ParsedBook> books;
+        private final List<Rejected> rejected;
+    }
+
+    @AllArgsConstructor
+    private static final class ParsedBook {
+        private final BookRecord record;
+        private final Book book;
+    }
+
+    @AllArgsConstructor
+    private static final class Rejected {
+        private final BookRecord record;
+        private final String reason;
+    }
+}
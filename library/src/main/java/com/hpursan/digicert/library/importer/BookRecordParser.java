@@ -0,0 +1,97 @@
+package com.hpursan.digicert.library.importer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hpursan.digicert.library.domain.Book;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Turns one record of an import file into a book. Parsers hold no state beyond what they were built with, so one is
+ * shared by all the parsing threads.
+ */
+interface BookRecordParser {
+
+    /**
+     * @throws IllegalArgumentException with the reason the record was rejected
+     */
+    Book parse(String record);
+
+    /**
+     * @param header the first record of the file
+     */
+    static BookRecordParser csv(String header) {
+        List<String> columns = fields(header);
+        int title = column(columns, "title");
+        int author = column(columns, "author");
+        int isbn = column(columns, "isbn");
+        int needed = Math.max(title, Math.max(author, isbn)) + 1;
+        return record -> {
+            List<String> fields = fields(record);
+            if (fields.size() < needed) {
+                throw new IllegalArgumentException("Expected at least " + needed + " fields, found " + fields.size());
+            }
+            return new Book(null, fields.get(title), fields.get(author), fields.get(isbn));
+        };
+    }
+
+    static BookRecordParser jsonl(ObjectMapper objectMapper) {
+        return record -> {
+            Book book;
+            try {
+                book = objectMapper.readValue(record, Book.class);
+            } catch (JsonProcessingException ex) {
+                throw new IllegalArgumentException("Not a JSON book: " + ex.getOriginalMessage());
+            }
+            if (book == null) {
+                throw new IllegalArgumentException("Not a JSON book");
+            }
+            // ids come from the sequence and every imported book starts at version 0
+            book.setId(null);
+            book.setVersion(null);
+            return book;
+        };
+    }
+
+    /**
+     * Splits an RFC 4180 record. A quoted field runs to the next lone quote, two quotes inside it are one.
+     */
+    static List<String> fields(String record) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static int column(List<String> columns, String name) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).trim().toLowerCase(Locale.ROOT).equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("The CSV header has no " + name + " column: " + columns);
+    }
+}
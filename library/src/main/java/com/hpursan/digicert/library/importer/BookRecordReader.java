@@ -0,0 +1,136 @@
+package com.hpursan.digicert.library.importer;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Splits an import file into records, a line each except for a CSV record with line breaks inside quotes. Only the
+ * boundaries are found here, on the one thread reading the file, the parsing is left to {@link BookRecordParser}.
+ * Blank lines are skipped.
+ */
+class BookRecordReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final BookImportFormat format;
+    private final CountingInputStream in;
+    private final BufferedReader reader;
+    private long line;
+
+    BookRecordReader(Path file, BookImportFormat format) throws IOException {
+        this.format = format;
+        this.in = new CountingInputStream(Files.newInputStream(file));
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * @return the next record, or null at the end of the file
+     */
+    BookRecord next() throws IOException {
+        String text = reader.readLine();
+        while (text != null && text.isBlank()) {
+            line++;
+            text = reader.readLine();
+        }
+        if (text == null) {
+            return null;
+        }
+        line++;
+        // the byte order mark some tools put at the start of a UTF-8 file
+        if (line == 1 && text.startsWith("\uFEFF")) {
+            text = text.substring(1);
+        }
+        long start = line;
+        if (format == BookImportFormat.CSV && quotes(text) % 2 != 0) {
+            // an odd number of quotes leaves a field open, it carries on past the line break
+            StringBuilder record = new StringBuilder(text);
+            int open = quotes(text);
+            while (open % 2 != 0) {
+                String more = reader.readLine();
+                if (more == null) {
+                    break;
+                }
+                line++;
+                record.append('\n').append(more);
+                open += quotes(more);
+            }
+            text = record.toString();
+        }
+        return new BookRecord(start, text);
+    }
+
+    /**
+     * Reads past {@code records} records without returning them.
+     */
+    void skip(long records) throws IOException {
+        for (long i = 0; i < records && next() != null; i++) {
+            // just reading
+        }
+    }
+
+    /**
+     * @return how far into the file reading has got, a little ahead of the records returned so far
+     */
+    long bytesRead() {
+        return in.count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private static int quotes(String text) {
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '"') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static final class BookRecord {
+        // the line the record starts on, for the error file
+        private final long line;
+        private final String text;
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        // written by the reading thread only, read for progress reports
+        private volatile long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
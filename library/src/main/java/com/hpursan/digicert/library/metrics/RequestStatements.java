@@ -0,0 +1,67 @@
+package com.hpursan.digicert.library.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The SQL statements issued while the current thread serves a request. Nothing is recorded outside a request.
+ */
+final class RequestStatements {
+    private static final ThreadLocal<RequestStatements> CURRENT = new ThreadLocal<>();
+
+    private final Map<String, Integer> counts = new HashMap<>();
+    private int count;
+    private String mostRepeated;
+    private int mostRepeatedCount;
+
+    static void begin() {
+        if (CURRENT.get() == null) {
+            CURRENT.set(new RequestStatements());
+        }
+    }
+
+    /**
+     * Carries on recording into statements an earlier {@link #end()} returned, on whichever thread now serves the
+     * request.
+     */
+    static void resume(RequestStatements statements) {
+        CURRENT.set(statements);
+    }
+
+    /**
+     * @return what was recorded since {@link #begin()}, null if that already ended
+     */
+    static RequestStatements end() {
+        RequestStatements statements = CURRENT.get();
+        CURRENT.remove();
+        return statements;
+    }
+
+    static void record(String sql) {
+        RequestStatements statements = CURRENT.get();
+        if (statements != null) {
+            statements.add(sql);
+        }
+    }
+
+    int count() {
+        return count;
+    }
+
+    String mostRepeated() {
+        return mostRepeated;
+    }
+
+    int mostRepeatedCount() {
+        return mostRepeatedCount;
+    }
+
+    private void add(String sql) {
+        count++;
+        int repeated = counts.merge(sql, 1, Integer::sum);
+        if (repeated > mostRepeatedCount) {
+            mostRepeated = sql;
+            mostRepeatedCount = repeated;
+        }
+    }
+}
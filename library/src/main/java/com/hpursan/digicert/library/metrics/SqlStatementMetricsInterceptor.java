@@ -0,0 +1,95 @@
+package com.hpursan.digicert.library.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records how many SQL statements each request issued, tagged by HTTP method and URI pattern like
+ * {@code http.server.requests}. A request that runs the same statement at least {@code repeatedStatementThreshold}
+ * times is counted, and logged, as a likely N+1: one query for a list, then one more per element.
+ * <p>
+ * An async request, like the change feed's event stream, hands its thread back before it completes. What it counted
+ * so far is parked on the request then, and picked up again by the dispatch that completes it, so nothing is left
+ * behind on a pooled thread.
+ */
+@Slf4j
+public class SqlStatementMetricsInterceptor implements AsyncHandlerInterceptor {
+    public static final String STATEMENTS = "library.sql.statements";
+    public static final String N_PLUS_ONE = "library.sql.n_plus_one";
+    private static final String SUSPENDED = SqlStatementMetricsInterceptor.class.getName() + ".SUSPENDED";
+
+    private final MeterRegistry meterRegistry;
+    private final int repeatedStatementThreshold;
+    private final Map<String, Meters> meters = new ConcurrentHashMap<>();
+
+    public SqlStatementMetricsInterceptor(MeterRegistry meterRegistry, int repeatedStatementThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.repeatedStatementThreshold = repeatedStatementThreshold;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getAttribute(SUSPENDED) instanceof RequestStatements suspended) {
+            request.removeAttribute(SUSPENDED);
+            RequestStatements.resume(suspended);
+        } else {
+            RequestStatements.begin();
+        }
+        return true;
+    }
+
+    // instead of afterCompletion, which only the dispatch that completes the request gets
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        RequestStatements statements = RequestStatements.end();
+        if (statements != null) {
+            request.setAttribute(SUSPENDED, statements);
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        RequestStatements statements = RequestStatements.end();
+        if (statements == null) {
+            return;
+        }
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+        Meters endpoint = meters.computeIfAbsent(request.getMethod() + " " + uri, key -> new Meters(request.getMethod(), uri));
+
+        endpoint.statements.record(statements.count());
+        if (statements.mostRepeatedCount() >= repeatedStatementThreshold) {
+            endpoint.nPlusOne.increment();
+            log.warn("Possible N+1 in {} {}: {} statements, this one {} times: {}", request.getMethod(), uri,
+                statements.count(), statements.mostRepeatedCount(), statements.mostRepeated());
+        }
+    }
+
+    private class Meters {
+        private final DistributionSummary statements;
+        private final Counter nPlusOne;
+
+        Meters(String method, String uri) {
+            this.statements = DistributionSummary.builder(STATEMENTS)
+                .description("SQL statements issued per request")
+                .baseUnit("statements")
+                .tag("method", method)
+                .tag("uri", uri)
+                .register(meterRegistry);
+            this.nPlusOne = Counter.builder(N_PLUS_ONE)
+                .description("Requests that ran the same SQL statement repeatedly")
+                .tag("method", method)
+                .tag("uri", uri)
+                .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.hpursan.digicert.library.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts every statement Hibernate prepares against the request being served, see
+ * {@link SqlStatementMetricsInterceptor}. A batched insert is prepared once however many rows it writes.
+ */
+public class StatementCountingInspector implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        RequestStatements.record(sql);
+        return sql;
+    }
+}
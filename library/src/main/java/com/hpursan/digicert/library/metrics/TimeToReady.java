@@ -0,0 +1,34 @@
+package com.hpursan.digicert.library.metrics;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Records how long after the JVM started the application began accepting traffic, as a {@code library.ready} step
+ * in {@code /actuator/startup}. That is after the catalog was loaded and the in-memory indexes were built, which the
+ * framework's own steps don't cover.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TimeToReady {
+    public static final String STARTUP_STEP = "library.ready";
+
+    private final ApplicationStartup applicationStartup;
+
+    @EventListener
+    public void onReadiness(AvailabilityChangeEvent<ReadinessState> event) {
+        if (event.getState() == ReadinessState.ACCEPTING_TRAFFIC) {
+            long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+            applicationStartup.start(STARTUP_STEP).tag("timeToReadyMs", Long.toString(uptime)).end();
+            log.info("Accepting traffic {} ms after the JVM started", uptime);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.hpursan.digicert.library.reactive;
+
+import com.hpursan.digicert.library.controller.BookController;
+import com.hpursan.digicert.library.controller.BookCursor;
+import com.hpursan.digicert.library.controller.BookETags;
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.service.BookService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * The reactive versions of the servlet API's reads. Responses look the same: the same JSON, the same cursors and the
+ * same status codes.
+ */
+@RequiredArgsConstructor
+public class ReactiveBookHandler {
+    private final ReactiveBookRepository bookRepository;
+    private final int exportChunkSize;
+
+    public Mono<ServerResponse> getBook(ServerRequest request) {
+        long id;
+        try {
+            id = Long.parseLong(request.pathVariable("id"));
+        } catch (NumberFormatException ex) {
+            return ServerResponse.badRequest().build();
+        }
+        return bookRepository.findById(id)
+            .flatMap(book -> ServerResponse.ok()
+                .eTag(BookETags.of(book))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(book))
+            .switchIfEmpty(ServerResponse.notFound().build());
+    }
+
+    public Mono<ServerResponse> listBooks(ServerRequest request) {
+        String title = request.queryParam("title").orElse(null);
+        String author = request.queryParam("author").orElse(null);
+        Long after;
+        int limit;
+        try {
+            String cursor = request.queryParam("after").orElse(null);
+            after = BookCursor.decode(cursor);
+            if (BookCursor.decodeKey(cursor) != null) {
+                // a cursor from a sorted search, these pages are in id order
+                return ServerResponse.badRequest().build();
+            }
+            limit = request.queryParam("limit").map(Integer::parseInt).orElse(BookService.DEFAULT_PAGE_SIZE);
+        } catch (IllegalArgumentException ex) {
+            return ServerResponse.badRequest().build();
+        }
+
+        // same bounds as BookService, and one extra row to know whether there's a next page
+        int pageSize = Math.min(Math.max(limit, 1), BookService.MAX_PAGE_SIZE);
+        return bookRepository.findPage(title, author, after == null ? 0L : after, pageSize + 1)
+            .collectList()
+            .flatMap(rows -> page(request, rows, pageSize));
+    }
+
+    public Mono<ServerResponse> exportBooks(ServerRequest request) {
+        // written as the rows arrive, and only as fast as the client reads them
+        return ServerResponse.ok()
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .body(bookRepository.findAll(exportChunkSize), Book.class);
+    }
+
+    private static Mono<ServerResponse> page(ServerRequest request, List<Book> rows, int pageSize) {
+        if (rows.isEmpty()) {
+            return ServerResponse.noContent().build();
+        }
+        if (rows.size() <= pageSize) {
+            return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(rows);
+        }
+        List<Book> books = rows.subList(0, pageSize);
+        String cursor = BookCursor.encode(books.get(pageSize - 1).getId());
+        String next = request.uriBuilder().replaceQueryParam("after", cursor).build().toString();
+        return ServerResponse.ok()
+            .header(BookController.NEXT_CURSOR_HEADER, cursor)
+            .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(books);
+    }
+}
@@ -0,0 +1,84 @@
+package com.hpursan.digicert.library.reactive;
+
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.repository.BookSpecifications;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.Readable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Reads books over R2DBC for the reactive API. It only ever reads, books are written through
+ * {@link com.hpursan.digicert.library.service.BookService}. It owns its connection pool and closes it with the
+ * application context.
+ */
+public class ReactiveBookRepository implements AutoCloseable {
+    private static final String SELECT = "SELECT id, title, author, isbn, version FROM books";
+
+    private final ConnectionPool connectionPool;
+    private final DatabaseClient databaseClient;
+
+    public ReactiveBookRepository(ConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+        this.databaseClient = DatabaseClient.create(connectionPool);
+    }
+
+    public Mono<Book> findById(long id) {
+        return databaseClient.sql(SELECT + " WHERE id = :id")
+            .bind("id", id)
+            .map(ReactiveBookRepository::toBook)
+            .one();
+    }
+
+    /**
+     * A keyset page in id order, the same as the servlet API's. Title and author match anywhere ignoring case, and
+     * both have to match when both are given.
+     */
+    public Flux<Book> findPage(String title, String author, long after, int limit) {
+        StringBuilder sql = new StringBuilder(SELECT).append(" WHERE id > :after");
+        if (title != null) {
+            sql.append(" AND UPPER(title) LIKE :title ESCAPE '\\'");
+        }
+        if (author != null) {
+            sql.append(" AND UPPER(author) LIKE :author ESCAPE '\\'");
+        }
+        sql.append(" ORDER BY id LIMIT :limit");
+
+        DatabaseClient.GenericExecuteSpec query = databaseClient.sql(sql.toString())
+            .bind("after", after)
+            .bind("limit", limit);
+        if (title != null) {
+            query = query.bind("title", BookSpecifications.containsPattern(title));
+        }
+        if (author != null) {
+            query = query.bind("author", BookSpecifications.containsPattern(author));
+        }
+        return query.map(ReactiveBookRepository::toBook).all();
+    }
+
+    /**
+     * Every book in id order. The next chunk is only queried once the subscriber has asked for more than the
+     * previous one held, so a slow reader holds at most a couple of chunks in memory however large the catalog is.
+     */
+    public Flux<Book> findAll(int chunkSize) {
+        return findPage(null, null, 0L, chunkSize).collectList()
+            .expand(chunk -> chunk.size() < chunkSize
+                ? Mono.empty()
+                : findPage(null, null, chunk.get(chunk.size() - 1).getId(), chunkSize).collectList())
+            .concatMapIterable(Function.<List<Book>>identity());
+    }
+
+    @Override
+    public void close() {
+        connectionPool.dispose();
+    }
+
+    private static Book toBook(Readable row) {
+        return new Book(row.get("id", Long.class), row.get("title", String.class), row.get("author", String.class),
+            row.get("isbn", String.class), row.get("version", Long.class));
+    }
+}
@@ -0,0 +1,205 @@
+package com.hpursan.digicert.library.replica;
+
+import com.hpursan.digicert.library.event.BookChangedEvent;
+import com.hpursan.digicert.library.event.BooksCreatedEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.sql.init.SqlDataSourceScriptDatabaseInitializer;
+import org.springframework.boot.sql.init.DatabaseInitializationSettings;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stands in for database replication when the replicas are local H2 databases. At startup the replicas get the schema
+ * and a copy of the primary's books. After that every committed change is copied over by a background thread,
+ * {@code delay} after the commit, in batches. Each change is applied by copying the book's current row from the
+ * primary, or deleting it when the primary has none, so a batch never needs the events' contents.
+ * <p>
+ * Real replicas replicate themselves, this is only here to run and test the routing locally.
+ */
+@Slf4j
+public class LocalReplication implements InitializingBean, DisposableBean {
+    private static final int BATCH_SIZE = 500;
+    private static final String COLUMNS = "id, title, author, isbn, version";
+    private static final RowMapper<Object[]> ROW = (rs, row) -> new Object[]{
+        rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getLong(5)};
+
+    private final ReadWriteRoutingDataSource dataSource;
+    private final DatabaseInitializationSettings schema;
+    private final Duration delay;
+    private final BlockingQueue<Change> changes = new LinkedBlockingQueue<>();
+    // queued or being copied
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Thread replicator = Thread.ofPlatform().name("local-replication").daemon().unstarted(this::replicate);
+    private volatile boolean running = true;
+
+    /**
+     * @param schema how the primary's schema is created, its data scripts are ignored
+     */
+    public LocalReplication(ReadWriteRoutingDataSource dataSource, DatabaseInitializationSettings schema, Duration delay,
+                            MeterRegistry meterRegistry) {
+        this.dataSource = dataSource;
+        this.schema = schema;
+        this.delay = delay;
+        Gauge.builder("library.replicas.pending", pending, AtomicInteger::get)
+            .description("Changes committed on the primary and not yet copied to the local replicas")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        schema.setDataLocations(List.of());
+        for (DataSource replica : dataSource.getReplicas()) {
+            long start = System.nanoTime();
+            new SqlDataSourceScriptDatabaseInitializer(replica, schema).initializeDatabase();
+            long rows = copyAll(replica);
+            log.info("Copied {} books to replica {} in {} ms", rows, replica, (System.nanoTime() - start) / 1_000_000);
+        }
+        replicator.start();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        replicator.interrupt();
+        replicator.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        pending.incrementAndGet();
+        changes.add(new Change(event.getId(), System.nanoTime() + delay.toNanos()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksCreated(BooksCreatedEvent event) {
+        long due = System.nanoTime() + delay.toNanos();
+        pending.addAndGet(event.getIds().size());
+        event.getIds().forEach(id -> changes.add(new Change(id, due)));
+    }
+
+    /**
+     * @return whether every change committed so far has reached the replicas
+     */
+    public boolean isCaughtUp() {
+        return pending.get() == 0;
+    }
+
+    private long copyAll(DataSource replica) {
+        JdbcTemplate primary = new JdbcTemplate(dataSource.getPrimary());
+        primary.setFetchSize(BATCH_SIZE);
+        JdbcTemplate target = new JdbcTemplate(replica);
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        long[] rows = {0};
+        new TransactionTemplate(new DataSourceTransactionManager(replica)).executeWithoutResult(status -> {
+            primary.query("SELECT " + COLUMNS + " FROM books", rs -> {
+                batch.add(ROW.mapRow(rs, 0));
+                if (batch.size() == BATCH_SIZE) {
+                    rows[0] += insert(target, batch);
+                }
+            });
+            rows[0] += insert(target, batch);
+        });
+        return rows[0];
+    }
+
+    private void replicate() {
+        while (running) {
+            try {
+                Change first = changes.take();
+                long wait = first.due - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                List<Change> batch = new ArrayList<>();
+                batch.add(first);
+                // everything else that is due by now goes along in the same batch
+                for (Change next = changes.peek(); next != null && batch.size() < BATCH_SIZE && next.due <= System.nanoTime(); next = changes.peek()) {
+                    batch.add(changes.poll());
+                }
+                copy(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void copy(List<Change> batch) {
+        Set<Long> ids = new LinkedHashSet<>();
+        batch.forEach(change -> ids.add(change.id));
+        try {
+            apply(ids);
+            pending.addAndGet(-batch.size());
+        } catch (RuntimeException ex) {
+            log.error("Could not copy {} changes to the replicas, trying again in a second", batch.size(), ex);
+            long retry = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+            batch.forEach(change -> changes.add(new Change(change.id, retry)));
+        }
+    }
+
+    private void apply(Set<Long> ids) {
+        NamedParameterJdbcTemplate primary = new NamedParameterJdbcTemplate(dataSource.getPrimary());
+        for (DataSource replica : dataSource.getReplicas()) {
+            NamedParameterJdbcTemplate target = new NamedParameterJdbcTemplate(replica);
+            new TransactionTemplate(new DataSourceTransactionManager(replica)).executeWithoutResult(status -> {
+                Set<Long> batch = new HashSet<>(ids);
+                List<Object[]> rows = primary.query("SELECT " + COLUMNS + " FROM books WHERE id IN (:ids)", Map.of("ids", batch), ROW);
+                // a replica row may still hold an ISBN the primary has since given to one of these books. It has
+                // changed too then, so it is copied along with them
+                List<String> isbns = rows.stream().map(row -> (String) row[3]).toList();
+                if (!isbns.isEmpty()) {
+                    List<Long> displaced = target.queryForList("SELECT id FROM books WHERE isbn IN (:isbns) AND id NOT IN (:ids)",
+                        Map.of("isbns", isbns, "ids", batch), Long.class);
+                    if (!displaced.isEmpty()) {
+                        batch.addAll(displaced);
+                        rows = primary.query("SELECT " + COLUMNS + " FROM books WHERE id IN (:ids)", Map.of("ids", batch), ROW);
+                    }
+                }
+                target.update("DELETE FROM books WHERE id IN (:ids)", Map.of("ids", batch));
+                insert(target.getJdbcTemplate(), rows);
+            });
+        }
+    }
+
+    private static int insert(JdbcTemplate target, List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        int count = rows.size();
+        target.batchUpdate("INSERT INTO books (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?)", rows);
+        rows.clear();
+        return count;
+    }
+
+    private static final class Change {
+        private final long id;
+        // System.nanoTime() from when on it may be copied
+        private final long due;
+
+        private Change(long id, long due) {
+            this.id = id;
+            this.due = due;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.hpursan.digicert.library.replica;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends read-only transactions to the replicas and everything else to the primary.
+ * <p>
+ * Connections are handed out lazily: the transaction manager marks a connection read-only before the first statement
+ * runs, and only then is a real connection taken, from a replica for a read-only one. Replicas take turns. A replica
+ * that can't hand out a connection is skipped, and when none can the primary serves the read. Reads go to the
+ * primary as well while {@link ReplicaRouting#isPrimaryOnly()}.
+ * <p>
+ * Anything that runs outside a read-only transaction, a query without a transaction included, uses the primary.
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends LazyConnectionDataSourceProxy implements Closeable {
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas) {
+        super(primary);
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        setReadOnlyDataSource(new Replicas());
+        afterPropertiesSet();
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public List<DataSource> getReplicas() {
+        return replicas;
+    }
+
+    @Override
+    public void close() {
+        for (DataSource replica : replicas) {
+            closeQuietly(replica);
+        }
+        closeQuietly(primary);
+    }
+
+    private static void closeQuietly(DataSource dataSource) {
+        if (dataSource instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception ex) {
+                log.warn("Could not close {}", dataSource, ex);
+            }
+        }
+    }
+
+    private final class Replicas extends AbstractDataSource {
+        private final AtomicInteger next = new AtomicInteger();
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (replicas.isEmpty() || ReplicaRouting.isPrimaryOnly()) {
+                return primary.getConnection();
+            }
+            int first = next.getAndIncrement();
+            for (int i = 0; i < replicas.size(); i++) {
+                DataSource replica = replicas.get(Math.floorMod(first + i, replicas.size()));
+                try {
+                    return replica.getConnection();
+                } catch (SQLException ex) {
+                    log.warn("Replica {} has no connection for us, trying the next one", replica, ex);
+                }
+            }
+            return primary.getConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            throw new UnsupportedOperationException("Replicas are connected to with their own credentials");
+        }
+    }
+}
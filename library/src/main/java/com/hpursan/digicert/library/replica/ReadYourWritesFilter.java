@@ -0,0 +1,136 @@
+package com.hpursan.digicert.library.replica;
+
+import com.hpursan.digicert.library.event.BookChangedEvent;
+import com.hpursan.digicert.library.event.BooksCreatedEvent;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * Read-your-writes for a client whose replica may not have caught up with its own change yet. A request that changed
+ * a book gets a cookie saying until when its client reads from the primary, {@code window} from the commit, and the
+ * requests that come back with it are served by the primary until then. Everyone else keeps reading the replicas.
+ * <p>
+ * The time in the cookie is signed, so a client can't move it forward and keep itself on the primary. Instances
+ * behind one load balancer need the same key to accept each other's cookies.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    public static final String COOKIE = "LIBRARY_PRIMARY_UNTIL";
+    private static final String WROTE = ReadYourWritesFilter.class.getName() + ".WROTE";
+    private static final String HMAC = "HmacSHA256";
+
+    private final Duration window;
+    private final SecretKeySpec key;
+
+    /**
+     * @param key signs the cookies, a random one is made when null or empty
+     */
+    public ReadYourWritesFilter(Duration window, String key) {
+        this.window = window;
+        byte[] secret;
+        if (key == null || key.isEmpty()) {
+            secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+        } else {
+            secret = key.getBytes(StandardCharsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(secret, HMAC);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+        throws ServletException, IOException {
+        long now = System.currentTimeMillis();
+        ReplicaRouting.primaryOnly(primaryUntil(request, now) > now);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReplicaRouting.primaryOnly(false);
+        }
+    }
+
+    // on the thread that committed, which for the API is the request's, before the response is written
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        wrote();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksCreated(BooksCreatedEvent event) {
+        wrote();
+    }
+
+    private void wrote() {
+        if (window.isZero() || !(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)
+            || attributes.getResponse() == null || attributes.getRequest().getAttribute(WROTE) != null) {
+            return;
+        }
+        attributes.getRequest().setAttribute(WROTE, Boolean.TRUE);
+        // anything else this request reads should see the change too
+        ReplicaRouting.primaryOnly(true);
+
+        long until = System.currentTimeMillis() + window.toMillis();
+        Cookie cookie = new Cookie(COOKIE, until + "." + sign(until));
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge((int) ((window.toMillis() + 999) / 1000));
+        attributes.getResponse().addCookie(cookie);
+    }
+
+    /**
+     * @return the time in the request's cookie, 0 when there is none or its signature doesn't match
+     */
+    private long primaryUntil(HttpServletRequest request, long now) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return 0;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE.equals(cookie.getName())) {
+                String value = cookie.getValue();
+                int dot = value.indexOf('.');
+                long until;
+                try {
+                    until = Long.parseLong(value.substring(0, Math.max(dot, 0)));
+                } catch (NumberFormatException ex) {
+                    return 0;
+                }
+                byte[] signature = value.substring(dot + 1).getBytes(StandardCharsets.US_ASCII);
+                if (!MessageDigest.isEqual(sign(until).getBytes(StandardCharsets.US_ASCII), signature)) {
+                    return 0;
+                }
+                // never more than a window ahead, however far the clock of the instance that signed it runs ahead
+                return Math.min(until, now + window.toMillis());
+            }
+        }
+        return 0;
+    }
+
+    private String sign(long until) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(key);
+            byte[] signature = mac.doFinal(Long.toString(until).getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+        } catch (GeneralSecurityException ex) {
+            // every JVM has HmacSHA256
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.hpursan.digicert.library.replica;
+
+import java.util.function.Supplier;
+
+/**
+ * Whether the current thread's read-only transactions may go to a replica. By default they may, see
+ * {@link ReadWriteRoutingDataSource}. Without replicas this decides nothing.
+ */
+public final class ReplicaRouting {
+    private static final ThreadLocal<Boolean> PRIMARY = new ThreadLocal<>();
+
+    private ReplicaRouting() {
+    }
+
+    public static boolean isPrimaryOnly() {
+        return Boolean.TRUE.equals(PRIMARY.get());
+    }
+
+    /**
+     * Runs {@code work} with every connection it opens coming from the primary, for reads that must not see a
+     * replica that is behind.
+     */
+    public static <T> T onPrimary(Supplier<T> work) {
+        Boolean previous = PRIMARY.get();
+        PRIMARY.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            PRIMARY.set(previous);
+        }
+    }
+
+    // for the rest of the request, see ReadYourWritesFilter
+    static void primaryOnly(boolean primary) {
+        if (primary) {
+            PRIMARY.set(Boolean.TRUE);
+        } else {
+            PRIMARY.remove();
+        }
+    }
+}
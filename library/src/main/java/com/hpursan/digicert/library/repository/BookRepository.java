@@ -1,14 +1,46 @@
 package com.hpursan.digicert.library.repository;
 
 import com.hpursan.digicert.library.domain.Book;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface BookRepository extends JpaRepository<Book, Long> {
+public interface BookRepository extends JpaRepository<Book, Long>, BookSearchRepository, BookWriteRepository, BookStore {
+    int EXPORT_FETCH_SIZE = 1000;
+
     List<Book> findByTitleContainingIgnoreCase(String title);
     List<Book> findByAuthorContainingIgnoreCase(String author);
+    Optional<Book> findByIsbn(String isbn);
+
+    // keyset pages: each one is a range scan on the primary key starting just after the cursor id
+    List<Book> findByIdGreaterThanOrderByIdAsc(Long after, Limit limit);
+    List<Book> findByTitleContainingIgnoreCaseAndIdGreaterThanOrderByIdAsc(String title, Long after, Limit limit);
+    List<Book> findByAuthorContainingIgnoreCaseAndIdGreaterThanOrderByIdAsc(String author, Long after, Limit limit);
+
+    // detached copies, a bulk delete only needs to know which rows there were and what they held
+    @Query("SELECT new com.hpursan.digicert.library.domain.Book(b.id, b.title, b.author, b.isbn, b.version) FROM Book b WHERE b.id IN :ids")
+    List<Book> findSnapshotsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // must be consumed inside a transaction and closed, rows are pulled from the cursor EXPORT_FETCH_SIZE at a time
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<Book> streamAllByOrderByIdAsc();
+
+    @Override
+    default BookSearchRepository searches() {
+        return this;
+    }
 }
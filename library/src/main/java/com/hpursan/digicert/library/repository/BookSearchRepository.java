@@ -0,0 +1,24 @@
+package com.hpursan.digicert.library.repository;
+
+import com.hpursan.digicert.library.domain.Book;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Combined searches built from {@link BookSpecifications}.
+ */
+public interface BookSearchRepository {
+
+    /**
+     * Runs the specification as a single select, sorted and cut off at {@code limit} rows by the database.
+     */
+    List<Book> search(Specification<Book> specification, Sort sort, int limit);
+
+    /**
+     * Like {@link #search} but selects only the given properties, each row holds their values in the same order.
+     * Rows aren't managed entities, so nothing ends up in the persistence context.
+     */
+    List<Object[]> searchProperties(Specification<Book> specification, Sort sort, int limit, List<String> properties);
+}
@@ -0,0 +1,53 @@
+package com.hpursan.digicert.library.repository;
+
+import com.hpursan.digicert.library.domain.Book;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// JpaSpecificationExecutor.findBy would do the same, but in this version of spring data it repeats every order by
+// column, and H2 then can't match the order to an index and sorts the whole table instead
+@RequiredArgsConstructor
+class BookSearchRepositoryImpl implements BookSearchRepository {
+    private final EntityManager entityManager;
+
+    @Override
+    public List<Book> search(Specification<Book> specification, Sort sort, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Book> query = cb.createQuery(Book.class);
+        Root<Book> root = query.from(Book.class);
+        Predicate where = specification == null ? null : specification.toPredicate(root, query, cb);
+        if (where != null) {
+            query.where(where);
+        }
+        query.select(root).orderBy(QueryUtils.toOrders(sort, root, cb));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public List<Object[]> searchProperties(Specification<Book> specification, Sort sort, int limit, List<String> properties) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
+        Root<Book> root = query.from(Book.class);
+        Predicate where = specification == null ? null : specification.toPredicate(root, query, cb);
+        if (where != null) {
+            query.where(where);
+        }
+        List<Selection<?>> columns = new ArrayList<>(properties.size());
+        for (String property : properties) {
+            columns.add(root.get(property));
+        }
+        query.multiselect(columns).orderBy(QueryUtils.toOrders(sort, root, cb));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+}
@@ -0,0 +1,109 @@
+package com.hpursan.digicert.library.repository;
+
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.dto.BookSearch;
+import com.hpursan.digicert.library.dto.BookSort;
+import jakarta.persistence.criteria.Path;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Locale;
+
+/**
+ * Builds the combined search as a single query. Every sort order has a matching index in schema.sql, so the rows are
+ * read in index order and the query stops once it has a page. An ISBN prefix becomes a range on the ISBN index and a
+ * keyset cursor a range on the sort index.
+ */
+public final class BookSpecifications {
+    private static final String ID = "id";
+    private static final String ISBN = "isbn";
+    private static final char ESCAPE = '\\';
+
+    private BookSpecifications() {
+    }
+
+    public static Specification<Book> matching(BookSearch search) {
+        return Specification.allOf(
+            containsIgnoreCase(BookSort.TITLE.getProperty(), search.getTitle()),
+            containsIgnoreCase(BookSort.AUTHOR.getProperty(), search.getAuthor()),
+            isbnStartsWith(search.getIsbnPrefix()));
+    }
+
+    /**
+     * @return the rows that come after the book at {@code afterId} with sort value {@code afterKey}, everything on
+     * the first page
+     */
+    public static Specification<Book> after(BookSearch search, Long afterId, String afterKey) {
+        if (afterId == null) {
+            return null;
+        }
+        BookSort sort = search.getSort();
+        boolean descending = search.isDescending();
+        if (sort == BookSort.ID) {
+            if (afterKey != null) {
+                throw new IllegalArgumentException("The cursor is not for books sorted by id");
+            }
+            return (root, query, cb) -> descending
+                ? cb.lessThan(root.<Long>get(ID), afterId)
+                : cb.greaterThan(root.<Long>get(ID), afterId);
+        }
+        if (afterKey == null) {
+            throw new IllegalArgumentException("The cursor is not for books sorted by " + sort.getProperty());
+        }
+        if (!sort.isTieBrokenById()) {
+            return (root, query, cb) -> {
+                Path<String> key = root.get(sort.getProperty());
+                return descending ? cb.lessThan(key, afterKey) : cb.greaterThan(key, afterKey);
+            };
+        }
+        // (key, id) > (afterKey, afterId), with the redundant key >= afterKey so the database can seek to it
+        return (root, query, cb) -> {
+            Path<String> key = root.get(sort.getProperty());
+            Path<Long> id = root.get(ID);
+            return descending
+                ? cb.and(cb.lessThanOrEqualTo(key, afterKey), cb.or(cb.lessThan(key, afterKey), cb.lessThan(id, afterId)))
+                : cb.and(cb.greaterThanOrEqualTo(key, afterKey), cb.or(cb.greaterThan(key, afterKey), cb.greaterThan(id, afterId)));
+        };
+    }
+
+    public static Sort sort(BookSearch search) {
+        Sort.Direction direction = search.isDescending() ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort sort = Sort.by(direction, search.getSort().getProperty());
+        return search.getSort().isTieBrokenById() ? sort.and(Sort.by(direction, ID)) : sort;
+    }
+
+    /**
+     * @return a {@code LIKE} pattern, escaped with a backslash, that matches the upper cased column when it contains
+     * {@code value} ignoring case
+     */
+    public static String containsPattern(String value) {
+        return "%" + escape(value.toUpperCase(Locale.ROOT)) + "%";
+    }
+
+    private static Specification<Book> containsIgnoreCase(String attribute, String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String pattern = containsPattern(value);
+        return (root, query, cb) -> cb.like(cb.upper(root.<String>get(attribute)), pattern, ESCAPE);
+    }
+
+    // a range rather than LIKE 'prefix%', so it is an index seek even as a bind parameter
+    private static Specification<Book> isbnStartsWith(String prefix) {
+        if (prefix == null || prefix.isBlank()) {
+            return null;
+        }
+        String from = prefix.replace("-", "").replace(" ", "").toUpperCase(Locale.ROOT);
+        if (from.isEmpty()) {
+            return null;
+        }
+        String to = from.substring(0, from.length() - 1) + (char) (from.charAt(from.length() - 1) + 1);
+        return (root, query, cb) -> cb.and(
+            cb.greaterThanOrEqualTo(root.<String>get(ISBN), from),
+            cb.lessThan(root.<String>get(ISBN), to));
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
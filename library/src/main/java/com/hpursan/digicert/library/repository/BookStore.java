@@ -0,0 +1,58 @@
+package com.hpursan.digicert.library.repository;
+
+import com.hpursan.digicert.library.domain.Book;
+import org.springframework.data.domain.Limit;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Everything the services ask of wherever the books are kept. {@link BookRepository} implements it with JPA on the
+ * primary and {@link com.hpursan.digicert.library.shard.ShardedBooks} with JDBC on the shards, so a method added here
+ * has to be added to both before anything compiles. The methods are named after the Spring Data ones, see
+ * {@link BookRepository} for what each of them does.
+ */
+public interface BookStore extends BookWriteRepository {
+
+    Optional<Book> findById(Long id);
+
+    boolean existsById(Long id);
+
+    List<Book> findAllById(Iterable<Long> ids);
+
+    // detached copies
+    List<Book> findSnapshotsByIdIn(Collection<Long> ids);
+
+    Optional<Book> findByIsbn(String isbn);
+
+    List<Book> findAll();
+
+    long count();
+
+    List<Book> findByTitleContainingIgnoreCase(String title);
+
+    List<Book> findByAuthorContainingIgnoreCase(String author);
+
+    List<Book> findByIdGreaterThanOrderByIdAsc(Long after, Limit limit);
+
+    List<Book> findByTitleContainingIgnoreCaseAndIdGreaterThanOrderByIdAsc(String title, Long after, Limit limit);
+
+    List<Book> findByAuthorContainingIgnoreCaseAndIdGreaterThanOrderByIdAsc(String author, Long after, Limit limit);
+
+    <S extends Book> S save(S book);
+
+    <S extends Book> S saveAndFlush(S book);
+
+    void deleteAllByIdInBatch(Iterable<Long> ids);
+
+    // every book in id order, to be closed by the caller
+    Stream<Book> streamAllByOrderByIdAsc();
+
+    /**
+     * @return the specification searches, with their sorts and projections
+     * @throws UnsupportedOperationException when the books aren't kept where JPA can query them
+     */
+    BookSearchRepository searches();
+}
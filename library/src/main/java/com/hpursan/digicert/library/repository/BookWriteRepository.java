@@ -0,0 +1,39 @@
+package com.hpursan.digicert.library.repository;
+
+import com.hpursan.digicert.library.domain.Book;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Single-statement writes that also hand back the row as it was, read by the same statement that changed it. The
+ * listeners of {@link com.hpursan.digicert.library.event.BookChangedEvent} need the old title, author and ISBN to
+ * drop them from their indexes, and a separate read before the write would cost a statement and could see a row that
+ * changes before the write lands. Also the batch insert, which Spring Data's {@code saveAll} would send a row at a time.
+ */
+public interface BookWriteRepository {
+
+    /**
+     * Sets the non-null fields and bumps the version in one statement, without reading the row first. A field that
+     * isn't patched keeps the value it has when the UPDATE runs, not one read earlier, so two patches of different
+     * fields never undo each other.
+     *
+     * @param version the version the row must still be at, or null for any
+     * @return the book as it was just before the update, empty if there is no such book or it isn't at {@code version}
+     */
+    Optional<Book> patch(Long id, String title, String author, String isbn, Long version);
+
+    /**
+     * Deletes the book in one statement, without loading it first.
+     *
+     * @param version the version the row must still be at, or null for any
+     * @return the book that was deleted, empty if there is no such book or it isn't at {@code version}
+     */
+    Optional<Book> deleteAtVersion(Long id, Long version);
+
+    /**
+     * Inserts the books as JDBC batches, each with a new id from the sequence whatever id it had. The books get their
+     * ids and version 0, and are not managed afterwards.
+     */
+    void insertAll(List<Book> books);
+}
@@ -0,0 +1,89 @@
+package com.hpursan.digicert.library.repository;
+
+import com.hpursan.digicert.library.domain.Book;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// JPQL has no way to return rows from an UPDATE or DELETE, H2's data change delta tables do. Only the patched columns
+// are set, binding a null for COALESCE would leave hibernate to guess its type
+@RequiredArgsConstructor
+class BookWriteRepositoryImpl implements BookWriteRepository {
+    // keep in step with spring.jpa.properties.hibernate.jdbc.batch_size
+    static final int BATCH_SIZE = 50;
+    private static final String OLD_ROW = "SELECT id, title, author, isbn, version FROM OLD TABLE (";
+
+    private final EntityManager entityManager;
+
+    @Override
+    public Optional<Book> patch(Long id, String title, String author, String isbn, Long version) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("title", title);
+        values.put("author", author);
+        values.put("isbn", isbn);
+        values.values().removeIf(value -> value == null);
+        StringBuilder sql = new StringBuilder(OLD_ROW).append("UPDATE books SET ");
+        values.keySet().forEach(column -> sql.append(column).append(" = :").append(column).append(", "));
+        sql.append("version = version + 1");
+        Query query = entityManager.createNativeQuery(where(sql, version));
+        values.forEach(query::setParameter);
+        return oldRow(query, id, version);
+    }
+
+    @Override
+    public Optional<Book> deleteAtVersion(Long id, Long version) {
+        return oldRow(entityManager.createNativeQuery(where(new StringBuilder(OLD_ROW).append("DELETE FROM books"), version)), id, version);
+    }
+
+    // batching only works because book ids come from a pooled sequence rather than an identity column
+    @Override
+    public void insertAll(List<Book> books) {
+        try {
+            for (int i = 0; i < books.size(); i++) {
+                Book book = books.get(i);
+                book.setId(null);
+                entityManager.persist(book);
+
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    // send this batch and let go of the entities, otherwise the persistence context grows with the batch
+                    entityManager.flush();
+                    entityManager.clear();
+                }
+            }
+            entityManager.flush();
+            entityManager.clear();
+        } catch (ConstraintViolationException ex) {
+            // flushing ourselves means nothing translates this for us, e.g. an ISBN taken since the caller checked
+            throw new DataIntegrityViolationException(ex.getMessage(), ex);
+        }
+    }
+
+    private static String where(StringBuilder sql, Long version) {
+        sql.append(" WHERE id = :id");
+        if (version != null) {
+            sql.append(" AND version = :version");
+        }
+        return sql.append(")").toString();
+    }
+
+    private static Optional<Book> oldRow(Query query, Long id, Long version) {
+        query.setParameter("id", id);
+        if (version != null) {
+            query.setParameter("version", version);
+        }
+        List<?> rows = query.getResultList();
+        if (rows.isEmpty()) {
+            return Optional.empty();
+        }
+        Object[] row = (Object[]) rows.get(0);
+        return Optional.of(new Book(((Number) row[0]).longValue(), (String) row[1], (String) row[2], (String) row[3],
+            ((Number) row[4]).longValue()));
+    }
+}
@@ -0,0 +1,206 @@
+package com.hpursan.digicert.library.search;
+
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.event.BookChangedEvent;
+import com.hpursan.digicert.library.event.BooksCreatedEvent;
+import com.hpursan.digicert.library.repository.BookStore;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * In-memory trigram index over book titles and authors, so substring searches don't have to scan the whole table.
+ * <p>
+ * The index only narrows the search down to candidate ids. Candidates are loaded by primary key and checked against
+ * their real text with the same case folding the database applies, so results are exactly those of the
+ * {@code ContainingIgnoreCase} queries, in id order. Queries shorter than a trigram can't be served and callers
+ * should fall back to SQL, as they should while the index is (re)building.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BookSearchIndex {
+    private static final int MIN_VERIFY_CHUNK = 64;
+    private static final int MAX_VERIFY_CHUNK = 1000;
+    private static final int BUILD_CHUNK = 1000;
+
+    private final BookStore bookStore;
+    private final EntityManager entityManager;
+    private final PlatformTransactionManager transactionManager;
+
+    private final TrigramIndex titles = new TrigramIndex();
+    private final TrigramIndex authors = new TrigramIndex();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public boolean canSearch(String query) {
+        return ready && query != null && fold(query).length() >= TrigramIndex.GRAM;
+    }
+
+    /**
+     * @return up to {@code max} books with an id greater than {@code after} whose title contains {@code title}
+     */
+    public List<Book> findByTitle(String title, long after, int max) {
+        return find(titles, Book::getTitle, title, after, max);
+    }
+
+    /**
+     * @return up to {@code max} books with an id greater than {@code after} whose author contains {@code author}
+     */
+    public List<Book> findByAuthor(String author, long after, int max) {
+        return find(authors, Book::getAuthor, author, after, max);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.nanoTime();
+        ready = false;
+        write(() -> {
+            titles.clear();
+            authors.clear();
+        });
+
+        // changes that land while we build are applied as they come, adding is idempotent and anything stale we
+        // add back is filtered out by verification
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        long count = readOnly.execute(status -> {
+            long rows = 0;
+            List<Book> chunk = new ArrayList<>(BUILD_CHUNK);
+            try (Stream<Book> books = bookStore.streamAllByOrderByIdAsc()) {
+                Iterator<Book> iterator = books.iterator();
+                while (iterator.hasNext()) {
+                    Book book = iterator.next();
+                    entityManager.detach(book);
+                    chunk.add(book);
+                    if (chunk.size() == BUILD_CHUNK) {
+                        rows += addAll(chunk);
+                    }
+                }
+            }
+            return rows + addAll(chunk);
+        });
+
+        ready = true;
+        log.info("Indexed {} books ({} title and {} author trigrams) in {} ms", count, titles.trigramCount(),
+            authors.trigramCount(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        write(() -> {
+            Book before = event.getBefore();
+            if (before != null) {
+                titles.remove(event.getId(), fold(before.getTitle()));
+                authors.remove(event.getId(), fold(before.getAuthor()));
+            }
+            Book after = event.getAfter();
+            if (after != null) {
+                titles.add(event.getId(), fold(after.getTitle()));
+                authors.add(event.getId(), fold(after.getAuthor()));
+            }
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksCreated(BooksCreatedEvent event) {
+        event.forEachBook(book -> write(() -> {
+            titles.add(book.getId(), fold(book.getTitle()));
+            authors.add(book.getId(), fold(book.getAuthor()));
+        }));
+    }
+
+    /**
+     * Must match how the database folds case for {@code UPPER(col) LIKE UPPER(?)}, H2 upper cases in English.
+     */
+    static String fold(String text) {
+        return text == null ? "" : text.toUpperCase(Locale.ROOT);
+    }
+
+    private List<Book> find(TrigramIndex index, Function<Book, String> text, String query, long after, int max) {
+        String folded = fold(query);
+        List<Book> matches = new ArrayList<>();
+        int chunk = Math.min(Math.max(max, MIN_VERIFY_CHUNK), MAX_VERIFY_CHUNK);
+        long cursor = after;
+
+        // intersect and verify a chunk at a time, a first page of a common word shouldn't walk every posting
+        while (matches.size() < max) {
+            long[] candidates;
+            lock.readLock().lock();
+            try {
+                candidates = index.candidates(folded, cursor, chunk);
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (candidates.length == 0) {
+                break;
+            }
+
+            List<Long> ids = new ArrayList<>(candidates.length);
+            for (long id : candidates) {
+                ids.add(id);
+            }
+            Map<Long, Book> books = new HashMap<>();
+            for (Book book : bookStore.findAllById(ids)) {
+                books.put(book.getId(), book);
+            }
+
+            for (Long id : ids) {
+                Book book = books.get(id);
+                if (book != null && fold(text.apply(book)).contains(folded)) {
+                    matches.add(book);
+                    if (matches.size() == max) {
+                        break;
+                    }
+                }
+            }
+
+            if (candidates.length < chunk) {
+                break;
+            }
+            cursor = candidates[candidates.length - 1];
+        }
+        return matches;
+    }
+
+    private int addAll(List<Book> books) {
+        int count = books.size();
+        write(() -> {
+            for (Book book : books) {
+                titles.add(book.getId(), fold(book.getTitle()));
+                authors.add(book.getId(), fold(book.getAuthor()));
+            }
+        });
+        books.clear();
+        return count;
+    }
+
+    private void write(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.hpursan.digicert.library.search;
+
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.domain.Isbn;
+import com.hpursan.digicert.library.event.BookChangedEvent;
+import com.hpursan.digicert.library.event.BooksCreatedEvent;
+import com.hpursan.digicert.library.repository.BookStore;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Iterator;
+import java.util.OptionalLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory map from ISBN-13 to book id. ISBN-13s are 13 digits, so they are stored as longs in a primitive hash
+ * map at about 16 bytes a book.
+ * <p>
+ * Once built the map is the authority for which ISBNs exist, a miss needs no query at all. A hit should still be
+ * checked against the book, a change published without the old ISBN leaves its entry behind.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IsbnIndex {
+    private final BookStore bookStore;
+    private final EntityManager entityManager;
+    private final PlatformTransactionManager transactionManager;
+
+    private final LongLongHashMap ids = new LongLongHashMap();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    /**
+     * @return whether {@link #find} can answer for this (normalized) ISBN, otherwise ask the database
+     */
+    public boolean canLookup(String isbn) {
+        return ready && Isbn.toLong(isbn) >= 0;
+    }
+
+    public OptionalLong find(String isbn) {
+        long key = Isbn.toLong(isbn);
+        if (key < 0) {
+            return OptionalLong.empty();
+        }
+        lock.readLock().lock();
+        try {
+            long id = ids.get(key);
+            return id == LongLongHashMap.MISSING ? OptionalLong.empty() : OptionalLong.of(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return whether another book than {@code exceptId} already has this (normalized) ISBN
+     */
+    public boolean isTaken(String isbn, Long exceptId) {
+        if (isbn == null) {
+            return false;
+        }
+        if (canLookup(isbn)) {
+            OptionalLong owner = find(isbn);
+            if (owner.isEmpty() || Long.valueOf(owner.getAsLong()).equals(exceptId)) {
+                return false;
+            }
+        }
+        // a hit may be stale, the database has the final say
+        return bookStore.findByIsbn(isbn).filter(book -> !book.getId().equals(exceptId)).isPresent();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.nanoTime();
+        ready = false;
+        write(ids::clear);
+
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readOnly.executeWithoutResult(status -> {
+            try (Stream<Book> books = bookStore.streamAllByOrderByIdAsc()) {
+                Iterator<Book> iterator = books.iterator();
+                while (iterator.hasNext()) {
+                    Book book = iterator.next();
+                    entityManager.detach(book);
+                    write(() -> put(book.getIsbn(), book.getId()));
+                }
+            }
+        });
+
+        ready = true;
+        log.info("Indexed {} ISBNs in {} ms", ids.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        write(() -> {
+            Book before = event.getBefore();
+            if (before != null) {
+                remove(before.getIsbn(), event.getId());
+            }
+            Book after = event.getAfter();
+            if (after != null) {
+                put(after.getIsbn(), event.getId());
+            }
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksCreated(BooksCreatedEvent event) {
+        event.forEachBook(book -> write(() -> put(book.getIsbn(), book.getId())));
+    }
+
+    /**
+     * Drops an entry a caller found to be stale.
+     */
+    public void evict(String isbn, long id) {
+        write(() -> remove(isbn, id));
+    }
+
+    private void put(String isbn, long id) {
+        long key = Isbn.toLong(isbn);
+        if (key >= 0) {
+            ids.put(key, id);
+        }
+    }
+
+    private void remove(String isbn, long id) {
+        long key = Isbn.toLong(isbn);
+        // only if it still points at this book, the ISBN may already have moved to another one
+        if (key >= 0 && ids.get(key) == id) {
+            ids.remove(key);
+        }
+    }
+
+    private void write(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.hpursan.digicert.library.search;
+
+import java.util.Arrays;
+
+/**
+ * A sorted, duplicate free list of ids backed by a primitive array. Ids are normally appended in increasing order,
+ * so add is amortised O(1) in the common case and a binary search plus shift otherwise.
+ */
+final class LongPostings {
+    private long[] ids = new long[4];
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    long get(int index) {
+        return ids[index];
+    }
+
+    void add(long id) {
+        if (size > 0 && ids[size - 1] < id) {
+            ensureCapacity();
+            ids[size++] = id;
+            return;
+        }
+
+        int pos = Arrays.binarySearch(ids, 0, size, id);
+        if (pos >= 0) {
+            return;
+        }
+        int insertAt = -pos - 1;
+        ensureCapacity();
+        System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+        ids[insertAt] = id;
+        size++;
+    }
+
+    void remove(long id) {
+        int pos = Arrays.binarySearch(ids, 0, size, id);
+        if (pos < 0) {
+            return;
+        }
+        System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+        size--;
+    }
+
+    boolean contains(long id) {
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    /**
+     * @return the position of the first id greater than {@code after}
+     */
+    int firstAfter(long after) {
+        int pos = Arrays.binarySearch(ids, 0, size, after);
+        return pos >= 0 ? pos + 1 : -pos - 1;
+    }
+
+    private void ensureCapacity() {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, ids.length + (ids.length >> 1));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.hpursan.digicert.library.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps every three character sequence of an already case folded text to the ids whose text contains it.
+ * <p>
+ * The postings only ever over-approximate: an id that shows up as a candidate must still be checked against the
+ * real text. Not thread safe, callers guard it.
+ */
+final class TrigramIndex {
+    static final int GRAM = 3;
+
+    private final Map<Long, LongPostings> postings = new HashMap<>();
+
+    void add(long id, String folded) {
+        for (long trigram : trigrams(folded)) {
+            postings.computeIfAbsent(trigram, k -> new LongPostings()).add(id);
+        }
+    }
+
+    void remove(long id, String folded) {
+        for (long trigram : trigrams(folded)) {
+            LongPostings ids = postings.get(trigram);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.size() == 0) {
+                    postings.remove(trigram);
+                }
+            }
+        }
+    }
+
+    void clear() {
+        postings.clear();
+    }
+
+    int trigramCount() {
+        return postings.size();
+    }
+
+    /**
+     * @return up to {@code max} ids greater than {@code after} whose text contains all trigrams of {@code folded},
+     * in id order
+     */
+    long[] candidates(String folded, long after, int max) {
+        List<LongPostings> lists = new ArrayList<>();
+        for (long trigram : trigrams(folded)) {
+            LongPostings ids = postings.get(trigram);
+            if (ids == null) {
+                return new long[0];
+            }
+            lists.add(ids);
+        }
+        if (lists.isEmpty()) {
+            throw new IllegalArgumentException("Query must be at least " + GRAM + " characters to use the index");
+        }
+
+        // walk the rarest list and probe the others, the result can never be longer than the shortest list
+        lists.sort(Comparator.comparingInt(LongPostings::size));
+        LongPostings smallest = lists.get(0);
+        long[] result = new long[Math.min(max, smallest.size())];
+        int count = 0;
+
+        candidate:
+        for (int i = smallest.firstAfter(after); i < smallest.size() && count < result.length; i++) {
+            long id = smallest.get(i);
+            for (int j = 1; j < lists.size(); j++) {
+                if (!lists.get(j).contains(id)) {
+                    continue candidate;
+                }
+            }
+            result[count++] = id;
+        }
+
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    static Set<Long> trigrams(String folded) {
+        Set<Long> trigrams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM <= folded.length(); i++) {
+            trigrams.add(((long) folded.charAt(i) << 32) | ((long) folded.charAt(i + 1) << 16) | folded.charAt(i + 2));
+        }
+        return trigrams;
+    }
+}
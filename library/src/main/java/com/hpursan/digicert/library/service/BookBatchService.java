@@ -0,0 +1,182 @@
+package com.hpursan.digicert.library.service;
+
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.domain.Isbn;
+import com.hpursan.digicert.library.dto.BookBatchDelete;
+import com.hpursan.digicert.library.dto.BookBatchDeleteResult;
+import com.hpursan.digicert.library.dto.BookBatchError;
+import com.hpursan.digicert.library.dto.BookBatchResult;
+import com.hpursan.digicert.library.dto.BookSearch;
+import com.hpursan.digicert.library.event.BookChangedEvent;
+import com.hpursan.digicert.library.event.BooksCreatedEvent;
+import com.hpursan.digicert.library.replica.ReplicaRouting;
+import com.hpursan.digicert.library.repository.BookSearchRepository;
+import com.hpursan.digicert.library.repository.BookSpecifications;
+import com.hpursan.digicert.library.repository.BookStore;
+import com.hpursan.digicert.library.search.IsbnIndex;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Creates or deletes many books in one transaction. Inserts go out as JDBC batches, see {@link BookStore#insertAll}.
+ * Deletes go out as one {@code IN} list per chunk. A delete by filter has no upper bound, so it commits each chunk on
+ * its own.
+ */
+@Service
+@RequiredArgsConstructor
+public class BookBatchService {
+    public static final int MAX_BOOKS = 100_000;
+    // ids per IN list, well inside what a database takes in one statement
+    public static final int DELETE_CHUNK_SIZE = 500;
+
+    private final EntityManager entityManager;
+    private final Validator validator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final IsbnIndex isbnIndex;
+    private final BookStore bookStore;
+    private final PlatformTransactionManager transactionManager;
+
+    @Transactional
+    public BookBatchResult addBooks(List<Book> books) {
+        if (books.size() > MAX_BOOKS) {
+            throw new IllegalArgumentException("A batch can hold at most " + MAX_BOOKS + " books, got " + books.size());
+        }
+
+        List<BookBatchError> errors = validate(books);
+        if (!errors.isEmpty()) {
+            return new BookBatchResult(List.of(), errors);
+        }
+
+        bookStore.insertAll(books);
+        List<Long> ids = new ArrayList<>(books.size());
+        books.forEach(book -> ids.add(book.getId()));
+        // only the ids, the listeners read the books back after commit
+        eventPublisher.publishEvent(new BooksCreatedEvent(ids, this::loadBooks));
+
+        return new BookBatchResult(ids, List.of());
+    }
+
+    /**
+     * Deletes the requested books a chunk at a time, each chunk a select of the rows that are there and a single
+     * delete of them. Ids are deleted in one transaction. A filter can match the whole table, so each of its chunks
+     * is a transaction of its own: the locks and the events waiting for commit never outgrow a chunk, and a failure
+     * part way through leaves the chunks before it deleted.
+     *
+     * @throws UnsupportedOperationException for a filter when the books are sharded, it is a specification search
+     */
+    public BookBatchDeleteResult deleteBooks(BookBatchDelete request) {
+        if (!request.isValid()) {
+            throw new IllegalArgumentException("A bulk delete takes either ids or a filter");
+        }
+        return request.getIds() != null
+            ? new TransactionTemplate(transactionManager).execute(status -> deleteByIds(request.getIds()))
+            : deleteMatching(request);
+    }
+
+    private BookBatchDeleteResult deleteByIds(List<Long> ids) {
+        Set<Long> distinct = new LinkedHashSet<>(ids);
+        if (distinct.size() > MAX_BOOKS) {
+            throw new IllegalArgumentException("A batch can hold at most " + MAX_BOOKS + " books, got " + distinct.size());
+        }
+
+        int deleted = 0;
+        List<Long> notFound = new ArrayList<>();
+        List<Long> chunk = new ArrayList<>(DELETE_CHUNK_SIZE);
+        Iterator<Long> iterator = distinct.iterator();
+        while (iterator.hasNext()) {
+            chunk.add(iterator.next());
+            if (chunk.size() == DELETE_CHUNK_SIZE || !iterator.hasNext()) {
+                List<Book> found = bookStore.findSnapshotsByIdIn(chunk);
+                deleted += delete(found);
+                Set<Long> foundIds = new HashSet<>();
+                found.forEach(book -> foundIds.add(book.getId()));
+                chunk.stream().filter(id -> !foundIds.contains(id)).forEach(notFound::add);
+                chunk.clear();
+            }
+        }
+        return new BookBatchDeleteResult(deleted, notFound);
+    }
+
+    private BookBatchDeleteResult deleteMatching(BookBatchDelete request) {
+        BookSearchRepository searches = bookStore.searches();
+        BookSearch search = new BookSearch();
+        search.setTitle(request.getTitle());
+        search.setAuthor(request.getAuthor());
+        search.setIsbnPrefix(request.getIsbn());
+
+        TransactionTemplate perChunk = new TransactionTemplate(transactionManager);
+        int deleted = 0;
+        List<Book> chunk;
+        Long after = null;
+        do {
+            // keyset by id, the rows before the cursor are gone anyway but the seek saves walking their index entries
+            Specification<Book> specification = Specification.allOf(
+                BookSpecifications.matching(search),
+                BookSpecifications.after(search, after, null));
+            chunk = perChunk.execute(status -> {
+                List<Book> rows = searches.search(specification, BookSpecifications.sort(search), DELETE_CHUNK_SIZE);
+                entityManager.clear();
+                delete(rows);
+                return rows;
+            });
+            deleted += chunk.size();
+            if (!chunk.isEmpty()) {
+                after = chunk.get(chunk.size() - 1).getId();
+            }
+        } while (chunk.size() == DELETE_CHUNK_SIZE);
+        return new BookBatchDeleteResult(deleted, List.of());
+    }
+
+    private int delete(List<Book> books) {
+        if (books.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = new ArrayList<>(books.size());
+        books.forEach(book -> ids.add(book.getId()));
+        // no version check, a book that changed since we read it is still one the caller asked to delete
+        bookStore.deleteAllByIdInBatch(ids);
+        for (Book book : books) {
+            eventPublisher.publishEvent(BookChangedEvent.deleted(book.getId(), BookChangedEvent.snapshot(book)));
+        }
+        return books.size();
+    }
+
+    private List<Book> loadBooks(List<Long> ids) {
+        return ReplicaRouting.onPrimary(() -> bookStore.findSnapshotsByIdIn(ids));
+    }
+
+    private List<BookBatchError> validate(List<Book> books) {
+        List<BookBatchError> errors = new ArrayList<>();
+        Set<String> isbns = new HashSet<>();
+        for (int i = 0; i < books.size(); i++) {
+            Book book = books.get(i);
+            if (book == null) {
+                errors.add(new BookBatchError(i, null, "Book is required"));
+                continue;
+            }
+            book.setIsbn(Isbn.normalize(book.getIsbn()));
+            for (ConstraintViolation<Book> violation : validator.validate(book)) {
+                errors.add(new BookBatchError(i, violation.getPropertyPath().toString(), violation.getMessage()));
+            }
+            if (book.getIsbn() != null && (!isbns.add(book.getIsbn()) || isbnIndex.isTaken(book.getIsbn(), null))) {
+                errors.add(new BookBatchError(i, "isbn", "A book with ISBN " + book.getIsbn() + " already exists"));
+            }
+        }
+        return errors;
+    }
+}
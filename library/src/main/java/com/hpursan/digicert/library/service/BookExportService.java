@@ -0,0 +1,55 @@
+package com.hpursan.digicert.library.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.repository.BookStore;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes the whole catalog as newline delimited JSON, one book per line, without ever holding more than
+ * a fetch size worth of rows in memory.
+ */
+@Service
+@RequiredArgsConstructor
+public class BookExportService {
+    private final BookStore bookStore;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    @Transactional(readOnly = true)
+    public long exportBooks(OutputStream out) throws IOException {
+        // flushing after every row would turn each book into its own write on the socket
+        ObjectWriter writer = objectMapper.writerFor(Book.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        long count = 0;
+
+        try (Stream<Book> books = bookStore.streamAllByOrderByIdAsc();
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+
+            Iterator<Book> iterator = books.iterator();
+            while (iterator.hasNext()) {
+                Book book = iterator.next();
+                writer.writeValue(generator, book);
+                generator.writeRaw('\n');
+                // once written the entity is of no use to us, don't let the persistence context hang on to it
+                entityManager.detach(book);
+                count++;
+            }
+            generator.flush();
+        }
+
+        return count;
+    }
+}
@@ -1,30 +1,116 @@
 package com.hpursan.digicert.library.service;
 
+import com.hpursan.digicert.library.cache.BookCache;
 import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.domain.Isbn;
+import com.hpursan.digicert.library.dto.BookField;
+import com.hpursan.digicert.library.dto.BookFieldsPage;
+import com.hpursan.digicert.library.dto.BookLookupResult;
+import com.hpursan.digicert.library.dto.BookPage;
+import com.hpursan.digicert.library.dto.BookPatch;
+import com.hpursan.digicert.library.dto.BookProjection;
+import com.hpursan.digicert.library.dto.BookSearch;
+import com.hpursan.digicert.library.dto.BookSort;
+import com.hpursan.digicert.library.event.BookChangedEvent;
 import com.hpursan.digicert.library.exception.BookNotFoundException;
-import com.hpursan.digicert.library.repository.BookRepository;
+import com.hpursan.digicert.library.exception.BookVersionMismatchException;
+import com.hpursan.digicert.library.exception.DuplicateIsbnException;
+import com.hpursan.digicert.library.replica.ReplicaRouting;
+import com.hpursan.digicert.library.repository.BookSpecifications;
+import com.hpursan.digicert.library.repository.BookStore;
+import com.hpursan.digicert.library.search.BookSearchIndex;
+import com.hpursan.digicert.library.search.IsbnIndex;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.swing.text.html.Option;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 public class BookService {
-    private final BookRepository bookRepository;
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
+    // the most ids a lookup takes, and how many of them go into one IN list
+    public static final int MAX_LOOKUP_IDS = 1000;
+    public static final int LOOKUP_CHUNK_SIZE = 500;
 
+    private final BookStore bookStore;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookCache bookCache;
+    private final IsbnIndex isbnIndex;
+
+    // read-only transactions are served by a replica when there are any, see ReadWriteRoutingDataSource
+    @Transactional(readOnly = true)
     public List<Book> listAllBooks(){
-        return bookRepository.findAll();
+        return bookStore.findAll();
+    }
+
+    @Transactional(readOnly = true)
+    public BookPage listBooks(Long after, int limit) {
+        int pageSize = pageSize(limit);
+        return toPage(bookStore.findByIdGreaterThanOrderByIdAsc(startAfter(after), Limit.of(pageSize + 1)), pageSize);
     }
 
     public Book getBookById(Long id) throws BookNotFoundException {
-        return bookRepository.findById(id).orElseThrow(() -> new BookNotFoundException("Book with id " + id + " not found"));
+        return bookCache.get(id, this::loadBook).orElseThrow(() -> new BookNotFoundException("Book with id " + id + " not found"));
+    }
+
+    /**
+     * Resolves many ids at once. Cached books are served from the cache, the rest are read in one query per
+     * {@value #LOOKUP_CHUNK_SIZE} ids. Ids without a book are reported rather than thrown.
+     *
+     * @throws IllegalArgumentException when there are more than {@value #MAX_LOOKUP_IDS} distinct ids
+     */
+    public BookLookupResult getBooksByIds(List<Long> ids) {
+        Set<Long> distinct = new LinkedHashSet<>(ids);
+        if (distinct.size() > MAX_LOOKUP_IDS) {
+            throw new IllegalArgumentException("A lookup takes at most " + MAX_LOOKUP_IDS + " ids, got " + distinct.size());
+        }
+        List<Book> books = new ArrayList<>(distinct.size());
+        List<Long> missing = new ArrayList<>();
+        bookCache.getAll(distinct, this::loadBooks).forEach((id, book) -> {
+            if (book.isPresent()) {
+                books.add(book.get());
+            } else {
+                missing.add(id);
+            }
+        });
+        return new BookLookupResult(books, missing);
+    }
+
+    @Transactional(readOnly = true)
+    public Book getBookByIsbn(String isbn) throws BookNotFoundException {
+        String normalized = Isbn.normalize(isbn);
+        if (isbnIndex.canLookup(normalized)) {
+            OptionalLong id = isbnIndex.find(normalized);
+            if (id.isEmpty()) {
+                throw new BookNotFoundException("Book with ISBN " + isbn + " not found");
+            }
+            Optional<Book> book = bookCache.get(id.getAsLong(), this::loadBook).filter(b -> normalized.equals(b.getIsbn()));
+            if (book.isPresent()) {
+                return book.get();
+            }
+            isbnIndex.evict(normalized, id.getAsLong());
+        }
+        return bookStore.findByIsbn(normalized).orElseThrow(() -> new BookNotFoundException("Book with ISBN " + isbn + " not found"));
     }
 
+    @Transactional(readOnly = true)
     public List<Book> getBookByTitle(String title) throws BookNotFoundException {
-        List<Book> books = bookRepository.findByTitleContainingIgnoreCase(title);
+        List<Book> books = bookSearchIndex.canSearch(title)
+            ? bookSearchIndex.findByTitle(title, 0L, Integer.MAX_VALUE)
+            : bookStore.findByTitleContainingIgnoreCase(title);
 
         if (books.isEmpty()) {
             throw new BookNotFoundException("No books with title containing " + title + " were found");
@@ -34,8 +120,20 @@ public class BookService {
 
     }
 
+    @Transactional(readOnly = true)
+    public BookPage getBookByTitle(String title, Long after, int limit) {
+        int pageSize = pageSize(limit);
+        if (bookSearchIndex.canSearch(title)) {
+            return toPage(bookSearchIndex.findByTitle(title, startAfter(after), pageSize + 1), pageSize);
+        }
+        return toPage(bookStore.findByTitleContainingIgnoreCaseAndIdGreaterThanOrderByIdAsc(title, startAfter(after), Limit.of(pageSize + 1)), pageSize);
+    }
+
+    @Transactional(readOnly = true)
     public List<Book> getBookByAuthor(String author) throws BookNotFoundException {
-        List<Book> books = bookRepository.findByAuthorContainingIgnoreCase(author);
+        List<Book> books = bookSearchIndex.canSearch(author)
+            ? bookSearchIndex.findByAuthor(author, 0L, Integer.MAX_VALUE)
+            : bookStore.findByAuthorContainingIgnoreCase(author);
         if (books.isEmpty()) {
             throw new BookNotFoundException("No books with written by author names containing " + author + " were found");
         }
@@ -44,23 +142,208 @@ public class BookService {
 
     }
 
+    @Transactional(readOnly = true)
+    public BookPage getBookByAuthor(String author, Long after, int limit) {
+        int pageSize = pageSize(limit);
+        if (bookSearchIndex.canSearch(author)) {
+            return toPage(bookSearchIndex.findByAuthor(author, startAfter(after), pageSize + 1), pageSize);
+        }
+        return toPage(bookStore.findByAuthorContainingIgnoreCaseAndIdGreaterThanOrderByIdAsc(author, startAfter(after), Limit.of(pageSize + 1)), pageSize);
+    }
+
+    /**
+     * Searches by any combination of title, author and ISBN prefix in one query, sorted as asked. {@code afterKey} is
+     * the sort value of the book at {@code after}, it is only needed when sorting by something other than id.
+     */
+    @Transactional(readOnly = true)
+    public BookPage searchBooks(BookSearch search, Long after, String afterKey, int limit) {
+        int pageSize = pageSize(limit);
+        Specification<Book> specification = Specification.allOf(
+            BookSpecifications.matching(search),
+            BookSpecifications.after(search, after, afterKey));
+        List<Book> rows = bookStore.searches().search(specification, BookSpecifications.sort(search), pageSize + 1);
+        BookPage page = toPage(rows, pageSize);
+        if (page.hasNext()) {
+            page.setNextKey(search.getSort().keyOf(page.getBooks().get(pageSize - 1)));
+        }
+        return page;
+    }
+
+    /**
+     * {@link #searchBooks} selecting only the requested fields. Nothing else is read from the database and no entity
+     * is built. The id and the sort column are selected as well when they weren't asked for, the cursor needs them.
+     */
+    @Transactional(readOnly = true)
+    public BookFieldsPage searchBookFields(BookSearch search, Long after, String afterKey, int limit, List<BookField> fields) {
+        int pageSize = pageSize(limit);
+        BookSort sort = search.getSort();
+        List<String> properties = new ArrayList<>(fields.size() + 2);
+        fields.forEach(field -> properties.add(field.getProperty()));
+        int id = column(properties, BookField.ID.getProperty());
+        int key = column(properties, sort.getProperty());
+
+        Specification<Book> specification = Specification.allOf(
+            BookSpecifications.matching(search),
+            BookSpecifications.after(search, after, afterKey));
+        List<Object[]> rows = bookStore.searches().searchProperties(specification, BookSpecifications.sort(search), pageSize + 1, properties);
+
+        int size = Math.min(rows.size(), pageSize);
+        List<BookProjection> books = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            books.add(new BookProjection(fields, rows.get(i)));
+        }
+        if (rows.size() <= pageSize) {
+            return new BookFieldsPage(books, null, null);
+        }
+        Object[] last = rows.get(pageSize - 1);
+        return new BookFieldsPage(books, (Long) last[id], sort == BookSort.ID ? null : (String) last[key]);
+    }
+
+    /**
+     * Cache misses are read from the primary. A replica that hasn't caught up with a change yet would put the old
+     * book back into the cache right after the change invalidated it, for as long as the entry lives.
+     */
+    private Optional<Book> loadBook(Long id) {
+        return ReplicaRouting.onPrimary(() -> bookStore.findById(id));
+    }
+
+    /**
+     * {@link #loadBook} for many ids, chunked so no IN list grows past {@value #LOOKUP_CHUNK_SIZE}.
+     */
+    private List<Book> loadBooks(List<Long> ids) {
+        List<Book> books = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += LOOKUP_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, ids.size()));
+            books.addAll(ReplicaRouting.onPrimary(() -> bookStore.findSnapshotsByIdIn(chunk)));
+        }
+        return books;
+    }
+
+    /**
+     * @return where {@code property} is in the select list, adding it at the end if it isn't there yet
+     */
+    private static int column(List<String> properties, String property) {
+        int index = properties.indexOf(property);
+        if (index >= 0) {
+            return index;
+        }
+        properties.add(property);
+        return properties.size() - 1;
+    }
+
+    @Transactional
     public Book addBook(Book book){
-        return bookRepository.save(book);
+        book.setIsbn(Isbn.normalize(book.getIsbn()));
+        checkIsbnAvailable(book.getIsbn(), null);
+        Book newBook = bookStore.save(book);
+        eventPublisher.publishEvent(BookChangedEvent.created(newBook));
+        return newBook;
     }
 
     public Book updateBook(Long id, Book updatedBook) {
-        Book book = getBookById(id);
+        return updateBook(id, updatedBook, null);
+    }
+
+    /**
+     * @param expectedVersion the version the caller last saw, or null to update whatever is there
+     */
+    @Transactional
+    public Book updateBook(Long id, Book updatedBook, Long expectedVersion) {
+        // straight from the repository, we need the managed entity and the cache only hands out copies
+        Book book = bookStore.findById(id).orElseThrow(() -> new BookNotFoundException("Book with id " + id + " not found"));
+        checkVersion(book, expectedVersion);
+        Book before = BookChangedEvent.snapshot(book);
+        String isbn = Isbn.normalize(updatedBook.getIsbn());
+        checkIsbnAvailable(isbn, id);
         book.setAuthor(updatedBook.getAuthor());
-        book.setIsbn(updatedBook.getIsbn());
+        book.setIsbn(isbn);
         book.setTitle(updatedBook.getTitle());
-        return bookRepository.save(book);
+        // flush now so the version is bumped, and a concurrent update detected, before we publish
+        Book changedBook = bookStore.saveAndFlush(book);
+        eventPublisher.publishEvent(BookChangedEvent.updated(before, changedBook));
+        return changedBook;
+    }
+
+    /**
+     * Applies only the fields that are set, as a single UPDATE with no read before it. The same statement returns the
+     * old row, so the listeners get the book as it was and as it is now without another query.
+     *
+     * @param expectedVersion the version the caller last saw, or null to patch whatever is there
+     * @return the version the book is at now
+     */
+    @Transactional
+    public Long patchBook(Long id, BookPatch patch, Long expectedVersion) {
+        String isbn = Isbn.normalize(patch.getIsbn());
+        checkIsbnAvailable(isbn, id);
+        Book before = bookStore.patch(id, patch.getTitle(), patch.getAuthor(), isbn, expectedVersion)
+            .orElseThrow(() -> notChanged(id, expectedVersion));
+        Book after = new Book(id,
+            patch.getTitle() != null ? patch.getTitle() : before.getTitle(),
+            patch.getAuthor() != null ? patch.getAuthor() : before.getAuthor(),
+            isbn != null ? isbn : before.getIsbn(),
+            before.getVersion() + 1);
+        eventPublisher.publishEvent(BookChangedEvent.updated(before, after));
+        return after.getVersion();
     }
 
+    // its own transaction, calling the overload from here doesn't go through the proxy
+    @Transactional
     public void deleteBook(Long id){
-        if (!bookRepository.existsById(id)) {
-            throw new BookNotFoundException("Book with id " + id + " not found");
+        deleteBook(id, null);
+    }
+
+    /**
+     * @param expectedVersion the version the caller last saw, or null to delete whatever is there
+     */
+    @Transactional
+    public void deleteBook(Long id, Long expectedVersion){
+        // one statement, which also returns the row it deleted for the listeners
+        Book before = bookStore.deleteAtVersion(id, expectedVersion).orElseThrow(() -> notChanged(id, expectedVersion));
+        eventPublisher.publishEvent(BookChangedEvent.deleted(id, before));
+    }
+
+    /**
+     * For a write that matched no row. Only then is a second statement spent, to tell a missing book from a stale
+     * version.
+     */
+    private RuntimeException notChanged(Long id, Long expectedVersion) {
+        if (expectedVersion != null && bookStore.existsById(id)) {
+            return new BookVersionMismatchException("Book with id " + id + " is no longer at version " + expectedVersion);
+        }
+        return new BookNotFoundException("Book with id " + id + " not found");
+    }
+
+    private static void checkVersion(Book book, Long expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(book.getVersion())) {
+            throw new BookVersionMismatchException("Book with id " + book.getId() + " is at version " + book.getVersion() + ", not " + expectedVersion);
+        }
+    }
+
+    // the unique index on isbn is what guarantees it, this just catches the common case before we write
+    private void checkIsbnAvailable(String isbn, Long id) {
+        if (isbnIndex.isTaken(isbn, id)) {
+            throw new DuplicateIsbnException("A book with ISBN " + isbn + " already exists");
+        }
+    }
+
+    private static int pageSize(int limit) {
+        // never trust the client with the page size, the max is what keeps a single call bounded
+        return Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+    }
+
+    private static long startAfter(Long after) {
+        return after == null ? 0L : after;
+    }
+
+    /**
+     * Pages are fetched with one extra row so we know whether there is a next page without a count query.
+     */
+    private static BookPage toPage(List<Book> rows, int pageSize) {
+        if (rows.size() <= pageSize) {
+            return new BookPage(rows, null);
         }
-        bookRepository.deleteById(id);
+        List<Book> books = rows.subList(0, pageSize);
+        return new BookPage(books, books.get(pageSize - 1).getId());
     }
 
 }
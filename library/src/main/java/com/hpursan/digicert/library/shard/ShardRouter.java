@@ -0,0 +1,27 @@
+package com.hpursan.digicert.library.shard;
+
+/**
+ * Decides which shard holds a book from its id alone. Ids are dealt out in ranges of {@code blockSize}, range
+ * {@code n} to shard {@code n % shards}. With a block size of 1 consecutive ids go to different shards, with a larger
+ * one each shard holds runs of consecutive ids.
+ */
+public final class ShardRouter {
+    private final int shards;
+    private final long blockSize;
+
+    public ShardRouter(int shards, long blockSize) {
+        if (shards < 1 || blockSize < 1) {
+            throw new IllegalArgumentException("Need at least one shard and a block size of at least 1, got " + shards + " and " + blockSize);
+        }
+        this.shards = shards;
+        this.blockSize = blockSize;
+    }
+
+    public int shardOf(long id) {
+        return (int) Math.floorMod(Math.floorDiv(id, blockSize), (long) shards);
+    }
+
+    public int getShards() {
+        return shards;
+    }
+}
@@ -0,0 +1,616 @@
+package com.hpursan.digicert.library.shard;
+
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.repository.BookSearchRepository;
+import com.hpursan.digicert.library.repository.BookSpecifications;
+import com.hpursan.digicert.library.repository.BookStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.sql.init.SqlDataSourceScriptDatabaseInitializer;
+import org.springframework.boot.sql.init.DatabaseInitializationSettings;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.datasource.ConnectionHolder;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The books table spread over several databases, with the same schema in each. A book lives in the shard its id is
+ * routed to by {@link ShardRouter}, so a lookup, update or delete by id is one statement on one shard. Anything else
+ * is asked of every shard at once, on a virtual thread each, and the answers are merged in id order. Each shard
+ * returns at most a page in id order, so a merged page is the first page of the merge.
+ * <p>
+ * Ids still come from the primary's {@code books_seq}, a block of 50 at a time, so they stay unique across shards.
+ * The unique index on ISBN is per shard, across shards only the {@link com.hpursan.digicert.library.search.IsbnIndex}
+ * check before a write keeps them unique.
+ * <p>
+ * A write made inside a transaction joins it: the first write to a shard opens a transaction on that shard, which
+ * commits just before the caller's does and rolls back with it. The shards and the primary don't commit atomically,
+ * a failure between their commits leaves the shards ahead. Writes outside a transaction commit straight away.
+ */
+@Slf4j
+public class ShardedBooks implements BookStore, InitializingBean, DisposableBean {
+    // books_seq's increment, each value fetched from it is the first of this many ids
+    private static final int ID_BLOCK = 50;
+    private static final int BATCH_SIZE = 500;
+    private static final int FETCH_SIZE = 1000;
+    private static final String SELECT = "SELECT id, title, author, isbn, version FROM books";
+    // the row as it was before an UPDATE or DELETE, returned by the statement that changed it
+    private static final String OLD_ROW = "SELECT id, title, author, isbn, version FROM OLD TABLE (";
+    private static final RowMapper<Book> BOOK = (rs, row) -> new Book(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getLong(5));
+    private static final Comparator<Book> BY_ID = Comparator.comparing(Book::getId);
+
+    private final JdbcTemplate primary;
+    private final List<DataSource> shards;
+    private final List<NamedParameterJdbcTemplate> jdbc = new ArrayList<>();
+    private final ShardRouter router;
+    private final Duration deadline;
+    private final DatabaseInitializationSettings schema;
+    private final boolean loadFromPrimary;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("shard-query-", 0).factory());
+
+    // guarded by this
+    private long nextId;
+    private long endId;
+
+    /**
+     * @param schema how the primary's schema is created, its data scripts are ignored
+     * @param loadFromPrimary whether to copy the primary's books to the shards at startup when they have none
+     */
+    public ShardedBooks(DataSource primary, List<DataSource> shards, ShardRouter router, Duration deadline,
+                        DatabaseInitializationSettings schema, boolean loadFromPrimary) {
+        if (shards.size() != router.getShards()) {
+            throw new IllegalArgumentException(shards.size() + " shards but the router deals to " + router.getShards());
+        }
+        this.primary = new JdbcTemplate(primary);
+        this.shards = List.copyOf(shards);
+        this.router = router;
+        this.deadline = deadline;
+        this.schema = schema;
+        this.loadFromPrimary = loadFromPrimary;
+        int timeoutSeconds = (int) Math.max(1, (deadline.toMillis() + 999) / 1000);
+        for (DataSource shard : shards) {
+            JdbcTemplate template = new JdbcTemplate(shard);
+            template.setQueryTimeout(timeoutSeconds);
+            template.setFetchSize(FETCH_SIZE);
+            jdbc.add(new NamedParameterJdbcTemplate(template));
+        }
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        schema.setDataLocations(List.of());
+        for (DataSource shard : shards) {
+            new SqlDataSourceScriptDatabaseInitializer(shard, schema).initializeDatabase();
+        }
+        if (loadFromPrimary && count() == 0) {
+            long start = System.nanoTime();
+            long rows = copyFromPrimary();
+            log.info("Copied {} books from the primary to {} shards in {} ms", rows, shards.size(), (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    /**
+     * Also closes the shards' connection pools.
+     */
+    @Override
+    public void destroy() throws Exception {
+        executor.shutdownNow();
+        for (DataSource shard : shards) {
+            if (shard instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public ShardRouter getRouter() {
+        return router;
+    }
+
+    @Override
+    public Optional<Book> findById(Long id) {
+        return shard(id).getJdbcTemplate().query(SELECT + " WHERE id = ?", BOOK, id).stream().findFirst();
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return !shard(id).getJdbcTemplate().queryForList("SELECT id FROM books WHERE id = ?", Long.class, id).isEmpty();
+    }
+
+    /**
+     * @return the books there are in id order, asking only the shards that hold some of the ids
+     */
+    @Override
+    public List<Book> findAllById(Iterable<Long> ids) {
+        Map<Integer, List<Long>> byShard = byShard(ids);
+        List<Callable<List<Book>>> queries = new ArrayList<>();
+        byShard.forEach((shard, shardIds) -> queries.add(() ->
+            jdbc.get(shard).query(SELECT + " WHERE id IN (:ids) ORDER BY id", Map.of("ids", shardIds), BOOK)));
+        return merge(scatter(queries), Integer.MAX_VALUE);
+    }
+
+    // every row read is a new Book, so these are as detached as JPA's
+    @Override
+    public List<Book> findSnapshotsByIdIn(Collection<Long> ids) {
+        return findAllById(ids);
+    }
+
+    @Override
+    public Optional<Book> findByIsbn(String isbn) {
+        return scatterAll(template -> template.getJdbcTemplate().query(SELECT + " WHERE isbn = ?", BOOK, isbn), 1).stream().findFirst();
+    }
+
+    @Override
+    public List<Book> findAll() {
+        return scatterAll(template -> template.getJdbcTemplate().query(SELECT + " ORDER BY id", BOOK), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public long count() {
+        long count = 0;
+        for (NamedParameterJdbcTemplate template : jdbc) {
+            count += template.getJdbcTemplate().queryForObject("SELECT COUNT(*) FROM books", Long.class);
+        }
+        return count;
+    }
+
+    /**
+     * @return the first {@code limit} books with an id after {@code after}, in id order
+     */
+    public List<Book> findAfter(long after, int limit) {
+        return scatterAll(template -> template.getJdbcTemplate().query(SELECT + " WHERE id > ? ORDER BY id LIMIT ?", BOOK, after, limit), limit);
+    }
+
+    @Override
+    public List<Book> findByIdGreaterThanOrderByIdAsc(Long after, Limit limit) {
+        return findAfter(after, max(limit));
+    }
+
+    @Override
+    public List<Book> findByTitleContainingIgnoreCase(String title) {
+        return findByTitle(title, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Book> findByAuthorContainingIgnoreCase(String author) {
+        return findByAuthor(author, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Book> findByTitleContainingIgnoreCaseAndIdGreaterThanOrderByIdAsc(String title, Long after, Limit limit) {
+        return findByTitle(title, after, max(limit));
+    }
+
+    @Override
+    public List<Book> findByAuthorContainingIgnoreCaseAndIdGreaterThanOrderByIdAsc(String author, Long after, Limit limit) {
+        return findByAuthor(author, after, max(limit));
+    }
+
+    public List<Book> findByTitle(String title, long after, int limit) {
+        return findContaining("title", title, after, limit);
+    }
+
+    public List<Book> findByAuthor(String author, long after, int limit) {
+        return findContaining("author", author, after, limit);
+    }
+
+    /**
+     * Inserts a book without an id and updates one with an id, like JPA's {@code save}.
+     *
+     * @throws ObjectOptimisticLockingFailureException when the book isn't at its version any more, or is gone
+     */
+    @Override
+    public <S extends Book> S save(S book) {
+        if (book.getId() == null) {
+            long id = nextId();
+            writer(id).getJdbcTemplate().update("INSERT INTO books (id, title, author, isbn, version) VALUES (?, ?, ?, ?, 0)",
+                id, book.getTitle(), book.getAuthor(), book.getIsbn());
+            book.setId(id);
+            book.setVersion(0L);
+            return book;
+        }
+        long version = book.getVersion() == null ? 0 : book.getVersion();
+        int updated = writer(book.getId()).getJdbcTemplate().update(
+            "UPDATE books SET title = ?, author = ?, isbn = ?, version = version + 1 WHERE id = ? AND version = ?",
+            book.getTitle(), book.getAuthor(), book.getIsbn(), book.getId(), version);
+        if (updated == 0) {
+            throw new ObjectOptimisticLockingFailureException(Book.class, book.getId());
+        }
+        book.setVersion(version + 1);
+        return book;
+    }
+
+    // there is nothing to flush, every write goes out when it is made
+    @Override
+    public <S extends Book> S saveAndFlush(S book) {
+        return save(book);
+    }
+
+    @Override
+    public Optional<Book> patch(Long id, String title, String author, String isbn, Long version) {
+        StringBuilder sql = new StringBuilder(OLD_ROW).append("UPDATE books SET ");
+        List<Object> args = new ArrayList<>();
+        set(sql, args, "title", title);
+        set(sql, args, "author", author);
+        set(sql, args, "isbn", isbn);
+        sql.append("version = version + 1");
+        return oldRow(sql, args, id, version);
+    }
+
+    @Override
+    public Optional<Book> deleteAtVersion(Long id, Long version) {
+        return oldRow(new StringBuilder(OLD_ROW).append("DELETE FROM books"), new ArrayList<>(), id, version);
+    }
+
+    /**
+     * Each shard's share is deleted in one statement. The shards are deleted from one after the other on the calling
+     * thread, which is the one whose transaction they join.
+     */
+    @Override
+    public void deleteAllByIdInBatch(Iterable<Long> ids) {
+        byShard(ids).forEach((shard, shardIds) ->
+            writer(shard).update("DELETE FROM books WHERE id IN (:ids)", Map.of("ids", shardIds)));
+    }
+
+    /**
+     * Every book in id order, read from all shards at once. Holds a connection on each shard until it is closed.
+     */
+    public Stream<Book> streamAll() {
+        List<Stream<Book>> streams = new ArrayList<>(jdbc.size());
+        try {
+            for (NamedParameterJdbcTemplate template : jdbc) {
+                streams.add(template.getJdbcTemplate().queryForStream(SELECT + " ORDER BY id", BOOK));
+            }
+        } catch (RuntimeException ex) {
+            streams.forEach(Stream::close);
+            throw ex;
+        }
+        Iterator<Book> merged = new MergingIterator(streams.stream().map(Stream::iterator).toList());
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(() -> streams.forEach(Stream::close));
+    }
+
+    /**
+     * Each shard's share goes out as JDBC batches, on the calling thread so they join the caller's transaction.
+     */
+    @Override
+    public void insertAll(List<Book> books) {
+        List<List<Object[]>> batches = new ArrayList<>();
+        shards.forEach(shard -> batches.add(new ArrayList<>(BATCH_SIZE)));
+        for (Book book : books) {
+            long id = nextId();
+            book.setId(id);
+            book.setVersion(0L);
+            int shard = router.shardOf(id);
+            List<Object[]> batch = batches.get(shard);
+            batch.add(new Object[]{id, book.getTitle(), book.getAuthor(), book.getIsbn(), 0L});
+            if (batch.size() == BATCH_SIZE) {
+                insert(shard, batch);
+            }
+        }
+        for (int shard = 0; shard < batches.size(); shard++) {
+            insert(shard, batches.get(shard));
+        }
+    }
+
+    @Override
+    public Stream<Book> streamAllByOrderByIdAsc() {
+        return streamAll();
+    }
+
+    /**
+     * @throws UnsupportedOperationException always, the specification searches need JPA
+     */
+    @Override
+    public BookSearchRepository searches() {
+        throw new UnsupportedOperationException("Specification searches are not available with sharded storage");
+    }
+
+    private static int max(Limit limit) {
+        return limit.isLimited() ? limit.max() : Integer.MAX_VALUE;
+    }
+
+    private static void set(StringBuilder sql, List<Object> args, String column, String value) {
+        if (value != null) {
+            sql.append(column).append(" = ?, ");
+            args.add(value);
+        }
+    }
+
+    private Optional<Book> oldRow(StringBuilder sql, List<Object> args, long id, Long version) {
+        sql.append(" WHERE id = ?");
+        args.add(id);
+        if (version != null) {
+            sql.append(" AND version = ?");
+            args.add(version);
+        }
+        return writer(id).getJdbcTemplate().query(sql.append(")").toString(), BOOK, args.toArray()).stream().findFirst();
+    }
+
+    private List<Book> findContaining(String column, String value, long after, int limit) {
+        // folded like the JPA queries and the search index, whatever the default locale
+        String pattern = BookSpecifications.containsPattern(value);
+        String sql = SELECT + " WHERE UPPER(" + column + ") LIKE ? ESCAPE '\\' AND id > ? ORDER BY id LIMIT ?";
+        return scatterAll(template -> template.getJdbcTemplate().query(sql, BOOK, pattern, after, limit), limit);
+    }
+
+    private List<Book> scatterAll(Function<NamedParameterJdbcTemplate, List<Book>> query, int limit) {
+        List<Callable<List<Book>>> queries = new ArrayList<>(jdbc.size());
+        for (NamedParameterJdbcTemplate template : jdbc) {
+            queries.add(() -> query.apply(template));
+        }
+        return merge(scatter(queries), limit);
+    }
+
+    /**
+     * Runs the queries in parallel and waits for all of them, but no longer than the deadline.
+     *
+     * @throws QueryTimeoutException when a shard hasn't answered by the deadline, the other queries are cancelled
+     */
+    private List<List<Book>> scatter(List<Callable<List<Book>>> queries) {
+        if (queries.size() == 1) {
+            try {
+                return List.of(queries.get(0).call());
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new DataRetrievalFailureException("Shard query failed", ex);
+            }
+        }
+        long due = System.nanoTime() + deadline.toNanos();
+        List<Future<List<Book>>> futures = new ArrayList<>(queries.size());
+        try {
+            queries.forEach(query -> futures.add(executor.submit(query)));
+            List<List<Book>> results = new ArrayList<>(futures.size());
+            for (Future<List<Book>> future : futures) {
+                results.add(future.get(Math.max(0, due - System.nanoTime()), TimeUnit.NANOSECONDS));
+            }
+            return results;
+        } catch (TimeoutException ex) {
+            throw new QueryTimeoutException("Not every shard answered within " + deadline.toMillis() + " ms");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new DataRetrievalFailureException("Shard query failed", ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new QueryTimeoutException("Interrupted waiting for the shards");
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * @param sorted lists in id order
+     * @return the first {@code limit} books of all of them, in id order
+     */
+    static List<Book> merge(List<List<Book>> sorted, int limit) {
+        if (sorted.size() == 1) {
+            List<Book> only = sorted.get(0);
+            return only.size() <= limit ? only : only.subList(0, limit);
+        }
+        List<Book> merged = new ArrayList<>();
+        Iterator<Book> iterator = new MergingIterator(sorted.stream().map(List::iterator).toList());
+        while (merged.size() < limit && iterator.hasNext()) {
+            merged.add(iterator.next());
+        }
+        return merged;
+    }
+
+    private Map<Integer, List<Long>> byShard(Iterable<Long> ids) {
+        Map<Integer, List<Long>> byShard = new TreeMap<>();
+        for (Long id : ids) {
+            byShard.computeIfAbsent(router.shardOf(id), shard -> new ArrayList<>()).add(id);
+        }
+        return byShard;
+    }
+
+    private NamedParameterJdbcTemplate shard(long id) {
+        return jdbc.get(router.shardOf(id));
+    }
+
+    private NamedParameterJdbcTemplate writer(long id) {
+        return writer(router.shardOf(id));
+    }
+
+    /**
+     * @return the shard's template, with a transaction on the shard bound to this thread first when there is a
+     *         caller's transaction to join and it has none there yet
+     */
+    private NamedParameterJdbcTemplate writer(int shard) {
+        DataSource dataSource = shards.get(shard);
+        if (TransactionSynchronizationManager.isSynchronizationActive() && !TransactionSynchronizationManager.hasResource(dataSource)) {
+            TransactionSynchronizationManager.registerSynchronization(new ShardTransaction(dataSource));
+        }
+        return jdbc.get(shard);
+    }
+
+    private synchronized long nextId() {
+        if (nextId == endId) {
+            nextId = primary.queryForObject("SELECT NEXT VALUE FOR books_seq", Long.class);
+            endId = nextId + ID_BLOCK;
+        }
+        return nextId++;
+    }
+
+    private long copyFromPrimary() {
+        List<List<Object[]>> batches = new ArrayList<>();
+        shards.forEach(shard -> batches.add(new ArrayList<>(BATCH_SIZE)));
+        long[] rows = {0};
+        primary.setFetchSize(FETCH_SIZE);
+        primary.query(SELECT, rs -> {
+            long id = rs.getLong(1);
+            int shard = router.shardOf(id);
+            List<Object[]> batch = batches.get(shard);
+            batch.add(new Object[]{id, rs.getString(2), rs.getString(3), rs.getString(4), rs.getLong(5)});
+            if (batch.size() == BATCH_SIZE) {
+                rows[0] += insert(shard, batch);
+            }
+        });
+        for (int shard = 0; shard < batches.size(); shard++) {
+            rows[0] += insert(shard, batches.get(shard));
+        }
+        return rows[0];
+    }
+
+    private int insert(int shard, List<Object[]> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        writer(shard).getJdbcTemplate().batchUpdate("INSERT INTO books (id, title, author, isbn, version) VALUES (?, ?, ?, ?, ?)", batch);
+        int rows = batch.size();
+        batch.clear();
+        return rows;
+    }
+
+    /**
+     * A transaction on one shard that commits just before the caller's transaction and rolls back with it. Its
+     * connection is bound to the thread the way a {@code DataSourceTransactionManager} binds one, so the shard's
+     * {@link JdbcTemplate} uses it. A transaction manager of its own would suspend the caller's synchronizations while
+     * the shard's transaction is open, and with them the callbacks this relies on.
+     */
+    private static final class ShardTransaction implements TransactionSynchronization {
+        private final DataSource dataSource;
+        private final ConnectionHolder holder;
+        private boolean committed;
+
+        ShardTransaction(DataSource dataSource) {
+            this.dataSource = dataSource;
+            Connection connection = null;
+            try {
+                connection = dataSource.getConnection();
+                connection.setAutoCommit(false);
+            } catch (SQLException ex) {
+                close(connection);
+                throw new CannotGetJdbcConnectionException("Failed to open a transaction on a shard", ex);
+            }
+            this.holder = new ConnectionHolder(connection);
+            holder.setSynchronizedWithTransaction(true);
+            TransactionSynchronizationManager.bindResource(dataSource, holder);
+        }
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(dataSource);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(dataSource, holder);
+        }
+
+        // a shard that fails to commit fails the caller's commit, so nothing is published for it
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            try {
+                holder.getConnection().commit();
+                committed = true;
+            } catch (SQLException ex) {
+                throw new TransactionSystemException("Failed to commit a shard", ex);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(dataSource);
+            Connection connection = holder.getConnection();
+            try {
+                if (!committed) {
+                    connection.rollback();
+                }
+                connection.setAutoCommit(true);
+            } catch (SQLException ex) {
+                log.warn("Failed to end a shard transaction", ex);
+            } finally {
+                close(connection);
+            }
+        }
+
+        private static void close(Connection connection) {
+            if (connection == null) {
+                return;
+            }
+            try {
+                connection.close();
+            } catch (SQLException ex) {
+                log.warn("Failed to close a shard connection", ex);
+            }
+        }
+    }
+
+    /**
+     * Merges iterators that each return books in id order into one in id order.
+     */
+    private static final class MergingIterator implements Iterator<Book> {
+        private final PriorityQueue<Head> heads;
+
+        MergingIterator(Collection<? extends Iterator<Book>> iterators) {
+            this.heads = new PriorityQueue<>(Math.max(1, iterators.size()), Comparator.comparing(head -> head.book, BY_ID));
+            iterators.forEach(this::advance);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public Book next() {
+            Head head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            advance(head.rest);
+            return head.book;
+        }
+
+        private void advance(Iterator<Book> iterator) {
+            if (iterator.hasNext()) {
+                heads.add(new Head(iterator.next(), iterator));
+            }
+        }
+
+        private record Head(Book book, Iterator<Book> rest) {
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.hpursan.digicert.library.snapshot;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * The whole catalog in one compact binary file. Loading maps the file into memory and inserts it in JDBC batches
+ * inside a single transaction, which is far quicker than parsing and running a seed script a statement at a time.
+ * <p>
+ * The file is an 8 byte header ({@code LIBSNAP} and a format version), the number of books as a long and then one
+ * record per book in id order: the id as a varint delta from the previous one, the version as a varint, and title,
+ * author and ISBN each as a varint byte length followed by their UTF-8 bytes.
+ */
+public class CatalogSnapshot {
+    private static final byte[] MAGIC = {'L', 'I', 'B', 'S', 'N', 'A', 'P', 1};
+    private static final int HEADER_SIZE = MAGIC.length + Long.BYTES;
+    private static final int INSERT_BATCH_SIZE = 1_000;
+    private static final int FETCH_SIZE = 1_000;
+
+    private final DataSource dataSource;
+
+    public CatalogSnapshot(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Writes every book to {@code path}. The file is written next to it first and moved into place once complete, a
+     * crash halfway leaves the previous snapshot as it was.
+     *
+     * @return the number of books written
+     */
+    public long write(Path path) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path partial = Files.createTempFile(directory, path.getFileName().toString(), ".partial");
+        try {
+            long rows = writeBooks(partial);
+            Files.move(partial, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return rows;
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    /**
+     * Inserts every book in the snapshot and moves the id sequence past them. The books table has to be empty.
+     *
+     * @return the number of books loaded
+     */
+    public long load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(path + " is over 2GB, more than a single mapping holds");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return insertBooks(path, buffer);
+        } catch (BufferUnderflowException ex) {
+            throw new IOException(path + " ends in the middle of a book", ex);
+        } catch (SQLException ex) {
+            throw new IOException("Couldn't load " + path + " into the database", ex);
+        }
+    }
+
+    private long writeBooks(Path file) throws IOException {
+        long[] rows = {0};
+        long[] previousId = {0};
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024))) {
+            out.write(MAGIC);
+            out.writeLong(0); // the count, filled in below once it's known
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            jdbcTemplate.setFetchSize(FETCH_SIZE);
+            jdbcTemplate.query("SELECT id, title, author, isbn, version FROM books ORDER BY id", resultSet -> {
+                try {
+                    long id = resultSet.getLong(1);
+                    writeVarLong(out, id - previousId[0]);
+                    writeVarLong(out, resultSet.getLong(5));
+                    writeString(out, resultSet.getString(2));
+                    writeString(out, resultSet.getString(3));
+                    writeString(out, resultSet.getString(4));
+                    previousId[0] = id;
+                    rows[0]++;
+                } catch (IOException ex) {
+                    throw new SQLException("Couldn't write " + file, ex);
+                }
+            });
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, rows[0]), MAGIC.length);
+            channel.force(true);
+        }
+        return rows[0];
+    }
+
+    private long insertBooks(Path path, ByteBuffer buffer) throws IOException, SQLException {
+        if (buffer.remaining() < HEADER_SIZE) {
+            throw new IOException(path + " is not a catalog snapshot");
+        }
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        if (!Arrays.equals(magic, 0, MAGIC.length - 1, MAGIC, 0, MAGIC.length - 1)) {
+            throw new IOException(path + " is not a catalog snapshot");
+        }
+        if (magic[MAGIC.length - 1] != MAGIC[MAGIC.length - 1]) {
+            throw new IOException(path + " is a format " + magic[MAGIC.length - 1] + " snapshot, only format "
+                + MAGIC[MAGIC.length - 1] + " can be loaded");
+        }
+        long rows = buffer.getLong();
+
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO books (id, title, author, isbn, version) VALUES (?, ?, ?, ?, ?)")) {
+                // one scratch array for the strings, sized for the longest one seen so far
+                byte[] scratch = new byte[256];
+                long id = 0;
+                for (long row = 0; row < rows; row++) {
+                    id += readVarLong(buffer);
+                    insert.setLong(1, id);
+                    insert.setLong(5, readVarLong(buffer));
+                    scratch = readString(buffer, scratch, insert, 2);
+                    scratch = readString(buffer, scratch, insert, 3);
+                    scratch = readString(buffer, scratch, insert, 4);
+                    insert.addBatch();
+                    if ((row + 1) % INSERT_BATCH_SIZE == 0) {
+                        insert.executeBatch();
+                    }
+                }
+                insert.executeBatch();
+                if (buffer.hasRemaining()) {
+                    throw new IOException(path + " has " + buffer.remaining() + " bytes after its last book");
+                }
+                try (Statement statement = connection.createStatement()) {
+                    // the same as data.sql does for its explicit ids, generated ids have to start past the loaded ones
+                    statement.execute("ALTER SEQUENCE books_seq RESTART WITH " + (id + 1));
+                }
+                connection.commit();
+            } catch (IOException | SQLException | RuntimeException ex) {
+                connection.rollback();
+                throw ex;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+        return rows;
+    }
+
+    private static byte[] readString(ByteBuffer buffer, byte[] scratch, PreparedStatement insert, int parameter) throws SQLException {
+        int length = (int) readVarLong(buffer);
+        if (length > scratch.length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buffer.get(scratch, 0, length);
+        insert.setString(parameter, new String(scratch, 0, length, StandardCharsets.UTF_8));
+        return scratch;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    // 7 bits a byte, low bits first, the high bit set on every byte but the last. Only for values >= 0
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+}
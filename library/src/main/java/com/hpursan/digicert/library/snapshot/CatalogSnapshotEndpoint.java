@@ -0,0 +1,70 @@
+package com.hpursan.digicert.library.snapshot;
+
+import com.hpursan.digicert.library.config.SnapshotProperties;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * {@code /actuator/snapshot}: a GET describes the snapshot file, a POST writes the current catalog to it. With
+ * {@code library.snapshot.write-on-shutdown} it is also written as the application shuts down, before the database
+ * goes away.
+ */
+@Slf4j
+@Endpoint(id = "snapshot")
+@RequiredArgsConstructor
+public class CatalogSnapshotEndpoint {
+    private final CatalogSnapshot snapshot;
+    private final SnapshotProperties properties;
+
+    @ReadOperation
+    public SnapshotFile describe() throws IOException {
+        Path path = properties.getPath();
+        if (!Files.isRegularFile(path)) {
+            return new SnapshotFile(path.toString(), false, null, 0, null, null);
+        }
+        return new SnapshotFile(path.toString(), true, null, Files.size(path),
+            Files.getLastModifiedTime(path).toInstant(), null);
+    }
+
+    @WriteOperation
+    public SnapshotFile write() throws IOException {
+        Path path = properties.getPath();
+        long start = System.nanoTime();
+        long rows = snapshot.write(path);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        log.info("Wrote {} books to {} in {} ms", rows, path, millis);
+        return new SnapshotFile(path.toString(), true, rows, Files.size(path), Files.getLastModifiedTime(path).toInstant(), millis);
+    }
+
+    // ContextClosedEvent comes before any bean is destroyed, so the DataSource is still open
+    @EventListener(ContextClosedEvent.class)
+    public void writeOnShutdown() throws IOException {
+        if (properties.isWriteOnShutdown()) {
+            write();
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class SnapshotFile {
+        private String path;
+        private boolean exists;
+        // only known right after a write, counting them would mean reading the whole file
+        private Long books;
+        private long bytes;
+        private Instant lastModified;
+        private Long writeMillis;
+    }
+}
@@ -0,0 +1,67 @@
+package com.hpursan.digicert.library.snapshot;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.sql.init.SqlDataSourceScriptDatabaseInitializer;
+import org.springframework.boot.sql.init.DatabaseInitializationSettings;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Spring Boot's script initializer, except that when the snapshot exists only the schema scripts run and the books
+ * come from the snapshot instead of the data scripts. Without a snapshot it does exactly what Boot would have done.
+ * <p>
+ * A snapshot that exists but can't be loaded fails the startup, quietly falling back to the seed data would serve
+ * a different catalog than the one that was saved.
+ */
+@Slf4j
+public class SnapshotDatabaseInitializer extends SqlDataSourceScriptDatabaseInitializer {
+    public static final String STARTUP_STEP = "library.catalog.load";
+
+    private final CatalogSnapshot snapshot;
+    private final Path path;
+    private final ApplicationStartup applicationStartup;
+
+    public SnapshotDatabaseInitializer(DataSource dataSource, DatabaseInitializationSettings settings, CatalogSnapshot snapshot,
+                                       Path path, ApplicationStartup applicationStartup) {
+        super(dataSource, withoutDataScripts(settings, path));
+        this.snapshot = snapshot;
+        this.path = path;
+        this.applicationStartup = applicationStartup;
+    }
+
+    @Override
+    public boolean initializeDatabase() {
+        StartupStep step = applicationStartup.start(STARTUP_STEP);
+        long start = System.nanoTime();
+        boolean fromSnapshot = Files.isRegularFile(path);
+        step.tag("source", fromSnapshot ? "snapshot" : "scripts");
+
+        // false when initialization is off for this database, then the snapshot is left alone as well
+        boolean initialized = super.initializeDatabase();
+        if (initialized && fromSnapshot) {
+            try {
+                long rows = snapshot.load(path);
+                step.tag("rows", Long.toString(rows));
+                log.info("Loaded {} books from {} in {} ms", rows, path, (System.nanoTime() - start) / 1_000_000);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        step.end();
+        return initialized;
+    }
+
+    private static DatabaseInitializationSettings withoutDataScripts(DatabaseInitializationSettings settings, Path path) {
+        if (Files.isRegularFile(path)) {
+            settings.setDataLocations(List.of());
+        }
+        return settings;
+    }
+}
@@ -1,20 +1,23 @@
-INSERT INTO books (title, author, isbn) VALUES ('1984', 'George Orwell', '9780451524935');
-INSERT INTO books (title, author, isbn) VALUES ('To Kill a Mockingbird', 'Harper Lee', '9780060935467');
-INSERT INTO books (title, author, isbn) VALUES ('The Great Gatsby', 'F. Scott Fitzgerald', '9780743273565');
-INSERT INTO books (title, author, isbn) VALUES ('Pride and Prejudice', 'Jane Austen', '9780679783268');
-INSERT INTO books (title, author, isbn) VALUES ('The Catcher in the Rye', 'J.D. Salinger', '9780316769488');
-INSERT INTO books (title, author, isbn) VALUES ('The Hobbit', 'J.R.R. Tolkien', '9780547928227');
-INSERT INTO books (title, author, isbn) VALUES ('The Lord of the Rings', 'J.R.R. Tolkien', '9780544003415');
-INSERT INTO books (title, author, isbn) VALUES ('Fahrenheit 451', 'Ray Bradbury', '9781451673319');
-INSERT INTO books (title, author, isbn) VALUES ('Brave New World', 'Aldous Huxley', '9780060850524');
-INSERT INTO books (title, author, isbn) VALUES ('Animal Farm', 'George Orwell', '9780451526342');
-INSERT INTO books (title, author, isbn) VALUES ('Jane Eyre', 'Charlotte Brontë', '9780141441146');
-INSERT INTO books (title, author, isbn) VALUES ('Wuthering Heights', 'Emily Brontë', '9780553212587');
-INSERT INTO books (title, author, isbn) VALUES ('Moby Dick', 'Herman Melville', '9781503280786');
-INSERT INTO books (title, author, isbn) VALUES ('Crime and Punishment', 'Fyodor Dostoevsky', '9780486415871');
-INSERT INTO books (title, author, isbn) VALUES ('The Brothers Karamazov', 'Fyodor Dostoevsky', '9780374528379');
-INSERT INTO books (title, author, isbn) VALUES ('War and Peace', 'Leo Tolstoy', '9781400079988');
-INSERT INTO books (title, author, isbn) VALUES ('The Adventures of Huckleberry Finn', 'Mark Twain', '9780486280615');
-INSERT INTO books (title, author, isbn) VALUES ('The Odyssey', 'Homer', '9780140268867');
-INSERT INTO books (title, author, isbn) VALUES ('The Divine Comedy', 'Dante Alighieri', '9780199535644');
-INSERT INTO books (title, author, isbn) VALUES ('Don Quixote', 'Miguel de Cervantes', '9780060934347');
+INSERT INTO books (id, title, author, isbn) VALUES (1, '1984', 'George Orwell', '9780451524935');
+INSERT INTO books (id, title, author, isbn) VALUES (2, 'To Kill a Mockingbird', 'Harper Lee', '9780060935467');
+INSERT INTO books (id, title, author, isbn) VALUES (3, 'The Great Gatsby', 'F. Scott Fitzgerald', '9780743273565');
+INSERT INTO books (id, title, author, isbn) VALUES (4, 'Pride and Prejudice', 'Jane Austen', '9780679783268');
+INSERT INTO books (id, title, author, isbn) VALUES (5, 'The Catcher in the Rye', 'J.D. Salinger', '9780316769488');
+INSERT INTO books (id, title, author, isbn) VALUES (6, 'The Hobbit', 'J.R.R. Tolkien', '9780547928227');
+INSERT INTO books (id, title, author, isbn) VALUES (7, 'The Lord of the Rings', 'J.R.R. Tolkien', '9780544003415');
+INSERT INTO books (id, title, author, isbn) VALUES (8, 'Fahrenheit 451', 'Ray Bradbury', '9781451673319');
+INSERT INTO books (id, title, author, isbn) VALUES (9, 'Brave New World', 'Aldous Huxley', '9780060850524');
+INSERT INTO books (id, title, author, isbn) VALUES (10, 'Animal Farm', 'George Orwell', '9780451526342');
+INSERT INTO books (id, title, author, isbn) VALUES (11, 'Jane Eyre', 'Charlotte Brontë', '9780141441146');
+INSERT INTO books (id, title, author, isbn) VALUES (12, 'Wuthering Heights', 'Emily Brontë', '9780553212587');
+INSERT INTO books (id, title, author, isbn) VALUES (13, 'Moby Dick', 'Herman Melville', '9781503280786');
+INSERT INTO books (id, title, author, isbn) VALUES (14, 'Crime and Punishment', 'Fyodor Dostoevsky', '9780486415871');
+INSERT INTO books (id, title, author, isbn) VALUES (15, 'The Brothers Karamazov', 'Fyodor Dostoevsky', '9780374528379');
+INSERT INTO books (id, title, author, isbn) VALUES (16, 'War and Peace', 'Leo Tolstoy', '9781400079988');
+INSERT INTO books (id, title, author, isbn) VALUES (17, 'The Adventures of Huckleberry Finn', 'Mark Twain', '9780486280615');
+INSERT INTO books (id, title, author, isbn) VALUES (18, 'The Odyssey', 'Homer', '9780140268867');
+INSERT INTO books (id, title, author, isbn) VALUES (19, 'The Divine Comedy', 'Dante Alighieri', '9780199535644');
+INSERT INTO books (id, title, author, isbn) VALUES (20, 'Don Quixote', 'Miguel de Cervantes', '9780060934347');
+
+-- the seed rows use explicit ids, move the sequence past them so generated ids don't collide
+ALTER SEQUENCE books_seq RESTART WITH 21;
@@ -1,6 +1,33 @@
+CREATE SEQUENCE IF NOT EXISTS books_seq START WITH 1 INCREMENT BY 50;
+
 CREATE TABLE IF NOT EXISTS books (
-    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    id BIGINT DEFAULT NEXT VALUE FOR books_seq PRIMARY KEY,
     title VARCHAR(255) NOT NULL,
     author VARCHAR(255) NOT NULL,
-    isbn VARCHAR(13) NOT NULL
-);
\ No newline at end of file
+    isbn VARCHAR(13) NOT NULL,
+    version BIGINT DEFAULT 0 NOT NULL
+);
+
+-- books are looked up by ISBN far more than by id, and an ISBN belongs to exactly one book
+CREATE UNIQUE INDEX IF NOT EXISTS books_isbn_idx ON books (isbn);
+
+-- combined search (BookSpecifications) has an index for every sort order it offers, so a page is read in order and
+-- stops after limit matching rows instead of sorting every match, and a keyset cursor seeks straight to its position.
+-- H2 can't walk an index backwards, hence the DESC twins
+CREATE INDEX IF NOT EXISTS books_title_idx ON books (title, id);
+CREATE INDEX IF NOT EXISTS books_title_desc_idx ON books (title DESC, id DESC);
+CREATE INDEX IF NOT EXISTS books_author_idx ON books (author, id);
+CREATE INDEX IF NOT EXISTS books_author_desc_idx ON books (author DESC, id DESC);
+CREATE INDEX IF NOT EXISTS books_id_desc_idx ON books (id DESC);
+CREATE UNIQUE INDEX IF NOT EXISTS books_isbn_desc_idx ON books (isbn DESC);
+
+-- one row per imported file, written in the same transaction as each chunk of books so a stopped import resumes
+-- right after the last chunk that committed, see BookImporter
+CREATE TABLE IF NOT EXISTS book_imports (
+    file_path VARCHAR(1024) PRIMARY KEY,
+    file_size BIGINT NOT NULL,
+    records BIGINT NOT NULL,
+    imported BIGINT NOT NULL,
+    rejected BIGINT NOT NULL,
+    finished BOOLEAN NOT NULL
+);
@@ -0,0 +1,45 @@
+package com.hpursan.digicert.library;
+
+import com.hpursan.digicert.library.domain.Isbn;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates the same catalog for every benchmark: titles of two random words and a sequence number, authors from a
+ * fixed set of names and unique ISBN-13s. The same seed always gives the same books.
+ */
+public final class BenchmarkCatalog {
+    public static final String[] WORDS = {"the", "shining", "lord", "rings", "war", "peace", "crime", "punishment",
+        "brave", "new", "world", "animal", "farm", "great", "gatsby", "moby", "dick", "odyssey", "divine", "comedy",
+        "house", "night", "river", "stone", "silent", "garden", "winter", "summer", "shadow", "empire", "kingdom"};
+    public static final String[] NAMES = {"Stephen", "George", "Jane", "Leo", "Mark", "Emily", "Harper", "Ray",
+        "Aldous", "Herman", "Fyodor", "Charlotte", "Miguel", "Dante", "Lauren", "Agatha", "Virginia", "Franz"};
+    public static final String[] SURNAMES = {"King", "Orwell", "Austen", "Tolstoy", "Twain", "Bronte", "Lee",
+        "Bradbury", "Huxley", "Melville", "Dostoevsky", "Cervantes", "Alighieri", "Beukes", "Christie", "Woolf", "Kafka"};
+
+    private static final int BATCH = 10_000;
+
+    private BenchmarkCatalog() {
+    }
+
+    /**
+     * Inserts {@code rows} generated books, ids come from the table's sequence.
+     */
+    public static void load(JdbcTemplate jdbcTemplate, int rows) {
+        Random random = new Random(42);
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            String author = NAMES[random.nextInt(NAMES.length)] + " " + SURNAMES[random.nextInt(SURNAMES.length)];
+            batch.add(new Object[]{title, author, Isbn.withCheckDigit(String.format("978%09d", i))});
+            if (batch.size() == BATCH) {
+                jdbcTemplate.batchUpdate("INSERT INTO books (title, author, isbn) VALUES (?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO books (title, author, isbn) VALUES (?, ?, ?)", batch);
+    }
+}
@@ -0,0 +1,276 @@
+package com.hpursan.digicert.library;
+
+import com.hpursan.digicert.library.domain.Isbn;
+import com.hpursan.digicert.library.search.BookSearchIndex;
+import com.hpursan.digicert.library.search.IsbnIndex;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.function.Executable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives a mix of list, search, get, create, update and delete calls through the whole HTTP stack at a fixed arrival
+ * rate and fails when an endpoint misses its p99 budget or answers with an unexpected status.
+ * <p>
+ * The load is open loop: request {@code i} is due at {@code start + i / rate} whether or not earlier ones have
+ * finished, and its latency is measured from when it was due. A server that stalls is charged for every request that
+ * queued up behind the stall, not just the one that was in flight. Run with {@code mvn test -Ploadtest}, the knobs are
+ * <ul>
+ *     <li>{@code -Dload.rows=10000} seeded books</li>
+ *     <li>{@code -Dload.rate=200} requests per second</li>
+ *     <li>{@code -Dload.seconds=30} measured, after {@code -Dload.warmupSeconds=5}</li>
+ *     <li>{@code -Dload.mix=list=25,search=20,get=40,create=5,update=5,delete=5} relative weights</li>
+ *     <li>{@code -Dload.p99Ms=250} budget for every endpoint, {@code -Dload.p99Ms.get=...} for just one</li>
+ * </ul>
+ * Full percentile distributions are written to {@code target/load-test/<endpoint>.hgrm}.
+ * <p>
+ * Admission control stays on, as it is in production. A request it sheds with 503 and {@code Retry-After} is counted
+ * in its own column rather than as an error, and left out of the histogram, since how quickly the server says no
+ * says nothing about how quickly it serves.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = {"debug=false", "spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1"})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class BookApiLoadTest {
+    private static final int ROWS = Integer.getInteger("load.rows", 10_000);
+    private static final int RATE = Integer.getInteger("load.rate", 200);
+    private static final int SECONDS = Integer.getInteger("load.seconds", 30);
+    private static final int WARMUP_SECONDS = Integer.getInteger("load.warmupSeconds", 5);
+    private static final String MIX = System.getProperty("load.mix", "list=25,search=20,get=40,create=5,update=5,delete=5");
+    private static final long P99_MS = Long.getLong("load.p99Ms", 250);
+
+    private static final Pattern ID = Pattern.compile("\"id\":(\\d+)");
+
+    enum Endpoint {
+        LIST(200), SEARCH(200, 204), GET(200), CREATE(201), UPDATE(200, 412), DELETE(204);
+
+        // an update can lose the optimistic locking race to another update of the same book
+        private final Set<Integer> expected;
+
+        Endpoint(Integer... expected) {
+            this.expected = Set.of(expected);
+        }
+
+        String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    BookSearchIndex bookSearchIndex;
+
+    @Autowired
+    IsbnIndex isbnIndex;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final Random random = new Random(7);
+    private final AtomicLong isbns = new AtomicLong();
+    private final Queue<Long> deletable = new ConcurrentLinkedQueue<>();
+    private final Queue<Long> created = new ConcurrentLinkedQueue<>();
+    private Endpoint[] weighted;
+    private long[] stableIds;
+    private String[] stableIsbns;
+
+    @BeforeAll
+    void seed() {
+        BenchmarkCatalog.load(jdbcTemplate, ROWS);
+        bookSearchIndex.rebuild();
+        isbnIndex.rebuild();
+
+        // a fifth of the books are set aside to be deleted, the rest are only ever read and updated
+        List<Map<String, Object>> books = new ArrayList<>(jdbcTemplate.queryForList("SELECT id, isbn FROM books"));
+        Collections.shuffle(books, random);
+        int stable = books.size() * 4 / 5;
+        stableIds = new long[stable];
+        stableIsbns = new String[stable];
+        for (int i = 0; i < books.size(); i++) {
+            long id = ((Number) books.get(i).get("ID")).longValue();
+            if (i < stable) {
+                stableIds[i] = id;
+                stableIsbns[i] = (String) books.get(i).get("ISBN");
+            } else {
+                deletable.add(id);
+            }
+        }
+
+        List<Endpoint> mix = new ArrayList<>();
+        for (String entry : MIX.split(",")) {
+            String[] weight = entry.trim().split("=");
+            mix.addAll(Collections.nCopies(Integer.parseInt(weight[1]), Endpoint.valueOf(weight[0].toUpperCase(Locale.ROOT))));
+        }
+        weighted = mix.toArray(new Endpoint[0]);
+    }
+
+    @Test
+    void mixedTrafficStaysWithinTheP99Budget() throws IOException {
+        drive(WARMUP_SECONDS);
+        Map<Endpoint, Stats> results = drive(SECONDS);
+
+        Path reports = Files.createDirectories(Path.of("target", "load-test"));
+        System.out.printf("%d req/s for %ds against %d books%n", RATE, SECONDS, ROWS);
+        System.out.printf("%-8s %8s %9s %9s %9s %9s %9s %7s %7s %8s%n", "endpoint", "count", "p50 ms", "p90 ms", "p99 ms",
+            "p99.9 ms", "max ms", "shed", "errors", "budget");
+        List<Executable> checks = new ArrayList<>();
+        for (Map.Entry<Endpoint, Stats> result : results.entrySet()) {
+            Endpoint endpoint = result.getKey();
+            Histogram histogram = result.getValue().histogram;
+            long errors = result.getValue().errors.sum();
+            long budget = Long.getLong("load.p99Ms." + endpoint.key(), P99_MS);
+            double p99 = millis(histogram.getValueAtPercentile(99));
+            System.out.printf("%-8s %8d %9.1f %9.1f %9.1f %9.1f %9.1f %7d %7d %8d%n", endpoint.key(), histogram.getTotalCount(),
+                millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)), p99,
+                millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMaxValue()), result.getValue().shed.sum(),
+                errors, budget);
+            try (PrintStream out = new PrintStream(reports.resolve(endpoint.key() + ".hgrm").toFile())) {
+                histogram.outputPercentileDistribution(out, 1000.0);
+            }
+
+            checks.add(() -> assertEquals(0, errors, endpoint.key() + " had unexpected responses"));
+            checks.add(() -> assertTrue(p99 <= budget, endpoint.key() + " p99 " + p99 + "ms is over its " + budget + "ms budget"));
+        }
+        assertAll(checks);
+    }
+
+    private Map<Endpoint, Stats> drive(int seconds) {
+        Map<Endpoint, Stats> stats = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : weighted) {
+            stats.computeIfAbsent(endpoint, e -> new Stats());
+        }
+
+        long interval = TimeUnit.SECONDS.toNanos(1) / RATE;
+        long requests = (long) seconds * RATE;
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; i < requests; i++) {
+                long due = start + i * interval;
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                Endpoint endpoint = weighted[random.nextInt(weighted.length)];
+                HttpRequest request = request(endpoint);
+                if (request == null) {
+                    continue;
+                }
+                executor.submit(() -> send(endpoint, request, due, stats.get(endpoint)));
+            }
+        }
+        return stats;
+    }
+
+    // null when there is nothing left to delete, that slot is skipped rather than sent as a guaranteed 400
+    private HttpRequest request(Endpoint endpoint) {
+        String base = "http://localhost:" + port + "/api/books";
+        int stable = random.nextInt(stableIds.length);
+        switch (endpoint) {
+            case LIST:
+                return HttpRequest.newBuilder(URI.create(base + "?limit=50")).build();
+            case SEARCH:
+                String word = BenchmarkCatalog.WORDS[random.nextInt(BenchmarkCatalog.WORDS.length)];
+                return HttpRequest.newBuilder(URI.create(base + "?title=" + word + "%20" + random.nextInt(ROWS) + "&limit=50")).build();
+            case GET:
+                return HttpRequest.newBuilder(URI.create(base + "/" + stableIds[stable])).build();
+            case CREATE:
+                return HttpRequest.newBuilder(URI.create(base + "/"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(json("Load test", Isbn.withCheckDigit(String.format("979%09d", isbns.incrementAndGet())))))
+                    .build();
+            case UPDATE:
+                return HttpRequest.newBuilder(URI.create(base + "/" + stableIds[stable]))
+                    .header("Content-Type", "application/json")
+                    .PUT(HttpRequest.BodyPublishers.ofString(json("Updated " + random.nextInt(), stableIsbns[stable])))
+                    .build();
+            case DELETE:
+                Long id = created.poll();
+                if (id == null) {
+                    id = deletable.poll();
+                }
+                return id == null ? null : HttpRequest.newBuilder(URI.create(base + "/" + id)).DELETE().build();
+            default:
+                throw new IllegalArgumentException(endpoint.name());
+        }
+    }
+
+    private void send(Endpoint endpoint, HttpRequest request, long due, Stats stats) {
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() == 503 && response.headers().firstValue("Retry-After").isPresent()) {
+                stats.shed.increment();
+                return;
+            }
+            if (!endpoint.expected.contains(response.statusCode())) {
+                stats.errors.increment();
+            } else if (endpoint == Endpoint.CREATE) {
+                Matcher id = ID.matcher(response.body());
+                if (id.find()) {
+                    created.add(Long.parseLong(id.group(1)));
+                }
+            }
+        } catch (IOException ex) {
+            stats.errors.increment();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            stats.errors.increment();
+        }
+        stats.histogram.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due));
+    }
+
+    private static String json(String title, String isbn) {
+        return "{\"title\":\"" + title + "\",\"author\":\"Load Tester\",\"isbn\":\"" + isbn + "\"}";
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static class Stats {
+        private final Histogram histogram = new ConcurrentHistogram(3);
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder shed = new LongAdder();
+    }
+}
@@ -0,0 +1,248 @@
+package com.hpursan.digicert.library;
+
+import com.hpursan.digicert.library.reactive.ReactiveServer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds more and more open keep-alive connections against the servlet API (Tomcat) and the reactive API (Netty) of
+ * the same application, and has every connection list a page of books at once. For each step it prints how many
+ * requests completed, their p99, how much the heap grew per open connection and how many threads the JVM is running.
+ * Both servers share one JVM, so they have the same heap to work with. The client is a single NIO thread in that JVM
+ * too, its share of the heap is a few hundred bytes per connection. Run with {@code mvn test -Pbenchmark}, the knobs
+ * are {@code -Dbenchmark.connections=1000,2000,4000,8000} (each side of a connection is a file descriptor, so mind
+ * {@code ulimit -n}) and {@code -Dbenchmark.timeoutSeconds=30}.
+ */
+@Tag("benchmark")
+public class ConnectionCapacityBenchmark {
+    private static final int[] CONNECTIONS = Arrays.stream(System.getProperty("benchmark.connections", "1000,2000,4000,8000").split(","))
+        .mapToInt(Integer::parseInt).toArray();
+    private static final long TIMEOUT_SECONDS = Long.getLong("benchmark.timeoutSeconds", 30);
+    // connects in flight at once, so neither server's accept backlog is what's being measured
+    private static final int CONNECT_BATCH = 200;
+    private static final byte[] CHUNKED_END = "\r\n0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    @Test
+    void servletAgainstReactive() throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(LibraryApplication.class)
+            .run("--server.port=0",
+                "--debug=false",
+                "--spring.datasource.url=jdbc:h2:mem:connections",
+                // capacity is what is being measured, not how much of it the limits let through
+                "--library.admission.enabled=false",
+                "--library.reactive.enabled=true",
+                "--library.reactive.port=0")) {
+            int servletPort = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+            int reactivePort = context.getBean(ReactiveServer.class).getPort();
+
+            System.out.printf("%-9s %11s %9s %7s %9s %9s %9s %8s%n", "stack", "connections", "completed", "failed",
+                "p99 ms", "heap MB", "KB/conn", "threads");
+            for (int connections : CONNECTIONS) {
+                run("servlet", servletPort, connections).print();
+                run("reactive", reactivePort, connections).print();
+            }
+        }
+    }
+
+    private Step run(String stack, int port, int connections) throws IOException {
+        try (Selector selector = Selector.open()) {
+            // warm up the path once so the step isn't charged for class loading
+            close(round(selector, port, 1));
+            long baseline = heapUsed();
+
+            List<Client> clients = new ArrayList<>(connections);
+            Step step = round(selector, port, connections, clients);
+            // measured while every connection is still open and idle between requests
+            step.heapBytes = heapUsed() - baseline;
+            step.threads = threads.getThreadCount();
+            step.stack = stack;
+            step.connections = connections;
+            close(clients);
+            return step;
+        }
+    }
+
+    private List<Client> round(Selector selector, int port, int connections) throws IOException {
+        List<Client> clients = new ArrayList<>(connections);
+        round(selector, port, connections, clients);
+        return clients;
+    }
+
+    private static void close(List<Client> clients) throws IOException {
+        for (Client client : clients) {
+            client.channel.close();
+        }
+    }
+
+    /**
+     * Opens {@code connections} connections, sends one request on each and waits for all the responses, or the
+     * timeout.
+     */
+    private Step round(Selector selector, int port, int connections, List<Client> clients) throws IOException {
+        byte[] request = ("GET /api/books?limit=20 HTTP/1.1\r\nHost: localhost:" + port + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        int pending = connections;
+        int connecting = 0;
+        Step step = new Step();
+        long[] latencies = new long[connections];
+
+        while (pending > 0 && System.nanoTime() < deadline) {
+            while (clients.size() < connections && connecting < CONNECT_BATCH) {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                Client client = new Client(channel);
+                clients.add(client);
+                channel.connect(new InetSocketAddress("localhost", port));
+                channel.register(selector, SelectionKey.OP_CONNECT, client);
+                connecting++;
+            }
+            selector.select(100);
+            for (SelectionKey key : selector.selectedKeys()) {
+                Client client = (Client) key.attachment();
+                try {
+                    if (key.isConnectable()) {
+                        client.channel.finishConnect();
+                        connecting--;
+                        client.sent = System.nanoTime();
+                        client.channel.write(ByteBuffer.wrap(request));
+                        key.interestOps(SelectionKey.OP_READ);
+                    } else if (key.isReadable()) {
+                        buffer.clear();
+                        int read = client.channel.read(buffer);
+                        if (read < 0) {
+                            throw new IOException("closed by the server");
+                        }
+                        if (client.consume(buffer.flip())) {
+                            latencies[step.completed++] = System.nanoTime() - client.sent;
+                            key.interestOps(0);
+                            pending--;
+                        }
+                    }
+                } catch (IOException ex) {
+                    if (key.isConnectable()) {
+                        connecting--;
+                    }
+                    key.cancel();
+                    step.failed++;
+                    pending--;
+                }
+            }
+            selector.selectedKeys().clear();
+        }
+        step.failed += pending;
+
+        long[] completed = Arrays.copyOf(latencies, step.completed);
+        Arrays.sort(completed);
+        step.p99Millis = completed.length == 0 ? 0 : completed[(int) Math.ceil(completed.length * 0.99) - 1] / 1e6;
+        return step;
+    }
+
+    private long heapUsed() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * One connection and just enough HTTP/1.1 parsing to know when a response has been read, with a Content-Length
+     * or chunked.
+     */
+    private static class Client {
+        private final SocketChannel channel;
+        private final StringBuilder headers = new StringBuilder();
+        private long sent;
+        private boolean inBody;
+        private long remaining = -1;
+        private final byte[] tail = new byte[CHUNKED_END.length];
+        private int tailed;
+
+        Client(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        boolean consume(ByteBuffer bytes) {
+            while (bytes.hasRemaining()) {
+                byte b = bytes.get();
+                if (!inBody) {
+                    headers.append((char) b);
+                    int length = headers.length();
+                    if (length >= 4 && headers.lastIndexOf("\r\n\r\n") == length - 4) {
+                        inBody = true;
+                        String head = headers.toString().toLowerCase(Locale.ROOT);
+                        int contentLength = head.indexOf("content-length:");
+                        if (contentLength >= 0) {
+                            remaining = Long.parseLong(head.substring(contentLength + 15, head.indexOf('\r', contentLength)).trim());
+                        } else if (!head.contains("chunked")) {
+                            remaining = 0;
+                        }
+                        // a chunked body's first chunk size follows straight on, pretend it came after a CRLF
+                        tail[tail.length - 2] = '\r';
+                        tail[tail.length - 1] = '\n';
+                        tailed = 2;
+                        if (remaining == 0) {
+                            return reset();
+                        }
+                    }
+                } else if (remaining > 0) {
+                    if (--remaining == 0) {
+                        return reset();
+                    }
+                } else {
+                    System.arraycopy(tail, 1, tail, 0, tail.length - 1);
+                    tail[tail.length - 1] = b;
+                    tailed++;
+                    if (tailed >= tail.length && Arrays.equals(tail, CHUNKED_END)) {
+                        return reset();
+                    }
+                }
+            }
+            return false;
+        }
+
+        private boolean reset() {
+            headers.setLength(0);
+            inBody = false;
+            remaining = -1;
+            tailed = 0;
+            return true;
+        }
+    }
+
+    private static class Step {
+        private String stack;
+        private int connections;
+        private int completed;
+        private int failed;
+        private double p99Millis;
+        private long heapBytes;
+        private int threads;
+
+        void print() {
+            System.out.printf("%-9s %11d %9d %7d %9.1f %9.1f %9.2f %8d%n", stack, connections, completed, failed, p99Millis,
+                heapBytes / 1048576.0, heapBytes / 1024.0 / connections, threads);
+        }
+    }
+}
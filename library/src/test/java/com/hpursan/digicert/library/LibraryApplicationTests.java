@@ -1,13 +1,25 @@
 package com.hpursan.digicert.library;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
 
 @SpringBootTest
+@ExtendWith(OutputCaptureExtension.class)
 class LibraryApplicationTests {
 
 	@Test
 	void contextLoads() {
 	}
 
+	@Test
+	void shouldStartWithoutBeansSkippedByPostProcessors(CapturedOutput output) {
+		assertFalse(output.getAll().contains("is not eligible for getting processed by all BeanPostProcessors"),
+			output.getAll());
+	}
+
 }
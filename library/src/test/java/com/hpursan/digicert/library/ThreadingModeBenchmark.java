@@ -0,0 +1,219 @@
+package com.hpursan.digicert.library;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the same mixed load against the application on platform threads and then on virtual threads, and prints the
+ * throughput and p99 of each. Half the requests are by-id reads served from the cache, the other half list a page
+ * straight from the database. An in-memory H2 answers in microseconds, so every statement is delayed to look like a
+ * database across the network. Errors are requests that failed, usually because they waited longer than the pool's
+ * connection timeout. Run with {@code mvn test -Pbenchmark}, the knobs are {@code -Dbenchmark.clients=...},
+ * {@code -Dbenchmark.seconds=...} and {@code -Dbenchmark.jdbcLatencyMs=...}.
+ */
+@Tag("benchmark")
+public class ThreadingModeBenchmark {
+    private static final int CLIENTS = Integer.getInteger("benchmark.clients", 1_000);
+    private static final int SECONDS = Integer.getInteger("benchmark.seconds", 15);
+    private static final int WARMUP_SECONDS = Math.max(1, SECONDS / 3);
+    private static final long JDBC_LATENCY_MS = Long.getLong("benchmark.jdbcLatencyMs", 5);
+
+    @Test
+    void platformThreadsAgainstVirtualThreads() throws Exception {
+        Result platform = run(false);
+        Result virtual = run(true);
+
+        System.out.printf("%d clients, %ds, %dms per statement%n", CLIENTS, SECONDS, JDBC_LATENCY_MS);
+        platform.print("platform");
+        virtual.print("virtual");
+    }
+
+    private Result run(boolean virtualThreads) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(LibraryApplication.class, JdbcLatency.class)
+            .run("--server.port=0",
+                "--debug=false",
+                "--spring.datasource.url=jdbc:h2:mem:threads-" + virtualThreads,
+                // capacity is what is being measured, not how much of it the limits let through
+                "--library.admission.enabled=false",
+                "--spring.threads.virtual.enabled=" + virtualThreads)) {
+            String base = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api/books";
+            drive(base, WARMUP_SECONDS);
+            Result result = drive(base, SECONDS);
+            assertTrue(result.byId.length > 0 && result.list.length > 0, "no requests completed");
+            return result;
+        }
+    }
+
+    private Result drive(String base, int seconds) throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Future<Client>> clients = new ArrayList<>();
+        // the clients are platform threads, on virtual threads they would share the scheduler with the server's
+        try (ExecutorService executor = Executors.newFixedThreadPool(CLIENTS)) {
+            for (int i = 0; i < CLIENTS; i++) {
+                Client c = new Client(new Random(i));
+                clients.add(executor.submit(() -> c.run(client, base, end)));
+            }
+        }
+
+        Client total = new Client(null);
+        for (Future<Client> c : clients) {
+            total.add(c.get());
+        }
+        return new Result(seconds, total.byId.toArray(), total.list.toArray(), total.errors);
+    }
+
+    private static class Client {
+        private final Random random;
+        private final Latencies byId = new Latencies();
+        private final Latencies list = new Latencies();
+        private int errors;
+
+        Client(Random random) {
+            this.random = random;
+        }
+
+        Client run(HttpClient client, String base, long end) {
+            while (System.nanoTime() < end) {
+                boolean byIdRequest = random.nextBoolean();
+                URI uri = URI.create(byIdRequest ? base + "/" + (1 + random.nextInt(20)) : base + "?limit=20");
+                long start = System.nanoTime();
+                try {
+                    HttpResponse<Void> response = client.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.discarding());
+                    if (response.statusCode() != 200) {
+                        errors++;
+                        continue;
+                    }
+                } catch (Exception ex) {
+                    errors++;
+                    continue;
+                }
+                (byIdRequest ? byId : list).add(System.nanoTime() - start);
+            }
+            return this;
+        }
+
+        void add(Client other) {
+            byId.add(other.byId);
+            list.add(other.list);
+            errors += other.errors;
+        }
+    }
+
+    private static class Latencies {
+        private long[] nanos = new long[256];
+        private int size;
+
+        void add(long value) {
+            if (size == nanos.length) {
+                nanos = Arrays.copyOf(nanos, size * 2);
+            }
+            nanos[size++] = value;
+        }
+
+        void add(Latencies other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.nanos[i]);
+            }
+        }
+
+        long[] toArray() {
+            long[] sorted = Arrays.copyOf(nanos, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    private static class Result {
+        private final int seconds;
+        private final long[] byId;
+        private final long[] list;
+        private final int errors;
+
+        Result(int seconds, long[] byId, long[] list, int errors) {
+            this.seconds = seconds;
+            this.byId = byId;
+            this.list = list;
+            this.errors = errors;
+        }
+
+        void print(String mode) {
+            long[] all = new long[byId.length + list.length];
+            System.arraycopy(byId, 0, all, 0, byId.length);
+            System.arraycopy(list, 0, all, byId.length, list.length);
+            Arrays.sort(all);
+            System.out.printf("%-9s all     %8.0f req/s  p99 %8.1f ms  errors %d%n", mode, (double) all.length / seconds, p99(all), errors);
+            System.out.printf("%-9s by id   %8.0f req/s  p99 %8.1f ms%n", mode, (double) byId.length / seconds, p99(byId));
+            System.out.printf("%-9s list    %8.0f req/s  p99 %8.1f ms%n", mode, (double) list.length / seconds, p99(list));
+        }
+
+        private static double p99(long[] sorted) {
+            return sorted.length == 0 ? 0 : sorted[(int) Math.ceil(sorted.length * 0.99) - 1] / 1_000_000.0;
+        }
+    }
+
+    /**
+     * Holds every statement for {@code benchmark.jdbcLatencyMs} while it keeps its connection, the way a round trip
+     * to a remote database would. The delay is outside the driver so it doesn't add lock contention of its own.
+     */
+    @TestConfiguration
+    static class JdbcLatency {
+        @Bean
+        static BeanPostProcessor jdbcLatencyPostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? new SlowDataSource(dataSource) : bean;
+                }
+            };
+        }
+    }
+
+    private static class SlowDataSource extends DelegatingDataSource {
+        SlowDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().startsWith("prepare") || method.getName().equals("createStatement")) {
+                        Thread.sleep(JDBC_LATENCY_MS);
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getCause();
+                    }
+                });
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.hpursan.digicert.library.admission;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdmissionControlInterceptorTest {
+    private MeterRegistry meterRegistry;
+    private GradientLimiter reads;
+    private GradientLimiter searches;
+    private AdmissionControlInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        reads = new GradientLimiter(2, 1, 10, 1.5, 0.2);
+        searches = new GradientLimiter(1, 1, 10, 1.5, 0.2);
+        GradientLimiter writes = new GradientLimiter(1, 1, 10, 1.5, 0.2);
+        interceptor = new AdmissionControlInterceptor(
+            Map.of(EndpointClass.READS, reads, EndpointClass.SEARCHES, searches, EndpointClass.WRITES, writes),
+            Duration.ofMillis(1500), meterRegistry);
+    }
+
+    @Test
+    void preHandle_ShouldRejectWith503AndRetryAfterOverTheLimit() {
+        MockHttpServletRequest first = request("GET", "/api/books");
+        assertTrue(interceptor.preHandle(first, new MockHttpServletResponse(), null));
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertFalse(interceptor.preHandle(request("GET", "/api/books"), response, null));
+
+        assertEquals(503, response.getStatus());
+        assertEquals("2", response.getHeader("Retry-After"));
+        assertEquals(1.0, meterRegistry.get(AdmissionControlInterceptor.REJECTED).tag("class", "searches").counter().count());
+        assertEquals(1.0, meterRegistry.get(AdmissionControlInterceptor.IN_FLIGHT).tag("class", "searches").gauge().value());
+    }
+
+    @Test
+    void preHandle_ShouldKeepReadsGoingWhileSearchesAreAtTheirLimit() {
+        assertTrue(interceptor.preHandle(request("GET", "/api/books"), new MockHttpServletResponse(), null));
+        assertFalse(interceptor.preHandle(request("GET", "/api/books"), new MockHttpServletResponse(), null));
+
+        assertTrue(interceptor.preHandle(request("GET", "/api/books/{id}"), new MockHttpServletResponse(), null));
+        assertTrue(interceptor.preHandle(request("GET", "/api/books/isbn/{isbn}"), new MockHttpServletResponse(), null));
+        assertEquals(2, reads.getInFlight());
+    }
+
+    @Test
+    void afterCompletion_ShouldReleaseTheAdmittedRequestOnce() {
+        MockHttpServletRequest request = request("GET", "/api/books/{id}");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        interceptor.preHandle(request, response, null);
+        assertEquals(1, reads.getInFlight());
+
+        interceptor.afterCompletion(request, response, null, null);
+        interceptor.afterCompletion(request, response, null, null);
+
+        assertEquals(0, reads.getInFlight());
+    }
+
+    @Test
+    void afterCompletion_ShouldBackOffWhenTheRequestFailed() {
+        GradientLimiter limiter = new GradientLimiter(10, 1, 10, 1.5, 0.2);
+        interceptor = new AdmissionControlInterceptor(Map.of(EndpointClass.READS, limiter), Duration.ofSeconds(1), meterRegistry);
+        MockHttpServletRequest request = request("GET", "/api/books/{id}");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        interceptor.preHandle(request, response, null);
+
+        response.setStatus(500);
+        interceptor.afterCompletion(request, response, null, null);
+
+        assertEquals(9, limiter.getLimit());
+    }
+
+    @Test
+    void preHandle_ShouldLetUnlimitedRequestsThrough() {
+        assertTrue(interceptor.preHandle(request("GET", "/api/books/export"), new MockHttpServletResponse(), null));
+        assertTrue(interceptor.preHandle(new MockHttpServletRequest("GET", "/api/unknown"), new MockHttpServletResponse(), null));
+
+        assertEquals(0, searches.getInFlight());
+        assertEquals(0, reads.getInFlight());
+    }
+
+    @Test
+    void of_ShouldClassifyByMethodAndPattern() {
+        assertEquals(EndpointClass.READS, EndpointClass.of("GET", "/api/books/{id}"));
+        assertEquals(EndpointClass.READS, EndpointClass.of("POST", "/api/books/lookup"));
+        assertEquals(EndpointClass.SEARCHES, EndpointClass.of("GET", "/api/books"));
+        assertEquals(EndpointClass.WRITES, EndpointClass.of("POST", "/api/books/"));
+        assertEquals(EndpointClass.WRITES, EndpointClass.of("DELETE", "/api/books/{id}"));
+        assertNull(EndpointClass.of("GET", "/api/books/export"));
+        assertNull(EndpointClass.of("GET", "/api/books/changes"));
+    }
+
+    private static MockHttpServletRequest request(String method, String pattern) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, pattern);
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, pattern);
+        return request;
+    }
+}
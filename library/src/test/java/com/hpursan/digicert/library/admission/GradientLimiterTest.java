@@ -0,0 +1,107 @@
+package com.hpursan.digicert.library.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GradientLimiterTest {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    void tryAcquire_ShouldRejectOverTheLimit() {
+        GradientLimiter limiter = new GradientLimiter(2, 1, 10, 1.5, 0.2);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlight());
+
+        limiter.release(FAST, false);
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    void release_ShouldGrowTheLimitWhileLatencyIsSteady() {
+        GradientLimiter limiter = new GradientLimiter(4, 1, 50, 1.5, 0.2);
+
+        saturate(limiter, 100, FAST);
+
+        assertEquals(50, limiter.getLimit());
+    }
+
+    @Test
+    void release_ShouldShrinkTheLimitWhenLatencyClimbs() {
+        GradientLimiter limiter = new GradientLimiter(20, 2, 50, 1.5, 0.2);
+        saturate(limiter, 50, FAST);
+        int steady = limiter.getLimit();
+
+        saturate(limiter, 10, SLOW);
+
+        assertTrue(limiter.getLimit() < steady / 2, "limit " + limiter.getLimit() + " after " + steady);
+    }
+
+    @Test
+    void release_ShouldRecoverOnceLatencyIsBackToNormal() {
+        GradientLimiter limiter = new GradientLimiter(20, 2, 50, 1.5, 0.2);
+        saturate(limiter, 50, FAST);
+        saturate(limiter, 20, SLOW);
+
+        saturate(limiter, 200, FAST);
+
+        assertEquals(50, limiter.getLimit());
+    }
+
+    @Test
+    void release_ShouldNotGrowTheLimitOnLightTraffic() {
+        GradientLimiter limiter = new GradientLimiter(10, 1, 50, 1.5, 0.2);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire();
+            limiter.release(FAST, false);
+        }
+
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    void release_ShouldBackOffOnADroppedRequestButNotBelowTheMinimum() {
+        GradientLimiter limiter = new GradientLimiter(10, 5, 50, 1.5, 0.2);
+
+        limiter.tryAcquire();
+        limiter.release(FAST, true);
+        assertEquals(9, limiter.getLimit());
+
+        for (int i = 0; i < 20; i++) {
+            limiter.tryAcquire();
+            limiter.release(FAST, true);
+        }
+        assertEquals(5, limiter.getLimit());
+    }
+
+    @Test
+    void constructor_ShouldRejectAnInitialLimitOutsideTheRange() {
+        assertThrows(IllegalArgumentException.class, () -> new GradientLimiter(1, 2, 10, 1.5, 0.2));
+        assertThrows(IllegalArgumentException.class, () -> new GradientLimiter(5, 0, 10, 1.5, 0.2));
+    }
+
+    /**
+     * Fills the limit and lets every request finish with the given latency, {@code rounds} times over.
+     */
+    private static void saturate(GradientLimiter limiter, int rounds, long rttNanos) {
+        for (int round = 0; round < rounds; round++) {
+            int acquired = 0;
+            while (limiter.tryAcquire()) {
+                acquired++;
+            }
+            for (int i = 0; i < acquired; i++) {
+                limiter.release(rttNanos, false);
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.hpursan.digicert.library.cache;
+
+import com.hpursan.digicert.library.config.BookCacheProperties;
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.event.BookChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BookCacheTest {
+    SimpleMeterRegistry meterRegistry;
+    private BookCache bookCache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        bookCache = new BookCache(new BookCacheProperties(DataSize.ofMegabytes(1), Duration.ofMinutes(10), Duration.ofMillis(50)), meterRegistry);
+    }
+
+    @Test
+    void get_ShouldReturnCopiesSoCallersCantChangeTheCache() {
+        Book book = new Book(1L, "The Shining", "Stephen King", "1234567890123");
+
+        bookCache.get(1L, id -> Optional.of(book)).get().setTitle("Changed");
+
+        assertEquals("The Shining", bookCache.get(1L, id -> Optional.empty()).get().getTitle());
+    }
+
+    @Test
+    void get_WhenMissing_ShouldForgetTheMissAfterTheNegativeTtl() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+
+        bookCache.get(1L, id -> { loads.incrementAndGet(); return Optional.empty(); });
+        bookCache.get(1L, id -> { loads.incrementAndGet(); return Optional.empty(); });
+        assertEquals(1, loads.get());
+
+        Thread.sleep(100);
+        bookCache.get(1L, id -> { loads.incrementAndGet(); return Optional.empty(); });
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void getAll_ShouldLoadOnlyTheMissesInOneCallAndCacheTheOnesNotFound() {
+        Book cached = new Book(1L, "The Shining", "Stephen King", "1234567890123");
+        Book loaded = new Book(2L, "IT", "Stephen King", "1234567890124");
+        bookCache.get(1L, id -> Optional.of(cached));
+        List<List<Long>> loads = new ArrayList<>();
+
+        Map<Long, Optional<Book>> books = bookCache.getAll(List.of(3L, 2L, 1L), ids -> { loads.add(ids); return List.of(loaded); });
+
+        assertEquals(List.of(3L, 2L, 1L), List.copyOf(books.keySet()));
+        assertEquals(Optional.empty(), books.get(3L));
+        assertEquals("IT", books.get(2L).get().getTitle());
+        assertEquals("The Shining", books.get(1L).get().getTitle());
+        assertEquals(List.of(List.of(3L, 2L)), loads);
+
+        bookCache.getAll(List.of(1L, 2L, 3L), ids -> { loads.add(ids); return List.of(); });
+        assertEquals(1, loads.size());
+    }
+
+    @Test
+    void getAll_WhenLoadFails_ShouldNotCacheAnything() {
+        assertThrows(IllegalStateException.class, () -> bookCache.getAll(List.of(1L), ids -> { throw new IllegalStateException(); }));
+
+        Book book = new Book(1L, "The Shining", "Stephen King", "1234567890123");
+        assertTrue(bookCache.getAll(List.of(1L), ids -> List.of(book)).get(1L).isPresent());
+    }
+
+    @Test
+    void onBookChanged_ShouldInvalidateTheEntry() {
+        Book book = new Book(1L, "The Shining", "Stephen King", "1234567890123");
+        bookCache.get(1L, id -> Optional.of(book));
+
+        Book changed = new Book(1L, "IT", "Stephen King", "1234567890123");
+        bookCache.onBookChanged(BookChangedEvent.updated(book, changed));
+
+        assertEquals("IT", bookCache.get(1L, id -> Optional.of(changed)).get().getTitle());
+    }
+
+    @Test
+    void onBookChanged_WhenCreated_ShouldDropACachedMiss() {
+        bookCache.get(1L, id -> Optional.empty());
+
+        Book book = new Book(1L, "The Shining", "Stephen King", "1234567890123");
+        bookCache.onBookChanged(BookChangedEvent.created(book));
+
+        assertTrue(bookCache.get(1L, id -> Optional.of(book)).isPresent());
+    }
+
+    @Test
+    void invalidate_WhileLoadInFlight_ShouldNotLeaveTheOldValueBehind() throws Exception {
+        Book stale = new Book(1L, "The Shining", "Stephen King", "1234567890123");
+        Book fresh = new Book(1L, "IT", "Stephen King", "1234567890123");
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch committed = new CountDownLatch(1);
+        AtomicReference<Book> database = new AtomicReference<>(stale);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // a reader that read the old row but hasn't stored it yet
+            Future<?> reader = executor.submit(() -> bookCache.get(1L, id -> {
+                Book read = database.get();
+                loading.countDown();
+                await(committed);
+                return Optional.of(read);
+            }));
+            loading.await();
+
+            // the writer commits and invalidates while that load is still running
+            database.set(fresh);
+            Future<?> writer = executor.submit(() -> bookCache.invalidate(1L));
+            Thread.sleep(100); // give the invalidation time to reach the entry being loaded
+            committed.countDown();
+            reader.get(5, TimeUnit.SECONDS);
+            writer.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals("IT", bookCache.get(1L, id -> Optional.of(database.get())).get().getTitle());
+    }
+
+    @Test
+    void get_ShouldRecordHitsAndMisses() {
+        bookCache.get(1L, id -> Optional.empty());
+        bookCache.get(1L, id -> Optional.empty());
+
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", BookCache.NAME).tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", BookCache.NAME).tag("result", "miss").functionCounter().count());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.hpursan.digicert.library.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BoundedDataSourceTest {
+    private DataSource target;
+    private Connection connection;
+    private BoundedDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        target = mock(DataSource.class);
+        connection = mock(Connection.class);
+        when(target.getConnection()).thenReturn(connection);
+        dataSource = new BoundedDataSource(target, 1, Duration.ofMillis(50));
+    }
+
+    @Test
+    void getConnection_WhenAllPermitsAreHeld_ShouldTimeOut() throws SQLException {
+        Connection held = dataSource.getConnection();
+
+        assertThrows(SQLTransientConnectionException.class, () -> dataSource.getConnection());
+
+        held.close();
+        dataSource.getConnection();
+        verify(target, times(2)).getConnection();
+    }
+
+    @Test
+    void close_ShouldReleaseThePermitOnlyOnce() throws SQLException {
+        Connection held = dataSource.getConnection();
+        held.close();
+        held.close();
+
+        assertEquals(1, dataSource.availablePermits());
+        verify(connection, times(2)).close();
+    }
+
+    @Test
+    void getConnection_WhenThePoolFails_ShouldReleaseThePermit() throws SQLException {
+        when(target.getConnection()).thenThrow(new SQLException("pool closed"));
+
+        assertThrows(SQLException.class, () -> dataSource.getConnection());
+
+        assertEquals(1, dataSource.availablePermits());
+    }
+}
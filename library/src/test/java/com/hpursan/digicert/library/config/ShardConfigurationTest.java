@@ -0,0 +1,38 @@
+package com.hpursan.digicert.library.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ShardConfigurationTest {
+    private final ShardConfiguration configuration = new ShardConfiguration();
+
+    @Test
+    void shardedBooks_WhenImportsAreConfigured_ShouldFailStartup() {
+        BookImportProperties imports = new BookImportProperties();
+        imports.setDirectory(Path.of("data/imports"));
+
+        assertThrows(IllegalStateException.class, () -> configuration.shardedBooks(null, null, new ShardProperties(),
+            imports, new SnapshotProperties(), new ReactiveProperties()));
+    }
+
+    @Test
+    void shardedBooks_WhenASnapshotIsConfigured_ShouldFailStartup() {
+        SnapshotProperties snapshot = new SnapshotProperties();
+        snapshot.setPath(Path.of("data/catalog.snapshot"));
+
+        assertThrows(IllegalStateException.class, () -> configuration.shardedBooks(null, null, new ShardProperties(),
+            new BookImportProperties(), snapshot, new ReactiveProperties()));
+    }
+
+    @Test
+    void shardedBooks_WhenTheReactiveApiIsEnabled_ShouldFailStartup() {
+        ReactiveProperties reactive = new ReactiveProperties();
+        reactive.setEnabled(true);
+
+        assertThrows(IllegalStateException.class, () -> configuration.shardedBooks(null, null, new ShardProperties(),
+            new BookImportProperties(), new SnapshotProperties(), reactive));
+    }
+}
@@ -1,25 +1,56 @@
 package com.hpursan.digicert.library.controller;
 
+import com.hpursan.digicert.library.cache.CatalogVersion;
 import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.dto.BookBatchDelete;
+import com.hpursan.digicert.library.dto.BookBatchDeleteResult;
+import com.hpursan.digicert.library.dto.BookBatchError;
+import com.hpursan.digicert.library.dto.BookBatchResult;
+import com.hpursan.digicert.library.dto.BookField;
+import com.hpursan.digicert.library.dto.BookFieldsPage;
+import com.hpursan.digicert.library.dto.BookLookupResult;
+import com.hpursan.digicert.library.dto.BookPage;
+import com.hpursan.digicert.library.dto.BookPatch;
+import com.hpursan.digicert.library.dto.BookProjection;
+import com.hpursan.digicert.library.dto.BookSearch;
+import com.hpursan.digicert.library.dto.BookSort;
 import com.hpursan.digicert.library.exception.BookNotFoundException;
+import com.hpursan.digicert.library.exception.BookVersionMismatchException;
+import com.hpursan.digicert.library.exception.DuplicateIsbnException;
+import com.hpursan.digicert.library.feed.BookChangeStreams;
+import com.hpursan.digicert.library.service.BookBatchService;
+import com.hpursan.digicert.library.service.BookExportService;
 import com.hpursan.digicert.library.service.BookService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -28,17 +59,30 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 
 
 @WebMvcTest(BookController.class)
+@Import(CatalogVersion.class)
 public class BookControllerTest {
 
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private CatalogVersion catalogVersion;
+
     @MockBean
     private BookService bookService;
 
+    @MockBean
+    private BookExportService bookExportService;
+
+    @MockBean
+    private BookBatchService bookBatchService;
+
+    @MockBean
+    private BookChangeStreams bookChangeStreams;
+
     @Test
     public void getAllBooks_withNoSearchParams_andNoneExist_shouldReturnNoContent() throws Exception {
-        when (bookService.listAllBooks()).thenReturn(new ArrayList<>());
+        when (bookService.listBooks(null, BookService.DEFAULT_PAGE_SIZE)).thenReturn(new BookPage(new ArrayList<>(), null));
 
         mockMvc.perform(get("/api/books"))
                .andExpect(status().isNoContent());
@@ -53,7 +97,7 @@ public class BookControllerTest {
 
         List<Book> bookList = new ArrayList<>(Arrays.asList(book1, book2));
 
-        when(bookService.listAllBooks()).thenReturn(bookList);
+        when(bookService.listBooks(null, BookService.DEFAULT_PAGE_SIZE)).thenReturn(new BookPage(bookList, null));
 
         mockMvc.perform(get("/api/books"))
             .andExpect(jsonPath("$.size()", is(bookList.size())))
@@ -71,8 +115,7 @@ public class BookControllerTest {
     @Test
     public void getAllBooks_withTitleSearchParams_andNoneExist_shouldReturnNoContent() throws Exception {
 
-        when(bookService.getBookByTitle(any(String.class))).thenReturn(new ArrayList<>());
-        when(bookService.listAllBooks()).thenReturn(new ArrayList<>());
+        when(bookService.getBookByTitle(any(String.class), any(), anyInt())).thenReturn(new BookPage(new ArrayList<>(), null));
 
         mockMvc.perform(get("/api/books").param("title", "shining"))
             .andExpect(status().isNoContent());
@@ -81,8 +124,7 @@ public class BookControllerTest {
     @Test
     public void getAllBooks_withAuthorSearchParams_andNoneExist_shouldReturnNoContent() throws Exception {
 
-        when (bookService.getBookByAuthor(any(String.class))).thenReturn(new ArrayList<>());
-        when(bookService.listAllBooks()).thenReturn(new ArrayList<>());
+        when (bookService.getBookByAuthor(any(String.class), any(), anyInt())).thenReturn(new BookPage(new ArrayList<>(), null));
 
         mockMvc.perform(get("/api/books").param("author", "Stephen King"))
             .andExpect(status().isNoContent());
@@ -96,7 +138,7 @@ public class BookControllerTest {
 
         List<Book> bookList = new ArrayList<>(Arrays.asList(book1, book2));
 
-        when(bookService.getBookByTitle("shining")).thenReturn(bookList);
+        when(bookService.getBookByTitle("shining", null, BookService.DEFAULT_PAGE_SIZE)).thenReturn(new BookPage(bookList, null));
 
         mockMvc.perform(get("/api/books").param("title","shining"))
             .andExpect(jsonPath("$.size()", is(bookList.size())))
@@ -119,7 +161,7 @@ public class BookControllerTest {
 
         List<Book> bookList = new ArrayList<>(Arrays.asList(book1, book2));
 
-        when(bookService.getBookByAuthor("Stephen King")).thenReturn(bookList);
+        when(bookService.getBookByAuthor("Stephen King", null, BookService.DEFAULT_PAGE_SIZE)).thenReturn(new BookPage(bookList, null));
 
         mockMvc.perform(get("/api/books").param("author", "Stephen King"))
             .andExpect(jsonPath("$.size()", is(bookList.size())))
@@ -134,6 +176,192 @@ public class BookControllerTest {
             .andExpect(status().isOk());
     }
 
+    @Test
+    public void getAllBooks_whenMoreBooksExist_shouldReturnNextCursor() throws Exception {
+
+        Book book1 = new Book(1L, "The Shining", "Stephen King", "1234");
+        Book book2 = new Book(2L, "IT", "Stephen King", "4567");
+
+        when(bookService.listBooks(null, 2)).thenReturn(new BookPage(Arrays.asList(book1, book2), 2L));
+
+        mockMvc.perform(get("/api/books").param("limit", "2"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.size()", is(2)))
+            .andExpect(header().string(BookController.NEXT_CURSOR_HEADER, BookCursor.encode(2L)))
+            .andExpect(header().string("Link", containsString("after=" + BookCursor.encode(2L))));
+    }
+
+    @Test
+    public void getAllBooks_withCursor_shouldContinueAfterCursor() throws Exception {
+
+        Book book3 = new Book(3L, "Carrie", "Stephen King", "7890");
+
+        when(bookService.getBookByAuthor("Stephen King", 2L, 2)).thenReturn(new BookPage(List.of(book3), null));
+
+        mockMvc.perform(get("/api/books").param("author", "Stephen King").param("after", BookCursor.encode(2L)).param("limit", "2"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].id", is(3)))
+            .andExpect(header().doesNotExist(BookController.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    public void getAllBooks_shouldReturnCatalogETag() throws Exception {
+        when(bookService.listBooks(null, BookService.DEFAULT_PAGE_SIZE))
+            .thenReturn(new BookPage(List.of(new Book(1L, "The Shining", "Stephen King", "1234")), null));
+
+        mockMvc.perform(get("/api/books"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", catalogVersion.etag()));
+    }
+
+    @Test
+    public void getAllBooks_whenCatalogUnchanged_shouldReturnNotModifiedWithoutQuerying() throws Exception {
+
+        mockMvc.perform(get("/api/books").header("If-None-Match", catalogVersion.etag()))
+            .andExpect(status().isNotModified());
+
+        verifyNoInteractions(bookService);
+    }
+
+    @Test
+    public void getAllBooks_whenCatalogChanged_shouldReturnBooks() throws Exception {
+        String etag = catalogVersion.etag();
+        catalogVersion.onBookChanged(null);
+        when(bookService.listBooks(null, BookService.DEFAULT_PAGE_SIZE))
+            .thenReturn(new BookPage(List.of(new Book(1L, "The Shining", "Stephen King", "1234")), null));
+
+        mockMvc.perform(get("/api/books").header("If-None-Match", etag))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", catalogVersion.etag()));
+    }
+
+    @Test
+    public void getAllBooks_withInvalidCursor_shouldReturnBadRequest() throws Exception {
+
+        mockMvc.perform(get("/api/books").param("after", "not-a-cursor"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void getAllBooks_withTitleAndAuthor_shouldSearchBothInOneQuery() throws Exception {
+
+        Book book1 = new Book(1L, "The Shining", "Stephen King", "1234");
+        BookSearch search = new BookSearch("shining", "king", null, BookSort.ID, false);
+
+        when(bookService.searchBooks(search, null, null, BookService.DEFAULT_PAGE_SIZE)).thenReturn(new BookPage(List.of(book1), null));
+
+        mockMvc.perform(get("/api/books").param("title", "shining").param("author", "king"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].id", is(1)));
+
+        verify(bookService, never()).getBookByTitle(any(), any(), anyInt());
+    }
+
+    @Test
+    public void getAllBooks_withIsbnAndSort_shouldSearchSorted() throws Exception {
+
+        Book book1 = new Book(1L, "The Shining", "Stephen King", "9780385121675");
+        BookSearch search = new BookSearch(null, null, "978", BookSort.TITLE, true);
+
+        when(bookService.searchBooks(search, null, null, BookService.DEFAULT_PAGE_SIZE)).thenReturn(new BookPage(List.of(book1), null));
+
+        mockMvc.perform(get("/api/books").param("isbn", "978").param("sort", "title,desc"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].id", is(1)));
+    }
+
+    @Test
+    public void getAllBooks_whenSortedByTitle_shouldCarryTheTitleInTheCursor() throws Exception {
+
+        Book book1 = new Book(1L, "Carrie", "Stephen King", "1234");
+        Book book2 = new Book(2L, "IT", "Stephen King", "4567");
+        BookSearch search = new BookSearch(null, "king", null, BookSort.TITLE, false);
+        String cursor = BookCursor.encode(2L, "IT");
+
+        when(bookService.searchBooks(search, null, null, 2)).thenReturn(new BookPage(List.of(book1, book2), 2L, "IT"));
+        when(bookService.searchBooks(search, 2L, "IT", 2)).thenReturn(new BookPage(List.of(new Book(3L, "Misery", "Stephen King", "7890")), null));
+
+        mockMvc.perform(get("/api/books").param("author", "king").param("sort", "title").param("limit", "2"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(BookController.NEXT_CURSOR_HEADER, cursor));
+
+        mockMvc.perform(get("/api/books").param("author", "king").param("sort", "title").param("after", cursor).param("limit", "2"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].id", is(3)));
+    }
+
+    @Test
+    public void getAllBooks_withUnknownSort_shouldReturnBadRequest() throws Exception {
+
+        mockMvc.perform(get("/api/books").param("sort", "price"))
+            .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/books").param("sort", "title,sideways"))
+            .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(bookService);
+    }
+
+    @Test
+    public void getAllBooks_withFields_shouldSelectOnlyThoseFields() throws Exception {
+
+        List<BookField> fields = List.of(BookField.ID, BookField.TITLE);
+        BookProjection book1 = new BookProjection(fields, new Object[]{1L, "The Shining"});
+
+        when(bookService.searchBookFields(new BookSearch(), null, null, 2, fields))
+            .thenReturn(new BookFieldsPage(List.of(book1), 1L, null));
+
+        mockMvc.perform(get("/api/books").param("fields", "id,title").param("limit", "2"))
+            .andExpect(status().isOk())
+            .andExpect(content().json("[{\"id\":1,\"title\":\"The Shining\"}]", true))
+            .andExpect(header().string(BookController.NEXT_CURSOR_HEADER, BookCursor.encode(1L)));
+
+        verify(bookService, never()).listBooks(any(), anyInt());
+    }
+
+    @Test
+    public void getAllBooks_withTitleAndFields_shouldProjectTheIndexedBooks() throws Exception {
+
+        Book book1 = new Book(1L, "The Shining", "Stephen King", "1234");
+
+        when(bookService.getBookByTitle("shining", null, BookService.DEFAULT_PAGE_SIZE)).thenReturn(new BookPage(List.of(book1), null));
+
+        mockMvc.perform(get("/api/books").param("title", "shining").param("fields", "title"))
+            .andExpect(status().isOk())
+            .andExpect(content().json("[{\"title\":\"The Shining\"}]", true));
+    }
+
+    @Test
+    public void getAllBooks_withUnknownField_shouldReturnBadRequest() throws Exception {
+
+        mockMvc.perform(get("/api/books").param("fields", "id,price"))
+            .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(bookService);
+    }
+
+    @Test
+    public void getAllBooks_whenKeyedCursorMissesItsKey_shouldReturnBadRequest() throws Exception {
+
+        when(bookService.searchBooks(any(), eq(2L), eq(null), anyInt())).thenThrow(new IllegalArgumentException("no key"));
+
+        mockMvc.perform(get("/api/books").param("sort", "title").param("after", BookCursor.encode(2L)))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void exportBooks_shouldStreamNdjson() throws Exception {
+        when(bookExportService.exportBooks(any(OutputStream.class))).thenAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(0);
+            out.write("{\"id\":1}\n{\"id\":2}\n".getBytes(StandardCharsets.UTF_8));
+            return 2L;
+        });
+
+        mockMvc.perform(get("/api/books/export"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+            .andExpect(content().string("{\"id\":1}\n{\"id\":2}\n"));
+    }
+
     @Test
     public void getBookById_whenBookExists_shouldReturnGivenBook() throws Exception {
 
@@ -149,6 +377,25 @@ public class BookControllerTest {
                 .andExpect(jsonPath("$.isbn").value("1234"));
     }
 
+    @Test
+    public void getBookById_shouldReturnVersionAsETag() throws Exception {
+        when(bookService.getBookById(1L)).thenReturn(new Book(1L, "The Shining", "Stephen King", "1234", 3L));
+
+        mockMvc.perform(get("/api/books/{id}", 1L))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", "\"3\""))
+            .andExpect(jsonPath("$.version").value(3));
+    }
+
+    @Test
+    public void getBookById_whenETagMatches_shouldReturnNotModified() throws Exception {
+        when(bookService.getBookById(1L)).thenReturn(new Book(1L, "The Shining", "Stephen King", "1234", 3L));
+
+        mockMvc.perform(get("/api/books/{id}", 1L).header("If-None-Match", "\"3\""))
+            .andExpect(status().isNotModified())
+            .andExpect(content().string(""));
+    }
+
     @Test
     public void getBookById_whenBookDoesNotExist_shouldReturnNotFound() throws Exception {
 
@@ -167,6 +414,35 @@ public class BookControllerTest {
             .andExpect(status().isInternalServerError());
     }
 
+    @Test
+    public void getBookByIsbn_whenBookExists_shouldReturnGivenBook() throws Exception {
+        Book book = new Book(1L, "1984", "George Orwell", "9780451524935");
+
+        when(bookService.getBookByIsbn("0451524934")).thenReturn(book);
+
+        mockMvc.perform(get("/api/books/isbn/{isbn}", "0451524934"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.isbn").value("9780451524935"));
+    }
+
+    @Test
+    public void getBookByIsbn_whenBookDoesNotExist_shouldReturnNotFound() throws Exception {
+        when(bookService.getBookByIsbn("9780451524935")).thenThrow(new BookNotFoundException("Book with ISBN 9780451524935 not found"));
+
+        mockMvc.perform(get("/api/books/isbn/{isbn}", "9780451524935"))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void addBook_whenIsbnTaken_shouldReturnConflict() throws Exception {
+        when(bookService.addBook(any(Book.class))).thenThrow(new DuplicateIsbnException("A book with ISBN 9780385121675 already exists"));
+
+        mockMvc.perform(post("/api/books/")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"The Shining\",\"author\":\"Stephen King\",\"isbn\":\"9780385121675\"}"))
+            .andExpect(status().isConflict());
+    }
+
     @Test
     public void addBook_shouldAddBookAndReturnCreated() throws Exception{
         Book newlyCreatedBook = new Book(1L, "The Shining", "Stephen King", "9780385121675");
@@ -180,11 +456,67 @@ public class BookControllerTest {
             .andExpect(jsonPath("$.id").value(1L));
     }
 
+    @Test
+    public void addBook_whenIsbnIsHyphenated_shouldAcceptIt() throws Exception{
+        when(bookService.addBook(any(Book.class))).thenReturn(new Book(1L, "Compilers", "Aho", "9780306406157"));
+
+        mockMvc.perform(post("/api/books/")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Compilers\",\"author\":\"Aho\",\"isbn\":\"978-0-306-40615-7\"}"))
+            .andExpect(status().isCreated());
+    }
+
+    @Test
+    public void addBook_whenIsbnIsTooShortOnceNormalized_shouldReturnBadRequest() throws Exception{
+        mockMvc.perform(post("/api/books/")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Compilers\",\"author\":\"Aho\",\"isbn\":\"12345-6789\"}"))
+            .andExpect(status().isBadRequest());
+        verifyNoInteractions(bookService);
+    }
+
+    @Test
+    public void addBooks_whenAllValid_shouldReturnCreatedWithIds() throws Exception {
+        when(bookBatchService.addBooks(anyList())).thenReturn(new BookBatchResult(List.of(21L, 22L), List.of()));
+
+        mockMvc.perform(post("/api/books/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"title\":\"The Shining\",\"author\":\"Stephen King\",\"isbn\":\"9780385121675\"},"
+                            + "{\"title\":\"IT\",\"author\":\"Stephen King\",\"isbn\":\"9780385121001\"}]"))
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.ids", contains(21, 22)))
+            .andExpect(jsonPath("$.errors", empty()));
+    }
+
+    @Test
+    public void addBooks_whenAnyInvalid_shouldReturnBadRequestWithErrors() throws Exception {
+        when(bookBatchService.addBooks(anyList()))
+            .thenReturn(new BookBatchResult(List.of(), List.of(new BookBatchError(1, "title", "Title is required"))));
+
+        mockMvc.perform(post("/api/books/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"title\":\"The Shining\",\"author\":\"Stephen King\",\"isbn\":\"9780385121675\"},"
+                            + "{\"author\":\"Stephen King\",\"isbn\":\"9780385121001\"}]"))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.errors[0].index", is(1)))
+            .andExpect(jsonPath("$.errors[0].field", is("title")));
+    }
+
+    @Test
+    public void addBooks_whenTooManyBooks_shouldReturnPayloadTooLarge() throws Exception {
+        when(bookBatchService.addBooks(anyList())).thenThrow(new IllegalArgumentException("too many"));
+
+        mockMvc.perform(post("/api/books/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+            .andExpect(status().isPayloadTooLarge());
+    }
+
     @Test
     public void updateBook_whenBookExists_shouldReturnOk() throws Exception {
         Book book = new Book(1L, "The Shining", "Stephen King", "9780385121675");
 
-        when(bookService.updateBook(any(Long.class), any(Book.class))).thenReturn(book);
+        when(bookService.updateBook(any(Long.class), any(Book.class), any())).thenReturn(book);
 
         mockMvc.perform(put("/api/books/{id}",1L)
                         .contentType(MediaType.APPLICATION_JSON)
@@ -196,7 +528,7 @@ public class BookControllerTest {
     @Test
     public void updateBook_whenBookDoesNotExist_shouldReturnNotFound() throws Exception {
 
-        when(bookService.updateBook(any(Long.class), any(Book.class)))
+        when(bookService.updateBook(any(Long.class), any(Book.class), any()))
             .thenThrow(new BookNotFoundException("Book with id " + 1L + " not found"));
 
         mockMvc.perform(put("/api/books/{id}",1L)
@@ -205,10 +537,47 @@ public class BookControllerTest {
             .andExpect(status().isNotFound());
     }
 
+    @Test
+    public void updateBook_whenIsbnTaken_shouldReturnConflict() throws Exception {
+        when(bookService.updateBook(any(Long.class), any(Book.class), any()))
+            .thenThrow(new DuplicateIsbnException("A book with ISBN 9780385121675 already exists"));
+
+        mockMvc.perform(put("/api/books/{id}",1L)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("{\"title\":\"The Shining\",\"author\":\"Stephen King\",\"isbn\":\"9780385121675\"}"))
+            .andExpect(status().isConflict());
+    }
+
+    @Test
+    public void updateBook_withIfMatch_shouldPassExpectedVersion() throws Exception {
+        Book book = new Book(1L, "The Shining", "Stephen King", "9780385121675", 4L);
+
+        when(bookService.updateBook(eq(1L), any(Book.class), eq(3L))).thenReturn(book);
+
+        mockMvc.perform(put("/api/books/{id}",1L)
+                .header("If-Match", "\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"The Shining\",\"author\":\"Stephen King\",\"isbn\":\"9780385121675\"}"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", "\"4\""));
+    }
+
+    @Test
+    public void updateBook_whenIfMatchIsStale_shouldReturnPreconditionFailed() throws Exception {
+        when(bookService.updateBook(any(Long.class), any(Book.class), any()))
+            .thenThrow(new BookVersionMismatchException("Book with id 1 is at version 4, not 3"));
+
+        mockMvc.perform(put("/api/books/{id}",1L)
+                .header("If-Match", "\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"The Shining\",\"author\":\"Stephen King\",\"isbn\":\"9780385121675\"}"))
+            .andExpect(status().isPreconditionFailed());
+    }
+
     @Test
     public void updateBook_unexpectedError_shouldThrowInternalServerError() throws Exception {
 
-        when(bookService.updateBook(any(Long.class), any(Book.class)))
+        when(bookService.updateBook(any(Long.class), any(Book.class), any()))
             .thenThrow(new RuntimeException(("Something unexpected happened")));
 
         mockMvc.perform(put("/api/books/{id}",1L)
@@ -217,9 +586,168 @@ public class BookControllerTest {
             .andExpect(status().isInternalServerError());
     }
 
+    @Test
+    public void patchBook_withIfMatch_shouldReturnNoContentAndTheNewETag() throws Exception {
+        when(bookService.patchBook(eq(1L), eq(new BookPatch("IT", null, null)), eq(3L))).thenReturn(4L);
+
+        mockMvc.perform(patch("/api/books/{id}", 1L)
+                .header("If-Match", "\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"IT\"}"))
+            .andExpect(status().isNoContent())
+            .andExpect(header().string("ETag", "\"4\""));
+    }
+
+    @Test
+    public void patchBook_withoutIfMatch_shouldStillReturnTheNewETag() throws Exception {
+        when(bookService.patchBook(eq(1L), any(BookPatch.class), eq(null))).thenReturn(7L);
+
+        mockMvc.perform(patch("/api/books/{id}", 1L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"author\":\"Stephen King\"}"))
+            .andExpect(status().isNoContent())
+            .andExpect(header().string("ETag", "\"7\""));
+    }
+
+    @Test
+    public void patchBook_whenNoFieldsGiven_shouldReturnBadRequest() throws Exception {
+        mockMvc.perform(patch("/api/books/{id}", 1L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{}"))
+            .andExpect(status().isBadRequest());
+        verifyNoInteractions(bookService);
+    }
+
+    @Test
+    public void patchBook_whenTitleIsBlank_shouldReturnBadRequest() throws Exception {
+        mockMvc.perform(patch("/api/books/{id}", 1L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\" \"}"))
+            .andExpect(status().isBadRequest());
+        verifyNoInteractions(bookService);
+    }
+
+    @Test
+    public void patchBook_whenIsbnCheckDigitIsWrong_shouldReturnBadRequest() throws Exception {
+        mockMvc.perform(patch("/api/books/{id}", 1L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"isbn\":\"978-0-306-40615-8\"}"))
+            .andExpect(status().isBadRequest());
+        verifyNoInteractions(bookService);
+    }
+
+    @Test
+    public void patchBook_whenBookDoesNotExist_shouldReturnNotFound() throws Exception {
+        when(bookService.patchBook(any(Long.class), any(BookPatch.class), any()))
+            .thenThrow(new BookNotFoundException("Book with id 1 not found"));
+
+        mockMvc.perform(patch("/api/books/{id}", 1L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"IT\"}"))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void patchBook_whenIfMatchIsStale_shouldReturnPreconditionFailed() throws Exception {
+        when(bookService.patchBook(any(Long.class), any(BookPatch.class), any()))
+            .thenThrow(new BookVersionMismatchException("Book with id 1 is no longer at version 3"));
+
+        mockMvc.perform(patch("/api/books/{id}", 1L)
+                .header("If-Match", "\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"IT\"}"))
+            .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    public void patchBook_whenIsbnTaken_shouldReturnConflict() throws Exception {
+        when(bookService.patchBook(any(Long.class), any(BookPatch.class), any()))
+            .thenThrow(new DuplicateIsbnException("A book with ISBN 9780385121675 already exists"));
+
+        mockMvc.perform(patch("/api/books/{id}", 1L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"isbn\":\"9780385121675\"}"))
+            .andExpect(status().isConflict());
+    }
+
+    @Test
+    public void deleteBooks_byIds_shouldReturnTheIdsNotFound() throws Exception {
+        when(bookBatchService.deleteBooks(new BookBatchDelete(List.of(1L, 2L, 99L), null, null, null)))
+            .thenReturn(new BookBatchDeleteResult(2, List.of(99L)));
+
+        mockMvc.perform(delete("/api/books")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"ids\":[1,2,99]}"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.deleted").value(2))
+            .andExpect(jsonPath("$.notFound[0]").value(99));
+    }
+
+    @Test
+    public void deleteBooks_withIdsAndFilter_shouldReturnBadRequest() throws Exception {
+        mockMvc.perform(delete("/api/books")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"ids\":[1],\"author\":\"King\"}"))
+            .andExpect(status().isBadRequest());
+        verifyNoInteractions(bookBatchService);
+    }
+
+    @Test
+    public void deleteBooks_withNothing_shouldReturnBadRequest() throws Exception {
+        mockMvc.perform(delete("/api/books")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"\"}"))
+            .andExpect(status().isBadRequest());
+        verifyNoInteractions(bookBatchService);
+    }
+
+    @Test
+    public void deleteBooks_whenTooManyIds_shouldReturnPayloadTooLarge() throws Exception {
+        when(bookBatchService.deleteBooks(any(BookBatchDelete.class))).thenThrow(new IllegalArgumentException("too many"));
+
+        mockMvc.perform(delete("/api/books")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"ids\":[1]}"))
+            .andExpect(status().isPayloadTooLarge());
+    }
+
+    @Test
+    public void getBooksByIds_shouldReturnBooksInOrderAndTheMissingIds() throws Exception {
+        when(bookService.getBooksByIds(List.of(2L, 99L, 1L))).thenReturn(new BookLookupResult(
+            List.of(new Book(2L, "IT", "Stephen King", "9780385121675"), new Book(1L, "The Shining", "Stephen King", "9780385121674")),
+            List.of(99L)));
+
+        mockMvc.perform(post("/api/books/lookup")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"ids\":[2,99,1]}"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.books[0].id").value(2))
+            .andExpect(jsonPath("$.books[1].id").value(1))
+            .andExpect(jsonPath("$.missing[0]").value(99));
+    }
+
+    @Test
+    public void getBooksByIds_withANullId_shouldReturnBadRequest() throws Exception {
+        mockMvc.perform(post("/api/books/lookup")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"ids\":[1,null]}"))
+            .andExpect(status().isBadRequest());
+        verify(bookService, never()).getBooksByIds(anyList());
+    }
+
+    @Test
+    public void getBooksByIds_whenTooManyIds_shouldReturnPayloadTooLarge() throws Exception {
+        when(bookService.getBooksByIds(anyList())).thenThrow(new IllegalArgumentException("too many"));
+
+        mockMvc.perform(post("/api/books/lookup")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"ids\":[1]}"))
+            .andExpect(status().isPayloadTooLarge());
+    }
+
     @Test
     public void deleteBook_whenBookExists_shouldReturnNoContent() throws Exception {
-        doNothing().when(bookService).deleteBook(any(Long.class));
+        doNothing().when(bookService).deleteBook(any(Long.class), any());
 
         mockMvc.perform(delete("/api/books/{id}", 1L))
             .andExpect(status().isNoContent());
@@ -228,18 +756,63 @@ public class BookControllerTest {
     @Test
     public void deleteBook_whenBookDoesNotExist_shouldReturnNotFound() throws Exception {
 
-        doThrow(new BookNotFoundException("Book with id " + 1L + " not found")).when(bookService).deleteBook(any(Long.class));
+        doThrow(new BookNotFoundException("Book with id " + 1L + " not found")).when(bookService).deleteBook(any(Long.class), any());
 
         mockMvc.perform(delete("/api/books/{id}",1L))
             .andExpect(status().isNotFound());
     }
 
+    @Test
+    public void deleteBook_whenIfMatchIsStale_shouldReturnPreconditionFailed() throws Exception {
+        doThrow(new BookVersionMismatchException("Book with id 1 is at version 4, not 3")).when(bookService).deleteBook(1L, 3L);
+
+        mockMvc.perform(delete("/api/books/{id}",1L).header("If-Match", "\"3\""))
+            .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    public void deleteBook_whenIfMatchIsNotOurETag_shouldReturnPreconditionFailed() throws Exception {
+
+        mockMvc.perform(delete("/api/books/{id}",1L).header("If-Match", "W/\"3\""))
+            .andExpect(status().isPreconditionFailed());
+        verifyNoInteractions(bookService);
+    }
+
+    @Test
+    public void updateBook_whenServiceThrowsIllegalArgumentException_shouldReturnInternalServerError() throws Exception {
+        when(bookService.updateBook(eq(1L), any(Book.class), eq(3L))).thenThrow(new IllegalArgumentException("not an If-Match problem"));
+
+        mockMvc.perform(put("/api/books/{id}", 1L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("If-Match", "\"3\"")
+                .content("{\"title\":\"The Shining\",\"author\":\"Stephen King\",\"isbn\":\"9780385121675\"}"))
+            .andExpect(status().isInternalServerError());
+    }
+
     @Test
     public void deleteBook_whenUnexpectedException_shouldThrowInternalServerError() throws Exception {
 
-        doThrow(new RuntimeException("Something unexpected happened")).when(bookService).deleteBook(any(Long.class));
+        doThrow(new RuntimeException("Something unexpected happened")).when(bookService).deleteBook(any(Long.class), any());
 
         mockMvc.perform(delete("/api/books/{id}",1L))
             .andExpect(status().isInternalServerError());
     }
+
+    @Test
+    public void followChanges_whenTooManyClients_shouldReturnServiceUnavailable() throws Exception {
+        when(bookChangeStreams.open(null)).thenReturn(null);
+
+        mockMvc.perform(get("/api/books/changes").accept(MediaType.TEXT_EVENT_STREAM))
+            .andExpect(status().isServiceUnavailable())
+            .andExpect(header().string("Retry-After", "1"));
+    }
+
+    @Test
+    public void followChanges_shouldPassOnTheLastEventId() throws Exception {
+        when(bookChangeStreams.open("abc-7")).thenReturn(new SseEmitter(0L));
+
+        mockMvc.perform(get("/api/books/changes").header("Last-Event-ID", "abc-7"))
+            .andExpect(status().isOk())
+            .andExpect(MockMvcResultMatchers.request().asyncStarted());
+    }
 }
@@ -0,0 +1,73 @@
+package com.hpursan.digicert.library.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.dto.BookBatchError;
+import com.hpursan.digicert.library.dto.BookField;
+import com.hpursan.digicert.library.dto.BookProjection;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BookJsonHttpMessageConverterTest {
+    private static final Type BOOKS = new ParameterizedTypeReference<List<Book>>() {}.getType();
+    private static final Type ANYTHING = new ParameterizedTypeReference<List<?>>() {}.getType();
+    private static final Type ERRORS = new ParameterizedTypeReference<List<BookBatchError>>() {}.getType();
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final BookJsonHttpMessageConverter converter = new BookJsonHttpMessageConverter(new MappingJackson2HttpMessageConverter(objectMapper));
+
+    @Test
+    void canWrite_ShouldTakeBooksAndListsThatMayHoldThem() {
+        assertTrue(converter.canWrite(Book.class, Book.class, MediaType.APPLICATION_JSON));
+        assertTrue(converter.canWrite(BOOKS, List.class, MediaType.APPLICATION_JSON));
+        assertTrue(converter.canWrite(ANYTHING, List.class, null));
+        assertFalse(converter.canWrite(ERRORS, List.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canWrite(Book.class, Book.class, MediaType.APPLICATION_XML));
+        assertFalse(converter.canRead(Book.class, null, MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void read_WhenAskedAnyway_ShouldReadLikeJackson() throws IOException {
+        MockHttpInputMessage message = new MockHttpInputMessage("{\"id\":1,\"title\":\"1984\"}".getBytes(StandardCharsets.UTF_8));
+        message.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+
+        assertEquals(new Book(1L, "1984", null, null), converter.read(Book.class, null, message));
+    }
+
+    @Test
+    void write_ShouldWriteBooksLikeJackson() throws IOException {
+        List<Book> books = List.of(new Book(1L, "1984", "George Orwell", "9780451524935", 0L),
+            new Book(2L, "Brave New World", "Aldous Huxley", null, 3L));
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+
+        converter.write(books, ANYTHING, MediaType.APPLICATION_JSON, message);
+
+        assertArrayEquals(objectMapper.writeValueAsBytes(books), message.getBodyAsBytes());
+        assertEquals(MediaType.APPLICATION_JSON, message.getHeaders().getContentType());
+    }
+
+    @Test
+    void write_WhenNotAllBooks_ShouldHandOverToJackson() throws IOException {
+        List<BookProjection> projections = List.of(new BookProjection(List.of(BookField.ID), new Object[]{7L}));
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+
+        converter.write(projections, ANYTHING, MediaType.APPLICATION_JSON, message);
+
+        assertEquals("[{\"id\":7}]", message.getBodyAsString());
+    }
+}
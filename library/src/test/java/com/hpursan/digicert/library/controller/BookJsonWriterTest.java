@@ -0,0 +1,87 @@
+package com.hpursan.digicert.library.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.hpursan.digicert.library.domain.Book;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BookJsonWriterTest {
+    // configured the way Boot configures the application's mapper
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final BookJsonWriter writer = new BookJsonWriter();
+
+    @Test
+    void writeBook_ShouldMatchJacksonForEveryChar() throws IOException {
+        StringBuilder everyChar = new StringBuilder();
+        for (char c = 0; c < Character.MAX_VALUE; c++) {
+            everyChar.append(c);
+        }
+        assertSameAsJackson(new Book(1L, everyChar.toString(), "Author", "9780451524935", 0L));
+    }
+
+    @Test
+    void writeBook_ShouldMatchJacksonForNullsAndNumberEdges() throws IOException {
+        assertSameAsJackson(new Book(null, null, null, null, null));
+        assertSameAsJackson(new Book(Long.MAX_VALUE, "", "", "", Long.MIN_VALUE));
+        assertSameAsJackson(new Book(-1L, "\"quoted\" \\ back/slash", "Ñandú 😀 \uD83D", "0", 10L));
+    }
+
+    @Test
+    void writeBooks_ShouldMatchJacksonAcrossManyBufferFlushes() throws IOException {
+        List<Book> books = new ArrayList<>();
+        for (long id = 1; id <= 2_000; id++) {
+            books.add(new Book(id, "Title " + id + " \t ü", "Author " + "é".repeat((int) (id % 7)), String.valueOf(9780000000000L + id), id % 3));
+        }
+        assertSameAsJackson(books);
+        assertSameAsJackson(List.of());
+    }
+
+    @Test
+    void writeBook_ShouldWriteEveryPropertyJacksonWrites() throws IOException {
+        // every property gets a value of its own, so one the writer leaves out or mixes up can't go unnoticed
+        Book book = new Book();
+        List<BeanPropertyDefinition> properties = objectMapper.getSerializationConfig()
+            .introspect(objectMapper.constructType(Book.class)).findProperties();
+        long n = 1;
+        for (BeanPropertyDefinition property : properties) {
+            Class<?> type = property.getRawPrimaryType();
+            Object value = type == Long.class ? (Object) n : type == String.class ? "value " + n : null;
+            assertNotNull(value, "BookJsonWriter doesn't know how to write Book." + property.getName() + " (" + type + ")");
+            property.getSetter().setValue(book, value);
+            n++;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeBook(book, out);
+        JsonNode written = objectMapper.readTree(out.toByteArray());
+        for (BeanPropertyDefinition property : properties) {
+            assertTrue(written.hasNonNull(property.getName()), "BookJsonWriter doesn't write Book." + property.getName());
+        }
+        assertEquals(properties.size(), written.size());
+        assertSameAsJackson(book);
+    }
+
+    private void assertSameAsJackson(Book book) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeBook(book, out);
+        assertArrayEquals(objectMapper.writeValueAsBytes(book), out.toByteArray());
+    }
+
+    private void assertSameAsJackson(List<Book> books) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeBooks(books, out);
+        assertArrayEquals(objectMapper.writeValueAsBytes(books), out.toByteArray());
+    }
+}
@@ -0,0 +1,55 @@
+package com.hpursan.digicert.library.domain;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IsbnTest {
+
+    @Test
+    void normalize_WhenIsbn10_ShouldReturnIsbn13() {
+        assertEquals("9780451524935", Isbn.normalize("0451524934"));
+        assertEquals("9780306406157", Isbn.normalize("0-306-40615-2"));
+    }
+
+    @Test
+    void normalize_WhenIsbn10EndsInX_ShouldReturnIsbn13() {
+        assertEquals("9780807281918", Isbn.normalize("080728191x"));
+    }
+
+    @Test
+    void normalize_WhenIsbn13_ShouldOnlyDropSeparators() {
+        assertEquals("9780451524935", Isbn.normalize("978-0 451-52493-5"));
+    }
+
+    @Test
+    void normalize_WhenNotAnIsbn_ShouldReturnItUnchanged() {
+        assertEquals("12345678901", Isbn.normalize("12345678901"));
+        assertEquals("ABCDEFGHIJ", Isbn.normalize("ABCDEFGHIJ"));
+        assertNull(Isbn.normalize(null));
+    }
+
+    @Test
+    void isValid_ShouldCheckTheCheckDigitOfIsbn10AndIsbn13() {
+        assertTrue(Isbn.isValid("0-306-40615-2"));
+        assertTrue(Isbn.isValid("043942089x"));
+        assertTrue(Isbn.isValid("978-0-306-40615-7"));
+        assertFalse(Isbn.isValid("0-306-40615-3"));
+        assertFalse(Isbn.isValid("978-0-306-40615-8"));
+    }
+
+    @Test
+    void isValid_WhenNotTenOrThirteenDigitsOnceSeparatorsAreDropped_ShouldBeFalse() {
+        assertFalse(Isbn.isValid("12345-6789"));
+        assertFalse(Isbn.isValid("97803064061570"));
+        assertFalse(Isbn.isValid("978X306406157"));
+        assertFalse(Isbn.isValid(null));
+    }
+
+    @Test
+    void toLong_ShouldOnlyAcceptThirteenDigits() {
+        assertEquals(9780451524935L, Isbn.toLong("9780451524935"));
+        assertEquals(-1, Isbn.toLong("0451524934"));
+        assertEquals(-1, Isbn.toLong("978045152493X"));
+    }
+}
@@ -0,0 +1,178 @@
+package com.hpursan.digicert.library.feed;
+
+import com.hpursan.digicert.library.config.ChangeFeedProperties;
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.event.BookChangedEvent;
+import com.hpursan.digicert.library.exception.SlowConsumerException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BookChangeFeedTest {
+    private MeterRegistry meterRegistry;
+    private BookChangeFeed feed;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        feed = new BookChangeFeed(new ChangeFeedProperties(8, 2, Duration.ofSeconds(15)), meterRegistry);
+    }
+
+    @Test
+    void poll_ShouldReturnTheChangesSinceSubscribingInOrder() throws Exception {
+        feed.onBookChanged(BookChangedEvent.created(book(1L)));
+        BookChangeFeed.Subscription subscription = feed.subscribe(null);
+
+        feed.onBookChanged(BookChangedEvent.created(book(2L)));
+        feed.onBookChanged(BookChangedEvent.deleted(1L, null));
+
+        List<BookChange> changes = subscription.poll(Duration.ZERO);
+        assertEquals(2, changes.size());
+        assertEquals(2, changes.get(0).getSeq());
+        assertEquals(BookChangedEvent.Type.CREATED, changes.get(0).getType());
+        assertEquals("Title 2", changes.get(0).getBook().getTitle());
+        assertEquals(3, changes.get(1).getSeq());
+        assertEquals(BookChangedEvent.Type.DELETED, changes.get(1).getType());
+        assertNull(changes.get(1).getBook());
+        assertTrue(subscription.poll(Duration.ZERO).isEmpty());
+    }
+
+    @Test
+    void poll_ShouldWaitForTheNextChange() throws Exception {
+        BookChangeFeed.Subscription subscription = feed.subscribe(null);
+
+        Thread.ofVirtual().start(() -> {
+            sleep(50);
+            feed.onBookChanged(BookChangedEvent.created(book(1L)));
+        });
+
+        assertEquals(1, subscription.poll(Duration.ofSeconds(5)).size());
+    }
+
+    @Test
+    void subscribe_ShouldResumeAfterTheLastEventId() throws Exception {
+        feed.onBookChanged(BookChangedEvent.created(book(1L)));
+        feed.onBookChanged(BookChangedEvent.created(book(2L)));
+        feed.onBookChanged(BookChangedEvent.created(book(3L)));
+
+        BookChangeFeed.Subscription subscription = feed.subscribe(feed.eventId(1));
+
+        assertFalse(subscription.isReset());
+        List<BookChange> changes = subscription.poll(Duration.ZERO);
+        assertEquals(List.of(2L, 3L), changes.stream().map(BookChange::getId).toList());
+    }
+
+    @Test
+    void subscribe_ShouldResetWhenTheChangesSinceTheLastEventIdAreGone() throws Exception {
+        for (long id = 1; id <= 10; id++) {
+            feed.onBookChanged(BookChangedEvent.created(book(id)));
+        }
+
+        BookChangeFeed.Subscription subscription = feed.subscribe(feed.eventId(1));
+
+        assertTrue(subscription.isReset());
+        assertEquals(feed.eventId(10), subscription.getLastEventId());
+        assertTrue(subscription.poll(Duration.ZERO).isEmpty());
+        subscription.close();
+    }
+
+    @Test
+    void subscribe_ShouldResetForAnIdFromAnotherRun() {
+        feed.onBookChanged(BookChangedEvent.created(book(1L)));
+
+        assertTrue(feed.subscribe("abc-0").isReset());
+        assertFalse(feed.subscribe(feed.eventId(1)).isReset());
+    }
+
+    @Test
+    void subscribe_ShouldTurnAwayClientsOverTheMaximum() {
+        feed.subscribe(null);
+        BookChangeFeed.Subscription second = feed.subscribe(null);
+
+        assertNull(feed.subscribe(null));
+        second.close();
+        assertEquals(1.0, meterRegistry.get(BookChangeFeed.SUBSCRIBERS).gauge().value());
+    }
+
+    @Test
+    void poll_ShouldCatchUpOnAnythingTheBufferStillHolds() throws Exception {
+        BookChangeFeed.Subscription subscription = feed.subscribe(null);
+
+        // e.g. one commit of a whole batch, published at once
+        for (long id = 1; id <= 8; id++) {
+            feed.onBookChanged(BookChangedEvent.created(book(id)));
+        }
+
+        assertEquals(8, subscription.poll(Duration.ZERO).size());
+        assertEquals(0.0, meterRegistry.get(BookChangeFeed.EVICTED).counter().count());
+    }
+
+    @Test
+    void poll_ShouldDisconnectAClientOnceTheBufferOverwroteWhatItNeeds() throws Exception {
+        BookChangeFeed.Subscription subscription = feed.subscribe(null);
+
+        for (long id = 1; id <= 9; id++) {
+            feed.onBookChanged(BookChangedEvent.created(book(id)));
+        }
+
+        String lastEventId = subscription.getLastEventId();
+        assertThrows(SlowConsumerException.class, () -> subscription.poll(Duration.ZERO));
+        assertNull(subscription.poll(Duration.ZERO));
+        assertEquals(1.0, meterRegistry.get(BookChangeFeed.EVICTED).counter().count());
+        assertEquals(0.0, meterRegistry.get(BookChangeFeed.SUBSCRIBERS).gauge().value());
+
+        // reconnecting with the same id starts over instead of being let go again
+        BookChangeFeed.Subscription reconnected = feed.subscribe(lastEventId);
+        assertTrue(reconnected.isReset());
+        assertTrue(reconnected.poll(Duration.ZERO).isEmpty());
+    }
+
+    @Test
+    void subscribe_ShouldResumeAClientThatDisconnectedFarBehind() throws Exception {
+        BookChangeFeed.Subscription subscription = feed.subscribe(null);
+        String lastEventId = subscription.getLastEventId();
+        subscription.close();
+
+        for (long id = 1; id <= 7; id++) {
+            feed.onBookChanged(BookChangedEvent.created(book(id)));
+        }
+
+        BookChangeFeed.Subscription resumed = feed.subscribe(lastEventId);
+        assertFalse(resumed.isReset());
+        assertEquals(7, resumed.poll(Duration.ZERO).size());
+    }
+
+    @Test
+    void close_ShouldWakeUpAWaitingPoll() throws Exception {
+        BookChangeFeed.Subscription subscription = feed.subscribe(null);
+
+        Thread.ofVirtual().start(() -> {
+            sleep(50);
+            subscription.close();
+        });
+
+        assertNull(subscription.poll(Duration.ofSeconds(5)));
+    }
+
+    private static Book book(Long id) {
+        return new Book(id, "Title " + id, "Author", "9780141439587", 0L);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
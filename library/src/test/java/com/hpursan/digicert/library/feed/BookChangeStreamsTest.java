@@ -0,0 +1,162 @@
+package com.hpursan.digicert.library.feed;
+
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.dto.BookBatchResult;
+import com.hpursan.digicert.library.dto.BookPatch;
+import com.hpursan.digicert.library.search.IsbnIndex;
+import com.hpursan.digicert.library.service.BookBatchService;
+import com.hpursan.digicert.library.service.BookService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = {"debug=false", "spring.datasource.url=jdbc:h2:mem:changes;DB_CLOSE_DELAY=-1"})
+class BookChangeStreamsTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookBatchService bookBatchService;
+
+    @Autowired
+    private IsbnIndex isbnIndex;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final List<Stream<String>> streams = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        streams.forEach(Stream::close);
+    }
+
+    @Test
+    void shouldStreamCommittedChangesAndResumeFromTheLastEventId() throws Exception {
+        BlockingQueue<String> lines = open(null);
+
+        Book added = bookService.addBook(new Book(null, "Emma", "Jane Austen", "9780141439587"));
+        List<String> created = nextEvent(lines);
+        assertTrue(created.get(0).startsWith("id:"), created.toString());
+        assertEquals("event:created", created.get(1));
+        assertTrue(created.get(2).contains("\"id\":" + added.getId()), created.toString());
+        assertTrue(created.get(2).contains("\"title\":\"Emma\""), created.toString());
+
+        bookService.deleteBook(added.getId());
+        List<String> deleted = nextEvent(lines);
+        assertEquals("event:deleted", deleted.get(1));
+
+        // a client that reconnects after the first event gets the second one again
+        BlockingQueue<String> resumed = open(created.get(0).substring("id:".length()));
+        assertEquals(deleted, nextEvent(resumed));
+    }
+
+    @Test
+    void shouldStreamEveryBookOfABatchCreateWithTheIndexesUpdated() throws Exception {
+        BlockingQueue<String> lines = open(null);
+
+        BookBatchResult result = bookBatchService.addBooks(List.of(
+            new Book(null, "Persuasion", "Jane Austen", "9780141439686"),
+            new Book(null, "Mansfield Park", "Jane Austen", "9780141439808")));
+
+        // one event for the batch, the feed reads the books back after commit
+        for (Long id : result.getIds()) {
+            List<String> created = nextEvent(lines);
+            assertEquals("event:created", created.get(1));
+            assertTrue(created.get(2).contains("\"id\":" + id), created.toString());
+            assertTrue(created.get(2).contains("\"author\":\"Jane Austen\""), created.toString());
+        }
+        assertEquals(result.getIds().get(1), bookService.getBookByIsbn("9780141439808").getId());
+        assertEquals(1, bookService.getBookByTitle("mansfield", null, 10).getBooks().size());
+    }
+
+    @Test
+    void shouldStreamTheWholeBookAfterAPatchAndDropTheIsbnsItHeld() throws Exception {
+        BlockingQueue<String> lines = open(null);
+
+        Book added = bookService.addBook(new Book(null, "Northanger Abbey", "Jane Austen", "9780141439792"));
+        nextEvent(lines);
+        bookService.patchBook(added.getId(), new BookPatch("Sense and Sensibility", null, "9780141439662"), null);
+        List<String> patched = nextEvent(lines);
+        assertEquals("event:updated", patched.get(1));
+        assertTrue(patched.get(2).contains("\"title\":\"Sense and Sensibility\""), patched.toString());
+        assertTrue(patched.get(2).contains("\"author\":\"Jane Austen\""), patched.toString());
+        assertTrue(patched.get(2).contains("\"version\":1"), patched.toString());
+
+        // the old ISBN left the index with the patch and the new one with the delete, they don't linger as stale hits
+        assertTrue(isbnIndex.find("9780141439792").isEmpty());
+        assertEquals(added.getId(), isbnIndex.find("9780141439662").getAsLong());
+        bookService.deleteBook(added.getId());
+        List<String> deleted = nextEvent(lines);
+        assertEquals("event:deleted", deleted.get(1));
+        assertTrue(isbnIndex.find("9780141439662").isEmpty());
+    }
+
+    @Test
+    void shouldTellAClientWithAnUnknownLastEventIdToStartOver() throws Exception {
+        BlockingQueue<String> lines = open("0-1");
+
+        List<String> reset = nextEvent(lines);
+        assertEquals("event:reset", reset.get(1));
+    }
+
+    /**
+     * @return the lines of the stream as they come in
+     */
+    private BlockingQueue<String> open(String lastEventId) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/books/changes"))
+            .header("Accept", "text/event-stream");
+        if (lastEventId != null) {
+            request.header("Last-Event-ID", lastEventId);
+        }
+        HttpResponse<Stream<String>> response = client.send(request.build(), HttpResponse.BodyHandlers.ofLines());
+        assertEquals(200, response.statusCode());
+        streams.add(response.body());
+        BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        Thread.ofVirtual().start(() -> {
+            try {
+                response.body().forEach(lines::add);
+            } catch (RuntimeException ex) {
+                // closed by tearDown
+            }
+        });
+        return lines;
+    }
+
+    /**
+     * @return the id, event and data lines of the next event, skipping comments
+     */
+    private static List<String> nextEvent(BlockingQueue<String> lines) throws InterruptedException {
+        List<String> event = new ArrayList<>();
+        while (true) {
+            String line = lines.poll(10, TimeUnit.SECONDS);
+            assertNotNull(line, "no event within 10s, got " + event);
+            if (line.isEmpty() && !event.isEmpty()) {
+                return event;
+            }
+            if (!line.isEmpty() && !line.startsWith(":")) {
+                event.add(line);
+            }
+        }
+    }
+}
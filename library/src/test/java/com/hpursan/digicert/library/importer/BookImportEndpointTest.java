@@ -0,0 +1,57 @@
+package com.hpursan.digicert.library.importer;
+
+import com.hpursan.digicert.library.config.BookImportProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class BookImportEndpointTest {
+    @TempDir
+    Path directory;
+
+    private final BookImporter bookImporter = mock(BookImporter.class);
+    private final BookImportProperties properties = new BookImportProperties();
+    private final BookImportEndpoint endpoint = new BookImportEndpoint(bookImporter, properties);
+
+    @BeforeEach
+    void setUp() {
+        properties.setDirectory(directory);
+    }
+
+    @Test
+    void start_ShouldImportFilesInTheDirectory() throws Exception {
+        endpoint.start("feed.csv", null);
+        endpoint.start(directory.resolve("nested/../feed.jsonl").toString(), true);
+
+        verify(bookImporter).start(directory.resolve("feed.csv"), false);
+        verify(bookImporter).start(directory.resolve("feed.jsonl"), true);
+    }
+
+    @Test
+    void start_WhenThePathLeadsOutOfTheDirectory_ShouldRejectIt() throws Exception {
+        assertThrows(InvalidEndpointRequestException.class, () -> endpoint.start("../secrets.csv", null));
+        assertThrows(InvalidEndpointRequestException.class, () -> endpoint.start(directory.resolve("../secrets.csv").toString(), null));
+        assertThrows(InvalidEndpointRequestException.class, () -> endpoint.start("/etc/passwd", null));
+        // a sibling whose name starts with the directory's is still outside it
+        assertThrows(InvalidEndpointRequestException.class, () -> endpoint.start(directory + "-other/feed.csv", null));
+        verify(bookImporter, never()).start(any(), anyBoolean());
+    }
+
+    @Test
+    void start_WithoutADirectory_ShouldRejectEveryFile() throws Exception {
+        properties.setDirectory(null);
+
+        assertThrows(InvalidEndpointRequestException.class, () -> endpoint.start("feed.csv", null));
+        verify(bookImporter, never()).start(any(), anyBoolean());
+    }
+}
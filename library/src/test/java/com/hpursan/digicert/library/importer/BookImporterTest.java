@@ -0,0 +1,116 @@
+package com.hpursan.digicert.library.importer;
+
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.domain.Isbn;
+import com.hpursan.digicert.library.service.BookService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {"debug=false", "spring.datasource.url=jdbc:h2:mem:import;DB_CLOSE_DELAY=-1",
+    "library.import.chunk-size=3", "library.import.parser-threads=2", "library.import.chunks-in-flight=2"})
+class BookImporterTest {
+
+    @Autowired
+    private BookImporter bookImporter;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void importBooks_ShouldImportValidCsvRecordsAndRejectTheRest() throws Exception {
+        Path file = directory.resolve("feed.csv");
+        Files.writeString(file, String.join("\n",
+            "title,author,isbn,publisher",
+            "\"Dune, Part One\",Frank Herbert,978-0441013593,Ace",
+            "\"The \"\"Hobbit\"\"\",J.R.R. Tolkien,9780261103344,Mariner",
+            ",Nobody,9780000000002,None",
+            "\"Middlemarch",
+            "A novel\",George Eliot,9780141439549,Penguin",
+            "Again,Frank Herbert,9780441013593,Ace",
+            "Already There,George Orwell,9780451524935,Plume",
+            "Short",
+            "Ulysses,James Joyce,9780199535675,OUP"));
+
+        BookImportProgress progress = bookImporter.importBooks(file, false);
+
+        assertEquals(BookImportProgress.State.FINISHED, progress.getState());
+        assertEquals(8, progress.getRecords());
+        assertEquals(4, progress.getImported());
+        assertEquals(4, progress.getRejected());
+        assertEquals(100.0, progress.getPercentRead());
+
+        Book hobbit = bookService.getBookByIsbn("9780261103344");
+        assertEquals("The \"Hobbit\"", hobbit.getTitle());
+        assertEquals(0L, hobbit.getVersion());
+        assertEquals("Middlemarch\nA novel", bookService.getBookByIsbn("9780141439549").getTitle());
+        // the ISBN-10 spelling is stored as its ISBN-13
+        assertEquals("Dune, Part One", bookService.getBookByIsbn("9780441013593").getTitle());
+        // picked up by the title index like any other new book
+        assertEquals(1, bookService.getBookByTitle("Ulysses").size());
+        // and the ids don't collide with the next book added through the API
+        Book added = bookService.addBook(new Book(null, "Emma", "Jane Austen", "9780141439587"));
+        assertTrue(added.getId() > hobbit.getId());
+
+        List<String> rejected = Files.readAllLines(Path.of(progress.getErrorFile()));
+        assertEquals("title,author,isbn,publisher,line,error", rejected.get(0));
+        assertEquals(",Nobody,9780000000002,None,4,\"title: Title is required\"", rejected.get(1));
+        assertEquals("Again,Frank Herbert,9780441013593,Ace,7,\"isbn: A book with ISBN 9780441013593 already exists\"", rejected.get(2));
+        assertEquals("Already There,George Orwell,9780451524935,Plume,8,\"isbn: A book with ISBN 9780451524935 already exists\"", rejected.get(3));
+        assertEquals("Short,9,\"Expected at least 3 fields, found 1\"", rejected.get(4));
+    }
+
+    @Test
+    void importBooks_ShouldResumeAfterTheLastCommittedChunk() throws Exception {
+        Path file = directory.resolve("feed.jsonl");
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 7; i++) {
+            lines.append("{\"title\":\"Volume ").append(i).append("\",\"author\":\"Resumed\",\"isbn\":\"").append(Isbn.withCheckDigit("97811111111" + i)).append("\"}\n");
+        }
+        lines.append("{\"title\":\"Broken\"\n");
+        Files.writeString(file, lines);
+        // as if a run had committed the first chunk and stopped, its books are in already
+        jdbcTemplate.update("INSERT INTO books (title, author, isbn) VALUES ('Volume 0', 'Resumed', '9781111111106'), "
+            + "('Volume 1', 'Resumed', '9781111111113'), ('Volume 2', 'Resumed', '9781111111120')");
+        jdbcTemplate.update("INSERT INTO book_imports VALUES (?, ?, 3, 3, 0, FALSE)", file.toAbsolutePath().normalize().toString(), Files.size(file));
+
+        BookImportProgress progress = bookImporter.importBooks(file, true);
+
+        assertEquals(BookImportProgress.State.FINISHED, progress.getState());
+        assertEquals(8, progress.getRecords());
+        assertEquals(7, progress.getImported());
+        assertEquals(1, progress.getRejected());
+        assertEquals(7, resumed());
+        List<String> rejected = Files.readAllLines(Path.of(progress.getErrorFile()));
+        assertEquals(1, rejected.size());
+        assertTrue(rejected.get(0).startsWith("{\"line\":8,\"error\":\"Not a JSON book"));
+
+        // done, another resume has nothing left to do
+        assertEquals(8, bookImporter.importBooks(file, true).getRecords());
+        assertEquals(7, resumed());
+
+        Files.writeString(file, "{}\n", StandardOpenOption.APPEND);
+        assertThrows(IllegalArgumentException.class, () -> bookImporter.importBooks(file, true));
+    }
+
+    private int resumed() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM books WHERE author = 'Resumed'", Integer.class);
+    }
+}
@@ -0,0 +1,86 @@
+package com.hpursan.digicert.library.importer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hpursan.digicert.library.domain.Book;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookRecordParserTest {
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void fields_ShouldFollowRfc4180Quoting() {
+        assertEquals(List.of("a", "b, c", "say \"hi\"", "", "line\nbreak"),
+            BookRecordParser.fields("a,\"b, c\",\"say \"\"hi\"\"\",,\"line\nbreak\""));
+        assertEquals(List.of(""), BookRecordParser.fields(""));
+    }
+
+    @Test
+    void csv_ShouldMapColumnsByHeaderName() {
+        BookRecordParser parser = BookRecordParser.csv("id,ISBN, Title ,publisher,author");
+
+        Book book = parser.parse("7,0-452-28423-6,1984,Penguin,George Orwell");
+
+        assertNull(book.getId());
+        assertEquals("1984", book.getTitle());
+        assertEquals("George Orwell", book.getAuthor());
+        assertEquals("0-452-28423-6", book.getIsbn());
+    }
+
+    @Test
+    void csv_ShouldRejectShortRecordsAndHeadersWithoutTheColumns() {
+        BookRecordParser parser = BookRecordParser.csv("title,author,isbn");
+
+        assertThrows(IllegalArgumentException.class, () -> parser.parse("1984,George Orwell"));
+        assertThrows(IllegalArgumentException.class, () -> BookRecordParser.csv("title,writer,isbn"));
+    }
+
+    @Test
+    void jsonl_ShouldIgnoreIdsAndVersions() {
+        BookRecordParser parser = BookRecordParser.jsonl(objectMapper);
+
+        Book book = parser.parse("{\"id\":5,\"title\":\"Emma\",\"author\":\"Jane Austen\",\"isbn\":\"9780141439587\",\"version\":3,\"pages\":474}");
+
+        assertNull(book.getId());
+        assertNull(book.getVersion());
+        assertEquals("Emma", book.getTitle());
+        assertThrows(IllegalArgumentException.class, () -> parser.parse("{\"title\":"));
+        assertThrows(IllegalArgumentException.class, () -> parser.parse("null"));
+    }
+
+    @Test
+    void reader_ShouldJoinQuotedLineBreaksAndSkipBlankLines() throws Exception {
+        Path file = directory.resolve("books.csv");
+        Files.writeString(file, "﻿title,author,isbn\r\n\r\n\"Two\nLines\",Someone,1234567890\nLast,Someone,0987654321\n");
+
+        try (BookRecordReader reader = new BookRecordReader(file, BookImportFormat.CSV)) {
+            assertEquals("title,author,isbn", reader.next().getText());
+            BookRecordReader.BookRecord multiLine = reader.next();
+            assertEquals(3, multiLine.getLine());
+            assertEquals("\"Two\nLines\",Someone,1234567890", multiLine.getText());
+            assertEquals(5, reader.next().getLine());
+            assertNull(reader.next());
+            assertTrue(reader.bytesRead() > 0);
+        }
+    }
+
+    @Test
+    void format_ShouldFollowTheExtension() {
+        assertEquals(BookImportFormat.CSV, BookImportFormat.of(Path.of("feed.CSV")));
+        assertEquals(BookImportFormat.JSONL, BookImportFormat.of(Path.of("feed.ndjson")));
+        assertThrows(IllegalArgumentException.class, () -> BookImportFormat.of(Path.of("feed.xml")));
+    }
+}
@@ -0,0 +1,74 @@
+package com.hpursan.digicert.library.metrics;
+
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.exception.BookNotFoundException;
+import com.hpursan.digicert.library.service.BookService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"debug=false", "spring.datasource.url=jdbc:h2:mem:metrics;DB_CLOSE_DELAY=-1"})
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+public class MetricsEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookService bookService;
+
+    @Test
+    void prometheus_ShouldExposeServiceTimersAndStatementCounts() throws Exception {
+        mockMvc.perform(get("/api/books/2")).andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+            .andExpect(status().isOk())
+            .andExpect(content().string(containsString("library_book_service_seconds_bucket{class=\"BookService\",method=\"getBookById\"")))
+            .andExpect(content().string(containsString("library_sql_statements_count{method=\"GET\",uri=\"/api/books/{id}\",} 1.0")));
+    }
+
+    @Test
+    void patch_ShouldBeASingleStatementAndNotLeaveTheCachedBookBehind() throws Exception {
+        // through the service, another GET of /api/books/{id} would throw off the count checked above
+        assertEquals("The Great Gatsby", bookService.getBookById(3L).getTitle());
+
+        mockMvc.perform(patch("/api/books/3").contentType(MediaType.APPLICATION_JSON).content("{\"title\":\"Trimalchio\"}"))
+            .andExpect(status().isNoContent());
+
+        Book book = bookService.getBookById(3L);
+        assertEquals("Trimalchio", book.getTitle());
+        assertEquals("F. Scott Fitzgerald", book.getAuthor());
+        assertEquals(1L, book.getVersion());
+        mockMvc.perform(get("/actuator/prometheus"))
+            .andExpect(content().string(containsString("library_sql_statements_sum{method=\"PATCH\",uri=\"/api/books/{id}\",} 1.0")));
+    }
+
+    @Test
+    void delete_ShouldBeASingleStatementAndBulkDeleteTwoPerChunk() throws Exception {
+        mockMvc.perform(delete("/api/books/5")).andExpect(status().isNoContent());
+        mockMvc.perform(delete("/api/books/5")).andExpect(status().isNotFound());
+
+        mockMvc.perform(delete("/api/books").contentType(MediaType.APPLICATION_JSON).content("{\"ids\":[6,999,7]}"))
+            .andExpect(status().isOk())
+            .andExpect(content().json("{\"deleted\":2,\"notFound\":[999]}"));
+
+        assertThrows(BookNotFoundException.class, () -> bookService.getBookById(6L));
+        mockMvc.perform(get("/actuator/prometheus"))
+            .andExpect(content().string(containsString("library_sql_statements_sum{method=\"DELETE\",uri=\"/api/books/{id}\",} 2.0")))
+            .andExpect(content().string(containsString("library_sql_statements_sum{method=\"DELETE\",uri=\"/api/books\",} 2.0")));
+    }
+}
@@ -0,0 +1,96 @@
+package com.hpursan.digicert.library.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.DispatcherType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class SqlStatementMetricsInterceptorTest {
+    private MeterRegistry meterRegistry;
+    private SqlStatementMetricsInterceptor interceptor;
+    private StatementCountingInspector inspector;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        interceptor = new SqlStatementMetricsInterceptor(meterRegistry, 3);
+        inspector = new StatementCountingInspector();
+        request = new MockHttpServletRequest("GET", "/api/books/1");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/books/{id}");
+        response = new MockHttpServletResponse();
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestStatements.end();
+    }
+
+    @Test
+    void afterCompletion_ShouldRecordTheStatementsOfTheRequest() {
+        interceptor.preHandle(request, response, null);
+        inspector.inspect("select b from books b where id=?");
+        inspector.inspect("update books set title=? where id=?");
+        interceptor.afterCompletion(request, response, null, null);
+
+        DistributionSummary statements = meterRegistry.get(SqlStatementMetricsInterceptor.STATEMENTS)
+            .tag("method", "GET").tag("uri", "/api/books/{id}").summary();
+        assertEquals(1, statements.count());
+        assertEquals(2.0, statements.totalAmount());
+        assertEquals(0.0, meterRegistry.get(SqlStatementMetricsInterceptor.N_PLUS_ONE).counter().count());
+    }
+
+    @Test
+    void afterCompletion_WhenAStatementRepeats_ShouldCountAnNPlusOne() {
+        interceptor.preHandle(request, response, null);
+        inspector.inspect("select b from books b");
+        for (int i = 0; i < 3; i++) {
+            inspector.inspect("select a from authors a where book_id=?");
+        }
+        interceptor.afterCompletion(request, response, null, null);
+
+        assertEquals(4.0, meterRegistry.get(SqlStatementMetricsInterceptor.STATEMENTS).summary().totalAmount());
+        assertEquals(1.0, meterRegistry.get(SqlStatementMetricsInterceptor.N_PLUS_ONE)
+            .tag("uri", "/api/books/{id}").counter().count());
+    }
+
+    @Test
+    void afterConcurrentHandlingStarted_ShouldFreeTheThreadAndCountOnWhenTheRequestCompletes() {
+        interceptor.preHandle(request, response, null);
+        inspector.inspect("select b from books b");
+        interceptor.afterConcurrentHandlingStarted(request, response, null);
+
+        // the thread goes back to the pool with nothing left on it
+        assertNull(RequestStatements.end());
+        inspector.inspect("select b from books b where id=?");
+
+        // the async dispatch that completes the request, on any thread
+        request.setDispatcherType(DispatcherType.ASYNC);
+        interceptor.preHandle(request, response, null);
+        inspector.inspect("update books set title=? where id=?");
+        interceptor.afterCompletion(request, response, null, null);
+
+        DistributionSummary statements = meterRegistry.get(SqlStatementMetricsInterceptor.STATEMENTS).summary();
+        assertEquals(1, statements.count());
+        assertEquals(2.0, statements.totalAmount());
+    }
+
+    @Test
+    void inspect_OutsideARequest_ShouldNotBeCounted() {
+        inspector.inspect("select b from books b");
+        interceptor.preHandle(request, response, null);
+        interceptor.afterCompletion(request, response, null, null);
+
+        assertEquals(0.0, meterRegistry.get(SqlStatementMetricsInterceptor.STATEMENTS).summary().totalAmount());
+    }
+}
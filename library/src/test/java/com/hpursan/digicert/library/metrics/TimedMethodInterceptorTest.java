@@ -0,0 +1,79 @@
+package com.hpursan.digicert.library.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TimedMethodInterceptorTest {
+    private MeterRegistry meterRegistry;
+    private Library library;
+
+    interface Library {
+        String find(String title);
+
+        String find(String title, int limit);
+
+        void fail();
+    }
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("meterRegistry", meterRegistry);
+
+        ProxyFactory proxyFactory = new ProxyFactory(new Library() {
+            @Override
+            public String find(String title) {
+                return title;
+            }
+
+            @Override
+            public String find(String title, int limit) {
+                return title.substring(0, limit);
+            }
+
+            @Override
+            public void fail() {
+                throw new IllegalStateException("boom");
+            }
+        });
+        proxyFactory.addInterface(Library.class);
+        proxyFactory.addAdvice(new TimedMethodInterceptor(beanFactory.getBeanProvider(MeterRegistry.class), "calls"));
+        library = (Library) proxyFactory.getProxy();
+    }
+
+    @Test
+    void invoke_ShouldTimeEachMethodSeparately() {
+        assertEquals("IT", library.find("IT"));
+        library.find("Carrie");
+
+        Timer timer = meterRegistry.get("calls").tag("method", "find").timer();
+        assertEquals(2, timer.count());
+        assertEquals(0, meterRegistry.find("calls").tag("method", "fail").timers().size());
+    }
+
+    @Test
+    void invoke_ShouldTimeOverloadsSeparately() {
+        library.find("Carrie");
+        library.find("Carrie", 3);
+        library.find("Misery", 3);
+
+        assertEquals(1, meterRegistry.get("calls").tag("method", "find").tag("signature", "(String)").timer().count());
+        assertEquals(2, meterRegistry.get("calls").tag("method", "find").tag("signature", "(String,int)").timer().count());
+    }
+
+    @Test
+    void invoke_WhenTheMethodThrows_ShouldStillTimeTheCall() {
+        assertThrows(IllegalStateException.class, () -> library.fail());
+
+        assertEquals(1, meterRegistry.get("calls").tag("method", "fail").timer().count());
+    }
+}
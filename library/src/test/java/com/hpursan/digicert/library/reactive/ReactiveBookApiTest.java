@@ -0,0 +1,96 @@
+package com.hpursan.digicert.library.reactive;
+
+import com.hpursan.digicert.library.controller.BookController;
+import com.hpursan.digicert.library.controller.BookCursor;
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.service.BookService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = {"debug=false", "spring.datasource.url=jdbc:h2:mem:reactive;DB_CLOSE_DELAY=-1",
+    "library.reactive.enabled=true", "library.reactive.port=0", "library.reactive.export-chunk-size=7"})
+public class ReactiveBookApiTest {
+
+    @Autowired
+    ReactiveServer reactiveServer;
+
+    @Autowired
+    BookService bookService;
+
+    WebTestClient client;
+
+    @BeforeEach
+    void setUp() {
+        client = WebTestClient.bindToServer().baseUrl("http://localhost:" + reactiveServer.getPort()).build();
+    }
+
+    @Test
+    void getBook_whenBookExists_ShouldReturnItWithItsETag() {
+        client.get().uri("/api/books/1").exchange()
+            .expectStatus().isOk()
+            .expectHeader().valueEquals("ETag", "\"0\"")
+            .expectBody()
+            .jsonPath("$.title").isEqualTo("1984")
+            .jsonPath("$.author").isEqualTo("George Orwell");
+    }
+
+    @Test
+    void getBook_whenBookDoesNotExist_ShouldReturnNotFound() {
+        client.get().uri("/api/books/999999").exchange().expectStatus().isNotFound();
+        client.get().uri("/api/books/abc").exchange().expectStatus().isBadRequest();
+    }
+
+    @Test
+    void listBooks_ShouldPageWithTheSameCursorsAsTheServletApi() {
+        String cursor = client.get().uri("/api/books?limit=2").exchange()
+            .expectStatus().isOk()
+            .expectBody().jsonPath("$.length()").isEqualTo(2).jsonPath("$[1].id").isEqualTo(2)
+            .returnResult().getResponseHeaders().getFirst(BookController.NEXT_CURSOR_HEADER);
+        assertEquals(BookCursor.encode(2L), cursor);
+
+        client.get().uri("/api/books?limit=2&after=" + cursor).exchange()
+            .expectStatus().isOk()
+            .expectBody().jsonPath("$[0].id").isEqualTo(3);
+
+        client.get().uri("/api/books?after=not-a-cursor").exchange().expectStatus().isBadRequest();
+    }
+
+    @Test
+    void listBooks_withTitleAndAuthor_ShouldMatchBoth() {
+        client.get().uri("/api/books?title=gatsby&author=fitzgerald").exchange()
+            .expectStatus().isOk()
+            .expectBody().jsonPath("$.length()").isEqualTo(1).jsonPath("$[0].id").isEqualTo(3);
+
+        client.get().uri("/api/books?title=gatsby&author=orwell").exchange().expectStatus().isNoContent();
+    }
+
+    @Test
+    void listBooks_ShouldSeeBooksWrittenThroughTheServletSide() {
+        Book book = bookService.addBook(new Book(null, "Reactive Streams", "Test Author", "9781617294532"));
+
+        client.get().uri("/api/books/" + book.getId()).exchange()
+            .expectStatus().isOk()
+            .expectBody().jsonPath("$.title").isEqualTo("Reactive Streams");
+
+        bookService.deleteBook(book.getId(), null);
+    }
+
+    @Test
+    void exportBooks_ShouldStreamEveryBookAsNdjson() {
+        List<Book> books = client.get().uri("/api/books/export").accept(MediaType.APPLICATION_NDJSON).exchange()
+            .expectStatus().isOk()
+            .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+            .returnResult(Book.class).getResponseBody()
+            .collectList().block();
+
+        assertEquals(bookService.listAllBooks().stream().map(Book::getId).toList(), books.stream().map(Book::getId).toList());
+    }
+}
@@ -0,0 +1,143 @@
+package com.hpursan.digicert.library.replica;
+
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.dto.BookSearch;
+import com.hpursan.digicert.library.service.BookService;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"debug=false",
+    "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1",
+    "library.replicas.enabled=true",
+    "library.replicas.instances[0].url=jdbc:h2:mem:routing-replica-a;DB_CLOSE_DELAY=-1",
+    "library.replicas.instances[1].url=jdbc:h2:mem:routing-replica-b;DB_CLOSE_DELAY=-1",
+    "library.replicas.replicate-locally=true",
+    "library.replicas.replication-delay=1s",
+    "library.replicas.read-your-writes=30s"})
+@AutoConfigureMockMvc
+class ReadWriteRoutingTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private LocalReplication localReplication;
+
+    private final JdbcTemplate primary = jdbc("routing-primary");
+    private final JdbcTemplate replicaA = jdbc("routing-replica-a");
+    private final JdbcTemplate replicaB = jdbc("routing-replica-b");
+
+    @Test
+    void readOnlyTransactionsShouldTakeTurnsOnTheReplicasAndWritesGoToThePrimary() throws Exception {
+        awaitReplication();
+        assertEquals(count(primary), count(replicaA));
+        assertEquals(count(primary), count(replicaB));
+
+        // a title only each replica has, so the answer tells who served it
+        replicaA.update("UPDATE books SET title = 'Served by A' WHERE id = 2");
+        replicaB.update("UPDATE books SET title = 'Served by B' WHERE id = 2");
+        BookSearch search = new BookSearch();
+        search.setTitle("Served by");
+        Set<String> servedBy = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            servedBy.add(bookService.searchBooks(search, null, null, 10).getBooks().get(0).getTitle());
+        }
+        assertEquals(Set.of("Served by A", "Served by B"), servedBy);
+
+        Book added = bookService.addBook(new Book(null, "Routed", "Primary Author", "9780000000026"));
+        assertEquals(1, primary.queryForObject("SELECT COUNT(*) FROM books WHERE id = ?", Integer.class, added.getId()));
+
+        awaitReplication();
+        assertEquals(1, replicaA.queryForObject("SELECT COUNT(*) FROM books WHERE id = ?", Integer.class, added.getId()));
+        assertEquals(1, replicaB.queryForObject("SELECT COUNT(*) FROM books WHERE id = ?", Integer.class, added.getId()));
+    }
+
+    @Test
+    void theWriterShouldReadItsWritesWhileTheReplicasLag() throws Exception {
+        awaitReplication();
+        MvcResult created = mockMvc.perform(post("/api/books/").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"Freshly Written\",\"author\":\"Lag Tester\",\"isbn\":\"9780000000033\"}"))
+            .andExpect(status().isCreated())
+            .andReturn();
+        Cookie cookie = created.getResponse().getCookie(ReadYourWritesFilter.COOKIE);
+        assertNotNull(cookie);
+
+        mockMvc.perform(get("/api/books/export").cookie(cookie))
+            .andExpect(status().isOk())
+            .andExpect(content().string(containsString("Freshly Written")));
+        // everyone else reads a replica that is still a second behind
+        mockMvc.perform(get("/api/books/export"))
+            .andExpect(status().isOk())
+            .andExpect(content().string(not(containsString("Freshly Written"))));
+
+        awaitReplication();
+        mockMvc.perform(get("/api/books/export"))
+            .andExpect(content().string(containsString("Freshly Written")));
+    }
+
+    @Test
+    void listsShouldNeverPairANewETagWithWhatALaggingReplicaHas() throws Exception {
+        awaitReplication();
+        String before = mockMvc.perform(get("/api/books").param("limit", "500"))
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        Book added = bookService.addBook(new Book(null, "Tagged While Lagging", "Lag Tester", "9780000000040"));
+        assertEquals(0, replicaA.queryForObject("SELECT COUNT(*) FROM books WHERE id = ?", Integer.class, added.getId()));
+
+        // no read-your-writes cookie, the replicas are still a second behind
+        MvcResult listed = mockMvc.perform(get("/api/books").param("limit", "500"))
+            .andExpect(status().isOk())
+            .andExpect(content().string(containsString("Tagged While Lagging")))
+            .andReturn();
+        String after = listed.getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(before, after);
+        mockMvc.perform(get("/api/books").param("author", "Lag Tester").param("sort", "title"))
+            .andExpect(status().isOk())
+            .andExpect(content().string(containsString("Tagged While Lagging")));
+
+        mockMvc.perform(get("/api/books").param("limit", "500").header(HttpHeaders.IF_NONE_MATCH, after))
+            .andExpect(status().isNotModified());
+    }
+
+    private void awaitReplication() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!localReplication.isCaughtUp()) {
+            assertTrue(System.currentTimeMillis() < deadline, "The replicas didn't catch up");
+            Thread.sleep(50);
+        }
+    }
+
+    private static int count(JdbcTemplate jdbc) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM books", Integer.class);
+    }
+
+    private static JdbcTemplate jdbc(String database) {
+        return new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1", "sa", "password"));
+    }
+}
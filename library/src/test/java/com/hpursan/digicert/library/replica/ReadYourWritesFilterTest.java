@@ -0,0 +1,81 @@
+package com.hpursan.digicert.library.replica;
+
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReadYourWritesFilterTest {
+    private static final Duration WINDOW = Duration.ofSeconds(30);
+
+    private final ReadYourWritesFilter filter = new ReadYourWritesFilter(WINDOW, "test-key");
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void theCookieOfAWriteShouldKeepItsClientOnThePrimary() throws Exception {
+        Cookie cookie = write(filter);
+
+        assertTrue(readsPrimary(filter, cookie.getValue()));
+        // another instance with the same key takes it too
+        assertTrue(readsPrimary(new ReadYourWritesFilter(WINDOW, "test-key"), cookie.getValue()));
+    }
+
+    @Test
+    void aCookieTheClientMadeOrChangedShouldBeIgnored() throws Exception {
+        String value = write(filter).getValue();
+        String signature = value.substring(value.indexOf('.'));
+        long farAhead = System.currentTimeMillis() + Duration.ofDays(365).toMillis();
+
+        assertFalse(readsPrimary(filter, Long.toString(farAhead)));
+        assertFalse(readsPrimary(filter, farAhead + signature));
+        assertFalse(readsPrimary(filter, "not a time"));
+        assertFalse(readsPrimary(new ReadYourWritesFilter(WINDOW, "another-key"), value));
+        assertFalse(readsPrimary(new ReadYourWritesFilter(WINDOW, null), value));
+    }
+
+    @Test
+    void aSignedTimeShouldReachNoFurtherThanTheWindowFromNow() throws Exception {
+        // an hour ahead, as an instance with a longer window or a clock that runs fast would sign it
+        String value = write(new ReadYourWritesFilter(Duration.ofHours(1), "test-key")).getValue();
+
+        assertTrue(readsPrimary(filter, value));
+        // cut to now, which is already over
+        assertFalse(readsPrimary(new ReadYourWritesFilter(Duration.ZERO, "test-key"), value));
+    }
+
+    private static Cookie write(ReadYourWritesFilter filter) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest(), response));
+        try {
+            filter.onBookChanged(null);
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+            ReplicaRouting.primaryOnly(false);
+        }
+        Cookie cookie = response.getCookie(ReadYourWritesFilter.COOKIE);
+        assertNotNull(cookie);
+        return cookie;
+    }
+
+    private static boolean readsPrimary(ReadYourWritesFilter filter, String cookie) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(ReadYourWritesFilter.COOKIE, cookie));
+        boolean[] primary = new boolean[1];
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> primary[0] = ReplicaRouting.isPrimaryOnly());
+        assertFalse(ReplicaRouting.isPrimaryOnly());
+        return primary[0];
+    }
+}
@@ -0,0 +1,216 @@
+package com.hpursan.digicert.library.repository;
+
+import com.hpursan.digicert.library.BenchmarkCatalog;
+import com.hpursan.digicert.library.dto.BookField;
+import com.hpursan.digicert.library.dto.BookFieldsPage;
+import com.hpursan.digicert.library.dto.BookPage;
+import com.hpursan.digicert.library.dto.BookSearch;
+import com.hpursan.digicert.library.dto.BookSort;
+import com.hpursan.digicert.library.service.BookService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the combined search for the usual mixes of criteria and sorts against a few thousand books, and checks with
+ * H2's EXPLAIN that each query walks an index rather than scanning and sorting the whole table. Projected searches
+ * must also select only the columns that were asked for.
+ */
+@SpringBootTest(properties = {"debug=false", "spring.datasource.url=jdbc:h2:mem:explain;DB_CLOSE_DELAY=-1"})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class BookSpecificationsExplainTest {
+    private static final List<String> PLANS = new CopyOnWriteArrayList<>();
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    BookService bookService;
+
+    @BeforeAll
+    void seed() {
+        BenchmarkCatalog.load(jdbcTemplate, 10_000);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @BeforeEach
+    void clearPlans() {
+        PLANS.clear();
+    }
+
+    @Test
+    void titleAndAuthor_ShouldWalkThePrimaryKey() {
+        BookPage page = search(new BookSearch("war", "king", null, BookSort.ID, false), null, null);
+        assertPlanUses("PUBLIC.PRIMARY_KEY");
+
+        search(new BookSearch("war", "king", null, BookSort.ID, false), page.getNextAfter(), null);
+        assertPlanUses("ID >");
+    }
+
+    @Test
+    void isbnPrefix_ShouldSeekTheIsbnIndex() {
+        search(new BookSearch(null, null, "9780000001", BookSort.ID, false), null, null);
+        assertPlanUses("BOOKS_ISBN_IDX");
+    }
+
+    @Test
+    void sortedByTitle_ShouldWalkTheTitleIndex() {
+        BookPage page = search(new BookSearch(null, "king", null, BookSort.TITLE, false), null, null);
+        assertPlanUses("BOOKS_TITLE_IDX");
+
+        search(new BookSearch(null, "king", null, BookSort.TITLE, false), page.getNextAfter(), page.getNextKey());
+        assertPlanUses("TITLE >=");
+    }
+
+    @Test
+    void isbnPrefixSortedByTitle_ShouldSeekTheIsbnIndexAndSortTheMatches() {
+        // a narrow prefix beats walking the title index, H2 only has to sort the few books in the range
+        search(new BookSearch(null, null, "9780000001", BookSort.TITLE, false), null, null);
+        assertPlanUses("BOOKS_ISBN_IDX");
+    }
+
+    @Test
+    void sortedDescending_ShouldWalkTheDescendingIndexes() {
+        search(new BookSearch("war", null, null, BookSort.AUTHOR, true), null, null);
+        assertPlanUses("BOOKS_AUTHOR_DESC_IDX");
+
+        search(new BookSearch(null, "king", null, BookSort.ID, true), null, null);
+        assertPlanUses("BOOKS_ID_DESC_IDX");
+    }
+
+    @Test
+    void sortedByIsbn_ShouldWalkTheIsbnIndex() {
+        search(new BookSearch("war", null, null, BookSort.ISBN, false), null, null);
+        assertPlanUses("BOOKS_ISBN_IDX");
+    }
+
+    @Test
+    void withFields_ShouldSelectOnlyThoseColumnsAndStillWalkAnIndex() {
+        BookFieldsPage page = bookService.searchBookFields(new BookSearch(), null, null, 20, List.of(BookField.TITLE));
+        assertEquals(20, page.getBooks().size());
+        assertEquals(List.of(BookField.TITLE), page.getBooks().get(0).getFields());
+        assertPlanUses("PUBLIC.PRIMARY_KEY");
+
+        String select = PLANS.get(0).substring(0, PLANS.get(0).indexOf(" from "));
+        assertTrue(select.contains(".id") && select.contains(".title"), select);
+        assertFalse(select.contains(".author") || select.contains(".isbn") || select.contains(".version"), select);
+
+        // a single column still comes back as a row, and the next page continues after it
+        PLANS.clear();
+        BookFieldsPage ids = bookService.searchBookFields(new BookSearch(), null, null, 20, List.of(BookField.ID));
+        BookFieldsPage next = bookService.searchBookFields(new BookSearch(), ids.getNextAfter(), null, 20, List.of(BookField.ID));
+        assertTrue((Long) next.getBooks().get(0).get(BookField.ID) > ids.getNextAfter());
+    }
+
+    private BookPage search(BookSearch search, Long after, String afterKey) {
+        PLANS.clear();
+        BookPage page = bookService.searchBooks(search, after, afterKey, 20);
+        assertFalse(page.getBooks().isEmpty(), "the search should find something for the plan to mean anything");
+        return page;
+    }
+
+    private static void assertPlanUses(String expected) {
+        assertEquals(1, PLANS.size(), "expected a single query but got " + PLANS);
+        String plan = PLANS.get(0);
+        assertFalse(plan.contains("tableScan"), plan);
+        assertTrue(plan.contains(expected), plan);
+    }
+
+    /**
+     * Runs EXPLAIN for every select the application prepares, with the same parameters, and keeps the statement and
+     * its plan.
+     */
+    @TestConfiguration
+    static class ExplainPlans {
+        @Bean
+        static BeanPostProcessor explainPostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? new ExplainingDataSource(dataSource) : bean;
+                }
+            };
+        }
+    }
+
+    private static class ExplainingDataSource extends DelegatingDataSource {
+        ExplainingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            return proxy(Connection.class, connection, (method, args) -> {
+                Object result = invoke(connection, method, args);
+                if (method.getName().equals("prepareStatement") && ((String) args[0]).trim().toLowerCase().startsWith("select")) {
+                    return explaining(connection, (String) args[0], (PreparedStatement) result);
+                }
+                return result;
+            });
+        }
+
+        private static PreparedStatement explaining(Connection connection, String sql, PreparedStatement statement) {
+            Map<Integer, Object> parameters = new TreeMap<>();
+            return proxy(PreparedStatement.class, statement, (method, args) -> {
+                if (method.getName().startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                    parameters.put(index, args[1]);
+                } else if (method.getName().equals("executeQuery")) {
+                    try (PreparedStatement explain = connection.prepareStatement("EXPLAIN " + sql)) {
+                        for (Map.Entry<Integer, Object> parameter : parameters.entrySet()) {
+                            explain.setObject(parameter.getKey(), parameter.getValue());
+                        }
+                        try (ResultSet plan = explain.executeQuery()) {
+                            plan.next();
+                            PLANS.add(sql + "\n" + plan.getString(1));
+                        }
+                    }
+                }
+                return invoke(statement, method, args);
+            });
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, T target, Handler handler) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> handler.handle(method, args));
+        }
+
+        private interface Handler {
+            Object handle(Method method, Object[] args) throws Throwable;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.hpursan.digicert.library.repository;
+
+import com.hpursan.digicert.library.domain.Book;
+import jakarta.persistence.EntityManager;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class BookWriteRepositoryImplTest {
+    EntityManager entityManager;
+    private BookWriteRepositoryImpl bookWriteRepository;
+
+    @BeforeEach
+    void setUp() {
+        entityManager = mock(EntityManager.class);
+        bookWriteRepository = new BookWriteRepositoryImpl(entityManager);
+
+        AtomicLong sequence = new AtomicLong(21);
+        doAnswer(invocation -> {
+            invocation.<Book>getArgument(0).setId(sequence.getAndIncrement());
+            return null;
+        }).when(entityManager).persist(any(Book.class));
+    }
+
+    @Test
+    void insertAll_ShouldTakeIdsFromTheSequence() {
+        Book book1 = new Book(null, "The Shining", "Stephen King", "1234567890128");
+        Book book2 = new Book(99L, "IT", "Stephen King", "1234567890135");
+
+        bookWriteRepository.insertAll(List.of(book1, book2));
+
+        assertEquals(21L, book1.getId());
+        assertEquals(22L, book2.getId());
+    }
+
+    @Test
+    void insertAll_ShouldFlushAndClearEveryBatch() {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < BookWriteRepositoryImpl.BATCH_SIZE * 2 + 1; i++) {
+            books.add(new Book(null, "Title " + i, "Author", null));
+        }
+
+        bookWriteRepository.insertAll(books);
+
+        verify(entityManager, times(3)).flush();
+        verify(entityManager, times(3)).clear();
+    }
+
+    @Test
+    void insertAll_WhenAConstraintIsViolated_ShouldThrowDataIntegrityViolationException() {
+        doThrow(new ConstraintViolationException("duplicate isbn", new SQLException(), "books_isbn")).when(entityManager).flush();
+
+        assertThrows(DataIntegrityViolationException.class,
+            () -> bookWriteRepository.insertAll(List.of(new Book(null, "IT", "Stephen King", "1234567890135"))));
+    }
+}
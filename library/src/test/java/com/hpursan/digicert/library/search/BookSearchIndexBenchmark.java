@@ -0,0 +1,91 @@
+package com.hpursan.digicert.library.search;
+
+import com.hpursan.digicert.library.BenchmarkCatalog;
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.repository.BookRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the trigram index against the {@code LIKE '%x%'} queries on a generated catalog. Also checks both paths
+ * return exactly the same books. Run with {@code mvn test -Pbenchmark}, the row count can be changed with
+ * {@code -Dbenchmark.rows=...}.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = "debug=false")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class BookSearchIndexBenchmark {
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 1_000_000);
+    private static final int ITERATIONS = 20;
+    private static final int PAGE = 51;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    BookSearchIndex bookSearchIndex;
+
+    @BeforeAll
+    void loadCatalog() {
+        BenchmarkCatalog.load(jdbcTemplate, ROWS);
+        bookSearchIndex.rebuild();
+    }
+
+    @Test
+    void titleSearch() {
+        compare("title 'gatsby' first page",
+            () -> bookRepository.findByTitleContainingIgnoreCaseAndIdGreaterThanOrderByIdAsc("gatsby", 0L, Limit.of(PAGE)),
+            () -> bookSearchIndex.findByTitle("gatsby", 0L, PAGE));
+        compare("title 'moby dick' all",
+            () -> bookRepository.findByTitleContainingIgnoreCase("moby dick"),
+            () -> bookSearchIndex.findByTitle("moby dick", 0L, Integer.MAX_VALUE));
+        compare("title '123456' all (rare)",
+            () -> bookRepository.findByTitleContainingIgnoreCase("123456"),
+            () -> bookSearchIndex.findByTitle("123456", 0L, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void authorSearch() {
+        compare("author 'kafka' first page",
+            () -> bookRepository.findByAuthorContainingIgnoreCaseAndIdGreaterThanOrderByIdAsc("kafka", 0L, Limit.of(PAGE)),
+            () -> bookSearchIndex.findByAuthor("kafka", 0L, PAGE));
+        compare("author 'franz kafka' deep page",
+            () -> bookRepository.findByAuthorContainingIgnoreCaseAndIdGreaterThanOrderByIdAsc("franz kafka", ROWS * 9L / 10, Limit.of(PAGE)),
+            () -> bookSearchIndex.findByAuthor("franz kafka", ROWS * 9L / 10, PAGE));
+    }
+
+    private void compare(String name, Supplier<List<Book>> sql, Supplier<List<Book>> index) {
+        assertEquals(ids(sql.get()), ids(index.get()), name);
+
+        long sqlNanos = time(sql);
+        long indexNanos = time(index);
+        System.out.printf("%-32s rows=%d sql=%8.2f ms index=%8.2f ms speedup=%.1fx%n", name, ROWS,
+            sqlNanos / 1e6, indexNanos / 1e6, (double) sqlNanos / indexNanos);
+    }
+
+    private static long time(Supplier<List<Book>> query) {
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            query.get();
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    private static List<Long> ids(List<Book> books) {
+        return books.stream().map(Book::getId).sorted().toList();
+    }
+}
@@ -0,0 +1,127 @@
+package com.hpursan.digicert.library.search;
+
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.event.BookChangedEvent;
+import com.hpursan.digicert.library.repository.BookStore;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.*;
+
+public class BookSearchIndexTest {
+    BookStore bookStore;
+    Map<Long, Book> table;
+    private BookSearchIndex bookSearchIndex;
+
+    @BeforeEach
+    void setUp() {
+        bookStore = mock(BookStore.class);
+        table = new TreeMap<>();
+        bookSearchIndex = new BookSearchIndex(bookStore, mock(EntityManager.class), mock(PlatformTransactionManager.class));
+
+        when(bookStore.streamAllByOrderByIdAsc()).thenAnswer(invocation -> new ArrayList<>(table.values()).stream());
+        when(bookStore.findAllById(anyIterable())).thenAnswer(invocation -> {
+            List<Book> found = new ArrayList<>();
+            for (Long id : invocation.<Iterable<Long>>getArgument(0)) {
+                if (table.containsKey(id)) {
+                    found.add(table.get(id));
+                }
+            }
+            return found;
+        });
+    }
+
+    private void insert(Book book) {
+        table.put(book.getId(), book);
+    }
+
+    @Test
+    void canSearch_BeforeRebuild_ShouldBeFalse() {
+        assertFalse(bookSearchIndex.canSearch("Shining"));
+    }
+
+    @Test
+    void canSearch_WhenQueryShorterThanTrigram_ShouldBeFalse() {
+        bookSearchIndex.rebuild();
+
+        assertTrue(bookSearchIndex.canSearch("IT "));
+        assertFalse(bookSearchIndex.canSearch("IT"));
+    }
+
+    @Test
+    void findByTitle_ShouldIgnoreCaseAndReturnInIdOrder() {
+        insert(new Book(1L, "The Shining", "Stephen King", "1234567890123"));
+        insert(new Book(2L, "IT", "Stephen King", "1234567890124"));
+        insert(new Book(3L, "Shining Girls", "Lauren Beukes", "1234567890125"));
+        bookSearchIndex.rebuild();
+
+        List<Book> books = bookSearchIndex.findByTitle("sHiNiNg", 0L, Integer.MAX_VALUE);
+
+        assertEquals(List.of(1L, 3L), books.stream().map(Book::getId).toList());
+    }
+
+    @Test
+    void findByTitle_ShouldVerifyCandidatesAgainstTheText() {
+        // has every trigram of "ABCD" but not the substring itself
+        insert(new Book(1L, "ABCXBCD", "Somebody", "1234567890123"));
+        insert(new Book(2L, "xxABCDxx", "Somebody", "1234567890124"));
+        bookSearchIndex.rebuild();
+
+        List<Book> books = bookSearchIndex.findByTitle("abcd", 0L, Integer.MAX_VALUE);
+
+        assertEquals(List.of(2L), books.stream().map(Book::getId).toList());
+    }
+
+    @Test
+    void findByAuthor_ShouldStartAfterCursorAndStopAtMax() {
+        for (long id = 1; id <= 10; id++) {
+            insert(new Book(id, "Book " + id, "Stephen King", "1234567890123"));
+        }
+        bookSearchIndex.rebuild();
+
+        List<Book> books = bookSearchIndex.findByAuthor("king", 4L, 3);
+
+        assertEquals(List.of(5L, 6L, 7L), books.stream().map(Book::getId).toList());
+    }
+
+    @Test
+    void onBookChanged_ShouldIndexNewAndUpdatedBooks() {
+        bookSearchIndex.rebuild();
+        Book book = new Book(1L, "The Shining", "Stephen King", "1234567890123");
+        insert(book);
+        bookSearchIndex.onBookChanged(BookChangedEvent.created(book));
+
+        assertEquals(1, bookSearchIndex.findByTitle("shining", 0L, 10).size());
+
+        Book changed = new Book(1L, "Carrie", "Stephen King", "1234567890123");
+        insert(changed);
+        bookSearchIndex.onBookChanged(BookChangedEvent.updated(book, changed));
+
+        assertEquals(1, bookSearchIndex.findByTitle("carrie", 0L, 10).size());
+        assertTrue(bookSearchIndex.findByTitle("shining", 0L, 10).isEmpty());
+    }
+
+    @Test
+    void onBookChanged_WhenDeleted_ShouldDropThePostings() {
+        Book book = new Book(1L, "The Shining", "Stephen King", "1234567890123");
+        insert(book);
+        bookSearchIndex.rebuild();
+
+        table.remove(1L);
+        bookSearchIndex.onBookChanged(BookChangedEvent.deleted(1L, book));
+        clearInvocations(bookStore);
+
+        assertTrue(bookSearchIndex.findByTitle("shining", 0L, 10).isEmpty());
+        // no candidates left, so nothing to load
+        verify(bookStore, never()).findAllById(anyIterable());
+    }
+}
@@ -0,0 +1,103 @@
+package com.hpursan.digicert.library.search;
+
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.event.BookChangedEvent;
+import com.hpursan.digicert.library.repository.BookStore;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class IsbnIndexTest {
+    BookStore bookStore;
+    List<Book> table;
+    private IsbnIndex isbnIndex;
+
+    @BeforeEach
+    void setUp() {
+        bookStore = mock(BookStore.class);
+        table = new ArrayList<>();
+        isbnIndex = new IsbnIndex(bookStore, mock(EntityManager.class), mock(PlatformTransactionManager.class));
+        when(bookStore.streamAllByOrderByIdAsc()).thenAnswer(invocation -> new ArrayList<>(table).stream());
+    }
+
+    @Test
+    void canLookup_ShouldNeedTheMapBuiltAndAnIsbn13() {
+        assertFalse(isbnIndex.canLookup("9780451524935"));
+
+        isbnIndex.rebuild();
+
+        assertTrue(isbnIndex.canLookup("9780451524935"));
+        assertFalse(isbnIndex.canLookup("1234"));
+    }
+
+    @Test
+    void find_ShouldResolveEveryIndexedBook() {
+        for (long id = 1; id <= 10_000; id++) {
+            table.add(new Book(id, "Book " + id, "Author", String.valueOf(9780000000000L + id * 7)));
+        }
+        isbnIndex.rebuild();
+
+        for (long id = 1; id <= 10_000; id++) {
+            assertEquals(OptionalLong.of(id), isbnIndex.find(String.valueOf(9780000000000L + id * 7)));
+        }
+        assertEquals(OptionalLong.empty(), isbnIndex.find("9780000000001"));
+    }
+
+    @Test
+    void onBookChanged_ShouldFollowTheIsbn() {
+        isbnIndex.rebuild();
+        Book book = new Book(1L, "1984", "George Orwell", "9780451524935");
+        isbnIndex.onBookChanged(BookChangedEvent.created(book));
+
+        Book changed = new Book(1L, "1984", "George Orwell", "9780451526342");
+        isbnIndex.onBookChanged(BookChangedEvent.updated(book, changed));
+        assertEquals(OptionalLong.empty(), isbnIndex.find("9780451524935"));
+        assertEquals(OptionalLong.of(1L), isbnIndex.find("9780451526342"));
+
+        isbnIndex.onBookChanged(BookChangedEvent.deleted(1L, changed));
+        assertEquals(OptionalLong.empty(), isbnIndex.find("9780451526342"));
+    }
+
+    @Test
+    void onBookChanged_WhenManyRemoved_ShouldKeepTheOthersReachable() {
+        isbnIndex.rebuild();
+        for (long id = 1; id <= 1_000; id++) {
+            isbnIndex.onBookChanged(BookChangedEvent.created(new Book(id, "Book", "Author", String.valueOf(9780000000000L + id))));
+        }
+        for (long id = 1; id <= 1_000; id += 2) {
+            isbnIndex.onBookChanged(BookChangedEvent.deleted(id, new Book(id, "Book", "Author", String.valueOf(9780000000000L + id))));
+        }
+
+        for (long id = 1; id <= 1_000; id++) {
+            assertEquals(id % 2 == 0 ? OptionalLong.of(id) : OptionalLong.empty(), isbnIndex.find(String.valueOf(9780000000000L + id)));
+        }
+    }
+
+    @Test
+    void isTaken_WhenMapMisses_ShouldNotQuery() {
+        isbnIndex.rebuild();
+
+        assertFalse(isbnIndex.isTaken("9780451524935", null));
+        verify(bookStore, never()).findByIsbn(any());
+    }
+
+    @Test
+    void isTaken_WhenMapHitsAnotherBook_ShouldConfirmWithTheDatabase() {
+        Book book = new Book(1L, "1984", "George Orwell", "9780451524935");
+        table.add(book);
+        isbnIndex.rebuild();
+        when(bookStore.findByIsbn("9780451524935")).thenReturn(Optional.of(book));
+
+        assertTrue(isbnIndex.isTaken("9780451524935", null));
+        assertFalse(isbnIndex.isTaken("9780451524935", 1L));
+    }
+}
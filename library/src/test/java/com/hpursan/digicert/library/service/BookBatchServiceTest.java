@@ -0,0 +1,181 @@
+package com.hpursan.digicert.library.service;
+
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.dto.BookBatchDelete;
+import com.hpursan.digicert.library.dto.BookBatchDeleteResult;
+import com.hpursan.digicert.library.dto.BookBatchResult;
+import com.hpursan.digicert.library.event.BookChangedEvent;
+import com.hpursan.digicert.library.event.BooksCreatedEvent;
+import com.hpursan.digicert.library.repository.BookSearchRepository;
+import com.hpursan.digicert.library.repository.BookStore;
+import com.hpursan.digicert.library.search.IsbnIndex;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class BookBatchServiceTest {
+    EntityManager entityManager;
+    ApplicationEventPublisher eventPublisher;
+    IsbnIndex isbnIndex;
+    BookStore bookStore;
+    BookSearchRepository bookSearches;
+    PlatformTransactionManager transactionManager;
+    private BookBatchService bookBatchService;
+
+    @BeforeEach
+    void setUp() {
+        entityManager = mock(EntityManager.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        isbnIndex = mock(IsbnIndex.class);
+        bookStore = mock(BookStore.class);
+        bookSearches = mock(BookSearchRepository.class);
+        when(bookStore.searches()).thenReturn(bookSearches);
+        transactionManager = mock(PlatformTransactionManager.class);
+        bookBatchService = new BookBatchService(entityManager, Validation.buildDefaultValidatorFactory().getValidator(), eventPublisher, isbnIndex, bookStore, transactionManager);
+
+        AtomicLong sequence = new AtomicLong(21);
+        doAnswer(invocation -> {
+            invocation.<List<Book>>getArgument(0).forEach(book -> book.setId(sequence.getAndIncrement()));
+            return null;
+        }).when(bookStore).insertAll(anyList());
+    }
+
+    @Test
+    void addBooks_WhenAllValid_ShouldPersistAndReturnIdsInOrder() {
+        Book book1 = new Book(null, "The Shining", "Stephen King", "1234567890128");
+        Book book2 = new Book(99L, "IT", "Stephen King", "1234567890135");
+
+        BookBatchResult result = bookBatchService.addBooks(List.of(book1, book2));
+
+        assertFalse(result.hasErrors());
+        assertEquals(List.of(21L, 22L), result.getIds());
+        verify(bookStore).insertAll(List.of(book1, book2));
+        ArgumentCaptor<BooksCreatedEvent> event = ArgumentCaptor.forClass(BooksCreatedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(List.of(21L, 22L), event.getValue().getIds());
+        verify(eventPublisher, never()).publishEvent(any(BookChangedEvent.class));
+    }
+
+    @Test
+    void addBooks_WhenAnyInvalid_ShouldReportErrorsAndPersistNothing() {
+        Book valid = new Book(null, "The Shining", "Stephen King", "1234567890128");
+        Book invalid = new Book(null, "", "Stephen King", "123");
+
+        BookBatchResult result = bookBatchService.addBooks(List.of(valid, invalid));
+
+        assertTrue(result.getIds().isEmpty());
+        assertEquals(2, result.getErrors().size());
+        assertTrue(result.getErrors().stream().allMatch(error -> error.getIndex() == 1));
+        verify(bookStore, never()).insertAll(any());
+    }
+
+    @Test
+    void addBooks_WhenIsbnRepeatedOrTaken_ShouldReportThoseItems() {
+        Book book1 = new Book(null, "1984", "George Orwell", "0451524934");
+        Book book2 = new Book(null, "1984 again", "George Orwell", "9780451524935");
+        Book book3 = new Book(null, "Animal Farm", "George Orwell", "9780451526342");
+        when(isbnIndex.isTaken("9780451526342", null)).thenReturn(true);
+
+        BookBatchResult result = bookBatchService.addBooks(List.of(book1, book2, book3));
+
+        assertEquals(List.of(1, 2), result.getErrors().stream().map(error -> error.getIndex()).toList());
+        verify(bookStore, never()).insertAll(any());
+    }
+
+    @Test
+    void addBooks_WhenTooManyBooks_ShouldThrowIllegalArgumentException() {
+        List<Book> books = Collections.nCopies(BookBatchService.MAX_BOOKS + 1, new Book());
+
+        assertThrows(IllegalArgumentException.class, () -> bookBatchService.addBooks(books));
+        verify(bookStore, never()).insertAll(any());
+    }
+
+    @Test
+    void deleteBooks_ShouldDeleteInChunksAndReportMissingIdsInOrder() {
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= BookBatchService.DELETE_CHUNK_SIZE + 2; id++) {
+            ids.add(id);
+        }
+        ids.add(1L);
+        when(bookStore.findSnapshotsByIdIn(anyCollection())).thenAnswer(invocation -> {
+            List<Book> found = new ArrayList<>();
+            for (Long id : invocation.<Collection<Long>>getArgument(0)) {
+                if (id % 100 != 0) {
+                    found.add(new Book(id, "Title " + id, "Author", null, 0L));
+                }
+            }
+            return found;
+        });
+
+        BookBatchDeleteResult result = bookBatchService.deleteBooks(new BookBatchDelete(ids, null, null, null));
+        verify(transactionManager).commit(any());
+
+        assertEquals(List.of(100L, 200L, 300L, 400L, 500L), result.getNotFound());
+        assertEquals(BookBatchService.DELETE_CHUNK_SIZE + 2 - 5, result.getDeleted());
+        verify(bookStore, times(2)).findSnapshotsByIdIn(anyCollection());
+        verify(bookStore, times(2)).deleteAllByIdInBatch(any());
+        verify(eventPublisher, times(result.getDeleted())).publishEvent(any(BookChangedEvent.class));
+    }
+
+    @Test
+    void deleteBooks_WhenNoneFound_ShouldNotDelete() {
+        when(bookStore.findSnapshotsByIdIn(anyCollection())).thenReturn(List.of());
+
+        BookBatchDeleteResult result = bookBatchService.deleteBooks(new BookBatchDelete(List.of(7L, 8L), null, null, null));
+
+        assertEquals(List.of(7L, 8L), result.getNotFound());
+        verify(bookStore, never()).deleteAllByIdInBatch(any());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void deleteBooks_ByFilter_ShouldPageThroughMatchesUntilAShortChunk() {
+        List<Book> full = new ArrayList<>();
+        for (long id = 1; id <= BookBatchService.DELETE_CHUNK_SIZE; id++) {
+            full.add(new Book(id, "Orwell " + id, "George Orwell", null, 0L));
+        }
+        when(bookSearches.search(any(), any(), eq(BookBatchService.DELETE_CHUNK_SIZE)))
+            .thenReturn(full, List.of(new Book(900L, "1984", "George Orwell", null, 0L)));
+
+        BookBatchDeleteResult result = bookBatchService.deleteBooks(new BookBatchDelete(null, null, "orwell", null));
+
+        assertEquals(BookBatchService.DELETE_CHUNK_SIZE + 1, result.getDeleted());
+        assertTrue(result.getNotFound().isEmpty());
+        verify(bookStore, times(2)).deleteAllByIdInBatch(any());
+        // a transaction per chunk, so neither the locks nor the pending events grow with the number of matches
+        verify(transactionManager, times(2)).getTransaction(any());
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    void deleteBooks_WhenFilterIsBlank_ShouldThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class,
+            () -> bookBatchService.deleteBooks(new BookBatchDelete(null, " ", null, "-")));
+        verifyNoInteractions(bookStore);
+    }
+
+    @Test
+    void deleteBooks_ByFilter_WhenTheStoreHasNoSearches_ShouldThrowBeforeOpeningATransaction() {
+        when(bookStore.searches()).thenThrow(new UnsupportedOperationException());
+
+        assertThrows(UnsupportedOperationException.class, () -> bookBatchService.deleteBooks(new BookBatchDelete(null, "1984", null, null)));
+        verify(transactionManager, never()).getTransaction(any());
+    }
+}
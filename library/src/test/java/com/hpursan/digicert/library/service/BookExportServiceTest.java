@@ -0,0 +1,68 @@
+package com.hpursan.digicert.library.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.repository.BookStore;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class BookExportServiceTest {
+    BookStore bookStore;
+    EntityManager entityManager;
+    private BookExportService bookExportService;
+
+    @BeforeEach
+    void setUp() {
+        bookStore = mock(BookStore.class);
+        entityManager = mock(EntityManager.class);
+        bookExportService = new BookExportService(bookStore, entityManager, new ObjectMapper());
+    }
+
+    @Test
+    void exportBooks_ShouldWriteOneBookPerLine() throws Exception {
+        Book book1 = new Book(1L, "The Shining", "Stephen King", "1234567890123");
+        Book book2 = new Book(2L, "IT", "Stephen King", "1234567890124");
+        when(bookStore.streamAllByOrderByIdAsc()).thenReturn(Stream.of(book1, book2));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = bookExportService.exportBooks(out);
+
+        assertEquals(2, count);
+        assertEquals("{\"id\":1,\"title\":\"The Shining\",\"author\":\"Stephen King\",\"isbn\":\"1234567890123\",\"version\":null}\n"
+            + "{\"id\":2,\"title\":\"IT\",\"author\":\"Stephen King\",\"isbn\":\"1234567890124\",\"version\":null}\n",
+            out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void exportBooks_ShouldDetachEachBookAndCloseTheStream() throws Exception {
+        Book book1 = new Book(1L, "The Shining", "Stephen King", "1234567890123");
+        Book book2 = new Book(2L, "IT", "Stephen King", "1234567890124");
+        AtomicBoolean closed = new AtomicBoolean();
+        when(bookStore.streamAllByOrderByIdAsc()).thenReturn(Stream.of(book1, book2).onClose(() -> closed.set(true)));
+
+        bookExportService.exportBooks(new ByteArrayOutputStream());
+
+        verify(entityManager).detach(book1);
+        verify(entityManager).detach(book2);
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void exportBooks_WhenNoBooks_ShouldWriteNothing() throws Exception {
+        when(bookStore.streamAllByOrderByIdAsc()).thenReturn(Stream.empty());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(0, bookExportService.exportBooks(out));
+        assertEquals(0, out.size());
+    }
+}
@@ -1,61 +1,261 @@
 package com.hpursan.digicert.library.service;
 
+import com.hpursan.digicert.library.cache.BookCache;
+import com.hpursan.digicert.library.config.BookCacheProperties;
 import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.dto.BookField;
+import com.hpursan.digicert.library.dto.BookFieldsPage;
+import com.hpursan.digicert.library.dto.BookLookupResult;
+import com.hpursan.digicert.library.dto.BookPage;
+import com.hpursan.digicert.library.dto.BookPatch;
+import com.hpursan.digicert.library.dto.BookProjection;
+import com.hpursan.digicert.library.dto.BookSearch;
+import com.hpursan.digicert.library.dto.BookSort;
+import com.hpursan.digicert.library.event.BookChangedEvent;
 import com.hpursan.digicert.library.exception.BookNotFoundException;
-import com.hpursan.digicert.library.repository.BookRepository;
+import com.hpursan.digicert.library.repository.BookSearchRepository;
+import com.hpursan.digicert.library.repository.BookStore;
+import com.hpursan.digicert.library.exception.BookVersionMismatchException;
+import com.hpursan.digicert.library.exception.DuplicateIsbnException;
+import com.hpursan.digicert.library.search.BookSearchIndex;
+import com.hpursan.digicert.library.search.IsbnIndex;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 import org.mockito.InjectMocks;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.unit.DataSize;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.stream.LongStream;
 
 public class BookServiceTest {
     @Mock
-    BookRepository bookRepository;
+    BookStore bookStore;
+    @Mock
+    BookSearchRepository bookSearches;
+
+    ApplicationEventPublisher eventPublisher;
+    BookSearchIndex bookSearchIndex;
+    BookCache bookCache;
+    IsbnIndex isbnIndex;
 
     @InjectMocks
     private BookService bookService;
 
     @BeforeEach
     void setUp() {
-        bookRepository = mock(BookRepository.class);
-        bookService = new BookService(bookRepository);
+        bookStore = mock(BookStore.class);
+        bookSearches = mock(BookSearchRepository.class);
+        when(bookStore.searches()).thenReturn(bookSearches);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        bookSearchIndex = mock(BookSearchIndex.class);
+        bookCache = new BookCache(new BookCacheProperties(DataSize.ofMegabytes(1), Duration.ofMinutes(10), Duration.ofSeconds(5)), new SimpleMeterRegistry());
+        isbnIndex = mock(IsbnIndex.class);
+        bookService = new BookService(bookStore, eventPublisher, bookSearchIndex, bookCache, isbnIndex);
     }
 
     @Test
     void listAllBooks_ShouldReturnAllBooks(){
-        when(bookRepository.findAll()).thenReturn(List.of(new Book(), new Book()));
+        when(bookStore.findAll()).thenReturn(List.of(new Book(), new Book()));
         List<Book> books = bookService.listAllBooks();
         assertEquals(2, books.size());
     }
 
+    @Test
+    void listBooks_WhenMoreRowsThanLimit_ShouldReturnNextAfter(){
+        Book book1 = new Book(1L, "ABC", "XYZ", "1234567890123");
+        Book book2 = new Book(2L, "DEF", "XYZ", "1234567890124");
+        Book book3 = new Book(3L, "GHI", "XYZ", "1234567890125");
+        when(bookStore.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(3))).thenReturn(List.of(book1, book2, book3));
+
+        BookPage page = bookService.listBooks(null, 2);
+
+        assertEquals(List.of(book1, book2), page.getBooks());
+        assertEquals(2L, page.getNextAfter());
+    }
+
+    @Test
+    void listBooks_WhenLastPage_ShouldNotReturnNextAfter(){
+        Book book3 = new Book(3L, "GHI", "XYZ", "1234567890125");
+        when(bookStore.findByIdGreaterThanOrderByIdAsc(2L, Limit.of(3))).thenReturn(List.of(book3));
+
+        BookPage page = bookService.listBooks(2L, 2);
+
+        assertEquals(1, page.getBooks().size());
+        assertFalse(page.hasNext());
+    }
+
+    @Test
+    void listBooks_WhenLimitAboveMax_ShouldClampToMaxPageSize(){
+        when(bookStore.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(BookService.MAX_PAGE_SIZE + 1))).thenReturn(List.of());
+
+        bookService.listBooks(null, Integer.MAX_VALUE);
+
+        verify(bookStore).findByIdGreaterThanOrderByIdAsc(0L, Limit.of(BookService.MAX_PAGE_SIZE + 1));
+    }
+
     @Test
     void getBookById_WhenBookExists_ShouldReturnGivenBook(){
         Book book = new Book(1L, "ABC", "XYZ", "1234567890123");
-        when(bookRepository.findById(1L)).thenReturn(Optional.of(book));
+        when(bookStore.findById(1L)).thenReturn(Optional.of(book));
         Book book1 = bookService.getBookById(1L);
         assertEquals(book, book1);
     }
 
     @Test
     void getBookById_WhenNoBookExists_ShouldThrowBookNotFoundException() {
-        when(bookRepository.findById(1L)).thenReturn(Optional.empty());
+        when(bookStore.findById(1L)).thenReturn(Optional.empty());
         BookNotFoundException ex = assertThrows(BookNotFoundException.class, () -> bookService.getBookById(1L));
 
         assertTrue(ex.getMessage().contains("Book with id 1 not found"));
     }
 
+    @Test
+    void getBookById_WhenCalledTwice_ShouldHitRepositoryOnce(){
+        Book book = new Book(1L, "ABC", "XYZ", "1234567890123");
+        when(bookStore.findById(1L)).thenReturn(Optional.of(book));
+
+        bookService.getBookById(1L);
+        Book cached = bookService.getBookById(1L);
+
+        assertEquals(book, cached);
+        verify(bookStore, times(1)).findById(1L);
+    }
+
+    @Test
+    void getBookById_WhenNoBookExists_ShouldCacheTheMiss(){
+        when(bookStore.findById(1L)).thenReturn(Optional.empty());
+
+        assertThrows(BookNotFoundException.class, () -> bookService.getBookById(1L));
+        assertThrows(BookNotFoundException.class, () -> bookService.getBookById(1L));
+
+        verify(bookStore, times(1)).findById(1L);
+    }
+
+    @Test
+    void getBooksByIds_ShouldKeepRequestOrderAndReportMissingIds(){
+        Book first = new Book(1L, "ABC", "XYZ", "1234567890123");
+        Book third = new Book(3L, "DEF", "XYZ", "1234567890124");
+        when(bookStore.findSnapshotsByIdIn(List.of(3L, 2L, 1L))).thenReturn(List.of(first, third));
+
+        BookLookupResult result = bookService.getBooksByIds(List.of(3L, 2L, 1L, 3L));
+
+        assertEquals(List.of(third, first), result.getBooks());
+        assertEquals(List.of(2L), result.getMissing());
+    }
+
+    @Test
+    void getBooksByIds_ShouldOnlyQueryTheCacheMisses(){
+        Book first = new Book(1L, "ABC", "XYZ", "1234567890123");
+        Book second = new Book(2L, "DEF", "XYZ", "1234567890124");
+        when(bookStore.findById(1L)).thenReturn(Optional.of(first));
+        when(bookStore.findSnapshotsByIdIn(List.of(2L))).thenReturn(List.of(second));
+        bookService.getBookById(1L);
+
+        BookLookupResult result = bookService.getBooksByIds(List.of(1L, 2L));
+        BookLookupResult cached = bookService.getBooksByIds(List.of(2L, 1L));
+
+        assertEquals(List.of(first, second), result.getBooks());
+        assertEquals(List.of(second, first), cached.getBooks());
+        verify(bookStore, times(1)).findSnapshotsByIdIn(any());
+    }
+
+    @Test
+    void getBooksByIds_WhenMoreIdsThanAChunk_ShouldQueryOncePerChunk(){
+        List<Long> ids = LongStream.rangeClosed(1, BookService.LOOKUP_CHUNK_SIZE + 1).boxed().toList();
+        when(bookStore.findSnapshotsByIdIn(any())).thenReturn(List.of());
+
+        BookLookupResult result = bookService.getBooksByIds(ids);
+
+        assertEquals(ids, result.getMissing());
+        verify(bookStore, times(2)).findSnapshotsByIdIn(any());
+    }
+
+    @Test
+    void getBooksByIds_WhenTooManyIds_ShouldThrowIllegalArgumentException(){
+        List<Long> ids = LongStream.rangeClosed(1, BookService.MAX_LOOKUP_IDS + 1).boxed().toList();
+
+        assertThrows(IllegalArgumentException.class, () -> bookService.getBooksByIds(ids));
+        verifyNoInteractions(bookStore);
+    }
+
+    @Test
+    void getBookByIsbn_WhenIndexed_ShouldResolveIsbn10ThroughTheMap(){
+        Book book = new Book(1L, "1984", "George Orwell", "9780451524935");
+        when(isbnIndex.canLookup("9780451524935")).thenReturn(true);
+        when(isbnIndex.find("9780451524935")).thenReturn(OptionalLong.of(1L));
+        when(bookStore.findById(1L)).thenReturn(Optional.of(book));
+
+        assertEquals(book, bookService.getBookByIsbn("0451524934"));
+        verify(bookStore, never()).findByIsbn(any());
+    }
+
+    @Test
+    void getBookByIsbn_WhenNotInMap_ShouldThrowWithoutQuerying(){
+        when(isbnIndex.canLookup("9780451524935")).thenReturn(true);
+        when(isbnIndex.find("9780451524935")).thenReturn(OptionalLong.empty());
+
+        assertThrows(BookNotFoundException.class, () -> bookService.getBookByIsbn("9780451524935"));
+        verifyNoInteractions(bookStore);
+    }
+
+    @Test
+    void getBookByIsbn_WhenMapIsStale_ShouldEvictAndAskTheDatabase(){
+        Book moved = new Book(1L, "1984", "George Orwell", "9780000000002");
+        Book book = new Book(2L, "1984", "George Orwell", "9780451524935");
+        when(isbnIndex.canLookup("9780451524935")).thenReturn(true);
+        when(isbnIndex.find("9780451524935")).thenReturn(OptionalLong.of(1L));
+        when(bookStore.findById(1L)).thenReturn(Optional.of(moved));
+        when(bookStore.findByIsbn("9780451524935")).thenReturn(Optional.of(book));
+
+        assertEquals(book, bookService.getBookByIsbn("9780451524935"));
+        verify(isbnIndex).evict("9780451524935", 1L);
+    }
+
+    @Test
+    void addBook_ShouldStoreIsbn13(){
+        Book book = new Book(null, "1984", "George Orwell", "0-451-52493-4");
+        when(bookStore.save(any(Book.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        assertEquals("9780451524935", bookService.addBook(book).getIsbn());
+    }
+
+    @Test
+    void addBook_WhenIsbnTaken_ShouldThrowDuplicateIsbnException(){
+        Book book = new Book(null, "1984", "George Orwell", "9780451524935");
+        when(isbnIndex.isTaken("9780451524935", null)).thenReturn(true);
+
+        assertThrows(DuplicateIsbnException.class, () -> bookService.addBook(book));
+        verify(bookStore, never()).save(any());
+    }
+
+    @Test
+    void updateBook_WhenIsbnTakenByAnotherBook_ShouldThrowDuplicateIsbnException(){
+        Book originalBook = new Book(1L, "The Shining", "Stephen King", "1234567890123");
+        when(bookStore.findById(1L)).thenReturn(Optional.of(originalBook));
+        when(isbnIndex.isTaken("9780451524935", 1L)).thenReturn(true);
+
+        assertThrows(DuplicateIsbnException.class, () -> bookService.updateBook(1L, new Book(1L, "The Shining", "Stephen King", "9780451524935")));
+        verify(bookStore, never()).saveAndFlush(any());
+    }
+
     @Test
     void addBook_ShouldReturnNewBook(){
         Book book = new Book();
         book.setTitle("The Shining");
-        when(bookRepository.save(any(Book.class))).thenReturn(book);
+        when(bookStore.save(any(Book.class))).thenReturn(book);
 
         Book newBook = bookService.addBook(book);
         assertEquals(newBook.getTitle(), "The Shining");
@@ -67,8 +267,8 @@ public class BookServiceTest {
 
         Book bookUpdates = new Book(1L, "IT", "Stephen King", "1234567890124");
 
-        when(bookRepository.findById(1L)).thenReturn(Optional.of(originalBook));
-        when(bookRepository.save(any(Book.class))).thenReturn(originalBook);
+        when(bookStore.findById(1L)).thenReturn(Optional.of(originalBook));
+        when(bookStore.saveAndFlush(any(Book.class))).thenReturn(originalBook);
 
         Book changedBook = bookService.updateBook(1L, bookUpdates);
         assertEquals("IT", changedBook.getTitle());
@@ -76,49 +276,237 @@ public class BookServiceTest {
     }
 
     @Test
-    void deleteBook_WhenBookExists_ShouldCallDeleteById(){
-        Book book = new Book(1L, "ABC", "XYZ", "1234567890123");
-        when(bookRepository.existsById(1L)).thenReturn(true);
+    void updateBook_WhenExpectedVersionMatches_ShouldUpdate(){
+        Book originalBook = new Book(1L, "The Shining", "Stephen King", "1234567890123", 3L);
+        when(bookStore.findById(1L)).thenReturn(Optional.of(originalBook));
+        when(bookStore.saveAndFlush(any(Book.class))).thenReturn(originalBook);
+
+        Book changedBook = bookService.updateBook(1L, new Book(1L, "IT", "Stephen King", "1234567890123"), 3L);
+
+        assertEquals("IT", changedBook.getTitle());
+    }
+
+    @Test
+    void updateBook_WhenExpectedVersionIsStale_ShouldThrowBookVersionMismatchException(){
+        Book originalBook = new Book(1L, "The Shining", "Stephen King", "1234567890123", 4L);
+        when(bookStore.findById(1L)).thenReturn(Optional.of(originalBook));
+
+        assertThrows(BookVersionMismatchException.class,
+            () -> bookService.updateBook(1L, new Book(1L, "IT", "Stephen King", "1234567890123"), 3L));
+        verify(bookStore, never()).saveAndFlush(any());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void deleteBook_WhenExpectedVersionIsStale_ShouldThrowBookVersionMismatchException(){
+        when(bookStore.deleteAtVersion(1L, 3L)).thenReturn(Optional.empty());
+        when(bookStore.existsById(1L)).thenReturn(true);
+
+        assertThrows(BookVersionMismatchException.class, () -> bookService.deleteBook(1L, 3L));
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void addBook_ShouldPublishCreatedEvent(){
+        Book book = new Book(1L, "The Shining", "Stephen King", "1234567890123");
+        when(bookStore.save(any(Book.class))).thenReturn(book);
+
+        bookService.addBook(book);
+
+        ArgumentCaptor<BookChangedEvent> event = ArgumentCaptor.forClass(BookChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(BookChangedEvent.Type.CREATED, event.getValue().getType());
+        assertEquals(book, event.getValue().getAfter());
+    }
+
+    @Test
+    void updateBook_ShouldPublishUpdatedEventWithBeforeAndAfter(){
+        Book originalBook = new Book(1L, "The Shining", "Stephen King", "1234567890123");
+        Book bookUpdates = new Book(1L, "IT", "Stephen King", "1234567890124");
+        when(bookStore.findById(1L)).thenReturn(Optional.of(originalBook));
+        when(bookStore.saveAndFlush(any(Book.class))).thenReturn(originalBook);
+
+        bookService.updateBook(1L, bookUpdates);
+
+        ArgumentCaptor<BookChangedEvent> event = ArgumentCaptor.forClass(BookChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals("The Shining", event.getValue().getBefore().getTitle());
+        assertEquals("IT", event.getValue().getAfter().getTitle());
+    }
+
+    @Test
+    void patchBook_ShouldUpdateOnceWithoutReadingAndPublishTheWholeBookBeforeAndAfter(){
+        Book before = new Book(1L, "The Shining", "Stephen King", "9780385121675", 3L);
+        when(bookStore.patch(1L, "IT", null, null, null)).thenReturn(Optional.of(before));
+
+        assertEquals(4L, bookService.patchBook(1L, new BookPatch("IT", null, null), null));
+
+        verify(bookStore, never()).findById(any());
+        ArgumentCaptor<BookChangedEvent> event = ArgumentCaptor.forClass(BookChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(BookChangedEvent.Type.UPDATED, event.getValue().getType());
+        assertEquals(before, event.getValue().getBefore());
+        assertEquals(new Book(1L, "IT", "Stephen King", "9780385121675", 4L), event.getValue().getAfter());
+    }
+
+    @Test
+    void patchBook_WhenExpectedVersionMatches_ShouldReturnTheNextVersion(){
+        when(bookStore.patch(1L, null, null, "9780385121675", 3L))
+            .thenReturn(Optional.of(new Book(1L, "The Shining", "Stephen King", "9780451150325", 3L)));
+
+        assertEquals(4L, bookService.patchBook(1L, new BookPatch(null, null, "0-385-12167-7"), 3L));
+        verify(isbnIndex).isTaken("9780385121675", 1L);
+    }
+
+    @Test
+    void patchBook_WhenNothingUpdatedWithoutExpectedVersion_ShouldThrowBookNotFoundException(){
+        when(bookStore.patch(1L, "IT", null, null, null)).thenReturn(Optional.empty());
+
+        assertThrows(BookNotFoundException.class, () -> bookService.patchBook(1L, new BookPatch("IT", null, null), null));
+        verify(bookStore, never()).existsById(any());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void patchBook_WhenExpectedVersionIsStale_ShouldThrowBookVersionMismatchException(){
+        when(bookStore.patch(1L, "IT", null, null, 3L)).thenReturn(Optional.empty());
+        when(bookStore.existsById(1L)).thenReturn(true);
+
+        assertThrows(BookVersionMismatchException.class, () -> bookService.patchBook(1L, new BookPatch("IT", null, null), 3L));
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void patchBook_WhenIsbnTakenByAnotherBook_ShouldThrowDuplicateIsbnException(){
+        when(isbnIndex.isTaken("9780385121675", 1L)).thenReturn(true);
+
+        assertThrows(DuplicateIsbnException.class, () -> bookService.patchBook(1L, new BookPatch(null, null, "9780385121675"), null));
+        verify(bookStore, never()).patch(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void deleteBook_WhenBookExists_ShouldDeleteItInOneStatementAndPublishWhatItHeld(){
+        Book before = new Book(1L, "The Shining", "Stephen King", "9780385121675", 3L);
+        when(bookStore.deleteAtVersion(1L, null)).thenReturn(Optional.of(before));
         bookService.deleteBook(1L);
-        verify(bookRepository).deleteById(1L);
+        verify(bookStore, never()).findById(any());
+        verify(bookStore, never()).existsById(any());
+
+        ArgumentCaptor<BookChangedEvent> event = ArgumentCaptor.forClass(BookChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(BookChangedEvent.Type.DELETED, event.getValue().getType());
+        assertEquals(1L, event.getValue().getId());
+        assertEquals(before, event.getValue().getBefore());
     }
 
     @Test
     void deleteBook_WhenBookDoesNotExist_ShouldThrowBookNotFoundException(){
-        when(bookRepository.existsById(1L)).thenReturn(false);
+        when(bookStore.deleteAtVersion(1L, null)).thenReturn(Optional.empty());
         BookNotFoundException ex = assertThrows(BookNotFoundException.class, () -> bookService.deleteBook(1L));
 
         assertTrue(ex.getMessage().contains("Book with id 1 not found"));
+        verifyNoInteractions(eventPublisher);
     }
 
     @Test
     void getBookByTitle_whenExists_ShouldReturnGivenBooks(){
         Book book1 = new Book(1L, "The Shining", "Stephen King", "1234567890123");
         Book book2 = new Book(2L, "Shining Girls", "Lauren Beukes", "1234567890246");
-        when(bookRepository.findByTitleContainingIgnoreCase("Shining")).thenReturn(Arrays.asList(book1, book2));
+        when(bookStore.findByTitleContainingIgnoreCase("Shining")).thenReturn(Arrays.asList(book1, book2));
         List<Book> books = bookService.getBookByTitle("Shining");
         assertEquals(2, books.size());
     }
 
     @Test
     void getBookByTitle_whenNoneExist_ShouldThrowBookNotFoundException(){
-        when(bookRepository.findByTitleContainingIgnoreCase("Shining")).thenReturn(List.of());
+        when(bookStore.findByTitleContainingIgnoreCase("Shining")).thenReturn(List.of());
         BookNotFoundException ex = assertThrows(BookNotFoundException.class, () -> bookService.getBookByTitle("Shining"));
         assertTrue(ex.getMessage().contains("No books with title containing Shining were found"));
     }
 
+    @Test
+    void getBookByTitle_withCursor_ShouldSearchAfterCursor(){
+        Book book2 = new Book(2L, "Shining Girls", "Lauren Beukes", "1234567890246");
+        when(bookStore.findByTitleContainingIgnoreCaseAndIdGreaterThanOrderByIdAsc("Shining", 1L, Limit.of(11))).thenReturn(List.of(book2));
+
+        BookPage page = bookService.getBookByTitle("Shining", 1L, 10);
+
+        assertEquals(List.of(book2), page.getBooks());
+        assertFalse(page.hasNext());
+    }
+
+    @Test
+    void searchBooks_whenSortedByTitle_ShouldQueryOnceAndReturnNextKey(){
+        Book book1 = new Book(1L, "Carrie", "Stephen King", "1234567890123");
+        Book book2 = new Book(5L, "IT", "Stephen King", "1234567890246");
+        Book book3 = new Book(3L, "Misery", "Stephen King", "1234567890369");
+        when(bookSearches.search(any(), eq(Sort.by(Sort.Direction.ASC, "title", "id")), eq(3))).thenReturn(List.of(book1, book2, book3));
+
+        BookPage page = bookService.searchBooks(new BookSearch(null, "King", null, BookSort.TITLE, false), null, null, 2);
+
+        assertEquals(List.of(book1, book2), page.getBooks());
+        assertEquals(5L, page.getNextAfter());
+        assertEquals("IT", page.getNextKey());
+        verify(bookSearches, times(1)).search(any(), any(), anyInt());
+    }
+
+    @Test
+    void searchBookFields_ShouldSelectOnlyRequestedFieldsPlusTheCursorColumns(){
+        List<Object[]> rows = List.of(new Object[]{"Carrie", 1L}, new Object[]{"IT", 5L}, new Object[]{"Misery", 3L});
+        when(bookSearches.searchProperties(any(), any(), eq(3), eq(List.of("title", "id")))).thenReturn(rows);
+
+        List<BookField> fields = List.of(BookField.TITLE);
+        BookFieldsPage page = bookService.searchBookFields(new BookSearch(null, "King", null, BookSort.TITLE, false), null, null, 2, fields);
+
+        assertEquals(List.of(new BookProjection(fields, new Object[]{"Carrie"}), new BookProjection(fields, new Object[]{"IT"})), page.getBooks());
+        assertEquals(5L, page.getNextAfter());
+        assertEquals("IT", page.getNextKey());
+    }
+
+    @Test
+    void searchBooks_whenSortedByTitleWithoutKey_ShouldRejectCursor(){
+        assertThrows(IllegalArgumentException.class,
+            () -> bookService.searchBooks(new BookSearch(null, "King", null, BookSort.TITLE, false), 5L, null, 2));
+        verifyNoInteractions(bookStore);
+    }
+
+    @Test
+    void getBookByTitle_whenIndexCanSearch_ShouldUseIndex(){
+        Book book1 = new Book(1L, "The Shining", "Stephen King", "1234567890123");
+        when(bookSearchIndex.canSearch("Shining")).thenReturn(true);
+        when(bookSearchIndex.findByTitle("Shining", 0L, Integer.MAX_VALUE)).thenReturn(List.of(book1));
+
+        List<Book> books = bookService.getBookByTitle("Shining");
+
+        assertEquals(List.of(book1), books);
+        verify(bookStore, never()).findByTitleContainingIgnoreCase(any());
+    }
+
+    @Test
+    void getBookByAuthor_whenIndexCanSearch_ShouldPageThroughIndex(){
+        Book book1 = new Book(5L, "The Shining", "Stephen King", "1234567890123");
+        Book book2 = new Book(8L, "IT", "Stephen King", "1234567890124");
+        when(bookSearchIndex.canSearch("King")).thenReturn(true);
+        when(bookSearchIndex.findByAuthor("King", 4L, 2)).thenReturn(List.of(book1, book2));
+
+        BookPage page = bookService.getBookByAuthor("King", 4L, 1);
+
+        assertEquals(List.of(book1), page.getBooks());
+        assertEquals(5L, page.getNextAfter());
+    }
+
     @Test
     void getBookByAuthor_whenExists_ShouldReturnGivenBooks(){
         Book book1 = new Book(1L, "The Shining", "Stephen King", "1234567890123");
         Book book2 = new Book(2L, "Carrie", "Stephen King", "1234567890456");
-        when(bookRepository.findByAuthorContainingIgnoreCase("Stephen King")).thenReturn(Arrays.asList(book1, book2));
+        when(bookStore.findByAuthorContainingIgnoreCase("Stephen King")).thenReturn(Arrays.asList(book1, book2));
         List<Book> books = bookService.getBookByAuthor("Stephen King");
         assertEquals(2, books.size());
     }
 
     @Test
     void getBookByAuthor_whenNoneExist_ShouldThrowBookNotFoundException(){
-        when(bookRepository.findByAuthorContainingIgnoreCase("Stephen King")).thenReturn(List.of());
+        when(bookStore.findByAuthorContainingIgnoreCase("Stephen King")).thenReturn(List.of());
         BookNotFoundException ex = assertThrows(BookNotFoundException.class, () -> bookService.getBookByAuthor("Stephen King"));
         assertTrue(ex.getMessage().contains("No books with written by author names containing Stephen King were found"));
     }
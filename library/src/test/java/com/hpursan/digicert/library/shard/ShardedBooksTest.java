@@ -0,0 +1,133 @@
+package com.hpursan.digicert.library.shard;
+
+import com.hpursan.digicert.library.domain.Book;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.jdbc.init.DataSourceScriptDatabaseInitializer;
+import org.springframework.boot.sql.init.DatabaseInitializationSettings;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardedBooksTest {
+    private ShardedBooks books;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (books != null) {
+            books.destroy();
+        }
+    }
+
+    @Test
+    void shouldKeepEachBookOnItsShardAndMergeInIdOrder() {
+        books = books("merge", Duration.ofSeconds(2), h2("merge-0"), h2("merge-1"), h2("merge-2"));
+        for (int i = 0; i < 10; i++) {
+            books.save(new Book(null, "Title " + i, i % 2 == 0 ? "Even Author" : "Odd Author", "978000000000" + i));
+        }
+
+        List<Book> all = books.findAll();
+        assertEquals(10, all.size());
+        assertEquals(all.stream().map(Book::getId).sorted().toList(), all.stream().map(Book::getId).toList());
+
+        List<Book> page = books.findAfter(all.get(2).getId(), 4);
+        assertEquals(all.subList(3, 7).stream().map(Book::getId).toList(), page.stream().map(Book::getId).toList());
+
+        List<Book> odd = books.findByAuthor("ODD", 0, 100);
+        assertEquals(5, odd.size());
+        assertEquals(all.get(1).getId(), odd.get(0).getId());
+
+        assertEquals("Title 4", books.findByIsbn("9780000000004").orElseThrow().getTitle());
+        assertEquals(3, books.findAllById(List.of(all.get(7).getId(), all.get(0).getId(), all.get(4).getId())).size());
+
+        try (Stream<Book> stream = books.streamAll()) {
+            assertEquals(all.stream().map(Book::getId).toList(), stream.map(Book::getId).toList());
+        }
+    }
+
+    @Test
+    void searchesShouldTreatLikeWildcardsAsPlainCharacters() {
+        books = books("escape", Duration.ofSeconds(2), h2("escape-0"), h2("escape-1"));
+        books.save(new Book(null, "100% Bread", "Baker", "9780000000001"));
+        books.save(new Book(null, "1000 Breads", "Baker", "9780000000002"));
+
+        assertEquals(1, books.findByTitle("100%", 0, 10).size());
+        assertEquals(2, books.findByTitle("bread", 0, 10).size());
+    }
+
+    @Test
+    void searchesShouldFoldCaseLikeTheSearchIndex() {
+        books = books("fold", Duration.ofSeconds(2), h2("fold-0"), h2("fold-1"));
+        books.save(new Book(null, "Die Straße", "Anonymous", "9780000000001"));
+
+        // upper casing turns ß into SS, lower casing has nothing to turn back into ß
+        assertEquals(1, books.findByTitle("strasse", 0, 10).size());
+        assertEquals(1, books.findByTitle("STRAßE", 0, 10).size());
+    }
+
+    @Test
+    void shouldFailWhenAShardMissesTheDeadline() {
+        books = books("deadline", Duration.ofMillis(200), h2("deadline-0"), slow(h2("deadline-1"), 2_000));
+
+        long start = System.nanoTime();
+        assertThrows(QueryTimeoutException.class, () -> books.findByTitle("anything", 0, 10));
+
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(1).toNanos());
+    }
+
+    @Test
+    void routerShouldDealIdsInBlocks() {
+        ShardRouter router = new ShardRouter(3, 2);
+
+        assertEquals(List.of(0, 0, 1, 1, 2, 2, 0), Stream.of(0L, 1L, 2L, 3L, 4L, 5L, 6L).map(router::shardOf).toList());
+        assertThrows(IllegalArgumentException.class, () -> new ShardRouter(0, 1));
+    }
+
+    private static ShardedBooks books(String name, Duration deadline, DataSource... shards) {
+        DatabaseInitializationSettings schema = new DatabaseInitializationSettings();
+        schema.setSchemaLocations(List.of("classpath:schema.sql"));
+        DataSource primary = h2(name + "-primary");
+        new DataSourceScriptDatabaseInitializer(primary, schema).initializeDatabase();
+        ShardedBooks books = new ShardedBooks(primary, List.of(shards), new ShardRouter(shards.length, 1), deadline, schema, false);
+        books.afterPropertiesSet();
+        return books;
+    }
+
+    private static DataSource h2(String name) {
+        return new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "password");
+    }
+
+    /**
+     * Once the schema is in place, every connection takes {@code millis} to hand out, like a database under load.
+     */
+    private static DataSource slow(DataSource dataSource, long millis) {
+        return new DelegatingDataSource(dataSource) {
+            private int connections;
+
+            @Override
+            public Connection getConnection() throws SQLException {
+                // the schema scripts get theirs straight away
+                if (++connections > 1) {
+                    try {
+                        Thread.sleep(millis);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted", ex);
+                    }
+                }
+                return super.getConnection();
+            }
+        };
+    }
+}
@@ -0,0 +1,104 @@
+package com.hpursan.digicert.library.shard;
+
+import com.hpursan.digicert.library.BenchmarkCatalog;
+import com.hpursan.digicert.library.domain.Book;
+import com.zaxxer.hikari.HikariDataSource;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.jdbc.init.DataSourceScriptDatabaseInitializer;
+import org.springframework.boot.sql.init.DatabaseInitializationSettings;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs the same title and author searches against the same generated catalog spread over more and more shards, and
+ * prints the latency of each. A search no index can answer scans every row of every shard, in parallel, so on a box
+ * with a core per shard its latency should fall about as fast as the shards' share of the rows does. The first page
+ * of a common word stops early on every shard and shows what the fan-out itself costs.
+ * <p>
+ * Every shard is an in-memory H2 database in this JVM. Run with {@code mvn test -Pbenchmark}, the knobs are
+ * {@code -Dbenchmark.rows=1000000}, {@code -Dbenchmark.shards=1,2,4,8} and {@code -Dbenchmark.iterations=30}.
+ */
+@Tag("benchmark")
+public class ShardedSearchBenchmark {
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 1_000_000);
+    private static final int[] SHARDS = Arrays.stream(System.getProperty("benchmark.shards", "1,2,4,8").split(","))
+        .mapToInt(Integer::parseInt).toArray();
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 30);
+    private static final int PAGE = 51;
+
+    @Test
+    void searchLatencyByShardCount() throws Exception {
+        DatabaseInitializationSettings schema = new DatabaseInitializationSettings();
+        schema.setSchemaLocations(List.of("classpath:schema.sql"));
+        try (HikariDataSource primary = pool("sharded-benchmark-primary")) {
+            new DataSourceScriptDatabaseInitializer(primary, schema).initializeDatabase();
+            BenchmarkCatalog.load(new JdbcTemplate(primary), ROWS);
+
+            System.out.printf("%,d books, %d cores%n", ROWS, Runtime.getRuntime().availableProcessors());
+            System.out.printf("%-6s %-32s %8s %8s %8s%n", "shards", "search", "p50 ms", "p99 ms", "matches");
+            List<Integer> expected = null;
+            for (int shards : SHARDS) {
+                List<DataSource> pools = new ArrayList<>();
+                for (int shard = 0; shard < shards; shard++) {
+                    pools.add(pool("sharded-benchmark-" + shards + "-" + shard));
+                }
+                ShardedBooks books = new ShardedBooks(primary, pools, new ShardRouter(shards, 1), Duration.ofMinutes(1), schema, true);
+                try {
+                    books.afterPropertiesSet();
+                    List<Integer> matches = List.of(
+                        run(shards, "title '12345' all (rare)", () -> books.findByTitle("12345", 0, Integer.MAX_VALUE)),
+                        run(shards, "author 'kafka' all", () -> books.findByAuthor("kafka", 0, Integer.MAX_VALUE)),
+                        run(shards, "title 'gatsby' first page", () -> books.findByTitle("gatsby", 0, PAGE)),
+                        run(shards, "list from a random id", () -> books.findAfter(new Random().nextInt(ROWS), PAGE)));
+                    // every shard count has to find the same books, or the comparison means nothing
+                    if (expected == null) {
+                        expected = matches;
+                    }
+                    assertEquals(expected, matches);
+                } finally {
+                    books.destroy();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return how many books the search found
+     */
+    private static int run(int shards, String name, Supplier<List<Book>> search) {
+        // warm up the statements and the JIT
+        int matches = 0;
+        for (int i = 0; i < 3; i++) {
+            matches = search.get().size();
+        }
+        Histogram histogram = new Histogram(3);
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            search.get();
+            histogram.recordValue((System.nanoTime() - start) / 1_000);
+        }
+        System.out.printf("%-6d %-32s %8.2f %8.2f %8d%n", shards, name,
+            histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0, matches);
+        return matches;
+    }
+
+    private static HikariDataSource pool(String database) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl("jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1");
+        pool.setUsername("sa");
+        pool.setPassword("password");
+        pool.setMaximumPoolSize(4);
+        return pool;
+    }
+}
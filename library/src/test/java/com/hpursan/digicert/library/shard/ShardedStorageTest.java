@@ -0,0 +1,195 @@
+package com.hpursan.digicert.library.shard;
+
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.dto.BookBatchDelete;
+import com.hpursan.digicert.library.dto.BookBatchResult;
+import com.hpursan.digicert.library.dto.BookPage;
+import com.hpursan.digicert.library.dto.BookPatch;
+import com.hpursan.digicert.library.exception.BookNotFoundException;
+import com.hpursan.digicert.library.service.BookBatchService;
+import com.hpursan.digicert.library.service.BookService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"debug=false",
+    "spring.datasource.url=jdbc:h2:mem:sharded-primary;DB_CLOSE_DELAY=-1",
+    "library.shards.enabled=true",
+    "library.shards.instances[0].url=jdbc:h2:mem:shard-0;DB_CLOSE_DELAY=-1",
+    "library.shards.instances[1].url=jdbc:h2:mem:shard-1;DB_CLOSE_DELAY=-1",
+    "library.shards.instances[2].url=jdbc:h2:mem:shard-2;DB_CLOSE_DELAY=-1",
+    "library.shards.load-from-primary=true"})
+@AutoConfigureMockMvc
+class ShardedStorageTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookBatchService bookBatchService;
+
+    @Autowired
+    private ShardedBooks shardedBooks;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final List<JdbcTemplate> shards = List.of(jdbc("shard-0"), jdbc("shard-1"), jdbc("shard-2"));
+
+    @Test
+    void theSeedBooksShouldBeSpreadOverTheShardsById() {
+        long total = 0;
+        for (int shard = 0; shard < shards.size(); shard++) {
+            List<Long> ids = shards.get(shard).queryForList("SELECT id FROM books", Long.class);
+            assertTrue(ids.size() > 0, "shard " + shard + " is empty");
+            for (Long id : ids) {
+                assertEquals(shard, shardedBooks.getRouter().shardOf(id));
+            }
+            total += ids.size();
+        }
+        assertEquals(20, total);
+    }
+
+    @Test
+    void writesShouldGoToTheBooksShardOnly() {
+        Book added = bookService.addBook(new Book(null, "Sharded Emma", "Jane Austen", "9780141439587"));
+        int home = shardedBooks.getRouter().shardOf(added.getId());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            assertEquals(shard == home ? 1 : 0, count(shards.get(shard), added.getId()));
+        }
+        assertEquals("Sharded Emma", bookService.getBookById(added.getId()).getTitle());
+
+        Book updated = bookService.updateBook(added.getId(), new Book(null, "Emma", "Jane Austen", "9780141439587"), 0L);
+        assertEquals(1L, updated.getVersion());
+        assertThrows(ObjectOptimisticLockingFailureException.class,
+            () -> shardedBooks.save(new Book(added.getId(), "Stale", "Jane Austen", "9780141439587", 0L)));
+
+        assertEquals(2L, bookService.patchBook(added.getId(), new BookPatch("Emma, a novel", null, null), 1L));
+        assertEquals("Emma, a novel", shards.get(home).queryForObject("SELECT title FROM books WHERE id = ?", String.class, added.getId()));
+
+        bookService.deleteBook(added.getId());
+        assertEquals(0, count(shards.get(home), added.getId()));
+        assertThrows(BookNotFoundException.class, () -> bookService.deleteBook(added.getId()));
+    }
+
+    @Test
+    void writesShouldRollBackWithTheTransactionTheyWereMadeIn() {
+        Book kept = bookService.addBook(new Book(null, "Lady Susan", "Jane Austen", "9780141439730"));
+        int home = shardedBooks.getRouter().shardOf(kept.getId());
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        Long[] added = new Long[1];
+        transaction.executeWithoutResult(status -> {
+            added[0] = bookService.addBook(new Book(null, "The Watsons", "Jane Austen", "9780141439747")).getId();
+            bookService.patchBook(kept.getId(), new BookPatch("Lady Susan, revised", null, null), 0L);
+            // the transaction reads its own writes on the shard before it commits
+            assertEquals("Lady Susan, revised", shardedBooks.findById(kept.getId()).orElseThrow().getTitle());
+            status.setRollbackOnly();
+        });
+        assertEquals(0, count(shards.get(shardedBooks.getRouter().shardOf(added[0])), added[0]));
+        assertEquals("Lady Susan", shards.get(home).queryForObject("SELECT title FROM books WHERE id = ?", String.class, kept.getId()));
+        assertEquals("Lady Susan", bookService.getBookById(kept.getId()).getTitle());
+        assertThrows(BookNotFoundException.class, () -> bookService.getBookById(added[0]));
+
+        transaction.executeWithoutResult(status -> {
+            bookService.deleteBook(kept.getId());
+            status.setRollbackOnly();
+        });
+        assertEquals(1, count(shards.get(home), kept.getId()));
+        bookService.deleteBook(kept.getId());
+        assertEquals(0, count(shards.get(home), kept.getId()));
+    }
+
+    @Test
+    void batchesShouldBeCreatedAndDeletedOnTheShards() {
+        BookBatchResult result = bookBatchService.addBooks(List.of(
+            new Book(null, "Persuasion", "Jane Austen", "9780141439686"),
+            new Book(null, "Mansfield Park", "Jane Austen", "9780141439808")));
+        for (Long id : result.getIds()) {
+            assertEquals(1, count(shards.get(shardedBooks.getRouter().shardOf(id)), id));
+        }
+        assertEquals(result.getIds().get(1), bookService.getBookByIsbn("9780141439808").getId());
+
+        assertEquals(2, bookBatchService.deleteBooks(new BookBatchDelete(result.getIds(), null, null, null)).getDeleted());
+        for (Long id : result.getIds()) {
+            assertEquals(0, count(shards.get(shardedBooks.getRouter().shardOf(id)), id));
+        }
+    }
+
+    @Test
+    void pagesShouldBeMergedFromAllShardsInIdOrder() {
+        List<Long> ids = new ArrayList<>();
+        Long after = null;
+        do {
+            BookPage page = bookService.listBooks(after, 3);
+            page.getBooks().forEach(book -> ids.add(book.getId()));
+            after = page.getNextAfter();
+        } while (after != null);
+
+        List<Long> expected = new ArrayList<>();
+        shards.forEach(shard -> expected.addAll(shard.queryForList("SELECT id FROM books", Long.class)));
+        expected.sort(null);
+        assertEquals(expected, ids);
+    }
+
+    @Test
+    void titleAndAuthorSearchesShouldFanOutToEveryShard() throws Exception {
+        // too short for the search index, so these are asked of the shards
+        List<Book> byTitle = shardedBooks.findByTitle("th", 0, 100);
+        List<Book> byAuthor = shardedBooks.findByAuthor("Or", 0, 100);
+
+        assertTrue(byTitle.stream().map(book -> shardedBooks.getRouter().shardOf(book.getId())).distinct().count() > 1);
+        assertEquals(byTitle.stream().map(Book::getId).sorted().toList(), byTitle.stream().map(Book::getId).toList());
+        assertTrue(byAuthor.stream().allMatch(book -> book.getAuthor().toLowerCase().contains("or")));
+
+        mockMvc.perform(get("/api/books").param("title", "th").param("limit", "2"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].id").value(byTitle.get(0).getId()))
+            .andExpect(jsonPath("$[1].id").value(byTitle.get(1).getId()));
+    }
+
+    @Test
+    void sortedSearchesShouldBeReportedAsNotAvailable() throws Exception {
+        mockMvc.perform(get("/api/books").param("sort", "title"))
+            .andExpect(status().isNotImplemented());
+    }
+
+    @Test
+    void deletesByFilterShouldBeReportedAsNotAvailable() throws Exception {
+        mockMvc.perform(delete("/api/books")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"th\"}"))
+            .andExpect(status().isNotImplemented());
+        assertEquals(20, shardedBooks.count());
+    }
+
+    private static int count(JdbcTemplate shard, Long id) {
+        return shard.queryForObject("SELECT COUNT(*) FROM books WHERE id = ?", Integer.class, id);
+    }
+
+    private static JdbcTemplate jdbc(String database) {
+        return new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1", "sa", "password"));
+    }
+}
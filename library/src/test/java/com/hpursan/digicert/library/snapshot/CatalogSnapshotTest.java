@@ -0,0 +1,116 @@
+package com.hpursan.digicert.library.snapshot;
+
+import com.hpursan.digicert.library.LibraryApplication;
+import com.hpursan.digicert.library.domain.Book;
+import com.hpursan.digicert.library.metrics.TimeToReady;
+import com.hpursan.digicert.library.service.BookService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.metrics.StartupStep;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void startsFromSnapshotWrittenOnShutdown() {
+        Path snapshot = directory.resolve("catalog.snapshot");
+        Book added;
+        try (ConfigurableApplicationContext context = start("snapshot-write", snapshot, new BufferingApplicationStartup(1000))) {
+            assertEquals("scripts", loadStep(context).get("source"));
+            BookService books = context.getBean(BookService.class);
+            added = books.addBook(new Book(null, "Ulysses", "James Joyce", "978-0199535675"));
+            books.updateBook(1L, new Book(null, "Nineteen Eighty-Four", "George Orwell", books.getBookById(1L).getIsbn()));
+            books.deleteBook(3L);
+        }
+        assertTrue(Files.isRegularFile(snapshot));
+
+        BufferingApplicationStartup startup = new BufferingApplicationStartup(1000);
+        try (ConfigurableApplicationContext context = start("snapshot-read", snapshot, startup)) {
+            Map<String, String> load = loadStep(context);
+            assertEquals("snapshot", load.get("source"));
+            assertEquals("20", load.get("rows"));
+
+            BookService books = context.getBean(BookService.class);
+            Book restored = books.getBookById(added.getId());
+            assertEquals("Ulysses", restored.getTitle());
+            assertEquals("9780199535675", restored.getIsbn());
+            assertEquals("Nineteen Eighty-Four", books.getBookById(1L).getTitle());
+            assertEquals(1L, books.getBookById(1L).getVersion());
+            assertThrows(Exception.class, () -> books.getBookById(3L));
+            // the indexes are built from what was loaded
+            assertEquals(added.getId(), books.getBookByIsbn("9780199535675").getId());
+
+            // new ids carry on after the restored ones rather than colliding with them
+            Book next = books.addBook(new Book(null, "Dubliners", "James Joyce", "9780199536436"));
+            assertTrue(next.getId() > added.getId());
+
+            assertFalse(steps(startup, TimeToReady.STARTUP_STEP).isEmpty());
+        }
+    }
+
+    @Test
+    void writesOnDemand() throws Exception {
+        Path snapshot = directory.resolve("demand.snapshot");
+        try (ConfigurableApplicationContext context = start("snapshot-demand", snapshot, new BufferingApplicationStartup(1000))) {
+            CatalogSnapshotEndpoint endpoint = context.getBean(CatalogSnapshotEndpoint.class);
+            assertFalse(endpoint.describe().isExists());
+
+            CatalogSnapshotEndpoint.SnapshotFile written = endpoint.write();
+            assertEquals(20L, written.getBooks());
+            assertEquals(Files.size(snapshot), written.getBytes());
+            assertTrue(endpoint.describe().isExists());
+        }
+    }
+
+    @Test
+    void rejectsFileThatIsNotASnapshot() throws Exception {
+        Path snapshot = directory.resolve("garbage.snapshot");
+        Files.writeString(snapshot, "INSERT INTO books VALUES (1)");
+        assertThrows(Exception.class, () -> start("snapshot-garbage", snapshot, new BufferingApplicationStartup(1000)).close());
+        // a startup that failed never shut down cleanly, so nothing was written over it
+        assertEquals("INSERT INTO books VALUES (1)", Files.readString(snapshot));
+    }
+
+    private static ConfigurableApplicationContext start(String database, Path snapshot, BufferingApplicationStartup startup) {
+        return new SpringApplicationBuilder(LibraryApplication.class)
+            .applicationStartup(startup)
+            .run("--server.port=0",
+                "--debug=false",
+                "--spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1",
+                "--library.snapshot.path=" + snapshot,
+                "--library.snapshot.write-on-shutdown=true");
+    }
+
+    private static Map<String, String> loadStep(ConfigurableApplicationContext context) {
+        BufferingApplicationStartup startup = (BufferingApplicationStartup) context.getBean("applicationStartup");
+        return steps(startup, SnapshotDatabaseInitializer.STARTUP_STEP);
+    }
+
+    private static Map<String, String> steps(BufferingApplicationStartup startup, String name) {
+        Map<String, String> tags = new HashMap<>();
+        for (StartupTimeline.TimelineEvent event : startup.getBufferedTimeline().getEvents()) {
+            StartupStep step = event.getStartupStep();
+            if (step.getName().equals(name)) {
+                step.getTags().forEach(tag -> tags.put(tag.getKey(), tag.getValue()));
+                tags.put("found", "true");
+            }
+        }
+        return tags;
+    }
+}